@@ -1,29 +1,113 @@
 package com.rushtech.urlshortener;
 
+import com.rushtech.urlshortener.controller.ClientKeyResolver;
+import com.rushtech.urlshortener.controller.HotRedirectCache;
+import com.rushtech.urlshortener.controller.RateLimiter;
 import com.rushtech.urlshortener.controller.UrlShortenerController;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.CanonicalizingUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.ConcurrencyLimitedUrlShortenerDAL;
 import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.LogStructuredUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.RedirectStatsDAL;
+import com.rushtech.urlshortener.dal.SchemaMigrator;
+import com.rushtech.urlshortener.dal.ShardedUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.TimedUrlShortenerDAL;
 import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.service.AliasIndex;
+import com.rushtech.urlshortener.service.CacheWarmer;
+import com.rushtech.urlshortener.service.ExpiredUrlSweeper;
 import com.rushtech.urlshortener.service.IUrlShortenerService;
+import com.rushtech.urlshortener.service.LifecycleManager;
+import com.rushtech.urlshortener.service.RedirectCountAggregator;
+import com.rushtech.urlshortener.service.RedirectStatsRecorder;
+import com.rushtech.urlshortener.service.TokenLookupFilter;
 import com.rushtech.urlshortener.service.UrlShortenerService;
 import com.rushtech.urlshortener.util.CacheManager;
+import com.rushtech.urlshortener.util.ICacheInvalidationChannel;
+import com.rushtech.urlshortener.util.ISharedUrlCache;
 import com.rushtech.urlshortener.util.ITokenGenerator;
+import com.rushtech.urlshortener.util.MappedSharedUrlCache;
+import com.rushtech.urlshortener.util.RandomTokenGenerator;
+import com.rushtech.urlshortener.util.SequenceTokenGenerator;
 import com.rushtech.urlshortener.util.TokenGenerator;
+import com.rushtech.urlshortener.util.UdpCacheInvalidationChannel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import org.apache.commons.validator.routines.UrlValidator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 public class Application {
 
+    private static final int WARMUP_TOKENS = 1000;
+
     public static void main(String[] args) {
         Properties properties = loadConfiguration();
-        configureCache(properties);
-        IUrlShortenerService urlShortenerService = createUrlShortenerService(properties);
+        PrometheusMeterRegistry meterRegistry = createMeterRegistry();
+        LifecycleManager lifecycleManager = new LifecycleManager(
+                Long.parseLong(properties.getProperty("lifecycle.drainDelayMilliseconds")), meterRegistry);
+        lifecycleManager.installShutdownHook();
+        migrateDatabase(properties, meterRegistry);
+        CacheManager cacheManager = createCacheManager(properties, meterRegistry, lifecycleManager);
+        IUrlShortenerDAL urlShortenerDAL = createUrlShortenerDAL(properties, meterRegistry, lifecycleManager);
+        AliasIndex aliasIndex = createAliasIndex(properties, urlShortenerDAL, meterRegistry);
+        IUrlShortenerService urlShortenerService = createUrlShortenerService(properties, urlShortenerDAL, cacheManager, aliasIndex,
+                meterRegistry, lifecycleManager);
+        warmUpCache(properties, urlShortenerDAL, cacheManager, meterRegistry, lifecycleManager);
+        startExpiredUrlSweeper(properties, urlShortenerDAL, cacheManager, aliasIndex, meterRegistry, lifecycleManager);
         UrlValidator urlValidator = new UrlValidator();
-        UrlShortenerController urlShortenerController = new UrlShortenerController(urlShortenerService, urlValidator);
+        HotRedirectCache hotRedirectCache = createHotRedirectCache(properties, cacheManager, meterRegistry);
+        RedirectStatsRecorder redirectStatsRecorder = createRedirectStatsRecorder(properties, meterRegistry, lifecycleManager);
+        UrlShortenerController urlShortenerController = new UrlShortenerController(urlShortenerService, urlValidator,
+                Integer.parseInt(properties.getProperty("batch.chunkSize")), hotRedirectCache, redirectStatsRecorder, meterRegistry,
+                createRateLimiters(properties, meterRegistry), createClientKeyResolver(properties), lifecycleManager,
+                emptyToNull(properties.getProperty("admin.apiKey")));
 
-        urlShortenerController.startServer();
+        urlShortenerController.startServer(
+                Integer.parseInt(properties.getProperty("server.port")),
+                UrlShortenerController.ThreadMode.valueOf(properties.getProperty("server.threadMode").toUpperCase()),
+                Integer.parseInt(properties.getProperty("server.maxPlatformThreads"))
+        );
+        Gauge.builder("http.server.requests.active", urlShortenerController, UrlShortenerController::getInFlightRequests)
+                .description("Requests being handled, which shutdown waits for before stopping the server")
+                .register(meterRegistry);
+        long drainTimeoutMilliseconds = Long.parseLong(properties.getProperty("lifecycle.drainTimeoutMilliseconds"));
+        lifecycleManager.addShutdownStep("server", () -> urlShortenerController.drainAndStop(drainTimeoutMilliseconds));
+        urlShortenerController.warmUpRedirects(warmupTokens(cacheManager, WARMUP_TOKENS),
+                Integer.parseInt(properties.getProperty("lifecycle.warmupRequests")));
+        lifecycleManager.markReady();
+    }
+
+    /**
+     * Tokens the cache warmer just loaded, so warm-up redirects take the same path as redirects for popular tokens.
+     */
+    private static List<String> warmupTokens(CacheManager cacheManager, int limit) {
+        List<String> tokens = new ArrayList<>(limit);
+        for (String token : cacheManager.getOriginalUrlCache().synchronous().asMap().keySet()) {
+            if (tokens.size() == limit) {
+                break;
+            }
+            tokens.add(token);
+        }
+        return tokens;
     }
 
     private static Properties loadConfiguration() {
@@ -36,24 +120,413 @@ public class Application {
         return properties;
     }
 
-    private static void configureCache(Properties properties) {
+    private static PrometheusMeterRegistry createMeterRegistry() {
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        new JvmMemoryMetrics().bindTo(meterRegistry);
+        new JvmGcMetrics().bindTo(meterRegistry);
+        new JvmThreadMetrics().bindTo(meterRegistry);
+        return meterRegistry;
+    }
+
+    private static CacheManager createCacheManager(Properties properties, MeterRegistry meterRegistry, LifecycleManager lifecycleManager) {
         long expireAfterWrite = Long.parseLong(properties.getProperty("cache.expireAfterWriteMinutes"));
         long maximumSize = Long.parseLong(properties.getProperty("cache.maximumSize"));
-        CacheManager.configureCache(expireAfterWrite, maximumSize);
+        ISharedUrlCache sharedCache = null;
+        if (Boolean.parseBoolean(properties.getProperty("cache.shared.enabled"))) {
+            sharedCache = new MappedSharedUrlCache(
+                    Paths.get(properties.getProperty("cache.shared.file")),
+                    Integer.parseInt(properties.getProperty("cache.shared.maximumSize")),
+                    TimeUnit.MINUTES.toMillis(expireAfterWrite)
+            );
+        }
+        ICacheInvalidationChannel invalidationChannel = null;
+        if (Boolean.parseBoolean(properties.getProperty("cache.invalidation.enabled"))) {
+            invalidationChannel = new UdpCacheInvalidationChannel(
+                    Integer.parseInt(properties.getProperty("cache.invalidation.port")),
+                    parsePeers(properties.getProperty("cache.invalidation.peers"))
+            );
+        }
+        CacheManager cacheManager = new CacheManager(expireAfterWrite, maximumSize, sharedCache, invalidationChannel);
+        lifecycleManager.addShutdownStep("cache", cacheManager::close);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cacheManager.getOriginalUrlCache().synchronous(), "originalUrl");
+        Gauge.builder("cache.hit.ratio", cacheManager, manager -> manager.getOriginalUrlCache().synchronous().stats().hitRate())
+                .tag("cache", "originalUrl")
+                .description("Share of lookups answered by the cache tier")
+                .register(meterRegistry);
+        if (sharedCache != null) {
+            FunctionCounter.builder("cache.gets", cacheManager, CacheManager::getSharedHits)
+                    .tags("cache", "originalUrlShared", "result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("cache.gets", cacheManager, CacheManager::getSharedMisses)
+                    .tags("cache", "originalUrlShared", "result", "miss")
+                    .register(meterRegistry);
+            Gauge.builder("cache.hit.ratio", cacheManager, CacheManager::getSharedHitRate)
+                    .tag("cache", "originalUrlShared")
+                    .description("Share of lookups answered by the cache tier")
+                    .register(meterRegistry);
+        }
+        if (invalidationChannel != null) {
+            FunctionCounter.builder("cache.invalidations.published", cacheManager, CacheManager::getInvalidationsPublished)
+                    .description("Tokens whose eviction was broadcast to the other instances")
+                    .register(meterRegistry);
+            FunctionCounter.builder("cache.invalidations.received", cacheManager, CacheManager::getInvalidationsReceived)
+                    .description("Tokens evicted at the request of another instance")
+                    .register(meterRegistry);
+        }
+        return cacheManager;
+    }
+
+    private static HotRedirectCache createHotRedirectCache(Properties properties, CacheManager cacheManager, MeterRegistry meterRegistry) {
+        HotRedirectCache hotRedirectCache = new HotRedirectCache(
+                Integer.parseInt(properties.getProperty("redirect.statusCode")),
+                properties.getProperty("redirect.cacheControl"),
+                Integer.parseInt(properties.getProperty("redirect.hot.promotionThreshold")),
+                Long.parseLong(properties.getProperty("redirect.hot.countWindowSeconds")),
+                Long.parseLong(properties.getProperty("redirect.hot.maximumSize")),
+                Long.parseLong(properties.getProperty("cache.expireAfterWriteMinutes"))
+        );
+        cacheManager.addInvalidationListener(hotRedirectCache::invalidateAll);
+        FunctionCounter.builder("redirect.hot.hits", hotRedirectCache, HotRedirectCache::getHits)
+                .description("Redirects answered with a pre-rendered response")
+                .register(meterRegistry);
+        FunctionCounter.builder("redirect.hot.promotions", hotRedirectCache, HotRedirectCache::getPromotions)
+                .description("Tokens promoted to pre-rendered responses")
+                .register(meterRegistry);
+        Gauge.builder("redirect.hot.size", hotRedirectCache, HotRedirectCache::getSize)
+                .description("Tokens with a pre-rendered redirect response")
+                .register(meterRegistry);
+        return hotRedirectCache;
+    }
+
+    private static Map<String, RateLimiter> createRateLimiters(Properties properties, MeterRegistry meterRegistry) {
+        Map<String, RateLimiter> rateLimiters = new HashMap<>();
+        addRateLimiter(rateLimiters, "/{token}", "redirect", properties, meterRegistry);
+        addRateLimiter(rateLimiters, "/shorten", "shorten", properties, meterRegistry);
+        addRateLimiter(rateLimiters, "/shorten/batch", "batch", properties, meterRegistry);
+        return rateLimiters;
+    }
+
+    private static void addRateLimiter(Map<String, RateLimiter> rateLimiters, String route, String name, Properties properties,
+                                       MeterRegistry meterRegistry) {
+        int capacity = Integer.parseInt(properties.getProperty("ratelimit." + name + ".capacity"));
+        if (capacity == 0) {
+            return;
+        }
+        RateLimiter rateLimiter = new RateLimiter(
+                capacity,
+                Double.parseDouble(properties.getProperty("ratelimit." + name + ".refillPerSecond")),
+                Long.parseLong(properties.getProperty("ratelimit.maximumClients"))
+        );
+        rateLimiters.put(route, rateLimiter);
+        FunctionCounter.builder("http.server.ratelimit.rejections", rateLimiter, RateLimiter::getRejections)
+                .tag("route", route)
+                .description("Requests rejected with 429 because their client was over the route's rate limit")
+                .register(meterRegistry);
+        Gauge.builder("http.server.ratelimit.clients", rateLimiter, RateLimiter::getTrackedClients)
+                .tag("route", route)
+                .description("Clients with a token bucket for the route")
+                .register(meterRegistry);
+    }
+
+    private static ClientKeyResolver createClientKeyResolver(Properties properties) {
+        return new ClientKeyResolver(
+                emptyToNull(properties.getProperty("ratelimit.keyHeader")),
+                parseList(properties.getProperty("ratelimit.apiKeys")),
+                parseList(properties.getProperty("ratelimit.trustedProxies"))
+        );
+    }
+
+    private static List<String> parseList(String values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values.split(",")) {
+            value = value.trim();
+            if (!value.isEmpty()) {
+                list.add(value);
+            }
+        }
+        return list;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
     }
 
-    private static IUrlShortenerService createUrlShortenerService(Properties properties) {
-        IUrlShortenerDAL urlShortenerDAL = createUrlShortenerDAL(properties);
-        ITokenGenerator tokenGenerator = new TokenGenerator();
-        return new UrlShortenerService(tokenGenerator, urlShortenerDAL, CacheManager.getOriginalUrlCache());
+    private static RedirectStatsRecorder createRedirectStatsRecorder(Properties properties, MeterRegistry meterRegistry,
+                                                                     LifecycleManager lifecycleManager) {
+        RedirectStatsDAL redirectStatsDAL = new RedirectStatsDAL(
+                properties.getProperty("stats.databaseUrl"),
+                Integer.parseInt(properties.getProperty("stats.maxPoolSize")),
+                Integer.parseInt(properties.getProperty("database.connectionTimeoutMilliseconds"))
+        );
+        RedirectStatsRecorder redirectStatsRecorder = new RedirectStatsRecorder(
+                redirectStatsDAL,
+                Integer.parseInt(properties.getProperty("stats.bufferCapacity")),
+                Long.parseLong(properties.getProperty("stats.flushIntervalMilliseconds")),
+                Long.parseLong(properties.getProperty("stats.minuteRetentionHours"))
+        );
+        lifecycleManager.addShutdownStep("redirect stats database", redirectStatsDAL::close);
+        lifecycleManager.addShutdownStep("redirect stats", redirectStatsRecorder::close);
+        Gauge.builder("redirect.stats.buffered", redirectStatsRecorder, RedirectStatsRecorder::getBufferedEvents)
+                .description("Redirect events waiting in the ring buffer for the stats flusher")
+                .register(meterRegistry);
+        FunctionCounter.builder("redirect.stats.dropped", redirectStatsRecorder, RedirectStatsRecorder::getDroppedEvents)
+                .description("Redirect events dropped because the ring buffer was full")
+                .register(meterRegistry);
+        return redirectStatsRecorder;
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            peer = peer.trim();
+            if (!peer.isEmpty()) {
+                int separator = peer.lastIndexOf(':');
+                addresses.add(new InetSocketAddress(peer.substring(0, separator), Integer.parseInt(peer.substring(separator + 1))));
+            }
+        }
+        return addresses;
+    }
+
+    private static void warmUpCache(Properties properties, IUrlShortenerDAL urlShortenerDAL, CacheManager cacheManager, MeterRegistry meterRegistry,
+                                    LifecycleManager lifecycleManager) {
+        CacheWarmer cacheWarmer = new CacheWarmer(
+                cacheManager.getOriginalUrlCache().synchronous(),
+                urlShortenerDAL,
+                Paths.get(properties.getProperty("cache.snapshotFile")),
+                Integer.parseInt(properties.getProperty("cache.warmupEntries")),
+                TimeUnit.MINUTES.toMillis(Long.parseLong(properties.getProperty("cache.expireAfterWriteMinutes")))
+        );
+        cacheWarmer.warmUp();
+        lifecycleManager.addShutdownStep("cache snapshot", cacheWarmer::saveSnapshot);
+        TimeGauge.builder("cache.warmup.duration", cacheWarmer, TimeUnit.MILLISECONDS, CacheWarmer::getWarmUpMillis)
+                .description("Time spent preloading the original URL cache at startup")
+                .register(meterRegistry);
+    }
+
+    private static void startExpiredUrlSweeper(Properties properties, IUrlShortenerDAL urlShortenerDAL, CacheManager cacheManager,
+                                               AliasIndex aliasIndex, MeterRegistry meterRegistry, LifecycleManager lifecycleManager) {
+        ExpiredUrlSweeper expiredUrlSweeper = new ExpiredUrlSweeper(
+                urlShortenerDAL,
+                cacheManager,
+                aliasIndex,
+                Long.parseLong(properties.getProperty("expiration.sweepIntervalMilliseconds")),
+                Integer.parseInt(properties.getProperty("expiration.sweepBatchSize")),
+                Long.parseLong(properties.getProperty("expiration.sweepBatchPauseMilliseconds"))
+        );
+        lifecycleManager.addShutdownStep("expired URL sweeper", expiredUrlSweeper::close);
+        FunctionCounter.builder("expiration.swept.tokens", expiredUrlSweeper, ExpiredUrlSweeper::getSweptTokens)
+                .description("Expired tokens deleted by the sweeper")
+                .register(meterRegistry);
+        Gauge.builder("expiration.backlog", expiredUrlSweeper, ExpiredUrlSweeper::getBacklog)
+                .description("Expired URLs still waiting to be swept, as of the last sweep")
+                .register(meterRegistry);
+    }
+
+    private static IUrlShortenerService createUrlShortenerService(Properties properties, IUrlShortenerDAL urlShortenerDAL, CacheManager cacheManager,
+                                                                  AliasIndex aliasIndex, MeterRegistry meterRegistry,
+                                                                  LifecycleManager lifecycleManager) {
+        ITokenGenerator tokenGenerator = createTokenGenerator(properties, urlShortenerDAL);
+        RedirectCountAggregator redirectCountAggregator = createRedirectCountAggregator(properties, urlShortenerDAL, meterRegistry, lifecycleManager);
+        TokenLookupFilter tokenLookupFilter = createTokenLookupFilter(properties, urlShortenerDAL, cacheManager, meterRegistry);
+        AsyncUrlShortenerDAL asyncUrlShortenerDAL = createAsyncUrlShortenerDAL(properties, urlShortenerDAL, meterRegistry, lifecycleManager);
+        return new UrlShortenerService(tokenGenerator, urlShortenerDAL, asyncUrlShortenerDAL, cacheManager, redirectCountAggregator,
+                tokenLookupFilter, aliasIndex);
+    }
+
+    private static AsyncUrlShortenerDAL createAsyncUrlShortenerDAL(Properties properties, IUrlShortenerDAL urlShortenerDAL, MeterRegistry meterRegistry,
+                                                                   LifecycleManager lifecycleManager) {
+        AsyncUrlShortenerDAL asyncUrlShortenerDAL = new AsyncUrlShortenerDAL(
+                urlShortenerDAL,
+                Integer.parseInt(properties.getProperty("database.asyncThreads")),
+                Integer.parseInt(properties.getProperty("database.asyncQueueCapacity")),
+                Long.parseLong(properties.getProperty("database.asyncTimeoutMilliseconds"))
+        );
+        lifecycleManager.addShutdownStep("asynchronous database calls", asyncUrlShortenerDAL::close);
+        Gauge.builder("dal.async.calls.active", asyncUrlShortenerDAL, AsyncUrlShortenerDAL::getActiveCalls)
+                .description("Asynchronous database calls running on the database executor")
+                .register(meterRegistry);
+        Gauge.builder("dal.async.calls.queued", asyncUrlShortenerDAL, AsyncUrlShortenerDAL::getQueuedCalls)
+                .description("Asynchronous database calls waiting for a database executor thread")
+                .register(meterRegistry);
+        return asyncUrlShortenerDAL;
+    }
+
+    private static AliasIndex createAliasIndex(Properties properties, IUrlShortenerDAL urlShortenerDAL, MeterRegistry meterRegistry) {
+        List<String> reservedWords = new ArrayList<>();
+        for (String reservedWord : properties.getProperty("alias.reservedWords").split(",")) {
+            if (!reservedWord.isBlank()) {
+                reservedWords.add(reservedWord.trim());
+            }
+        }
+        AliasIndex aliasIndex = new AliasIndex(
+                Integer.parseInt(properties.getProperty("alias.minLength")),
+                Integer.parseInt(properties.getProperty("alias.maxLength")),
+                reservedWords
+        );
+        urlShortenerDAL.forEachAlias(aliasIndex::add);
+
+        Gauge.builder("alias.index.size", aliasIndex, AliasIndex::size)
+                .description("Custom aliases held in the in-memory alias index")
+                .register(meterRegistry);
+        return aliasIndex;
+    }
+
+    private static TokenLookupFilter createTokenLookupFilter(Properties properties, IUrlShortenerDAL urlShortenerDAL, CacheManager cacheManager,
+                                                             MeterRegistry meterRegistry) {
+        TokenLookupFilter tokenLookupFilter = new TokenLookupFilter(
+                Long.parseLong(properties.getProperty("tokenFilter.expectedTokens")),
+                Double.parseDouble(properties.getProperty("tokenFilter.falsePositiveProbability")),
+                Long.parseLong(properties.getProperty("tokenFilter.negativeCacheExpireAfterWriteSeconds")),
+                Long.parseLong(properties.getProperty("tokenFilter.negativeCacheMaximumSize"))
+        );
+        urlShortenerDAL.forEachToken(tokenLookupFilter::addToken);
+        cacheManager.addInvalidationListener(tokenLookupFilter::addInvalidated);
+
+        FunctionCounter.builder("token.filter.bloom.rejections", tokenLookupFilter, TokenLookupFilter::getBloomFilterRejections)
+                .description("Lookups rejected by the Bloom filter without touching the database")
+                .register(meterRegistry);
+        FunctionCounter.builder("token.filter.bloom.false.positives", tokenLookupFilter, TokenLookupFilter::getBloomFilterFalsePositives)
+                .description("Lookups the Bloom filter let through that the database did not know")
+                .register(meterRegistry);
+        FunctionCounter.builder("token.filter.negative.cache.hits", tokenLookupFilter, TokenLookupFilter::getNegativeCacheHits)
+                .description("Lookups rejected by the negative cache")
+                .register(meterRegistry);
+        Gauge.builder("token.filter.bloom.false.positive.rate", tokenLookupFilter, TokenLookupFilter::getBloomFilterFalsePositiveRate)
+                .register(meterRegistry);
+        return tokenLookupFilter;
+    }
+
+    private static ITokenGenerator createTokenGenerator(Properties properties, IUrlShortenerDAL urlShortenerDAL) {
+        String strategy = properties.getProperty("token.generator");
+        int tokenLength = Integer.parseInt(properties.getProperty("token.length"));
+        switch (strategy) {
+            case "random":
+                return new RandomTokenGenerator(tokenLength);
+            case "sequence":
+                return new SequenceTokenGenerator(urlShortenerDAL, Integer.parseInt(properties.getProperty("token.sequenceBlockSize")), tokenLength);
+            case "hex":
+                return new TokenGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown token.generator: " + strategy);
+        }
+    }
+
+    private static RedirectCountAggregator createRedirectCountAggregator(Properties properties, IUrlShortenerDAL urlShortenerDAL, MeterRegistry meterRegistry,
+                                                                         LifecycleManager lifecycleManager) {
+        RedirectCountAggregator redirectCountAggregator = new RedirectCountAggregator(
+                urlShortenerDAL,
+                Long.parseLong(properties.getProperty("analytics.flushIntervalMilliseconds")),
+                Long.parseLong(properties.getProperty("analytics.flushThreshold"))
+        );
+        lifecycleManager.addShutdownStep("redirect counts", redirectCountAggregator::close);
+        Gauge.builder("redirect.analytics.pending", redirectCountAggregator, RedirectCountAggregator::getPendingRedirects)
+                .description("Redirects counted in memory and not yet flushed to redirect_analytics")
+                .register(meterRegistry);
+        return redirectCountAggregator;
+    }
+
+    /**
+     * Brings the SQLite schema up to date before anything opens the database; fails startup if a hot query would
+     * scan a whole table.
+     */
+    private static void migrateDatabase(Properties properties, MeterRegistry meterRegistry) {
+        if (!"sqlite".equals(properties.getProperty("storage.engine"))) {
+            return;
+        }
+        int connectionTimeoutMilliseconds = Integer.parseInt(properties.getProperty("database.connectionTimeoutMilliseconds"));
+        for (String databaseUrl : databaseUrls(properties)) {
+            new SchemaMigrator(databaseUrl, connectionTimeoutMilliseconds, meterRegistry).migrate();
+        }
+    }
+
+    private static List<String> databaseUrls(Properties properties) {
+        int shards = Integer.parseInt(properties.getProperty("database.shards"));
+        if (shards == 1) {
+            return List.of(properties.getProperty("database.url"));
+        }
+        List<String> databaseUrls = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            databaseUrls.add(String.format(properties.getProperty("database.shardUrlTemplate"), shard));
+        }
+        return databaseUrls;
+    }
+
+    private static IUrlShortenerDAL createUrlShortenerDAL(Properties properties, MeterRegistry meterRegistry, LifecycleManager lifecycleManager) {
+        IUrlShortenerDAL urlShortenerDAL = createStorageEngine(properties, meterRegistry, lifecycleManager);
+        if (Boolean.parseBoolean(properties.getProperty("url.canonicalize"))) {
+            urlShortenerDAL = new CanonicalizingUrlShortenerDAL(urlShortenerDAL);
+        }
+        ConcurrencyLimitedUrlShortenerDAL concurrencyLimitedDAL = new ConcurrencyLimitedUrlShortenerDAL(
+                new TimedUrlShortenerDAL(urlShortenerDAL, meterRegistry),
+                Integer.parseInt(properties.getProperty("database.maxConcurrentCalls")),
+                Integer.parseInt(properties.getProperty("database.maxQueuedCalls")),
+                Long.parseLong(properties.getProperty("database.queueTimeoutMilliseconds"))
+        );
+        Gauge.builder("dal.calls.active", concurrencyLimitedDAL, ConcurrencyLimitedUrlShortenerDAL::getActiveCalls)
+                .description("Database calls currently holding a permit")
+                .register(meterRegistry);
+        Gauge.builder("dal.calls.queued", concurrencyLimitedDAL, ConcurrencyLimitedUrlShortenerDAL::getQueuedCalls)
+                .description("Database calls waiting for a permit")
+                .register(meterRegistry);
+        return concurrencyLimitedDAL;
+    }
+
+    private static IUrlShortenerDAL createStorageEngine(Properties properties, MeterRegistry meterRegistry, LifecycleManager lifecycleManager) {
+        String engine = properties.getProperty("storage.engine");
+        int expiryDateMonthsInFuture = Integer.parseInt(properties.getProperty("url.expiryDateMonthsInFuture"));
+        switch (engine) {
+            case "sqlite":
+                List<String> databaseUrls = databaseUrls(properties);
+                if (databaseUrls.size() == 1) {
+                    return createSqliteDAL("url-shortener", databaseUrls.get(0), properties, expiryDateMonthsInFuture, meterRegistry,
+                            lifecycleManager);
+                }
+                List<UrlShortenerDAL> shards = new ArrayList<>(databaseUrls.size());
+                for (int shard = 0; shard < databaseUrls.size(); shard++) {
+                    shards.add(createSqliteDAL("url-shortener-shard-" + shard, databaseUrls.get(shard), properties,
+                            expiryDateMonthsInFuture, meterRegistry, lifecycleManager));
+                }
+                return new ShardedUrlShortenerDAL(shards, Boolean.parseBoolean(properties.getProperty("database.shardProbeAll")));
+            case "log":
+                LogStructuredUrlShortenerDAL logStructuredDAL = new LogStructuredUrlShortenerDAL(
+                        Paths.get(properties.getProperty("storage.directory")),
+                        expiryDateMonthsInFuture,
+                        Long.parseLong(properties.getProperty("storage.indexInitialCapacity")),
+                        Long.parseLong(properties.getProperty("storage.compactionIntervalMilliseconds")),
+                        Double.parseDouble(properties.getProperty("storage.compactionGarbageRatio"))
+                );
+                lifecycleManager.addShutdownStep("storage", logStructuredDAL::close);
+                Gauge.builder("storage.log.size", logStructuredDAL, LogStructuredUrlShortenerDAL::getLogBytes)
+                        .baseUnit("bytes")
+                        .description("Size of the append-only URL log")
+                        .register(meterRegistry);
+                Gauge.builder("storage.log.garbage", logStructuredDAL, LogStructuredUrlShortenerDAL::getGarbageBytes)
+                        .baseUnit("bytes")
+                        .description("Bytes of superseded records that the next compaction will drop")
+                        .register(meterRegistry);
+                return logStructuredDAL;
+            default:
+                throw new IllegalArgumentException("Unknown storage.engine: " + engine);
+        }
     }
 
-    private static IUrlShortenerDAL createUrlShortenerDAL(Properties properties) {
-        return new UrlShortenerDAL(
-                properties.getProperty("database.url"),
+    /**
+     * Opens the pools' connections straight away, so they are ready before the server reports ready.
+     */
+    private static UrlShortenerDAL createSqliteDAL(String poolName, String databaseUrl, Properties properties, int expiryDateMonthsInFuture,
+                                                   MeterRegistry meterRegistry, LifecycleManager lifecycleManager) {
+        UrlShortenerDAL urlShortenerDAL = new UrlShortenerDAL(
+                poolName,
+                databaseUrl,
                 Integer.parseInt(properties.getProperty("database.maxPoolSize")),
                 Integer.parseInt(properties.getProperty("database.connectionTimeoutMilliseconds")),
-                Integer.parseInt(properties.getProperty("url.expiryDateMonthsInFuture"))
+                expiryDateMonthsInFuture,
+                Boolean.parseBoolean(properties.getProperty("database.statementCache")),
+                meterRegistry
         );
+        urlShortenerDAL.warmUpConnections();
+        lifecycleManager.addShutdownStep("storage " + poolName, urlShortenerDAL::close);
+        return urlShortenerDAL;
     }
 }
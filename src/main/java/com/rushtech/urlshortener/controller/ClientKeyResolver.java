@@ -0,0 +1,64 @@
+package com.rushtech.urlshortener.controller;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Names the client a request is rate limited as. A request carrying one of the known {@code apiKeys} in the
+ * {@code keyHeader} header is that key's client; any other value in the header is ignored, so making keys up does not
+ * earn fresh buckets. Every other request is its IP address's client.
+ *
+ * <p>The IP address is the peer's, unless the peer is one of the {@code trustedProxies}, such as the load balancer in
+ * front of the servers. Then {@code X-Forwarded-For} is read from the right, skipping the trusted proxies the request
+ * passed through, and the first address that is not one of them is the client's. Addresses to the left of it were
+ * written by the client itself and are never believed.
+ */
+public class ClientKeyResolver {
+
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final String keyHeader;
+    private final Set<String> apiKeys;
+    private final Set<String> trustedProxies;
+
+    /**
+     * {@code keyHeader} may be null to tell clients apart only by IP address. {@code trustedProxies} are IP addresses
+     * written as the peer address and {@code X-Forwarded-For} entries show them.
+     */
+    public ClientKeyResolver(String keyHeader, Collection<String> apiKeys, Collection<String> trustedProxies) {
+        this.keyHeader = keyHeader;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.trustedProxies = Set.copyOf(trustedProxies);
+    }
+
+    /**
+     * Returns the client key of a request from {@code remoteAddress}, reading its request headers through
+     * {@code headers}.
+     */
+    public String resolve(String remoteAddress, UnaryOperator<String> headers) {
+        String key = keyHeader == null ? null : headers.apply(keyHeader);
+        // Prefixed so that a key cannot name another client's IP address and drain its bucket
+        if (key != null && apiKeys.contains(key)) {
+            return "key:" + key;
+        }
+        return clientAddress(remoteAddress, headers.apply(FORWARDED_FOR_HEADER));
+    }
+
+    private String clientAddress(String remoteAddress, String forwardedFor) {
+        if (forwardedFor == null || !trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+        String address = remoteAddress;
+        int end = forwardedFor.length();
+        while (end > 0 && trustedProxies.contains(address)) {
+            int start = forwardedFor.lastIndexOf(',', end - 1) + 1;
+            String hop = forwardedFor.substring(start, end).trim();
+            if (!hop.isEmpty()) {
+                address = hop;
+            }
+            end = start - 1;
+        }
+        return address;
+    }
+}
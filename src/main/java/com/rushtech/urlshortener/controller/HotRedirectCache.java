@@ -0,0 +1,103 @@
+package com.rushtech.urlshortener.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-rendered redirect responses for the most requested tokens. Once a token has been redirected
+ * {@code promotionThreshold} times within {@code countWindowSeconds}, its {@code Location} header is encoded once into
+ * a {@link PreEncodedHttpField}, whose bytes Jetty copies straight into the response buffer. Later redirects for the
+ * token skip the service, the cache tiers and header encoding. At most {@code maximumSize} tokens are kept rendered,
+ * each for at most {@code expireAfterWriteMinutes}, so an expired URL stops being served no later than the original
+ * URL cache would stop serving it.
+ */
+public class HotRedirectCache {
+
+    /**
+     * A rendered redirect: the long URL, still needed to count the redirect, and its encoded {@code Location} header.
+     */
+    public record RenderedRedirect(String originalUrl, PreEncodedHttpField location) {
+    }
+
+    private final Cache<String, RenderedRedirect> renderedRedirects;
+    private final Cache<String, AtomicInteger> redirectCounts;
+    private final int promotionThreshold;
+    private final int statusCode;
+    private final PreEncodedHttpField cacheControl;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+
+    public HotRedirectCache(int statusCode, String cacheControl, int promotionThreshold, long countWindowSeconds, long maximumSize,
+                            long expireAfterWriteMinutes) {
+        if (statusCode != 301 && statusCode != 302 && statusCode != 303 && statusCode != 307 && statusCode != 308) {
+            throw new IllegalArgumentException("Not a redirect status code: " + statusCode);
+        }
+        this.statusCode = statusCode;
+        this.cacheControl = cacheControl == null || cacheControl.isBlank() ? null : new PreEncodedHttpField(HttpHeader.CACHE_CONTROL, cacheControl);
+        this.promotionThreshold = promotionThreshold;
+        this.renderedRedirects = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
+                .build();
+        // Tracks more candidates than can be promoted; Caffeine's frequency-based eviction keeps the busy ones
+        this.redirectCounts = Caffeine.newBuilder()
+                .maximumSize(maximumSize * 16)
+                .expireAfterWrite(countWindowSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * The {@code Cache-Control} header to send with every redirect, or null to send none.
+     */
+    public PreEncodedHttpField getCacheControl() {
+        return cacheControl;
+    }
+
+    public RenderedRedirect get(String token) {
+        RenderedRedirect renderedRedirect = renderedRedirects.getIfPresent(token);
+        if (renderedRedirect != null) {
+            hits.increment();
+        }
+        return renderedRedirect;
+    }
+
+    /**
+     * Counts a redirect that was not served pre-rendered, and renders the token once it is hot enough.
+     */
+    public void recordRedirect(String token, String originalUrl) {
+        AtomicInteger count = redirectCounts.get(token, key -> new AtomicInteger());
+        if (count.incrementAndGet() == promotionThreshold) {
+            renderedRedirects.put(token, new RenderedRedirect(originalUrl, new PreEncodedHttpField(HttpHeader.LOCATION, originalUrl)));
+            redirectCounts.invalidate(token);
+            promotions.increment();
+        }
+    }
+
+    public void invalidateAll(Collection<String> tokens) {
+        renderedRedirects.invalidateAll(tokens);
+        redirectCounts.invalidateAll(tokens);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    public long getSize() {
+        return renderedRedirects.estimatedSize();
+    }
+}
@@ -0,0 +1,75 @@
+package com.rushtech.urlshortener.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per client: each holds up to {@code capacity} tokens and gains {@code refillPerSecond} of them back
+ * every second, and every request takes one. A bucket is a single {@link AtomicLong} holding the instant, in
+ * {@link System#nanoTime()} terms, at which it will be full again, so taking a token is one compare-and-set and
+ * concurrent requests from the same client never lock.
+ *
+ * <p>Buckets live in a Caffeine cache of at most {@code maximumClients}. A bucket nobody has touched for as long as
+ * it takes to fill up is full, so it expires then and the next request simply starts a new, equally full one. Under
+ * more clients than that, the least active lose their buckets early and get a full one back.
+ */
+public class RateLimiter {
+
+    private final long nanosPerToken;
+    // How far the bucket may run behind before it is empty: the time it takes to refill all but one token
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+    private final LongAdder rejections = new LongAdder();
+
+    public RateLimiter(int capacity, double refillPerSecond, long maximumClients) {
+        this(capacity, refillPerSecond, maximumClients, System::nanoTime);
+    }
+
+    RateLimiter(int capacity, double refillPerSecond, long maximumClients, LongSupplier nanoClock) {
+        if (capacity < 1 || !(refillPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate limit needs a capacity of at least 1 and a positive refill rate");
+        }
+        this.nanosPerToken = Math.max(1, Math.round(1_000_000_000 / refillPerSecond));
+        this.burstNanos = (capacity - 1) * nanosPerToken;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumClients)
+                .expireAfterAccess(Duration.ofNanos(capacity * nanosPerToken))
+                .ticker(nanoClock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Takes a token from {@code clientKey}'s bucket. Returns 0 if there was one, otherwise the nanoseconds until
+     * there will be.
+     */
+    public long tryAcquire(String clientKey) {
+        AtomicLong fullAt = buckets.get(clientKey, key -> new AtomicLong(nanoClock.getAsLong()));
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long current = fullAt.get();
+            long refillNanos = Math.max(0, current - now);
+            if (refillNanos > burstNanos) {
+                rejections.increment();
+                return refillNanos - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, now + refillNanos + nanosPerToken)) {
+                return 0;
+            }
+        }
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getTrackedClients() {
+        return buckets.estimatedSize();
+    }
+}
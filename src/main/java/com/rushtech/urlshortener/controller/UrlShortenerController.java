@@ -1,38 +1,251 @@
 package com.rushtech.urlshortener.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rushtech.urlshortener.dal.UrlShortenerOverloadedException;
+import com.rushtech.urlshortener.model.AliasSuggestionResponse;
+import com.rushtech.urlshortener.model.BatchShortUrlResult;
 import com.rushtech.urlshortener.model.OriginalUrlResponse;
+import com.rushtech.urlshortener.model.RedirectStatsResponse;
 import com.rushtech.urlshortener.model.ShortUrlRequest;
 import com.rushtech.urlshortener.model.ShortUrlResponse;
 import com.rushtech.urlshortener.service.IUrlShortenerService;
+import com.rushtech.urlshortener.service.LifecycleManager;
+import com.rushtech.urlshortener.service.RedirectStatsRecorder;
+import com.rushtech.urlshortener.util.MappingArchive;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import org.apache.commons.validator.routines.UrlValidator;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class UrlShortenerController {
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerController.class);
 
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String REQUEST_START_ATTRIBUTE = "requestStartNanos";
+    private static final String WARMUP_HEADER = "X-Warmup-Key";
+    private static final int WARMUP_UNKNOWN_TOKEN_INTERVAL = 10;
+    private static final String ADMIN_KEY_HEADER = "X-Admin-Key";
+    private static final int EXPORT_BUFFER_BYTES = 64 * 1024;
+    private static final int DEFAULT_ALIAS_SUGGESTIONS = 10;
+    private static final int MAX_ALIAS_SUGGESTIONS = 100;
+
     private final UrlValidator urlValidator;
     private final IUrlShortenerService urlShortenerService;
+    private final int batchChunkSize;
+    private final HotRedirectCache hotRedirectCache;
+    private final RedirectStatsRecorder redirectStatsRecorder;
+    private final PrometheusMeterRegistry meterRegistry;
+    private final Map<String, RateLimiter> rateLimiters;
+    private final ClientKeyResolver clientKeyResolver;
+    private final LifecycleManager lifecycleManager;
+    private final byte[] adminApiKey;
+    private final ConcurrentHashMap<String, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    // Marks this process's own warm-up requests; never leaves the process, so clients cannot pass as warm-up
+    private final String warmupKey = UUID.randomUUID().toString();
+    private Javalin server;
 
-    public UrlShortenerController(IUrlShortenerService urlShortenerService, UrlValidator urlValidator) {
+    /**
+     * {@code rateLimiters} maps route paths, such as {@code "/shorten"}, to the limiter for that route; routes without
+     * one are not limited. {@code clientKeyResolver} tells clients apart, and may be null when no route is limited. The
+     * health routes report {@code lifecycleManager}'s state. The admin routes are served only when {@code adminApiKey}
+     * is set, to requests that send it in the {@code X-Admin-Key} header.
+     */
+    public UrlShortenerController(IUrlShortenerService urlShortenerService, UrlValidator urlValidator, int batchChunkSize,
+                                  HotRedirectCache hotRedirectCache, RedirectStatsRecorder redirectStatsRecorder,
+                                  PrometheusMeterRegistry meterRegistry, Map<String, RateLimiter> rateLimiters, ClientKeyResolver clientKeyResolver,
+                                  LifecycleManager lifecycleManager, String adminApiKey) {
         this.urlShortenerService = urlShortenerService;
         this.urlValidator = urlValidator;
+        this.batchChunkSize = batchChunkSize;
+        this.hotRedirectCache = hotRedirectCache;
+        this.redirectStatsRecorder = redirectStatsRecorder;
+        this.meterRegistry = meterRegistry;
+        this.rateLimiters = Map.copyOf(rateLimiters);
+        this.clientKeyResolver = clientKeyResolver;
+        this.lifecycleManager = lifecycleManager;
+        this.adminApiKey = adminApiKey == null || adminApiKey.isEmpty() ? null : adminApiKey.getBytes(StandardCharsets.UTF_8);
     }
 
-    public void startServer() {
-        Javalin urlShortenerApp = Javalin.create().start(8080);
+    /**
+     * Starts the server on {@code port}. In {@link ThreadMode#VIRTUAL} every request runs on its own virtual thread,
+     * so requests blocked on SQLite no longer hold one of a fixed number of Jetty threads; in
+     * {@link ThreadMode#PLATFORM} requests share a pool of at most {@code maxPlatformThreads} threads.
+     */
+    public Javalin startServer(int port, ThreadMode threadMode, int maxPlatformThreads) {
+        Javalin urlShortenerApp = Javalin.create(config -> {
+            config.showJavalinBanner = false;
+            if (threadMode == ThreadMode.VIRTUAL) {
+                config.useVirtualThreads = true;
+            } else {
+                config.jetty.threadPool = new QueuedThreadPool(maxPlatformThreads);
+            }
+        });
         setupRoutes(urlShortenerApp);
+        server = urlShortenerApp.start(port);
+        return server;
+    }
+
+    /**
+     * Sends {@code requests} redirect requests to the running server, cycling through {@code tokens} with an unknown
+     * token every so often, so the JIT has compiled the redirect path, hits and misses alike, before the server
+     * reports ready. Warm-up redirects are not rate limited and are left out of redirect counts, stats and hot
+     * token promotion.
+     */
+    public void warmUpRedirects(List<String> tokens, int requests) {
+        long startNanos = System.nanoTime();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        String baseUrl = "http://localhost:" + server.port() + "/";
+        try {
+            for (int i = 0; i < requests; i++) {
+                String token = tokens.isEmpty() || i % WARMUP_UNKNOWN_TOKEN_INTERVAL == 0
+                        ? "warmup" + i
+                        : tokens.get(i % tokens.size());
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + token)).header(WARMUP_HEADER, warmupKey).GET().build();
+                httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            }
+        } catch (IOException e) {
+            logger.warn("Redirect warm-up stopped early", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Warmed up the redirect path with {} requests in {} ms", requests, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Waits up to {@code timeoutMilliseconds} for requests already being handled to finish, then stops the server.
+     */
+    public void drainAndStop(long timeoutMilliseconds) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds);
+        try {
+            while (inFlightRequests.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int abandoned = inFlightRequests.get();
+        if (abandoned > 0) {
+            logger.warn("Stopping the server with {} requests still in flight", abandoned);
+        }
+        server.stop();
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
     }
 
     private void setupRoutes(Javalin app) {
+        setupOverloadHandling(app);
+        setupRequestTiming(app);
+        setupRateLimiting(app);
+        setupHealthRoutes(app);
+        setupMetricsRoute(app);
         setupWelcomeRoute(app);
         setupRedirectRoute(app);
         setupOriginalUrlRoute(app);
         setupShortenUrlRoute(app);
+        setupShortenUrlBatchRoute(app);
         setupDeleteShortUrlRoute(app);
+        setupStatsRoute(app);
+        setupAliasRoutes(app);
+        setupAdminRoutes(app);
+    }
+
+    private void setupOverloadHandling(Javalin app) {
+        app.exception(UrlShortenerOverloadedException.class, (e, ctx) -> {
+            logger.warn("Rejecting request: {}", e.getMessage());
+            ctx.status(503).header("Retry-After", "1").result("Service overloaded, please retry");
+        });
+    }
+
+    /**
+     * Also counts requests in flight for {@link #drainAndStop}; after-handlers run once an asynchronous response has
+     * completed, and for failed requests too.
+     */
+    private void setupRequestTiming(Javalin app) {
+        app.before(ctx -> {
+            inFlightRequests.incrementAndGet();
+            ctx.attribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+        });
+        app.after(ctx -> {
+            inFlightRequests.decrementAndGet();
+            recordRequestTime(ctx);
+        });
+    }
+
+    /**
+     * Runs once the route is known, so each route draws on its own limiter, and after the request timer has started,
+     * so rejected requests are timed like any other.
+     */
+    private void setupRateLimiting(Javalin app) {
+        app.exception(RateLimitExceededException.class, (e, ctx) ->
+                ctx.status(429).header("Retry-After", String.valueOf(e.retryAfterSeconds)).result("Too many requests, please retry later"));
+        if (!rateLimiters.isEmpty()) {
+            app.beforeMatched(this::enforceRateLimit);
+        }
+    }
+
+    /**
+     * Liveness fails only once shutdown has finished; readiness fails until startup warm-up is done and again as soon
+     * as shutdown begins, so load balancers stop sending traffic before the server stops.
+     */
+    private void setupHealthRoutes(Javalin app) {
+        app.get("/health/live", ctx -> reportHealth(ctx, lifecycleManager.isLive()));
+        app.get("/health/ready", ctx -> reportHealth(ctx, lifecycleManager.isReady()));
+    }
+
+    private void reportHealth(Context ctx, boolean healthy) {
+        ctx.status(healthy ? 200 : 503).result(lifecycleManager.getState().name());
+    }
+
+    private void setupMetricsRoute(Javalin app) {
+        app.get("/metrics", this::scrapeMetrics);
     }
 
     private void setupWelcomeRoute(Javalin app) {
@@ -51,47 +264,154 @@ public class UrlShortenerController {
         app.post("/shorten", this::shortenUrl);
     }
 
+    private void setupShortenUrlBatchRoute(Javalin app) {
+        app.post("/shorten/batch", this::shortenUrlBatch);
+    }
+
     private void setupDeleteShortUrlRoute(Javalin app) {
         app.delete("/short/{token}", this::deleteShortUrl);
     }
 
+    private void setupStatsRoute(Javalin app) {
+        app.get("/stats/{token}", this::getRedirectStats);
+    }
+
+    private void setupAliasRoutes(Javalin app) {
+        app.get("/alias/suggest", this::suggestAliases);
+    }
+
+    private void setupAdminRoutes(Javalin app) {
+        if (adminApiKey != null) {
+            app.get("/admin/export", this::exportMappings);
+        }
+    }
+
+    private void enforceRateLimit(Context ctx) {
+        RateLimiter rateLimiter = rateLimiters.get(ctx.endpointHandlerPath());
+        if (rateLimiter == null || isWarmup(ctx)) {
+            return;
+        }
+        long retryAfterNanos = rateLimiter.tryAcquire(clientKeyResolver.resolve(ctx.req().getRemoteAddr(), ctx::header));
+        if (retryAfterNanos > 0) {
+            throw new RateLimitExceededException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999)));
+        }
+    }
+
+    private boolean isWarmup(Context ctx) {
+        return warmupKey.equals(ctx.header(WARMUP_HEADER));
+    }
+
+    private void recordRequestTime(Context ctx) {
+        Long startNanos = ctx.attribute(REQUEST_START_ATTRIBUTE);
+        if (startNanos == null) {
+            return;
+        }
+        String route = ctx.endpointHandlerPath();
+        String method = ctx.method().name();
+        int status = ctx.statusCode();
+        Timer timer = requestTimers.computeIfAbsent(method + " " + route + " " + status, key -> Timer.builder("http.server.requests")
+                .description("Time spent handling HTTP requests per route")
+                .tag("method", method)
+                .tag("route", route == null || route.isEmpty() ? "NOT_FOUND" : route)
+                .tag("status", String.valueOf(status))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry));
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void scrapeMetrics(Context ctx) {
+        ctx.contentType(PROMETHEUS_CONTENT_TYPE).result(meterRegistry.scrape());
+    }
+
     private void welcomeMessage(Context ctx) {
         ctx.result("Welcome to the URL Shortener API!");
     }
 
+    /**
+     * Answers hot tokens from {@link HotRedirectCache} with pre-encoded headers. Other tokens are resolved through
+     * {@link IUrlShortenerService#getOriginalUrlAsync}, so the request thread is released while a cache miss waits
+     * for the database.
+     */
     private void redirectToOriginalUrl(Context ctx) {
         String token = ctx.pathParam("token");
-        String originalUrl = urlShortenerService.getOriginalUrl(token);
-        if (originalUrl != null) {
-            urlShortenerService.incrementRedirectCount(originalUrl);
-            ctx.redirect(originalUrl);
-        } else {
-            logger.error("Shortened URL not found");
-            ctx.status(404).result("Shortened URL not found");
+        boolean warmup = isWarmup(ctx);
+        HotRedirectCache.RenderedRedirect renderedRedirect = hotRedirectCache.get(token);
+        if (renderedRedirect != null) {
+            if (!warmup) {
+                urlShortenerService.incrementRedirectCount(renderedRedirect.originalUrl());
+                recordRedirectEvent(ctx, token);
+            }
+            ctx.status(hotRedirectCache.getStatusCode());
+            HttpFields.Mutable headers = responseHeaders(ctx);
+            headers.add(renderedRedirect.location());
+            addCacheControl(headers);
+            return;
         }
-    }
-
-    private void getOriginalUrl(Context ctx) {
-        String token = ctx.pathParam("token");
-        try {
-            String originalUrl = urlShortenerService.getOriginalUrl(token);
+        ctx.future(() -> urlShortenerService.getOriginalUrlAsync(token).thenAccept(originalUrl -> {
             if (originalUrl != null) {
-                ctx.json(new OriginalUrlResponse(originalUrl));
+                if (!warmup) {
+                    urlShortenerService.incrementRedirectCount(originalUrl);
+                    recordRedirectEvent(ctx, token);
+                    hotRedirectCache.recordRedirect(token, originalUrl);
+                }
+                ctx.redirect(originalUrl, HttpStatus.forStatus(hotRedirectCache.getStatusCode()));
+                addCacheControl(responseHeaders(ctx));
             } else {
+                if (!warmup) {
+                    logger.error("Shortened URL not found");
+                }
                 ctx.status(404).result("Shortened URL not found");
             }
-        } catch (Exception e) {
-            logger.error("Error processing request", e);
-            ctx.status(500).result("Internal server error: " + e.getMessage());
+        }));
+    }
+
+    private void recordRedirectEvent(Context ctx, String token) {
+        redirectStatsRecorder.record(token, ctx.header(HttpHeader.REFERER.asString()), ctx.header(HttpHeader.USER_AGENT.asString()));
+    }
+
+    private void addCacheControl(HttpFields.Mutable headers) {
+        PreEncodedHttpField cacheControl = hotRedirectCache.getCacheControl();
+        if (cacheControl != null) {
+            headers.add(cacheControl);
         }
     }
 
+    private static HttpFields.Mutable responseHeaders(Context ctx) {
+        return Request.getBaseRequest(ctx.req()).getResponse().getHttpFields();
+    }
+
+    private void getOriginalUrl(Context ctx) {
+        String token = ctx.pathParam("token");
+        ctx.future(() -> urlShortenerService.getOriginalUrlAsync(token)
+                .thenAccept(originalUrl -> {
+                    if (originalUrl != null) {
+                        ctx.json(new OriginalUrlResponse(originalUrl));
+                    } else {
+                        ctx.status(404).result("Shortened URL not found");
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof UrlShortenerOverloadedException) {
+                        throw (UrlShortenerOverloadedException) cause;
+                    }
+                    logger.error("Error processing request", cause);
+                    ctx.status(500).result("Internal server error: " + cause.getMessage());
+                    return null;
+                }));
+    }
+
     private void shortenUrl(Context ctx) {
         ShortUrlRequest request = ctx.bodyAsClass(ShortUrlRequest.class);
         String longUrl = request.getLongUrl();
-        if (urlValidator.isValid(longUrl)) {
-            String shortUrl = urlShortenerService.shortenUrl(longUrl);
-            ctx.json(new ShortUrlResponse(shortUrl));
+        String alias = request.getAlias();
+        if (urlValidator.isValid(longUrl) && alias != null && !alias.isEmpty()) {
+            shortenUrlWithAlias(ctx, longUrl, alias);
+        } else if (urlValidator.isValid(longUrl)) {
+            ctx.future(() -> urlShortenerService.shortenUrlAsync(longUrl)
+                    .thenAccept(shortUrl -> ctx.json(new ShortUrlResponse(shortUrl))));
         } else {
             String errorMessage = "Invalid URL to shorten: " + longUrl;
             logger.error(errorMessage);
@@ -99,14 +419,232 @@ public class UrlShortenerController {
         }
     }
 
+    /**
+     * Answers 409 if the alias is taken, ignoring case, and 400 if it is malformed or a reserved word.
+     */
+    private void shortenUrlWithAlias(Context ctx, String longUrl, String alias) {
+        CompletableFuture<String> shortUrl;
+        try {
+            shortUrl = urlShortenerService.shortenUrlWithAliasAsync(longUrl, alias);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(e.getMessage());
+            return;
+        }
+        ctx.future(() -> shortUrl.thenAccept(result -> {
+            if (result == null) {
+                ctx.status(409).result("Alias is taken: " + alias);
+            } else {
+                ctx.json(new ShortUrlResponse(result));
+            }
+        }));
+    }
+
+    /**
+     * Accepts a JSON array or an NDJSON stream of long URLs, either as plain strings or as
+     * {@code {"longUrl": ...}} objects, and streams one result per input back in the same order and format.
+     * Input is consumed in chunks of {@code batchChunkSize}, each shortened in a single transaction.
+     */
+    private void shortenUrlBatch(Context ctx) throws IOException {
+        boolean ndjson = ctx.contentType() != null && ctx.contentType().startsWith(NDJSON_CONTENT_TYPE);
+        try (MappingIterator<JsonNode> longUrlNodes = objectMapper.readerFor(JsonNode.class).readValues(ctx.bodyInputStream())) {
+            // Read the first chunk before writing anything so a malformed body can still be rejected with a 400
+            List<String> chunk = readLongUrlChunk(longUrlNodes);
+            ctx.contentType(ndjson ? NDJSON_CONTENT_TYPE : "application/json");
+            try (JsonGenerator resultWriter = objectMapper.getFactory().createGenerator(ctx.res().getOutputStream())
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null)) {
+                if (!ndjson) {
+                    resultWriter.writeStartArray();
+                }
+                while (!chunk.isEmpty()) {
+                    writeBatchResults(chunk, resultWriter, ndjson);
+                    chunk = readLongUrlChunk(longUrlNodes);
+                }
+                if (!ndjson) {
+                    resultWriter.writeEndArray();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            logger.error("Invalid batch request body", e);
+            if (!ctx.res().isCommitted()) {
+                ctx.status(400).result("Invalid batch request body: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private List<String> readLongUrlChunk(MappingIterator<JsonNode> longUrlNodes) throws IOException {
+        List<String> chunk = new ArrayList<>(batchChunkSize);
+        while (chunk.size() < batchChunkSize && longUrlNodes.hasNextValue()) {
+            chunk.add(toLongUrl(longUrlNodes.nextValue()));
+        }
+        return chunk;
+    }
+
+    private String toLongUrl(JsonNode longUrlNode) {
+        if (longUrlNode.isTextual()) {
+            return longUrlNode.asText();
+        }
+        JsonNode longUrlField = longUrlNode.get("longUrl");
+        return longUrlField != null && longUrlField.isTextual() ? longUrlField.asText() : null;
+    }
+
+    private void writeBatchResults(List<String> longUrls, JsonGenerator resultWriter, boolean ndjson) throws IOException {
+        boolean[] valid = new boolean[longUrls.size()];
+        List<String> validLongUrls = new ArrayList<>(longUrls.size());
+        for (int i = 0; i < longUrls.size(); i++) {
+            valid[i] = urlValidator.isValid(longUrls.get(i));
+            if (valid[i]) {
+                validLongUrls.add(longUrls.get(i));
+            }
+        }
+        List<String> shortUrls = validLongUrls.isEmpty()
+                ? Collections.emptyList()
+                : urlShortenerService.shortenUrls(validLongUrls);
+
+        // The response is already committed, so URLs left unshortened are reported per item rather than failing it
+        int shortUrlIndex = 0;
+        for (int i = 0; i < longUrls.size(); i++) {
+            String longUrl = longUrls.get(i);
+            BatchShortUrlResult result;
+            if (!valid[i]) {
+                result = BatchShortUrlResult.failed(longUrl, "Invalid URL to shorten: " + longUrl);
+            } else {
+                String shortUrl = shortUrlIndex < shortUrls.size() ? shortUrls.get(shortUrlIndex) : null;
+                shortUrlIndex++;
+                result = shortUrl != null
+                        ? BatchShortUrlResult.shortened(longUrl, shortUrl)
+                        : BatchShortUrlResult.failed(longUrl, "Could not shorten URL: " + longUrl);
+            }
+            resultWriter.writeObject(result);
+            if (ndjson) {
+                resultWriter.writeRaw('\n');
+            }
+        }
+        resultWriter.flush();
+    }
+
     private void deleteShortUrl(Context ctx) {
         String token = ctx.pathParam("token");
-        boolean deleted = urlShortenerService.deleteShortUrl(token);
-        if (deleted) {
-            ctx.result("Short URL and associated long URL deleted successfully");
+        ctx.future(() -> urlShortenerService.deleteShortUrlAsync(token).thenAccept(deleted -> {
+            if (deleted) {
+                ctx.result("Short URL and associated long URL deleted successfully");
+            } else {
+                logger.error("Short URL not found");
+                ctx.status(404).result("Short URL not found");
+            }
+        }));
+    }
+
+    /**
+     * Returns {@code token}'s redirects per minute or per hour ({@code resolution}, hour by default) for buckets
+     * starting in [{@code from}, {@code to}), given in epoch seconds. Without a range, the last hour of minutes or
+     * the last day of hours is returned. Redirects show up once the stats recorder has flushed them.
+     */
+    private void getRedirectStats(Context ctx) {
+        String token = ctx.pathParam("token");
+        String resolution = ctx.queryParamAsClass("resolution", String.class).getOrDefault("hour");
+        int resolutionSeconds;
+        if (resolution.equals("minute")) {
+            resolutionSeconds = RedirectStatsRecorder.MINUTE_SECONDS;
+        } else if (resolution.equals("hour")) {
+            resolutionSeconds = RedirectStatsRecorder.HOUR_SECONDS;
+        } else {
+            ctx.status(400).result("Invalid resolution, expected minute or hour: " + resolution);
+            return;
+        }
+        long defaultRange = resolutionSeconds == RedirectStatsRecorder.MINUTE_SECONDS ? TimeUnit.HOURS.toSeconds(1) : TimeUnit.DAYS.toSeconds(1);
+        long to = ctx.queryParamAsClass("to", Long.class).getOrDefault(System.currentTimeMillis() / 1000 + 1);
+        long from = ctx.queryParamAsClass("from", Long.class).getOrDefault(to - defaultRange);
+        if (from > to) {
+            ctx.status(400).result("Invalid range, from is after to");
+            return;
+        }
+        RedirectStatsResponse stats = redirectStatsRecorder.getStats(token, resolutionSeconds, from, to);
+        ctx.json(stats);
+    }
+
+    /**
+     * Returns up to {@code limit} (10 by default) aliases in use that start with {@code prefix}, ignoring case, and
+     * whether {@code prefix} itself is available as an alias. Both come from the in-memory alias index.
+     */
+    private void suggestAliases(Context ctx) {
+        String prefix = ctx.queryParamAsClass("prefix", String.class).getOrDefault("");
+        int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_ALIAS_SUGGESTIONS);
+        if (limit < 1 || limit > MAX_ALIAS_SUGGESTIONS) {
+            ctx.status(400).result("Invalid limit, expected 1 to " + MAX_ALIAS_SUGGESTIONS + ": " + limit);
+            return;
+        }
+        List<String> aliases;
+        try {
+            aliases = urlShortenerService.suggestAliases(prefix, limit);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(e.getMessage());
+            return;
+        }
+        ctx.json(new AliasSuggestionResponse(prefix, urlShortenerService.checkAlias(prefix).name(), aliases));
+    }
+
+    /**
+     * Streams every mapping as a {@link MappingArchive}, binary by default or NDJSON with {@code format=ndjson}, and
+     * gzip compressed with {@code compress=true}. Mappings are written as the database cursor reads them, so the
+     * export runs in constant memory however many there are. A failure part way through can no longer change the
+     * status, so it cuts the response short, which the binary format's trailer lets an importer detect.
+     */
+    private void exportMappings(Context ctx) throws IOException {
+        String providedKey = ctx.header(ADMIN_KEY_HEADER);
+        // Compared in constant time, so response times do not reveal how much of a guessed key is right
+        if (providedKey == null || !MessageDigest.isEqual(adminApiKey, providedKey.getBytes(StandardCharsets.UTF_8))) {
+            ctx.status(401).result("Missing or invalid " + ADMIN_KEY_HEADER);
+            return;
+        }
+        String format = ctx.queryParamAsClass("format", String.class).getOrDefault("binary");
+        MappingArchive.Format archiveFormat;
+        if (format.equals("binary")) {
+            archiveFormat = MappingArchive.Format.BINARY;
+        } else if (format.equals("ndjson")) {
+            archiveFormat = MappingArchive.Format.NDJSON;
         } else {
-            logger.error("Short URL not found");
-            ctx.status(404).result("Short URL not found");
+            ctx.status(400).result("Invalid format, expected binary or ndjson: " + format);
+            return;
+        }
+        boolean compress = ctx.queryParamAsClass("compress", Boolean.class).getOrDefault(false);
+        String fileName = "mappings" + (archiveFormat == MappingArchive.Format.BINARY ? ".bin" : ".ndjson") + (compress ? ".gz" : "");
+        ctx.contentType(archiveFormat == MappingArchive.Format.BINARY ? "application/octet-stream" : NDJSON_CONTENT_TYPE)
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+
+        long startNanos = System.nanoTime();
+        MappingArchive.Writer writer = MappingArchive.newWriter(
+                new BufferedOutputStream(ctx.res().getOutputStream(), EXPORT_BUFFER_BYTES), archiveFormat, compress);
+        try {
+            urlShortenerService.forEachMapping(mapping -> {
+                try {
+                    writer.write(mapping);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Read after the mappings, so it is past the id of every generated token they include
+        writer.setNextTokenId(urlShortenerService.getNextTokenId());
+        // Only closed on success: closing writes the trailer that marks the archive complete
+        writer.close();
+        logger.info("Exported {} mappings in {} ms", writer.getMappingCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Rejects a request over its client's rate limit. Thrown for every rejected request, so it skips the stack trace.
+     */
+    private static final class RateLimitExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        private RateLimitExceededException(long retryAfterSeconds) {
+            super("Rate limit exceeded", null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
         }
     }
 }
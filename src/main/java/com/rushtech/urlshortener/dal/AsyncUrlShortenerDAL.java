@@ -0,0 +1,83 @@
+package com.rushtech.urlshortener.dal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link IUrlShortenerDAL} calls on a dedicated executor and hands back {@link CompletableFuture}s, so a request
+ * handler can release its thread while SQLite works. At most {@code threads} calls run at once and at most
+ * {@code queueCapacity} wait for a thread; further calls, and calls that have not completed after
+ * {@code timeoutMilliseconds}, fail with {@link UrlShortenerOverloadedException}. A timed out call is not interrupted,
+ * it keeps its thread until the database answers.
+ */
+public class AsyncUrlShortenerDAL implements AutoCloseable {
+
+    private final IUrlShortenerDAL delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMilliseconds;
+
+    public AsyncUrlShortenerDAL(IUrlShortenerDAL delegate, int threads, int queueCapacity, long timeoutMilliseconds) {
+        this.delegate = delegate;
+        this.timeoutMilliseconds = timeoutMilliseconds;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+            Thread thread = new Thread(runnable, "dal-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<String> getOriginalUrl(String token) {
+        return submit(() -> delegate.getOriginalUrl(token));
+    }
+
+    public CompletableFuture<String> shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        return submit(() -> delegate.shortenOrGet(longUrl, tokenSupplier));
+    }
+
+    public CompletableFuture<Boolean> insertAlias(String longUrl, String alias) {
+        return submit(() -> delegate.insertAlias(longUrl, alias));
+    }
+
+    public CompletableFuture<Boolean> deleteShortUrl(String token) {
+        return submit(() -> delegate.deleteShortUrl(token));
+    }
+
+    public int getActiveCalls() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCalls() {
+        return executor.getQueue().size();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> result;
+        try {
+            result = CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new UrlShortenerOverloadedException("Too many queued asynchronous database calls"));
+        }
+        return result.orTimeout(timeoutMilliseconds, TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(e instanceof TimeoutException
+                        ? new UrlShortenerOverloadedException("Timed out waiting for an asynchronous database call")
+                        : e));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
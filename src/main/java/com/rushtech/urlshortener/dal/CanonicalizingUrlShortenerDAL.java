@@ -0,0 +1,158 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.UrlCanonicalizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorates an {@link IUrlShortenerDAL} so that long URLs are stored and looked up in their
+ * {@link UrlCanonicalizer canonical} form, and spellings of the same address share one token. Redirects then
+ * go to the canonical URL. Batch results stay keyed by the URLs the caller passed in.
+ */
+public class CanonicalizingUrlShortenerDAL implements IUrlShortenerDAL {
+
+    private final IUrlShortenerDAL delegate;
+
+    public CanonicalizingUrlShortenerDAL(IUrlShortenerDAL delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        return delegate.getOriginalUrl(token);
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        return delegate.getOriginalUrlId(UrlCanonicalizer.canonicalize(longUrl));
+    }
+
+    @Override
+    public void updateToken(String token, long originalUrlId) {
+        delegate.updateToken(token, originalUrlId);
+    }
+
+    @Override
+    public long insertOriginalUrl(String longUrl) {
+        return delegate.insertOriginalUrl(UrlCanonicalizer.canonicalize(longUrl));
+    }
+
+    @Override
+    public void insertUrlMapping(String token, long originalUrlId) {
+        delegate.insertUrlMapping(token, originalUrlId);
+    }
+
+    @Override
+    public String getTokenForOriginalUrl(long originalUrlId) {
+        return delegate.getTokenForOriginalUrl(originalUrlId);
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        Map<String, String> canonicalUrls = canonicalUrls(longUrls);
+        return byLongUrl(canonicalUrls, delegate.getTokensForLongUrls(distinctValues(canonicalUrls)));
+    }
+
+    @Override
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        return delegate.shortenOrGet(UrlCanonicalizer.canonicalize(longUrl), tokenSupplier);
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        Map<String, String> canonicalUrls = canonicalUrls(longUrls);
+        return byLongUrl(canonicalUrls, delegate.shortenOrGetBatch(distinctValues(canonicalUrls), tokenSupplier));
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        return delegate.deleteShortUrl(token);
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        delegate.incrementRedirectCount(originalUrl);
+    }
+
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        delegate.incrementRedirectCounts(redirectCountDeltas);
+    }
+
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        delegate.forEachToken(tokenConsumer);
+    }
+
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        delegate.forEachMapping(mappingConsumer);
+    }
+
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        return delegate.insertAlias(UrlCanonicalizer.canonicalize(longUrl), alias);
+    }
+
+    @Override
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        delegate.forEachAlias(aliasConsumer);
+    }
+
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        return delegate.deleteExpiredMappings(limit);
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        return delegate.countExpiredMappings();
+    }
+
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        return delegate.getMostRedirectedMappings(limit);
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        return delegate.reserveTokenIdBlock(blockSize);
+    }
+
+    @Override
+    public long getNextTokenId() {
+        return delegate.getNextTokenId();
+    }
+
+    private static Map<String, String> canonicalUrls(List<String> longUrls) {
+        Map<String, String> canonicalUrls = new HashMap<>();
+        for (String longUrl : longUrls) {
+            canonicalUrls.computeIfAbsent(longUrl, UrlCanonicalizer::canonicalize);
+        }
+        return canonicalUrls;
+    }
+
+    // Spellings of one URL share a canonical form, which the delegate must see only once
+    private static List<String> distinctValues(Map<String, String> canonicalUrls) {
+        return new ArrayList<>(new LinkedHashSet<>(canonicalUrls.values()));
+    }
+
+    private static Map<String, String> byLongUrl(Map<String, String> canonicalUrls, Map<String, String> tokensByCanonicalUrl) {
+        Map<String, String> tokensByLongUrl = new HashMap<>();
+        canonicalUrls.forEach((longUrl, canonicalUrl) -> {
+            String token = tokensByCanonicalUrl.get(canonicalUrl);
+            if (token != null) {
+                tokensByLongUrl.put(longUrl, token);
+            }
+        });
+        return tokensByLongUrl;
+    }
+}
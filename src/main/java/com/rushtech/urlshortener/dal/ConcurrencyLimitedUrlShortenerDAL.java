@@ -0,0 +1,188 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorates an {@link IUrlShortenerDAL} so that at most {@code maxConcurrentCalls} calls reach the database at once.
+ * With virtual threads the number of in-flight requests is no longer capped by the server's thread pool, so without
+ * this every request would pile up inside Hikari's {@code getConnection}. Here at most {@code maxQueuedCalls} callers
+ * wait for a permit, each for at most {@code queueTimeoutMilliseconds}; everybody else fails fast with
+ * {@link UrlShortenerOverloadedException}.
+ */
+public class ConcurrencyLimitedUrlShortenerDAL implements IUrlShortenerDAL {
+
+    private final IUrlShortenerDAL delegate;
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final long queueTimeoutMilliseconds;
+    private final AtomicInteger queuedCalls = new AtomicInteger();
+
+    public ConcurrencyLimitedUrlShortenerDAL(IUrlShortenerDAL delegate, int maxConcurrentCalls, int maxQueuedCalls, long queueTimeoutMilliseconds) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.queueTimeoutMilliseconds = queueTimeoutMilliseconds;
+    }
+
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    public int getQueuedCalls() {
+        return queuedCalls.get();
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (queuedCalls.incrementAndGet() > maxQueuedCalls) {
+            queuedCalls.decrementAndGet();
+            throw new UrlShortenerOverloadedException("Too many queued database calls");
+        }
+        try {
+            if (!permits.tryAcquire(queueTimeoutMilliseconds, TimeUnit.MILLISECONDS)) {
+                throw new UrlShortenerOverloadedException("Timed out waiting for a database call permit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UrlShortenerOverloadedException("Interrupted waiting for a database call permit");
+        } finally {
+            queuedCalls.decrementAndGet();
+        }
+    }
+
+    private <T> T limit(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void limit(Runnable call) {
+        acquire();
+        try {
+            call.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        return limit(() -> delegate.getOriginalUrl(token));
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        return limit(() -> delegate.getOriginalUrlId(longUrl));
+    }
+
+    @Override
+    public void updateToken(String token, long originalUrlId) {
+        limit(() -> delegate.updateToken(token, originalUrlId));
+    }
+
+    @Override
+    public long insertOriginalUrl(String longUrl) {
+        return limit(() -> delegate.insertOriginalUrl(longUrl));
+    }
+
+    @Override
+    public void insertUrlMapping(String token, long originalUrlId) {
+        limit(() -> delegate.insertUrlMapping(token, originalUrlId));
+    }
+
+    @Override
+    public String getTokenForOriginalUrl(long originalUrlId) {
+        return limit(() -> delegate.getTokenForOriginalUrl(originalUrlId));
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        return limit(() -> delegate.getTokensForLongUrls(longUrls));
+    }
+
+    @Override
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        return limit(() -> delegate.shortenOrGet(longUrl, tokenSupplier));
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        return limit(() -> delegate.shortenOrGetBatch(longUrls, tokenSupplier));
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        return limit(() -> delegate.deleteShortUrl(token));
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        limit(() -> delegate.incrementRedirectCount(originalUrl));
+    }
+
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        limit(() -> delegate.incrementRedirectCounts(redirectCountDeltas));
+    }
+
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        limit(() -> delegate.forEachToken(tokenConsumer));
+    }
+
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        limit(() -> delegate.forEachMapping(mappingConsumer));
+    }
+
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        return limit(() -> delegate.insertAlias(longUrl, alias));
+    }
+
+    @Override
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        limit(() -> delegate.forEachAlias(aliasConsumer));
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        return limit(() -> delegate.reserveTokenIdBlock(blockSize));
+    }
+
+    @Override
+    public long getNextTokenId() {
+        return limit(() -> delegate.getNextTokenId());
+    }
+
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        return limit(() -> delegate.deleteExpiredMappings(limit));
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        return limit(() -> delegate.countExpiredMappings());
+    }
+
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        return limit(() -> delegate.getMostRedirectedMappings(limit));
+    }
+}
@@ -0,0 +1,33 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.RedirectReferrerCount;
+import com.rushtech.urlshortener.model.RedirectStatsBucket;
+
+import java.util.List;
+import java.util.Map;
+
+public interface IRedirectStatsDAL {
+
+    /**
+     * Adds the counts in {@code buckets} and {@code referrerCounts} to the stored ones, creating buckets that do not
+     * exist yet, in a single transaction.
+     */
+    void addRedirectStats(List<RedirectStatsBucket> buckets, List<RedirectReferrerCount> referrerCounts);
+
+    /**
+     * Returns the buckets of {@code resolutionSeconds} for {@code token} starting in [{@code fromEpochSecond},
+     * {@code toEpochSecond}), oldest first. Buckets without redirects are not returned.
+     */
+    List<RedirectStatsBucket> getRedirectStats(String token, int resolutionSeconds, long fromEpochSecond, long toEpochSecond);
+
+    /**
+     * Returns up to {@code limit} referrer hosts of {@code token} within the hours starting in [{@code fromEpochSecond},
+     * {@code toEpochSecond}), with their redirect counts, most redirects first.
+     */
+    Map<String, Long> getTopReferrers(String token, long fromEpochSecond, long toEpochSecond, int limit);
+
+    /**
+     * Deletes buckets of {@code resolutionSeconds} that start before {@code epochSecond} and returns how many were deleted.
+     */
+    int deleteRedirectStatsBefore(int resolutionSeconds, long epochSecond);
+}
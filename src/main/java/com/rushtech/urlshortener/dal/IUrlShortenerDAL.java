@@ -1,7 +1,18 @@
 package com.rushtech.urlshortener.dal;
 
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 public interface IUrlShortenerDAL {
 
+    /**
+     * Returns the long URL for {@code token}, or null if there is none or it has expired.
+     */
     String getOriginalUrl(String token);
 
     long getOriginalUrlId(String longUrl);
@@ -14,7 +25,67 @@ public interface IUrlShortenerDAL {
 
     String getTokenForOriginalUrl(long originalUrlId);
 
+    /**
+     * Batch lookup of the token {@link #shortenOrGet} would return for each URL in {@code longUrls} already stored,
+     * expired ones included. URLs stored without a generated token, only for aliases, are left out.
+     */
+    Map<String, String> getTokensForLongUrls(List<String> longUrls);
+
+    /**
+     * Returns the token mapped to {@code longUrl}, inserting the URL and a token drawn from
+     * {@code tokenSupplier} if there is none. Runs on one connection in one transaction, so concurrent
+     * calls for the same URL always agree on a single token.
+     */
+    String shortenOrGet(String longUrl, Supplier<String> tokenSupplier);
+
+    /**
+     * Batch form of {@link #shortenOrGet}: maps every distinct URL in {@code longUrls} to its token
+     * using JDBC batch statements inside a single transaction.
+     */
+    Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier);
+
+    /**
+     * Maps the custom alias {@code alias} to {@code longUrl}, storing the URL if there is none, unless a token equals
+     * the alias or another alias equals it ignoring case. Returns whether the alias was stored.
+     */
+    boolean insertAlias(String longUrl, String alias);
+
     boolean deleteShortUrl(String token);
 
     void incrementRedirectCount(String originalUrl);
+
+    void incrementRedirectCounts(Map<String, Long> redirectCountDeltas);
+
+    void forEachToken(Consumer<String> tokenConsumer);
+
+    /**
+     * Passes every mapping, expired ones included, to {@code mappingConsumer}, with the tokens of a long URL one after
+     * another.
+     */
+    void forEachMapping(Consumer<UrlMapping> mappingConsumer);
+
+    void forEachAlias(Consumer<String> aliasConsumer);
+
+    /**
+     * Deletes up to {@code limit} expired original URLs, oldest expiration first, together with their tokens,
+     * and returns how many URLs were deleted and their tokens.
+     */
+    DeletedMappings deleteExpiredMappings(int limit);
+
+    long countExpiredMappings();
+
+    /**
+     * Returns up to {@code limit} token to long URL mappings, most redirected first.
+     */
+    Map<String, String> getMostRedirectedMappings(int limit);
+
+    /**
+     * Atomically advances the token id sequence by {@code blockSize} and returns the first id of the reserved block.
+     */
+    long reserveTokenIdBlock(int blockSize);
+
+    /**
+     * Returns the first id of the next block {@link #reserveTokenIdBlock} would reserve, without reserving it.
+     */
+    long getNextTokenId();
 }
\ No newline at end of file
@@ -0,0 +1,1068 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Storage engine that keeps every change in an append-only log ({@code urls.log}) and looks tokens up through a
+ * memory-mapped hash index ({@code tokens.idx}) that points straight at the URL record in the log. A redirect is one
+ * off-heap probe and one positional read, with no SQL and no connection pool in the way.
+ *
+ * <p>On startup the log is replayed to rebuild the per-URL state kept on the heap. The index is reused if nothing
+ * changed it since its last checkpoint, so records that do not touch tokens (redirect counts, sequence blocks) cost
+ * nothing extra; otherwise it is rebuilt from the replayed state. Records torn by a crash are cut off the end of the
+ * log. Superseded records are dropped by periodic compaction, which
+ * rewrites the live state into a new log and index and renames them into place, holding the write lock only to
+ * catch up with the records appended while it ran.
+ *
+ * <p>Appends are not fsynced, like SQLite's {@code synchronous=NORMAL}: a crash of the process loses nothing, an OS
+ * crash may lose the most recent writes. Writers are serialised by a write lock; lookups share a read lock.
+ */
+public class LogStructuredUrlShortenerDAL implements IUrlShortenerDAL, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogStructuredUrlShortenerDAL.class);
+    private static final String LOG_FILE_NAME = "urls.log";
+    private static final String INDEX_FILE_NAME = "tokens.idx";
+    private static final String COMPACTION_SUFFIX = ".compact";
+    private static final int MAX_TOKEN_INSERT_ATTEMPTS = 5;
+    private static final long MIN_COMPACTION_GARBAGE_BYTES = 1024 * 1024;
+    private static final int COMPACTION_CHUNK_BYTES = 1024 * 1024;
+    private static final int VALUE_RECORD_BYTES = UrlLog.RECORD_HEADER_BYTES + Long.BYTES;
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final int expiryDateMonthsInFuture;
+    private final double compactionGarbageRatio;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final Map<String, UrlEntry> urlsByLongUrl = new HashMap<>();
+    private final Map<Long, UrlEntry> urlsById = new HashMap<>();
+    private final TreeSet<UrlEntry> urlsByExpiration = new TreeSet<>(
+            Comparator.comparingLong((UrlEntry entry) -> entry.expirationMillis).thenComparingLong(entry -> entry.id));
+    private final Map<String, Long> redirectCounts = new HashMap<>();
+    // Aliases by their lower case form, for the case-insensitive uniqueness check
+    private final Map<String, String> aliasesByKey = new HashMap<>();
+    private final ScheduledExecutorService compactionExecutor;
+    private volatile Runnable compactionSnapshotHook = () -> { };
+    private UrlLog log;
+    private MappedTokenIndex index;
+    private boolean indexCheckpointed;
+    private long nextUrlId = 1;
+    private long nextTokenSequenceValue;
+    private long sequenceRecordBytes;
+    private long watermarkRecordBytes;
+    private long garbageBytes;
+
+    public LogStructuredUrlShortenerDAL(Path directory, int expiryDateMonthsInFuture, long indexInitialCapacity,
+                                        long compactionIntervalMilliseconds, double compactionGarbageRatio) {
+        this.logFile = directory.resolve(LOG_FILE_NAME);
+        this.indexFile = directory.resolve(INDEX_FILE_NAME);
+        this.expiryDateMonthsInFuture = expiryDateMonthsInFuture;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+        try {
+            Files.createDirectories(directory);
+            recover(indexInitialCapacity);
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error opening storage in " + directory, e);
+        }
+
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (compactionIntervalMilliseconds > 0) {
+            compactionExecutor.scheduleWithFixedDelay(this::compactIfNeededQuietly,
+                    compactionIntervalMilliseconds, compactionIntervalMilliseconds, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recover(long indexInitialCapacity) throws IOException {
+        long startNanos = System.nanoTime();
+        log = new UrlLog(logFile);
+        index = MappedTokenIndex.open(indexFile, indexInitialCapacity);
+        long checkpointPosition = index.getCheckpointPosition();
+        // Everything up to the checkpoint was forced to disk before the checkpoint was written, so it cannot be torn
+        boolean incremental = checkpointPosition >= 0 && checkpointPosition <= log.size();
+        indexCheckpointed = incremental;
+
+        long truncatedBytes = log.replay((offset, recordBytes, type, payload) ->
+                apply(offset, recordBytes, type, payload, incremental && offset >= checkpointPosition));
+        if (truncatedBytes > 0) {
+            logger.warn("Cut {} bytes of incomplete records off the end of {}", truncatedBytes, logFile);
+        }
+        if (!incremental || checkpointPosition > log.size()) {
+            rebuildIndex();
+        }
+        checkpointLocked();
+        logger.info("Recovered {} URLs from {} ({} bytes, {} garbage) in {} ms{}", urlsById.size(), logFile, log.size(),
+                garbageBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                incremental ? "" : ", index rebuilt");
+    }
+
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        indexCheckpointed = false;
+        for (UrlEntry entry : urlsById.values()) {
+            for (String token : entry.tokens) {
+                index.put(tokenKey(token), entry.offset);
+            }
+        }
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        byte[] key = tokenKey(token);
+        if (!isValidTokenKey(key)) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long offset = index.get(key);
+            if (offset < 0) {
+                return null;
+            }
+            UrlLog.UrlRecord record = log.readUrlRecord(offset);
+            return record.expirationMillis > System.currentTimeMillis() ? record.longUrl : null;
+        } catch (IOException e) {
+            handleIOException("Error reading original URL", e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        lock.readLock().lock();
+        try {
+            UrlEntry entry = urlsByLongUrl.get(longUrl);
+            return entry != null ? entry.id : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateToken(String token, long originalUrlId) {
+        lock.writeLock().lock();
+        try {
+            UrlEntry entry = urlsById.get(originalUrlId);
+            if (entry == null) {
+                return;
+            }
+            if (!entry.tokens.contains(token) && !isTokenAvailable(token, Collections.emptySet())) {
+                throw new UrlShortenerDataAccessException("Error updating token", new IllegalArgumentException("Token is taken: " + token));
+            }
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            records.token(UrlLog.REPLACE_TOKENS, originalUrlId, token);
+            write(records);
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error updating token", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long insertOriginalUrl(String longUrl) {
+        lock.writeLock().lock();
+        try {
+            if (urlsByLongUrl.containsKey(longUrl)) {
+                throw new UrlShortenerDataAccessException("Error inserting original URL",
+                        new IllegalArgumentException("Original URL already exists: " + longUrl));
+            }
+            long originalUrlId = nextUrlId;
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            records.url(originalUrlId, newExpirationMillis(), longUrl);
+            write(records);
+            return originalUrlId;
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error inserting original URL", e);
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertUrlMapping(String token, long originalUrlId) {
+        lock.writeLock().lock();
+        try {
+            if (!urlsById.containsKey(originalUrlId)) {
+                throw new UrlShortenerDataAccessException("Error inserting new URL mapping",
+                        new IllegalArgumentException("No original URL with id " + originalUrlId));
+            }
+            if (!isTokenAvailable(token, Collections.emptySet())) {
+                throw new UrlShortenerDataAccessException("Error inserting new URL mapping",
+                        new IllegalArgumentException("Token is taken or longer than " + MappedTokenIndex.MAX_KEY_BYTES + " bytes: " + token));
+            }
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            records.token(UrlLog.TOKEN, originalUrlId, token);
+            write(records);
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error inserting new URL mapping", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public String getTokenForOriginalUrl(long originalUrlId) {
+        lock.readLock().lock();
+        try {
+            UrlEntry entry = urlsById.get(originalUrlId);
+            return entry == null ? null : generatedToken(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        lock.readLock().lock();
+        try {
+            Map<String, String> tokensByLongUrl = new HashMap<>();
+            for (String longUrl : longUrls) {
+                UrlEntry entry = urlsByLongUrl.get(longUrl);
+                String token = entry == null ? null : generatedToken(entry);
+                if (token != null) {
+                    tokensByLongUrl.put(longUrl, token);
+                }
+            }
+            return tokensByLongUrl;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        return shortenOrGetBatch(Collections.singletonList(longUrl), tokenSupplier).get(longUrl);
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        List<String> distinctLongUrls = new ArrayList<>(new LinkedHashSet<>(longUrls));
+        if (distinctLongUrls.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long expirationMillis = newExpirationMillis();
+            long originalUrlId = nextUrlId;
+            Map<String, String> tokensByLongUrl = new HashMap<>();
+            Set<String> pendingTokens = new HashSet<>();
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            for (String longUrl : distinctLongUrls) {
+                UrlEntry entry = urlsByLongUrl.get(longUrl);
+                long id;
+                if (entry == null) {
+                    id = originalUrlId++;
+                    records.url(id, expirationMillis, longUrl);
+                } else {
+                    id = entry.id;
+                    if (entry.expirationMillis <= now) {
+                        // Shortening an expired URL before it is swept renews its existing token
+                        records.url(id, expirationMillis, longUrl);
+                    }
+                    String existingToken = generatedToken(entry);
+                    if (existingToken != null) {
+                        tokensByLongUrl.put(longUrl, existingToken);
+                        continue;
+                    }
+                }
+                String token = nextUniqueToken(tokenSupplier, pendingTokens);
+                pendingTokens.add(token);
+                records.token(UrlLog.TOKEN, id, token);
+                tokensByLongUrl.put(longUrl, token);
+            }
+            write(records);
+            return tokensByLongUrl;
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error shortening URLs", e);
+            return Collections.emptyMap();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String nextUniqueToken(Supplier<String> tokenSupplier, Set<String> pendingTokens) {
+        for (int attempt = 0; attempt < MAX_TOKEN_INSERT_ATTEMPTS; attempt++) {
+            String token = tokenSupplier.get();
+            if (isTokenAvailable(token, pendingTokens)) {
+                return token;
+            }
+            logger.warn("Token collision on attempt {}, generating a new token", attempt + 1);
+        }
+        throw new UrlShortenerDataAccessException("Error shortening URLs",
+                new IllegalStateException("Could not generate a unique token after " + MAX_TOKEN_INSERT_ATTEMPTS + " attempts"));
+    }
+
+    private boolean isTokenAvailable(String token, Set<String> pendingTokens) {
+        byte[] key = tokenKey(token);
+        return isValidTokenKey(key) && !pendingTokens.contains(token) && index.get(key) < 0;
+    }
+
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        lock.writeLock().lock();
+        try {
+            if (aliasesByKey.containsKey(aliasKey(alias)) || !isTokenAvailable(alias, Collections.emptySet())) {
+                return false;
+            }
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            UrlEntry entry = urlsByLongUrl.get(longUrl);
+            long id;
+            if (entry == null) {
+                id = nextUrlId;
+                records.url(id, newExpirationMillis(), longUrl);
+            } else {
+                id = entry.id;
+                if (entry.expirationMillis <= System.currentTimeMillis()) {
+                    records.url(id, newExpirationMillis(), longUrl);
+                }
+            }
+            records.token(UrlLog.ALIAS, id, alias);
+            write(records);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error inserting alias", e);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        byte[] key = tokenKey(token);
+        if (!isValidTokenKey(key)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            long offset = index.get(key);
+            if (offset < 0) {
+                return false;
+            }
+            UrlEntry entry = urlsById.get(log.readUrlRecord(offset).id);
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            // A URL goes with its last token; its aliases and other tokens keep it otherwise
+            if (entry.tokens.size() > 1) {
+                records.token(UrlLog.DELETE_TOKEN, entry.id, token);
+            } else {
+                records.deleteUrl(entry.id);
+            }
+            write(records);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error deleting short URL", e);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        incrementRedirectCounts(Collections.singletonMap(originalUrl, 1L));
+    }
+
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        if (redirectCountDeltas.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            redirectCountDeltas.forEach((originalUrl, delta) -> records.redirects(delta, originalUrl));
+            write(records);
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error updating redirect counts", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        lock.readLock().lock();
+        try {
+            for (UrlEntry entry : urlsById.values()) {
+                entry.tokens.forEach(tokenConsumer);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the mappings out under the read lock and passes them on after releasing it, so writers are not held up
+     * for as long as the consumer takes. The copy adds one small object per token to what is already on the heap.
+     */
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        List<UrlMapping> mappings = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (UrlEntry entry : urlsById.values()) {
+                long redirectCount = redirectCounts.getOrDefault(entry.longUrl, 0L);
+                for (String token : entry.tokens) {
+                    mappings.add(new UrlMapping(token, entry.longUrl, entry.expirationMillis, redirectCount, isAlias(token)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        mappings.forEach(mappingConsumer);
+    }
+
+    @Override
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        List<String> aliases;
+        lock.readLock().lock();
+        try {
+            aliases = new ArrayList<>(aliasesByKey.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        aliases.forEach(aliasConsumer);
+    }
+
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            List<String> deletedTokens = new ArrayList<>();
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            int deletedUrls = 0;
+            for (UrlEntry entry : urlsByExpiration) {
+                if (entry.expirationMillis > now || deletedUrls == limit) {
+                    break;
+                }
+                deletedTokens.addAll(entry.tokens);
+                records.deleteUrl(entry.id);
+                deletedUrls++;
+            }
+            write(records);
+            return new DeletedMappings(deletedUrls, deletedTokens);
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error deleting expired mappings", e);
+            return DeletedMappings.NONE;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        lock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            long expired = 0;
+            for (UrlEntry entry : urlsByExpiration) {
+                if (entry.expirationMillis > now) {
+                    break;
+                }
+                expired++;
+            }
+            return expired;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        lock.readLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            List<Map.Entry<String, Long>> counts = new ArrayList<>(redirectCounts.entrySet());
+            counts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            Map<String, String> mappings = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> count : counts) {
+                UrlEntry entry = urlsByLongUrl.get(count.getKey());
+                if (entry == null || entry.expirationMillis <= now) {
+                    continue;
+                }
+                for (String token : entry.tokens) {
+                    if (mappings.size() == limit) {
+                        return mappings;
+                    }
+                    mappings.put(token, entry.longUrl);
+                }
+            }
+            return mappings;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        lock.writeLock().lock();
+        try {
+            long blockStart = nextTokenSequenceValue;
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            records.value(UrlLog.TOKEN_SEQUENCE, blockStart + blockSize);
+            write(records);
+            return blockStart;
+        } catch (IOException | UncheckedIOException e) {
+            handleIOException("Error reserving token id block", e);
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long getNextTokenId() {
+        lock.readLock().lock();
+        try {
+            return nextTokenSequenceValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes the log and the index and records in the index how much of the log it covers, so the next start
+     * only has to replay the records written after this point into it.
+     */
+    public void checkpoint() {
+        lock.writeLock().lock();
+        try {
+            checkpointLocked();
+        } catch (IOException e) {
+            handleIOException("Error checkpointing storage", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkpointLocked() throws IOException {
+        log.force();
+        index.checkpoint(log.size());
+        indexCheckpointed = true;
+    }
+
+    public long getLogBytes() {
+        lock.readLock().lock();
+        try {
+            return log.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getGarbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live state into a new log and index and swaps them in. The bulk of the rewrite runs without
+     * blocking lookups or writes: the live state is copied under the read lock and written out with no lock held.
+     * Only catching up runs under the write lock: the records appended meanwhile are copied over as they are, the
+     * index is updated for the URLs they touched, and the files are swapped. The new files are complete and flushed
+     * before the renames, and the old index is marked stale before the log is replaced, so a crash at any point
+     * leaves either the old files or a log the index is rebuilt from.
+     */
+    void compact() {
+        compactionLock.lock();
+        Path compactLogFile = logFile.resolveSibling(LOG_FILE_NAME + COMPACTION_SUFFIX);
+        Path compactIndexFile = indexFile.resolveSibling(INDEX_FILE_NAME + COMPACTION_SUFFIX);
+        try {
+            long startNanos = System.nanoTime();
+            Snapshot snapshot = snapshot();
+            Files.deleteIfExists(compactLogFile);
+            try (UrlLog compactLog = new UrlLog(compactLogFile);
+                 MappedTokenIndex compactIndex = MappedTokenIndex.create(compactIndexFile, snapshot.tokenCount)) {
+                writeSnapshot(snapshot, compactLog, compactIndex);
+                compactionSnapshotHook.run();
+                lock.writeLock().lock();
+                try {
+                    swapIn(snapshot, compactLog, compactIndex, compactLogFile, compactIndexFile);
+                    logger.info("Compacted {} from {} to {} bytes in {} ms", logFile, snapshot.logPosition, log.size(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            deleteQuietly(compactLogFile);
+            deleteQuietly(compactIndexFile);
+            handleIOException("Error compacting " + logFile, e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            Snapshot snapshot = new Snapshot(log.size(), garbageBytes, nextUrlId, nextTokenSequenceValue,
+                    new HashSet<>(aliasesByKey.values()), new HashMap<>(redirectCounts));
+            for (UrlEntry entry : urlsById.values()) {
+                snapshot.urls.put(entry.id, new UrlSnapshot(entry.id, entry.expirationMillis, entry.longUrl, List.copyOf(entry.tokens)));
+                snapshot.tokenCount += entry.tokens.size();
+            }
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void writeSnapshot(Snapshot snapshot, UrlLog compactLog, MappedTokenIndex compactIndex) throws IOException {
+        UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+        records.value(UrlLog.URL_ID_WATERMARK, snapshot.nextUrlId);
+        records.value(UrlLog.TOKEN_SEQUENCE, snapshot.nextTokenSequenceValue);
+        for (UrlSnapshot url : snapshot.urls.values()) {
+            url.compactOffset = compactLog.size() + records.size();
+            records.url(url.id, url.expirationMillis, url.longUrl);
+            for (String token : url.tokens) {
+                records.token(snapshot.aliases.contains(token) ? UrlLog.ALIAS : UrlLog.TOKEN, url.id, token);
+                compactIndex.put(tokenKey(token), url.compactOffset);
+            }
+            records = flushIfFull(compactLog, records);
+        }
+        for (Map.Entry<String, Long> count : snapshot.redirectCounts.entrySet()) {
+            records.redirects(count.getValue(), count.getKey());
+            records = flushIfFull(compactLog, records);
+        }
+        if (!records.isEmpty()) {
+            compactLog.append(records);
+        }
+    }
+
+    /**
+     * Under the write lock: appends the records written since the snapshot, which replay on top of it just as they
+     * did on top of the old log, points the index at the URL records they moved or the tokens they changed, and
+     * swaps the new files in.
+     */
+    private void swapIn(Snapshot snapshot, UrlLog compactLog, MappedTokenIndex compactIndex,
+                        Path compactLogFile, Path compactIndexFile) throws IOException {
+        long tailShift = log.copyTo(snapshot.logPosition, compactLog) - snapshot.logPosition;
+        compactLog.force();
+
+        // Tokens go before any are added, since a deleted token may have been stored again for another URL
+        for (UrlSnapshot url : snapshot.urls.values()) {
+            UrlEntry entry = urlsById.get(url.id);
+            for (String token : url.tokens) {
+                if (entry == null || !entry.tokens.contains(token)) {
+                    compactIndex.remove(tokenKey(token));
+                }
+            }
+        }
+        List<UrlEntry> entries = new ArrayList<>(urlsById.values());
+        long[] offsets = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            UrlEntry entry = entries.get(i);
+            UrlSnapshot url = snapshot.urls.get(entry.id);
+            boolean moved = entry.offset >= snapshot.logPosition;
+            offsets[i] = moved ? entry.offset + tailShift : url.compactOffset;
+            if (moved || !entry.tokens.equals(url.tokens)) {
+                for (String token : entry.tokens) {
+                    compactIndex.put(tokenKey(token), offsets[i]);
+                }
+            }
+        }
+        compactIndex.checkpoint(compactLog.size());
+        compactLog.close();
+        compactIndex.close();
+
+        index.markDirty();
+        Files.move(compactLogFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.close();
+        index.close();
+        log = new UrlLog(logFile);
+        index = MappedTokenIndex.open(indexFile, snapshot.tokenCount);
+        indexCheckpointed = true;
+
+        for (int i = 0; i < entries.size(); i++) {
+            entries.get(i).offset = offsets[i];
+        }
+        sequenceRecordBytes = VALUE_RECORD_BYTES;
+        watermarkRecordBytes = VALUE_RECORD_BYTES;
+        // What was garbage at the snapshot was left behind; what became garbage since was copied over with the tail
+        garbageBytes -= snapshot.garbageBytes;
+    }
+
+    private static UrlLog.RecordBuffer flushIfFull(UrlLog compactLog, UrlLog.RecordBuffer records) throws IOException {
+        if (records.size() < COMPACTION_CHUNK_BYTES) {
+            return records;
+        }
+        compactLog.append(records);
+        return new UrlLog.RecordBuffer();
+    }
+
+    private void compactIfNeededQuietly() {
+        try {
+            if (needsCompaction()) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error compacting storage, will retry on next run", e);
+        }
+    }
+
+    private boolean needsCompaction() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes >= MIN_COMPACTION_GARBAGE_BYTES && garbageBytes > compactionGarbageRatio * log.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        compactionExecutor.shutdown();
+        // Waits for a running compaction, which would otherwise swap its files in under a closed store
+        compactionLock.lock();
+        lock.writeLock().lock();
+        try {
+            checkpointLocked();
+            log.close();
+            index.close();
+        } catch (IOException e) {
+            handleIOException("Error closing storage", e);
+        } finally {
+            lock.writeLock().unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the records and then applies them through the same code path as replay, so the in-memory state
+     * is always what a restart would rebuild from the log.
+     */
+    private void write(UrlLog.RecordBuffer records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        long offset = log.append(records);
+        records.forEach(offset, (recordOffset, recordBytes, type, payload) -> apply(recordOffset, recordBytes, type, payload, true));
+    }
+
+    private void apply(long offset, int recordBytes, byte type, ByteBuffer payload, boolean updateIndex) {
+        switch (type) {
+            case UrlLog.URL:
+                applyUrl(offset, recordBytes, payload.getLong(), payload.getLong(), UrlLog.getString(payload), updateIndex);
+                break;
+            case UrlLog.TOKEN:
+            case UrlLog.REPLACE_TOKENS:
+            case UrlLog.ALIAS:
+                applyToken(recordBytes, type, payload.getLong(), UrlLog.getString(payload), updateIndex);
+                break;
+            case UrlLog.DELETE_URL:
+                applyDeleteUrl(recordBytes, payload.getLong(), updateIndex);
+                break;
+            case UrlLog.DELETE_TOKEN:
+                applyDeleteToken(recordBytes, payload.getLong(), UrlLog.getString(payload), updateIndex);
+                break;
+            case UrlLog.REDIRECTS:
+                long delta = payload.getLong();
+                if (redirectCounts.merge(UrlLog.getString(payload), delta, Long::sum) != delta) {
+                    garbageBytes += recordBytes;
+                }
+                break;
+            case UrlLog.TOKEN_SEQUENCE:
+                nextTokenSequenceValue = payload.getLong();
+                garbageBytes += sequenceRecordBytes;
+                sequenceRecordBytes = recordBytes;
+                break;
+            case UrlLog.URL_ID_WATERMARK:
+                nextUrlId = Math.max(nextUrlId, payload.getLong());
+                garbageBytes += watermarkRecordBytes;
+                watermarkRecordBytes = recordBytes;
+                break;
+            default:
+                throw new UncheckedIOException(new IOException("Unknown record type " + type + " at offset " + offset));
+        }
+    }
+
+    private void applyUrl(long offset, int recordBytes, long id, long expirationMillis, String longUrl, boolean updateIndex) {
+        UrlEntry entry = urlsById.get(id);
+        if (entry == null) {
+            entry = new UrlEntry(id, longUrl);
+            urlsById.put(id, entry);
+            urlsByLongUrl.put(longUrl, entry);
+            nextUrlId = Math.max(nextUrlId, id + 1);
+        } else {
+            urlsByExpiration.remove(entry);
+            garbageBytes += entry.recordBytes;
+        }
+        entry.expirationMillis = expirationMillis;
+        entry.offset = offset;
+        entry.recordBytes = recordBytes;
+        urlsByExpiration.add(entry);
+        if (updateIndex) {
+            for (String token : entry.tokens) {
+                indexPut(token, offset);
+            }
+        }
+    }
+
+    private void applyToken(int recordBytes, byte type, long urlId, String token, boolean updateIndex) {
+        UrlEntry entry = urlsById.get(urlId);
+        if (entry == null) {
+            garbageBytes += recordBytes;
+            return;
+        }
+        if (type == UrlLog.REPLACE_TOKENS) {
+            if (updateIndex) {
+                entry.tokens.forEach(this::indexRemove);
+            }
+            entry.tokens.forEach(this::forgetAlias);
+            garbageBytes += entry.tokenRecordBytes;
+            entry.tokens.clear();
+            entry.tokenRecordBytes = 0;
+        }
+        entry.tokens.add(token);
+        entry.tokenRecordBytes += recordBytes;
+        if (type == UrlLog.ALIAS) {
+            aliasesByKey.put(aliasKey(token), token);
+        }
+        if (updateIndex) {
+            indexPut(token, entry.offset);
+        }
+    }
+
+    private void applyDeleteUrl(int recordBytes, long id, boolean updateIndex) {
+        UrlEntry entry = urlsById.remove(id);
+        garbageBytes += recordBytes;
+        if (entry == null) {
+            return;
+        }
+        urlsByLongUrl.remove(entry.longUrl);
+        urlsByExpiration.remove(entry);
+        garbageBytes += entry.recordBytes + entry.tokenRecordBytes;
+        if (updateIndex) {
+            entry.tokens.forEach(this::indexRemove);
+        }
+        entry.tokens.forEach(this::forgetAlias);
+    }
+
+    private void applyDeleteToken(int recordBytes, long urlId, String token, boolean updateIndex) {
+        UrlEntry entry = urlsById.get(urlId);
+        garbageBytes += recordBytes;
+        if (entry == null || !entry.tokens.remove(token)) {
+            return;
+        }
+        // The record that added the token is garbage now too, and framed exactly like this one
+        garbageBytes += recordBytes;
+        entry.tokenRecordBytes -= recordBytes;
+        if (updateIndex) {
+            indexRemove(token);
+        }
+        forgetAlias(token);
+    }
+
+    private boolean isAlias(String token) {
+        return token.equals(aliasesByKey.get(aliasKey(token)));
+    }
+
+    private void forgetAlias(String token) {
+        aliasesByKey.remove(aliasKey(token), token);
+    }
+
+    /**
+     * The first token stored for the URL that is not a custom alias, or null if it has none.
+     */
+    private String generatedToken(UrlEntry entry) {
+        for (String token : entry.tokens) {
+            if (!isAlias(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+
+    private void indexPut(String token, long offset) {
+        try {
+            markIndexDirty();
+            index.put(tokenKey(token), offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void indexRemove(String token) {
+        markIndexDirty();
+        index.remove(tokenKey(token));
+    }
+
+    private void markIndexDirty() {
+        if (indexCheckpointed) {
+            index.markDirty();
+            indexCheckpointed = false;
+        }
+    }
+
+    private long newExpirationMillis() {
+        return LocalDateTime.now().plusMonths(expiryDateMonthsInFuture).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static byte[] tokenKey(String token) {
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String aliasKey(String alias) {
+        return alias.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isValidTokenKey(byte[] key) {
+        return key.length > 0 && key.length <= MappedTokenIndex.MAX_KEY_BYTES;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}", file, e);
+        }
+    }
+
+    private void handleIOException(String message, Exception e) {
+        logger.error(message, e);
+        throw new UrlShortenerDataAccessException(message, e);
+    }
+
+    long getRedirectCount(String originalUrl) {
+        lock.readLock().lock();
+        try {
+            return redirectCounts.getOrDefault(originalUrl, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int getOriginalUrlCount() {
+        lock.readLock().lock();
+        try {
+            return urlsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Test hook: rewrites the expiration of {@code longUrl} the same way a renewal does.
+     */
+    void setExpiration(String longUrl, long expirationMillis) {
+        lock.writeLock().lock();
+        try {
+            UrlEntry entry = urlsByLongUrl.get(longUrl);
+            UrlLog.RecordBuffer records = new UrlLog.RecordBuffer();
+            records.url(entry.id, expirationMillis, longUrl);
+            write(records);
+        } catch (IOException e) {
+            handleIOException("Error updating expiration", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The live state as of {@code logPosition}, which compaction writes out while the store carries on.
+     */
+    /**
+     * Test hook: runs {@code hook} each time compaction has written out its snapshot, before it catches up.
+     */
+    void setCompactionSnapshotHook(Runnable hook) {
+        this.compactionSnapshotHook = hook;
+    }
+
+    private static final class Snapshot {
+        final long logPosition;
+        final long garbageBytes;
+        final long nextUrlId;
+        final long nextTokenSequenceValue;
+        final Set<String> aliases;
+        final Map<String, Long> redirectCounts;
+        final Map<Long, UrlSnapshot> urls = new HashMap<>();
+        long tokenCount;
+
+        Snapshot(long logPosition, long garbageBytes, long nextUrlId, long nextTokenSequenceValue, Set<String> aliases,
+                 Map<String, Long> redirectCounts) {
+            this.logPosition = logPosition;
+            this.garbageBytes = garbageBytes;
+            this.nextUrlId = nextUrlId;
+            this.nextTokenSequenceValue = nextTokenSequenceValue;
+            this.aliases = aliases;
+            this.redirectCounts = redirectCounts;
+        }
+    }
+
+    private static final class UrlSnapshot {
+        final long id;
+        final long expirationMillis;
+        final String longUrl;
+        final List<String> tokens;
+        long compactOffset;
+
+        UrlSnapshot(long id, long expirationMillis, String longUrl, List<String> tokens) {
+            this.id = id;
+            this.expirationMillis = expirationMillis;
+            this.longUrl = longUrl;
+            this.tokens = tokens;
+        }
+    }
+
+    private static final class UrlEntry {
+        final long id;
+        final String longUrl;
+        final List<String> tokens = new ArrayList<>(1);
+        long expirationMillis;
+        long offset;
+        int recordBytes;
+        long tokenRecordBytes;
+
+        UrlEntry(long id, String longUrl) {
+            this.id = id;
+            this.longUrl = longUrl;
+        }
+    }
+}
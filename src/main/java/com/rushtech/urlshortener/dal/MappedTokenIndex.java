@@ -0,0 +1,336 @@
+package com.rushtech.urlshortener.dal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Open-addressing hash table from token to a log offset, stored in a memory-mapped file so it lives off-heap and in
+ * the page cache. Slots are {@value #SLOT_BYTES} bytes: an int key length (0 for empty, -1 for a deleted slot),
+ * up to {@value #MAX_KEY_BYTES} key bytes, and the long value. The table is mapped in 1 GiB segments, as a single
+ * {@link MappedByteBuffer} cannot exceed 2 GiB.
+ *
+ * <p>Not thread-safe: {@link LogStructuredUrlShortenerDAL} guards writes with its write lock. Lookups may run
+ * concurrently with each other, as they only use absolute reads.
+ */
+final class MappedTokenIndex implements AutoCloseable {
+
+    static final int MAX_KEY_BYTES = 52;
+
+    private static final int MAGIC = 0x544f4b58; // "TOKX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int TOMBSTONES_OFFSET = 24;
+    private static final int CHECKPOINT_OFFSET = 32;
+    private static final int SLOT_BYTES = 64;
+    private static final int KEY_OFFSET = 4;
+    private static final int VALUE_OFFSET = 56;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final long SLOTS_PER_SEGMENT = SEGMENT_BYTES / SLOT_BYTES;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final long MIN_CAPACITY = 16;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private long capacity;
+    private long size;
+    private long tombstones;
+
+    private MappedTokenIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps the index in {@code file}, or creates an empty one with room for {@code initialCapacity} slots
+     * if the file is missing or not a valid index.
+     */
+    static MappedTokenIndex open(Path file, long initialCapacity) throws IOException {
+        MappedTokenIndex index = new MappedTokenIndex(file);
+        if (!index.mapExisting()) {
+            index.replaceWithEmpty(tableCapacityFor(initialCapacity));
+        }
+        return index;
+    }
+
+    /**
+     * Creates an empty index in {@code file}, replacing whatever is there.
+     */
+    static MappedTokenIndex create(Path file, long expectedKeys) throws IOException {
+        MappedTokenIndex index = new MappedTokenIndex(file);
+        index.replaceWithEmpty(tableCapacityFor(expectedKeys));
+        return index;
+    }
+
+    long get(byte[] key) {
+        long mask = capacity - 1;
+        long slot = hash(key) & mask;
+        for (long probe = 0; probe < capacity; probe++) {
+            int keyLength = keyLength(slot);
+            if (keyLength == EMPTY) {
+                return -1;
+            }
+            if (keyLength == key.length && keyEquals(slot, key)) {
+                return value(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    void put(byte[] key, long value) throws IOException {
+        if (key.length == 0 || key.length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Index keys must be 1 to " + MAX_KEY_BYTES + " bytes, got " + key.length);
+        }
+        if (size + tombstones + 1 > capacity * MAX_LOAD_FACTOR) {
+            // Grow when live keys fill the table; otherwise rehashing at the same size just clears out tombstones
+            rehash(size + 1 > capacity * MAX_LOAD_FACTOR / 2 ? capacity * 2 : capacity);
+        }
+        long mask = capacity - 1;
+        long slot = hash(key) & mask;
+        long firstTombstone = -1;
+        for (long probe = 0; probe < capacity; probe++) {
+            int keyLength = keyLength(slot);
+            if (keyLength == EMPTY) {
+                break;
+            }
+            if (keyLength == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = slot;
+                }
+            } else if (keyLength == key.length && keyEquals(slot, key)) {
+                setValue(slot, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (firstTombstone >= 0) {
+            slot = firstTombstone;
+            tombstones--;
+        }
+        writeSlot(slot, key, value);
+        size++;
+    }
+
+    boolean remove(byte[] key) {
+        long mask = capacity - 1;
+        long slot = hash(key) & mask;
+        for (long probe = 0; probe < capacity; probe++) {
+            int keyLength = keyLength(slot);
+            if (keyLength == EMPTY) {
+                return false;
+            }
+            if (keyLength == key.length && keyEquals(slot, key)) {
+                segment(slot).putInt(slotPosition(slot), TOMBSTONE);
+                size--;
+                tombstones++;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    long size() {
+        return size;
+    }
+
+    void clear() throws IOException {
+        replaceWithEmpty(capacity);
+    }
+
+    /**
+     * Log position up to which this index is known to be complete, or -1 if it was modified since the last
+     * {@link #checkpoint}.
+     */
+    long getCheckpointPosition() {
+        return header.getLong(CHECKPOINT_OFFSET);
+    }
+
+    /**
+     * Flushes the table and records that it reflects the log up to {@code logPosition}.
+     */
+    void checkpoint(long logPosition) {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.putLong(SIZE_OFFSET, size);
+        header.putLong(TOMBSTONES_OFFSET, tombstones);
+        header.putLong(CHECKPOINT_OFFSET, logPosition);
+        header.force();
+    }
+
+    void markDirty() {
+        header.putLong(CHECKPOINT_OFFSET, -1);
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean mapExisting() throws IOException {
+        if (!Files.isRegularFile(file) || Files.size(file) < HEADER_BYTES) {
+            return false;
+        }
+        FileChannel existing = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer existingHeader = existing.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        long existingCapacity = existingHeader.getLong(CAPACITY_OFFSET);
+        if (existingHeader.getInt(0) != MAGIC || existingHeader.getInt(4) != VERSION
+                || Long.bitCount(existingCapacity) != 1 || existing.size() != HEADER_BYTES + existingCapacity * SLOT_BYTES) {
+            existing.close();
+            return false;
+        }
+        adopt(existing, existingHeader, existingCapacity);
+        size = header.getLong(SIZE_OFFSET);
+        tombstones = header.getLong(TOMBSTONES_OFFSET);
+        return true;
+    }
+
+    /**
+     * Builds a new table file next to the current one and renames it into place. Readers of the old mapping are
+     * never exposed to a file shrinking underneath them, which would crash the JVM rather than throw.
+     */
+    private void replaceWithEmpty(long newCapacity) throws IOException {
+        Path newFile = file.resolveSibling(file.getFileName() + ".new");
+        FileChannel newChannel = FileChannel.open(newFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileBytes = HEADER_BYTES + newCapacity * SLOT_BYTES;
+        newChannel.write(ByteBuffer.allocate(1), fileBytes - 1); // sparse, zero-filled slots are empty
+        MappedByteBuffer newHeader = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        newHeader.putInt(0, MAGIC);
+        newHeader.putInt(4, VERSION);
+        newHeader.putLong(CAPACITY_OFFSET, newCapacity);
+        newHeader.putLong(CHECKPOINT_OFFSET, -1);
+        Files.move(newFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (channel != null) {
+            channel.close();
+        }
+        adopt(newChannel, newHeader, newCapacity);
+        size = 0;
+        tombstones = 0;
+    }
+
+    private void rehash(long newCapacity) throws IOException {
+        long oldCapacity = capacity;
+        MappedByteBuffer[] oldSegments = segments;
+        FileChannel oldChannel = channel;
+        channel = null; // keep the old mapping readable until every key has been copied
+        replaceWithEmpty(newCapacity);
+        byte[] key = new byte[MAX_KEY_BYTES];
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            MappedByteBuffer segment = oldSegments[(int) (slot / SLOTS_PER_SEGMENT)];
+            int position = (int) ((slot % SLOTS_PER_SEGMENT) * SLOT_BYTES);
+            int keyLength = segment.getInt(position);
+            if (keyLength > 0) {
+                segment.get(position + KEY_OFFSET, key, 0, keyLength);
+                insertNew(key, keyLength, segment.getLong(position + VALUE_OFFSET));
+            }
+        }
+        oldChannel.close();
+    }
+
+    private void insertNew(byte[] key, int keyLength, long value) {
+        long mask = capacity - 1;
+        long slot = hash(key, keyLength) & mask;
+        while (keyLength(slot) != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        MappedByteBuffer segment = segment(slot);
+        int position = slotPosition(slot);
+        segment.put(position + KEY_OFFSET, key, 0, keyLength);
+        segment.putLong(position + VALUE_OFFSET, value);
+        segment.putInt(position, keyLength);
+        size++;
+    }
+
+    private void adopt(FileChannel newChannel, MappedByteBuffer newHeader, long newCapacity) throws IOException {
+        long tableBytes = newCapacity * SLOT_BYTES;
+        MappedByteBuffer[] newSegments = new MappedByteBuffer[(int) ((tableBytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+        for (int i = 0; i < newSegments.length; i++) {
+            long start = i * SEGMENT_BYTES;
+            newSegments[i] = newChannel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + start, Math.min(SEGMENT_BYTES, tableBytes - start));
+        }
+        channel = newChannel;
+        header = newHeader;
+        segments = newSegments;
+        capacity = newCapacity;
+    }
+
+    private void writeSlot(long slot, byte[] key, long value) {
+        MappedByteBuffer segment = segment(slot);
+        int position = slotPosition(slot);
+        segment.put(position + KEY_OFFSET, key);
+        segment.putLong(position + VALUE_OFFSET, value);
+        segment.putInt(position, key.length); // last, so a concurrent probe never sees a half-written key
+    }
+
+    private void setValue(long slot, long value) {
+        segment(slot).putLong(slotPosition(slot) + VALUE_OFFSET, value);
+    }
+
+    private int keyLength(long slot) {
+        return segment(slot).getInt(slotPosition(slot));
+    }
+
+    private long value(long slot) {
+        return segment(slot).getLong(slotPosition(slot) + VALUE_OFFSET);
+    }
+
+    private boolean keyEquals(long slot, byte[] key) {
+        MappedByteBuffer segment = segment(slot);
+        int position = slotPosition(slot) + KEY_OFFSET;
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedByteBuffer segment(long slot) {
+        return segments[(int) (slot / SLOTS_PER_SEGMENT)];
+    }
+
+    private static int slotPosition(long slot) {
+        return (int) ((slot % SLOTS_PER_SEGMENT) * SLOT_BYTES);
+    }
+
+    private static long tableCapacityFor(long expectedKeys) {
+        long slots = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedKeys / (MAX_LOAD_FACTOR / 2)));
+        return Long.highestOneBit(slots - 1) << 1;
+    }
+
+    private static long hash(byte[] key) {
+        return hash(key, key.length);
+    }
+
+    /**
+     * FNV-1a over the key bytes, finished with the MurmurHash3 64-bit mixer so that linear probing sees
+     * well-spread low bits.
+     */
+    private static long hash(byte[] key, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash ^= key[i];
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,196 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.MappingArchive;
+import com.rushtech.urlshortener.util.UrlHash;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline tool that loads a {@link MappingArchive}, as served by {@code GET /admin/export}, into an empty SQLite
+ * database. The secondary indexes are dropped for the load and built once at the end, rows are inserted through JDBC
+ * batches with ids assigned here rather than read back per row, and the load runs with {@code synchronous=OFF}. Custom
+ * aliases stay aliases, and the token sequence is moved past the ids the exporting server had handed out. Only
+ * the previous mapping is remembered, so memory use does not grow with the archive. The server must not use the
+ * database until the import has finished; an interrupted import leaves a database to delete and import again.
+ *
+ * <pre>
+ * java -cp UrlShortener-jar-with-dependencies.jar com.rushtech.urlshortener.dal.MappingImporter \
+ *     jdbc:sqlite:url_shortener_db.db mappings.bin.gz
+ * </pre>
+ */
+public final class MappingImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingImporter.class);
+    private static final int BUSY_TIMEOUT_MILLISECONDS = 30000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_INTERVAL_ROWS = 100_000;
+
+    private static final String INSERT_ORIGINAL_URL =
+            "INSERT INTO original_urls (id, long_url, long_url_hash, expiration_date) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_URL_MAPPING = "INSERT INTO tokens (token, original_url_id, is_alias) VALUES (?, ?, ?)";
+    // A long URL whose tokens were not exported together shows up more than once with the same count
+    private static final String UPSERT_REDIRECT_COUNT =
+            "INSERT INTO redirect_analytics (original_url, redirect_count) VALUES (?, ?) " +
+                    "ON CONFLICT(original_url) DO UPDATE SET redirect_count = MAX(redirect_count, excluded.redirect_count)";
+    private static final String RAISE_TOKEN_SEQUENCE =
+            "INSERT INTO token_sequence (name, next_value) VALUES ('tokens', ?) " +
+                    "ON CONFLICT(name) DO UPDATE SET next_value = MAX(next_value, excluded.next_value)";
+
+    /**
+     * What a run loaded.
+     */
+    public record Result(long mappings, long originalUrls, long redirectCounts) {
+    }
+
+    private final String databaseUrl;
+
+    public MappingImporter(String databaseUrl) {
+        this.databaseUrl = databaseUrl;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: MappingImporter <target url> <archive file>");
+            System.exit(2);
+        }
+        try (InputStream in = Files.newInputStream(Path.of(args[1]))) {
+            Result result = new MappingImporter(args[0]).importMappings(in);
+            System.out.printf("Imported %d mappings to %d long URLs with %d redirect counts%n",
+                    result.mappings(), result.originalUrls(), result.redirectCounts());
+        }
+    }
+
+    /**
+     * Loads every mapping read from {@code in}, then rebuilds the indexes and checks the query plans as
+     * {@link SchemaMigrator} does on startup.
+     *
+     * @throws IllegalStateException if the database already holds mappings
+     * @throws IOException           if the archive cannot be read or was cut short
+     */
+    public Result importMappings(InputStream in) throws IOException {
+        SchemaMigrator migrator = new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, Metrics.globalRegistry);
+        migrator.migrate();
+        long startNanos = System.nanoTime();
+        Result result;
+        try (Connection conn = open(databaseUrl);
+             MappingArchive.Reader reader = MappingArchive.newReader(in)) {
+            checkEmpty(conn);
+            SchemaMigrator.dropIndexes(conn);
+            conn.setAutoCommit(false);
+            result = load(reader, conn);
+            conn.commit();
+            SchemaMigrator.createIndexes(conn);
+            conn.commit();
+        } catch (SQLException e) {
+            logger.error("Error importing mappings", e);
+            throw new UrlShortenerDataAccessException("Error importing mappings", e);
+        }
+        // Analyzes the loaded tables and verifies the rebuilt indexes serve the hot queries
+        migrator.migrate();
+        logger.info("Imported {} mappings in {} ms", result.mappings(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return result;
+    }
+
+    private static Result load(MappingArchive.Reader reader, Connection conn) throws IOException, SQLException {
+        try (PreparedStatement insertUrl = conn.prepareStatement(INSERT_ORIGINAL_URL);
+             PreparedStatement insertToken = conn.prepareStatement(INSERT_URL_MAPPING);
+             PreparedStatement upsertCount = conn.prepareStatement(UPSERT_REDIRECT_COUNT)) {
+            long mappings = 0;
+            long originalUrlId = 0;
+            long redirectCounts = 0;
+            String previousLongUrl = null;
+            UrlMapping mapping;
+            while ((mapping = reader.read()) != null) {
+                // Tokens of one long URL are exported one after another and share its row
+                if (!mapping.getLongUrl().equals(previousLongUrl)) {
+                    previousLongUrl = mapping.getLongUrl();
+                    originalUrlId++;
+                    insertUrl.setLong(1, originalUrlId);
+                    insertUrl.setString(2, mapping.getLongUrl());
+                    insertUrl.setLong(3, UrlHash.hash(mapping.getLongUrl()));
+                    if (mapping.getExpirationMillis() == UrlMapping.NO_EXPIRATION) {
+                        insertUrl.setNull(4, Types.TIMESTAMP);
+                    } else {
+                        insertUrl.setTimestamp(4, new Timestamp(mapping.getExpirationMillis()));
+                    }
+                    insertUrl.addBatch();
+                    if (mapping.getRedirectCount() > 0) {
+                        upsertCount.setString(1, mapping.getLongUrl());
+                        upsertCount.setLong(2, mapping.getRedirectCount());
+                        upsertCount.addBatch();
+                        redirectCounts++;
+                    }
+                }
+                insertToken.setString(1, mapping.getToken());
+                insertToken.setLong(2, originalUrlId);
+                insertToken.setBoolean(3, mapping.isAlias());
+                insertToken.addBatch();
+
+                mappings++;
+                if (mappings % BATCH_SIZE == 0) {
+                    executeBatches(insertUrl, insertToken, upsertCount);
+                }
+                if (mappings % COMMIT_INTERVAL_ROWS == 0) {
+                    conn.commit();
+                    logger.info("Imported {} mappings", mappings);
+                }
+            }
+            executeBatches(insertUrl, insertToken, upsertCount);
+            raiseTokenSequence(conn, reader.getNextTokenId());
+            return new Result(mappings, originalUrlId, redirectCounts);
+        }
+    }
+
+    /**
+     * Keeps a sequence token generator from handing out the ids, and so the tokens, of imported mappings again.
+     */
+    private static void raiseTokenSequence(Connection conn, long nextTokenId) throws SQLException {
+        if (nextTokenId <= 0) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(RAISE_TOKEN_SEQUENCE)) {
+            stmt.setLong(1, nextTokenId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void executeBatches(PreparedStatement... statements) throws SQLException {
+        for (PreparedStatement stmt : statements) {
+            stmt.executeBatch();
+        }
+    }
+
+    private void checkEmpty(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM original_urls) + (SELECT COUNT(*) FROM tokens)")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                throw new IllegalStateException("Target database is not empty: " + databaseUrl);
+            }
+        }
+    }
+
+    private static Connection open(String databaseUrl) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLISECONDS);
+        // Nothing is lost by skipping fsyncs: a database that did not finish importing is thrown away anyway
+        config.setSynchronous(SQLiteConfig.SynchronousMode.OFF);
+        return DriverManager.getConnection(databaseUrl, config.toProperties());
+    }
+}
@@ -0,0 +1,72 @@
+package com.rushtech.urlshortener.dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prepared statements kept per physical connection, so SQLite parses and plans each SQL string once per connection
+ * instead of once per call. Statements are prepared on the driver connection underneath Hikari's proxy, because the
+ * proxy closes every statement prepared through it when the connection goes back to the pool. Hikari does not see
+ * these statements run either, so it cannot tell that a transaction has uncommitted work; callers must roll back
+ * failed transactions themselves. Callers must not close the statements they get, only their result sets. A cached
+ * statement is handed out with any batch a failed caller left on it cleared. A pooled connection is used by one
+ * thread at a time, so the statements of one connection need no locking.
+ *
+ * <p>When Hikari retires a connection it closes it, and SQLite finalizes the connection's statements with it. Closed
+ * connections are dropped from the cache whenever a connection is seen for the first time, which is what happens
+ * when Hikari opens the replacement.
+ *
+ * <p>With caching disabled every call prepares a new statement through the proxy, which Hikari closes when the
+ * connection is returned, the same as preparing it in a try-with-resources block.
+ */
+final class PreparedStatementCache {
+
+    private final boolean enabled;
+    private final ConcurrentHashMap<Connection, Map<String, PreparedStatement>> statementsByConnection = new ConcurrentHashMap<>();
+
+    PreparedStatementCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        if (!enabled) {
+            return conn.prepareStatement(sql);
+        }
+        Connection driverConnection = conn.unwrap(Connection.class);
+        Map<String, PreparedStatement> statements = statementsByConnection.get(driverConnection);
+        if (statements == null) {
+            removeClosedConnections();
+            statements = new HashMap<>();
+            statementsByConnection.put(driverConnection, statements);
+        }
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = driverConnection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        } else {
+            stmt.clearBatch();
+        }
+        return stmt;
+    }
+
+    int size() {
+        int size = 0;
+        for (Map<String, PreparedStatement> statements : statementsByConnection.values()) {
+            size += statements.size();
+        }
+        return size;
+    }
+
+    private void removeClosedConnections() throws SQLException {
+        for (Connection connection : statementsByConnection.keySet()) {
+            if (connection.isClosed()) {
+                // Its statements were finalized when the connection was closed, only the references are left
+                statementsByConnection.remove(connection);
+            }
+        }
+    }
+}
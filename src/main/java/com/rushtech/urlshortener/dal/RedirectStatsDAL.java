@@ -0,0 +1,202 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.RedirectReferrerCount;
+import com.rushtech.urlshortener.model.RedirectStatsBucket;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores redirect statistics in their own SQLite database, so the once-a-second stats writes never queue behind
+ * shortens for the URL database's writer lock. Buckets live in {@code redirect_stats}, one row per token, resolution
+ * and bucket with one integer column per user agent class; referrer hosts per hour live in {@code redirect_referrers}.
+ * Both are {@code WITHOUT ROWID} tables clustered on their primary key, so a token's buckets are stored together
+ * in time order and a stats query is a single range scan. The tables are created on first use.
+ */
+public class RedirectStatsDAL implements IRedirectStatsDAL, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectStatsDAL.class);
+
+    private final HikariDataSource dataSource;
+
+    public RedirectStatsDAL(String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds) {
+        SQLiteConfig connectionConfig = new SQLiteConfig();
+        connectionConfig.setBusyTimeout(connectionTimeoutMilliSeconds);
+        connectionConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        connectionConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("redirect-stats");
+        config.setJdbcUrl(databaseUrl);
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setConnectionTimeout(connectionTimeoutMilliSeconds);
+        config.setDataSourceProperties(connectionConfig.toProperties());
+        this.dataSource = new HikariDataSource(config);
+        createTables();
+    }
+
+    private void createTables() {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS redirect_stats (" +
+                    "token TEXT NOT NULL, resolution INTEGER NOT NULL, bucket_start INTEGER NOT NULL, " +
+                    "browser INTEGER NOT NULL, mobile INTEGER NOT NULL, bot INTEGER NOT NULL, other INTEGER NOT NULL, " +
+                    "PRIMARY KEY (token, resolution, bucket_start)) WITHOUT ROWID");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS redirect_referrers (" +
+                    "token TEXT NOT NULL, bucket_start INTEGER NOT NULL, referrer_host TEXT NOT NULL, redirects INTEGER NOT NULL, " +
+                    "PRIMARY KEY (token, bucket_start, referrer_host)) WITHOUT ROWID");
+        } catch (SQLException e) {
+            handleSQLException("Error creating redirect stats tables", e);
+        }
+    }
+
+    @Override
+    public void addRedirectStats(List<RedirectStatsBucket> buckets, List<RedirectReferrerCount> referrerCounts) {
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement bucketStmt = conn.prepareStatement(
+                    "INSERT INTO redirect_stats (token, resolution, bucket_start, browser, mobile, bot, other) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                            "ON CONFLICT(token, resolution, bucket_start) DO UPDATE SET browser = browser + excluded.browser, " +
+                            "mobile = mobile + excluded.mobile, bot = bot + excluded.bot, other = other + excluded.other");
+                 PreparedStatement referrerStmt = conn.prepareStatement(
+                         "INSERT INTO redirect_referrers (token, bucket_start, referrer_host, redirects) VALUES (?, ?, ?, ?) " +
+                                 "ON CONFLICT(token, bucket_start, referrer_host) DO UPDATE SET redirects = redirects + excluded.redirects")
+            ) {
+                for (RedirectStatsBucket bucket : buckets) {
+                    bucketStmt.setString(1, bucket.getToken());
+                    bucketStmt.setInt(2, bucket.getResolutionSeconds());
+                    bucketStmt.setLong(3, bucket.getBucketStart());
+                    bucketStmt.setLong(4, bucket.getBrowser());
+                    bucketStmt.setLong(5, bucket.getMobile());
+                    bucketStmt.setLong(6, bucket.getBot());
+                    bucketStmt.setLong(7, bucket.getOther());
+                    bucketStmt.addBatch();
+                }
+                bucketStmt.executeBatch();
+                for (RedirectReferrerCount referrerCount : referrerCounts) {
+                    referrerStmt.setString(1, referrerCount.getToken());
+                    referrerStmt.setLong(2, referrerCount.getBucketStart());
+                    referrerStmt.setString(3, referrerCount.getReferrerHost());
+                    referrerStmt.setLong(4, referrerCount.getRedirects());
+                    referrerStmt.addBatch();
+                }
+                referrerStmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error adding redirect stats", e);
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    @Override
+    public List<RedirectStatsBucket> getRedirectStats(String token, int resolutionSeconds, long fromEpochSecond, long toEpochSecond) {
+        List<RedirectStatsBucket> buckets = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT bucket_start, browser, mobile, bot, other FROM redirect_stats " +
+                             "WHERE token = ? AND resolution = ? AND bucket_start >= ? AND bucket_start < ? ORDER BY bucket_start")
+        ) {
+            stmt.setString(1, token);
+            stmt.setInt(2, resolutionSeconds);
+            stmt.setLong(3, fromEpochSecond);
+            stmt.setLong(4, toEpochSecond);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    buckets.add(new RedirectStatsBucket(token, resolutionSeconds, rs.getLong("bucket_start"), rs.getLong("browser"),
+                            rs.getLong("mobile"), rs.getLong("bot"), rs.getLong("other")));
+                }
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error retrieving redirect stats", e);
+        }
+        return buckets;
+    }
+
+    @Override
+    public Map<String, Long> getTopReferrers(String token, long fromEpochSecond, long toEpochSecond, int limit) {
+        Map<String, Long> referrers = new LinkedHashMap<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT referrer_host, SUM(redirects) AS redirects FROM redirect_referrers " +
+                             "WHERE token = ? AND bucket_start >= ? AND bucket_start < ? " +
+                             "GROUP BY referrer_host ORDER BY redirects DESC LIMIT ?")
+        ) {
+            stmt.setString(1, token);
+            stmt.setLong(2, fromEpochSecond);
+            stmt.setLong(3, toEpochSecond);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    referrers.put(rs.getString("referrer_host"), rs.getLong("redirects"));
+                }
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error retrieving top referrers", e);
+        }
+        return referrers;
+    }
+
+    @Override
+    public int deleteRedirectStatsBefore(int resolutionSeconds, long epochSecond) {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "DELETE FROM redirect_stats WHERE resolution = ? AND bucket_start < ?")
+        ) {
+            stmt.setInt(1, resolutionSeconds);
+            stmt.setLong(2, epochSecond);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            handleSQLException("Error deleting old redirect stats", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+
+    private void rollbackTransaction(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.error("Error rolling back transaction", e);
+            }
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+            } catch (SQLException e) {
+                logger.error("Error closing connection", e);
+            }
+        }
+    }
+
+    private void handleSQLException(String message, SQLException e) {
+        logger.error(message, e);
+        throw new UrlShortenerDataAccessException(message, e);
+    }
+}
@@ -0,0 +1,264 @@
+package com.rushtech.urlshortener.dal;
+
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline tool that copies every mapping from one set of SQLite databases into a new set of shards for
+ * {@link ShardedUrlShortenerDAL}, routing each mapping by its token and each redirect count by its long URL. The
+ * sources are left untouched and the targets must be empty. Each target is written in a single transaction committed
+ * only once everything has been copied, so an interrupted run leaves the targets empty and is simply started again;
+ * should a commit itself fail partway, delete the target files before starting again. Stop the server first; it is
+ * not safe against concurrent writers.
+ *
+ * <pre>
+ * java -cp UrlShortener-jar-with-dependencies.jar com.rushtech.urlshortener.dal.Resharder \
+ *     jdbc:sqlite:url_shortener_db.db jdbc:sqlite:url_shortener_db_%d.db 4
+ * </pre>
+ *
+ * Several sources are separated by commas; the target template takes the shard index through {@code %d}.
+ */
+public final class Resharder {
+
+    private static final Logger logger = LoggerFactory.getLogger(Resharder.class);
+    private static final int BUSY_TIMEOUT_MILLISECONDS = 30000;
+    private static final int SCAN_FETCH_SIZE = 1000;
+
+    private static final String SELECT_MAPPINGS =
+            "SELECT o.id, o.long_url, o.long_url_hash, o.created_at, o.expiration_date, t.token, t.is_alias " +
+                    "FROM original_urls o JOIN tokens t ON t.original_url_id = o.id ORDER BY o.id, t.id";
+    private static final String INSERT_ORIGINAL_URL =
+            "INSERT INTO original_urls (long_url, long_url_hash, created_at, expiration_date) VALUES (?, ?, ?, ?) RETURNING id";
+    private static final String INSERT_URL_MAPPING = "INSERT INTO tokens (token, original_url_id, is_alias) VALUES (?, ?, ?)";
+    private static final String SELECT_REDIRECT_COUNTS = "SELECT original_url, redirect_count FROM redirect_analytics";
+    private static final String ADD_REDIRECT_COUNT =
+            "INSERT INTO redirect_analytics (original_url, redirect_count) VALUES (?, ?) " +
+                    "ON CONFLICT(original_url) DO UPDATE SET redirect_count = redirect_count + excluded.redirect_count";
+    private static final String SELECT_TOKEN_SEQUENCES = "SELECT name, next_value FROM token_sequence";
+    private static final String RAISE_TOKEN_SEQUENCE =
+            "INSERT INTO token_sequence (name, next_value) VALUES (?, ?) " +
+                    "ON CONFLICT(name) DO UPDATE SET next_value = MAX(next_value, excluded.next_value)";
+
+    /**
+     * What a run copied. Displaced mappings are those whose token's shard is not their long URL's home shard; while
+     * there are any, run the server with {@code database.shardProbeAll=true}.
+     */
+    public record Result(long mappings, long displacedMappings, long redirectCounts) {
+    }
+
+    private final List<String> sourceUrls;
+    private final List<String> targetUrls;
+
+    public Resharder(List<String> sourceUrls, List<String> targetUrls) {
+        if (sourceUrls.stream().anyMatch(targetUrls::contains)) {
+            throw new IllegalArgumentException("Targets must be different databases from the sources");
+        }
+        this.sourceUrls = List.copyOf(sourceUrls);
+        this.targetUrls = List.copyOf(targetUrls);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: Resharder <source url>[,<source url>...] <target url template with %d> <target shard count>");
+            System.exit(2);
+        }
+        int shardCount = Integer.parseInt(args[2]);
+        List<String> targetUrls = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            targetUrls.add(String.format(args[1], shard));
+        }
+        Result result = new Resharder(Arrays.asList(args[0].split(",")), targetUrls).reshard();
+        System.out.printf("Copied %d mappings and %d redirect counts into %d shards%n",
+                result.mappings(), result.redirectCounts(), shardCount);
+        if (result.displacedMappings() > 0) {
+            System.out.printf("%d mappings are not on their long URL's home shard; run with database.shardProbeAll=true%n",
+                    result.displacedMappings());
+        }
+    }
+
+    public Result reshard() {
+        for (String databaseUrl : sourceUrls) {
+            new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, Metrics.globalRegistry).migrate();
+        }
+        for (String databaseUrl : targetUrls) {
+            new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, Metrics.globalRegistry).migrate();
+        }
+
+        List<Connection> targets = new ArrayList<>(targetUrls.size());
+        try {
+            for (String databaseUrl : targetUrls) {
+                Connection target = open(databaseUrl);
+                targets.add(target);
+                checkEmpty(target, databaseUrl);
+                target.setAutoCommit(false);
+            }
+            long mappings = 0;
+            long displacedMappings = 0;
+            long redirectCounts = 0;
+            Map<String, Long> tokenSequences = new HashMap<>();
+            for (String databaseUrl : sourceUrls) {
+                try (Connection source = open(databaseUrl)) {
+                    long[] copied = copyMappings(source, targets);
+                    mappings += copied[0];
+                    displacedMappings += copied[1];
+                    redirectCounts += copyRedirectCounts(source, targets);
+                    readTokenSequences(source, tokenSequences);
+                }
+                logger.info("Copied {} into {} shards", databaseUrl, targets.size());
+            }
+            // Token ids are reserved on the first shard, which must not hand out ids any source already used
+            try (PreparedStatement stmt = targets.get(0).prepareStatement(RAISE_TOKEN_SEQUENCE)) {
+                for (Map.Entry<String, Long> sequence : tokenSequences.entrySet()) {
+                    stmt.setString(1, sequence.getKey());
+                    stmt.setLong(2, sequence.getValue());
+                    stmt.executeUpdate();
+                }
+            }
+            for (Connection target : targets) {
+                target.commit();
+            }
+            return new Result(mappings, displacedMappings, redirectCounts);
+        } catch (SQLException e) {
+            logger.error("Error resharding", e);
+            throw new UrlShortenerDataAccessException("Error resharding", e);
+        } finally {
+            for (Connection target : targets) {
+                try {
+                    target.close();
+                } catch (SQLException e) {
+                    logger.error("Error closing connection", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of mappings copied and how many of them were displaced.
+     */
+    private static long[] copyMappings(Connection source, List<Connection> targets) throws SQLException {
+        int shardCount = targets.size();
+        List<PreparedStatement> insertUrls = new ArrayList<>(shardCount);
+        List<PreparedStatement> insertTokens = new ArrayList<>(shardCount);
+        try {
+            for (Connection target : targets) {
+                insertUrls.add(target.prepareStatement(INSERT_ORIGINAL_URL));
+                insertTokens.add(target.prepareStatement(INSERT_URL_MAPPING));
+            }
+            long mappings = 0;
+            long displacedMappings = 0;
+            long currentSourceId = -1;
+            // A long URL with several tokens is copied once to each shard its tokens route to
+            long[] targetIds = new long[shardCount];
+            try (Statement select = source.createStatement()) {
+                select.setFetchSize(SCAN_FETCH_SIZE);
+                try (ResultSet rs = select.executeQuery(SELECT_MAPPINGS)) {
+                    while (rs.next()) {
+                        long sourceId = rs.getLong("id");
+                        if (sourceId != currentSourceId) {
+                            currentSourceId = sourceId;
+                            Arrays.fill(targetIds, -1);
+                        }
+                        String longUrl = rs.getString("long_url");
+                        String token = rs.getString("token");
+                        int shard = ShardedUrlShortenerDAL.shardFor(token, shardCount);
+                        if (targetIds[shard] == -1) {
+                            PreparedStatement insertUrl = insertUrls.get(shard);
+                            insertUrl.setString(1, longUrl);
+                            insertUrl.setLong(2, rs.getLong("long_url_hash"));
+                            // Copied as stored, so timestamps keep whatever representation the source used
+                            insertUrl.setObject(3, rs.getObject("created_at"));
+                            insertUrl.setObject(4, rs.getObject("expiration_date"));
+                            try (ResultSet inserted = insertUrl.executeQuery()) {
+                                inserted.next();
+                                targetIds[shard] = inserted.getLong(1);
+                            }
+                        }
+                        PreparedStatement insertToken = insertTokens.get(shard);
+                        insertToken.setString(1, token);
+                        insertToken.setLong(2, targetIds[shard]);
+                        insertToken.setBoolean(3, rs.getBoolean("is_alias"));
+                        insertToken.executeUpdate();
+
+                        mappings++;
+                        if (ShardedUrlShortenerDAL.shardFor(longUrl, shardCount) != shard) {
+                            displacedMappings++;
+                        }
+                    }
+                }
+            }
+            return new long[]{mappings, displacedMappings};
+        } finally {
+            closeAll(insertUrls);
+            closeAll(insertTokens);
+        }
+    }
+
+    private static long copyRedirectCounts(Connection source, List<Connection> targets) throws SQLException {
+        List<PreparedStatement> addCounts = new ArrayList<>(targets.size());
+        try {
+            for (Connection target : targets) {
+                addCounts.add(target.prepareStatement(ADD_REDIRECT_COUNT));
+            }
+            long redirectCounts = 0;
+            try (Statement select = source.createStatement()) {
+                select.setFetchSize(SCAN_FETCH_SIZE);
+                try (ResultSet rs = select.executeQuery(SELECT_REDIRECT_COUNTS)) {
+                    while (rs.next()) {
+                        String originalUrl = rs.getString("original_url");
+                        PreparedStatement addCount = addCounts.get(ShardedUrlShortenerDAL.shardFor(originalUrl, targets.size()));
+                        addCount.setString(1, originalUrl);
+                        addCount.setLong(2, rs.getLong("redirect_count"));
+                        addCount.executeUpdate();
+                        redirectCounts++;
+                    }
+                }
+            }
+            return redirectCounts;
+        } finally {
+            closeAll(addCounts);
+        }
+    }
+
+    private static void readTokenSequences(Connection source, Map<String, Long> tokenSequences) throws SQLException {
+        try (Statement select = source.createStatement(); ResultSet rs = select.executeQuery(SELECT_TOKEN_SEQUENCES)) {
+            while (rs.next()) {
+                tokenSequences.merge(rs.getString("name"), rs.getLong("next_value"), Math::max);
+            }
+        }
+    }
+
+    private static void checkEmpty(Connection target, String databaseUrl) throws SQLException {
+        try (Statement stmt = target.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM original_urls) + (SELECT COUNT(*) FROM tokens)")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                throw new IllegalStateException("Target database is not empty: " + databaseUrl);
+            }
+        }
+    }
+
+    private static Connection open(String databaseUrl) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(BUSY_TIMEOUT_MILLISECONDS);
+        return DriverManager.getConnection(databaseUrl, config.toProperties());
+    }
+
+    private static void closeAll(List<PreparedStatement> statements) throws SQLException {
+        for (PreparedStatement stmt : statements) {
+            stmt.close();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.util.UrlHash;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings a SQLite database up to the schema {@link UrlShortenerDAL} expects. The schema version is kept in
+ * {@code PRAGMA user_version}; each pending migration runs in its own transaction and bumps it on commit, and every
+ * migration also copes with databases created before versions were tracked, so running it again is harmless. Each
+ * migration is logged and timed as {@code schema.migration}.
+ *
+ * <p>After migrating, the tables are analyzed, so the server's queries are planned with current statistics. Apart
+ * from that, the query plan of every lookup on the request path is checked against the schema alone. If any of them
+ * would scan a whole table, for example because an index is missing, {@link #migrate()} fails rather than letting
+ * the server start and slow down as the table grows.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+    private static final int HASH_BACKFILL_BATCH_SIZE = 1000;
+    // Caps the rows ANALYZE samples per index, so startup stays fast on large databases
+    private static final int ANALYSIS_LIMIT_ROWS = 1000;
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, MigrationStep step) {
+    }
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "create tables", SchemaMigrator::createTables),
+            new Migration(2, "add long_url_hash", SchemaMigrator::addLongUrlHashes),
+            new Migration(3, "drop long_url unique constraint", SchemaMigrator::dropLongUrlUniqueConstraint),
+            new Migration(4, "tune indexes", SchemaMigrator::tuneIndexes),
+            new Migration(5, "add custom aliases", SchemaMigrator::addAliases),
+            new Migration(6, "drop long_url unique indexes", SchemaMigrator::dropLongUrlUniqueIndexes)
+    );
+
+    // Secondary indexes of the latest schema, as "name ON table (columns)"
+    private static final List<String> SECONDARY_INDEXES = List.of(
+            // Covers the token lookups by original URL, so they never touch the tokens table itself
+            "idx_tokens_original_url_id_token ON tokens (original_url_id, token)",
+            "idx_original_urls_long_url_hash ON original_urls (long_url_hash)",
+            "idx_original_urls_expiration_date ON original_urls (expiration_date)",
+            // Lets the most redirected mappings be read in order instead of sorting the whole table
+            "idx_redirect_analytics_redirect_count ON redirect_analytics (redirect_count)"
+    );
+
+    static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    private final String databaseUrl;
+    private final int busyTimeoutMilliseconds;
+    private final MeterRegistry meterRegistry;
+
+    public SchemaMigrator(String databaseUrl, int busyTimeoutMilliseconds, MeterRegistry meterRegistry) {
+        this.databaseUrl = databaseUrl;
+        this.busyTimeoutMilliseconds = busyTimeoutMilliseconds;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Applies pending migrations and verifies the hot query plans.
+     *
+     * @throws IllegalStateException if a hot query would scan a whole table
+     */
+    public void migrate() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(busyTimeoutMilliseconds);
+        try (Connection conn = DriverManager.getConnection(databaseUrl, config.toProperties())) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+            }
+            int currentVersion = getUserVersion(conn);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() > currentVersion) {
+                    apply(conn, migration);
+                }
+            }
+            analyze(conn);
+            verifyQueryPlans(conn);
+        } catch (SQLException e) {
+            logger.error("Error migrating database schema", e);
+            throw new UrlShortenerDataAccessException("Error migrating database schema", e);
+        }
+    }
+
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try {
+            migration.step().apply(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("PRAGMA user_version = " + migration.version());
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        Timer.builder("schema.migration")
+                .description("Time spent applying a schema migration")
+                .tag("version", Integer.toString(migration.version()))
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        logger.info("Applied schema migration {} ({}) in {} ms", migration.version(), migration.description(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private static int getUserVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(createOriginalUrlsTable("original_urls"));
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS tokens (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "token TEXT NOT NULL UNIQUE, " +
+                    "original_url_id INTEGER NOT NULL, " +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "FOREIGN KEY(original_url_id) REFERENCES original_urls(id))");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS redirect_analytics (" +
+                    "original_url VARCHAR(255) NOT NULL, " +
+                    "redirect_count INT DEFAULT 0, " +
+                    "PRIMARY KEY (original_url))");
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS token_sequence (" +
+                    "name TEXT PRIMARY KEY, " +
+                    "next_value INTEGER NOT NULL)");
+        }
+    }
+
+    /**
+     * Databases created before long URLs were looked up by hash have no {@code long_url_hash} column. It is added
+     * and indexed, then filled in for existing rows in batches, each committed on its own, so a large table does
+     * not hold the write lock for the whole backfill.
+     */
+    private static void addLongUrlHashes(Connection conn) throws SQLException {
+        boolean hashColumnExists = false;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA table_info(original_urls)")) {
+            while (rs.next()) {
+                hashColumnExists |= "long_url_hash".equals(rs.getString("name"));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            if (!hashColumnExists) {
+                stmt.executeUpdate("ALTER TABLE original_urls ADD COLUMN long_url_hash INTEGER");
+            }
+            // Created before the backfill, so each batch finds the unhashed rows through the index
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_original_urls_long_url_hash ON original_urls (long_url_hash)");
+        }
+        conn.commit();
+
+        long backfilled = 0;
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT id, long_url FROM original_urls WHERE long_url_hash IS NULL LIMIT " + HASH_BACKFILL_BATCH_SIZE);
+             PreparedStatement update = conn.prepareStatement("UPDATE original_urls SET long_url_hash = ? WHERE id = ?")) {
+            int batched;
+            do {
+                batched = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        update.setLong(1, UrlHash.hash(rs.getString("long_url")));
+                        update.setLong(2, rs.getLong("id"));
+                        update.addBatch();
+                        batched++;
+                    }
+                }
+                if (batched > 0) {
+                    update.executeBatch();
+                }
+                conn.commit();
+                backfilled += batched;
+            } while (batched == HASH_BACKFILL_BATCH_SIZE);
+        }
+        if (backfilled > 0) {
+            logger.info("Backfilled long_url_hash for {} original URLs", backfilled);
+        }
+    }
+
+    private static String createOriginalUrlsTable(String name) {
+        return "CREATE TABLE IF NOT EXISTS " + name + " (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "long_url TEXT NOT NULL, " +
+                "long_url_hash INTEGER NOT NULL, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "expiration_date TIMESTAMP)";
+    }
+
+    /**
+     * Older databases enforce {@code UNIQUE} on {@code long_url}, an index over the full text of every URL that
+     * duplicates what the hash index does, and that the planner prefers for lookups by URL. SQLite cannot drop a
+     * constraint in place, so the table is rebuilt without it: copied into a new table, which then replaces it.
+     */
+    private static void dropLongUrlUniqueConstraint(Connection conn) throws SQLException {
+        boolean hasUniqueConstraint = false;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA index_list(original_urls)")) {
+            while (rs.next()) {
+                hasUniqueConstraint |= "u".equals(rs.getString("origin"));
+            }
+        }
+        if (!hasUniqueConstraint) {
+            return;
+        }
+        List<String> columns = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA table_info(original_urls)")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        // Tables created before created_at existed lack it; the rebuilt rows then take its default
+        columns.retainAll(List.of("id", "long_url", "long_url_hash", "created_at", "expiration_date"));
+        String columnList = String.join(", ", columns);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(createOriginalUrlsTable("original_urls_rebuilt"));
+            stmt.executeUpdate("INSERT INTO original_urls_rebuilt (" + columnList + ") SELECT " + columnList + " FROM original_urls");
+            stmt.executeUpdate("DROP TABLE original_urls");
+            stmt.executeUpdate("ALTER TABLE original_urls_rebuilt RENAME TO original_urls");
+        }
+    }
+
+    /**
+     * Some databases were shipped with a unique index on {@code long_url} created on its own rather than as a table
+     * constraint. It costs what the constraint did, but the table rebuild above neither sees it nor, on databases
+     * migrated past it already, runs again, so any unique index on {@code long_url} alone is dropped here.
+     */
+    private static void dropLongUrlUniqueIndexes(Connection conn) throws SQLException {
+        List<String> uniqueIndexes = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA index_list(original_urls)")) {
+            while (rs.next()) {
+                if (rs.getBoolean("unique") && "c".equals(rs.getString("origin"))) {
+                    uniqueIndexes.add(rs.getString("name"));
+                }
+            }
+        }
+        for (String index : uniqueIndexes) {
+            List<String> columns = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT name FROM pragma_index_info(?)")) {
+                stmt.setString(1, index);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        columns.add(rs.getString("name"));
+                    }
+                }
+            }
+            if (columns.equals(List.of("long_url"))) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DROP INDEX \"" + index + "\"");
+                }
+            }
+        }
+    }
+
+    /**
+     * The covering token index supersedes the single-column one older databases were created with, and the
+     * {@code original_urls} indexes went with the old table if it was rebuilt.
+     */
+    private static void tuneIndexes(Connection conn) throws SQLException {
+        createIndexes(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DROP INDEX IF EXISTS idx_tokens_original_url_id");
+        }
+    }
+
+    /**
+     * Custom aliases are tokens flagged with {@code is_alias}. Their partial index makes them unique ignoring case
+     * among themselves, while generated tokens stay case-sensitive and cost the index nothing. It is a constraint
+     * rather than a lookup index, so it is not among the secondary indexes a bulk load drops.
+     */
+    private static void addAliases(Connection conn) throws SQLException {
+        boolean aliasColumnExists = false;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA table_info(tokens)")) {
+            while (rs.next()) {
+                aliasColumnExists |= "is_alias".equals(rs.getString("name"));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            if (!aliasColumnExists) {
+                stmt.executeUpdate("ALTER TABLE tokens ADD COLUMN is_alias INTEGER NOT NULL DEFAULT 0");
+            }
+            stmt.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS idx_tokens_alias ON tokens (token COLLATE NOCASE) WHERE is_alias = 1");
+        }
+    }
+
+    /**
+     * Creates whichever secondary indexes are missing.
+     */
+    static void createIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String index : SECONDARY_INDEXES) {
+                stmt.executeUpdate("CREATE INDEX IF NOT EXISTS " + index);
+            }
+        }
+    }
+
+    /**
+     * Drops the secondary indexes ahead of a bulk load, which then only maintains the unique indexes; building each
+     * index once afterwards with {@link #createIndexes} is much cheaper than updating it row by row. Lookups scan
+     * whole tables until then, so this is only for databases the server is not using.
+     */
+    static void dropIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String index : SECONDARY_INDEXES) {
+                stmt.executeUpdate("DROP INDEX IF EXISTS " + index.substring(0, index.indexOf(' ')));
+            }
+        }
+    }
+
+    private static void analyze(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA analysis_limit=" + ANALYSIS_LIMIT_ROWS);
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    /**
+     * Plans are taken from an empty in-memory copy of the schema, without the statistics ANALYZE gathered. The planner
+     * then assumes large tables, so the plans show what the indexes allow, rather than the scans it rightly picks for
+     * tables that are still small.
+     */
+    private static void verifyQueryPlans(Connection conn) throws SQLException {
+        List<String> fullScans = new ArrayList<>();
+        try (Connection schemaCopy = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            copySchema(conn, schemaCopy);
+            for (String query : UrlShortenerDAL.INDEXED_QUERIES) {
+                try (PreparedStatement stmt = schemaCopy.prepareStatement("EXPLAIN QUERY PLAN " + query);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String detail = rs.getString("detail");
+                        // SEARCH goes through an index or the rowid; SCAN reads every row of a table or index
+                        if (detail.startsWith("SCAN")) {
+                            fullScans.add(detail + " in: " + query);
+                        }
+                    }
+                }
+            }
+        }
+        if (!fullScans.isEmpty()) {
+            throw new IllegalStateException("Hot queries would scan whole tables: " + String.join("; ", fullScans));
+        }
+    }
+
+    private static void copySchema(Connection source, Connection target) throws SQLException {
+        // Internal tables such as sqlite_sequence and sqlite_stat1 cannot be created directly, and SQLite recreates
+        // the indexes behind UNIQUE and PRIMARY KEY constraints, which have no SQL of their own, with their tables
+        try (Statement select = source.createStatement();
+             ResultSet rs = select.executeQuery("SELECT sql FROM sqlite_master WHERE sql IS NOT NULL AND name NOT LIKE 'sqlite_%' ORDER BY rowid");
+             Statement create = target.createStatement()) {
+            while (rs.next()) {
+                create.executeUpdate(rs.getString("sql"));
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.UrlHash;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Spreads mappings over several {@link IUrlShortenerDAL} shards, each with its own database file, pools and writer,
+ * so writes to different shards never wait on the same SQLite lock. Lookups by token go to the shard picked by the
+ * token's hash, lookups by long URL to the long URL's home shard, picked by its hash. New URLs are stored on their
+ * home shard under a token drawn until one hashes to that same shard, so both routes lead to the same place and a
+ * shard's transaction still guarantees that concurrent calls for one URL agree on its token.
+ *
+ * <p>Original URL ids carry their shard in the bits above {@link #SHARD_ID_SHIFT}. The token id sequence lives on
+ * the first shard, and redirect counts on the long URL's home shard.
+ *
+ * <p>Resharding with {@link Resharder} moves each mapping to the shard of its token, which is no longer the home
+ * shard of its long URL for most of them. With {@code probeAllShards}, a long URL missing from its home shard is
+ * looked for on every other shard before it is stored, so such mappings keep being reused.
+ */
+public class ShardedUrlShortenerDAL implements IUrlShortenerDAL {
+
+    static final int SHARD_ID_SHIFT = 48;
+    private static final long LOCAL_ID_MASK = (1L << SHARD_ID_SHIFT) - 1;
+    // A token hashes to a given shard with probability 1/shards, so running out of draws means a broken supplier
+    private static final int MAX_TOKEN_DRAWS_PER_SHARD = 64;
+
+    private final List<IUrlShortenerDAL> shards;
+    private final boolean probeAllShards;
+    private final AtomicInteger nextSweepShard = new AtomicInteger();
+
+    public ShardedUrlShortenerDAL(List<? extends IUrlShortenerDAL> shards, boolean probeAllShards) {
+        if (shards.isEmpty() || shards.size() > 1 << (Long.SIZE - 1 - SHARD_ID_SHIFT)) {
+            throw new IllegalArgumentException("Shard count out of range: " + shards.size());
+        }
+        this.shards = List.copyOf(shards);
+        this.probeAllShards = probeAllShards;
+    }
+
+    /**
+     * The shard {@code key}, a token or a long URL, is routed to among {@code shardCount} shards.
+     */
+    public static int shardFor(String key, int shardCount) {
+        return (int) Long.remainderUnsigned(UrlHash.hash(key), shardCount);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        return shards.get(tokenShard(token)).getOriginalUrl(token);
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        int shard = longUrlShard(longUrl);
+        return globalId(shard, shards.get(shard).getOriginalUrlId(longUrl));
+    }
+
+    @Override
+    public void updateToken(String token, long originalUrlId) {
+        int shard = checkTokenShard(token, originalUrlId);
+        shards.get(shard).updateToken(token, localId(originalUrlId));
+    }
+
+    @Override
+    public long insertOriginalUrl(String longUrl) {
+        int shard = urlShard(longUrl);
+        return globalId(shard, shards.get(shard).insertOriginalUrl(longUrl));
+    }
+
+    @Override
+    public void insertUrlMapping(String token, long originalUrlId) {
+        int shard = checkTokenShard(token, originalUrlId);
+        shards.get(shard).insertUrlMapping(token, localId(originalUrlId));
+    }
+
+    @Override
+    public String getTokenForOriginalUrl(long originalUrlId) {
+        return shards.get(shardOf(originalUrlId)).getTokenForOriginalUrl(localId(originalUrlId));
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        Map<String, String> tokensByLongUrl = new HashMap<>();
+        routeLongUrls(longUrls).forEach((shard, shardUrls) ->
+                tokensByLongUrl.putAll(shards.get(shard).getTokensForLongUrls(shardUrls.stored)));
+        return tokensByLongUrl;
+    }
+
+    @Override
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        Map<Integer, ShardUrls> urlsByShard = routeLongUrls(List.of(longUrl));
+        int shard = urlsByShard.keySet().iterator().next();
+        return shards.get(shard).shortenOrGet(longUrl, tokensForShard(shard, urlsByShard.get(shard).unstored.size(), tokenSupplier));
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        Map<String, String> tokensByLongUrl = new HashMap<>();
+        routeLongUrls(longUrls).forEach((shard, shardUrls) -> tokensByLongUrl.putAll(shards.get(shard).shortenOrGetBatch(
+                shardUrls.all(), tokensForShard(shard, shardUrls.unstored.size(), tokenSupplier))));
+        return tokensByLongUrl;
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        return shards.get(tokenShard(token)).deleteShortUrl(token);
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        shards.get(urlShard(originalUrl)).incrementRedirectCount(originalUrl);
+    }
+
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        Map<Integer, Map<String, Long>> deltasByShard = new HashMap<>();
+        redirectCountDeltas.forEach((originalUrl, delta) ->
+                deltasByShard.computeIfAbsent(urlShard(originalUrl), key -> new HashMap<>()).put(originalUrl, delta));
+        deltasByShard.forEach((shard, deltas) -> shards.get(shard).incrementRedirectCounts(deltas));
+    }
+
+    /**
+     * Stored on the shard of the alias, like any token. Aliases differing only in case usually hash to different
+     * shards, where the database cannot tell them apart; the in-memory alias index does, on each server.
+     */
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        return shards.get(tokenShard(alias)).insertAlias(longUrl, alias);
+    }
+
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        for (IUrlShortenerDAL shard : shards) {
+            shard.forEachToken(tokenConsumer);
+        }
+    }
+
+    /**
+     * Redirect counts live on the long URL's home shard, so a mapping displaced by resharding reports none; another
+     * token of the same URL on its home shard still carries the count.
+     */
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        for (IUrlShortenerDAL shard : shards) {
+            shard.forEachMapping(mappingConsumer);
+        }
+    }
+
+    @Override
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        for (IUrlShortenerDAL shard : shards) {
+            shard.forEachAlias(aliasConsumer);
+        }
+    }
+
+    /**
+     * Takes up to {@code limit} expired mappings from the shards in turn, starting one shard further along on each
+     * call, so that a backlog on one shard does not starve the others.
+     */
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        int deletedUrls = 0;
+        List<String> deletedTokens = new ArrayList<>();
+        int firstShard = Math.floorMod(nextSweepShard.getAndIncrement(), shards.size());
+        for (int i = 0; i < shards.size() && deletedUrls < limit; i++) {
+            IUrlShortenerDAL shard = shards.get((firstShard + i) % shards.size());
+            DeletedMappings deleted = shard.deleteExpiredMappings(limit - deletedUrls);
+            deletedUrls += deleted.getDeletedUrls();
+            deletedTokens.addAll(deleted.getTokens());
+        }
+        return new DeletedMappings(deletedUrls, deletedTokens);
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        long expired = 0;
+        for (IUrlShortenerDAL shard : shards) {
+            long shardExpired = shard.countExpiredMappings();
+            if (shardExpired < 0) {
+                return shardExpired;
+            }
+            expired += shardExpired;
+        }
+        return expired;
+    }
+
+    /**
+     * Interleaves the shards' own rankings. Long URLs are spread evenly over the shards, so this approximates the
+     * global ranking closely enough for warming the cache.
+     */
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        List<Iterator<Map.Entry<String, String>>> rankings = new ArrayList<>(shards.size());
+        for (IUrlShortenerDAL shard : shards) {
+            rankings.add(shard.getMostRedirectedMappings(limit).entrySet().iterator());
+        }
+        Map<String, String> mappings = new LinkedHashMap<>();
+        boolean remaining = true;
+        while (remaining && mappings.size() < limit) {
+            remaining = false;
+            for (Iterator<Map.Entry<String, String>> ranking : rankings) {
+                if (ranking.hasNext() && mappings.size() < limit) {
+                    Map.Entry<String, String> mapping = ranking.next();
+                    mappings.put(mapping.getKey(), mapping.getValue());
+                    remaining = true;
+                }
+            }
+        }
+        return mappings;
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        return shards.get(0).reserveTokenIdBlock(blockSize);
+    }
+
+    @Override
+    public long getNextTokenId() {
+        return shards.get(0).getNextTokenId();
+    }
+
+    private int tokenShard(String token) {
+        return shardFor(token, shards.size());
+    }
+
+    private int urlShard(String longUrl) {
+        return shardFor(longUrl, shards.size());
+    }
+
+    /**
+     * The shard to look up or store {@code longUrl} on: its home shard, unless probing finds its token on another one.
+     */
+    private int longUrlShard(String longUrl) {
+        return probeAllShards ? routeLongUrls(List.of(longUrl)).keySet().iterator().next() : urlShard(longUrl);
+    }
+
+    /**
+     * Groups {@code longUrls} by the shard to look them up or store them on, as {@link #longUrlShard} picks it, and
+     * tells the URLs with a generated token there from the rest. Each shard is asked once, about all the URLs at a
+     * time. A shard can hold a long URL only for an alias that routed there, which shortening the URL does not return,
+     * so such URLs count as not stored.
+     */
+    private Map<Integer, ShardUrls> routeLongUrls(List<String> longUrls) {
+        Map<Integer, ShardUrls> urlsByShard = new HashMap<>();
+        if (shards.size() == 1) {
+            urlsByShard.put(0, new ShardUrls(new ArrayList<>(new LinkedHashSet<>(longUrls)), List.of()));
+            return urlsByShard;
+        }
+        Map<Integer, List<String>> longUrlsByHomeShard = new HashMap<>();
+        for (String longUrl : new LinkedHashSet<>(longUrls)) {
+            longUrlsByHomeShard.computeIfAbsent(urlShard(longUrl), key -> new ArrayList<>()).add(longUrl);
+        }
+        List<String> unstored = new ArrayList<>();
+        longUrlsByHomeShard.forEach((shard, shardLongUrls) -> {
+            Map<String, String> tokensByLongUrl = shards.get(shard).getTokensForLongUrls(shardLongUrls);
+            for (String longUrl : shardLongUrls) {
+                (tokensByLongUrl.containsKey(longUrl) ? shardUrls(urlsByShard, shard).stored : unstored).add(longUrl);
+            }
+        });
+        for (int shard = 0; probeAllShards && shard < shards.size() && !unstored.isEmpty(); shard++) {
+            List<String> candidates = new ArrayList<>();
+            for (String longUrl : unstored) {
+                if (urlShard(longUrl) != shard) {
+                    candidates.add(longUrl);
+                }
+            }
+            Set<String> found = shards.get(shard).getTokensForLongUrls(candidates).keySet();
+            shardUrls(urlsByShard, shard).stored.addAll(found);
+            unstored.removeAll(found);
+        }
+        for (String longUrl : unstored) {
+            shardUrls(urlsByShard, urlShard(longUrl)).unstored.add(longUrl);
+        }
+        urlsByShard.values().removeIf(shardUrls -> shardUrls.all().isEmpty());
+        return urlsByShard;
+    }
+
+    private static ShardUrls shardUrls(Map<Integer, ShardUrls> urlsByShard, int shard) {
+        return urlsByShard.computeIfAbsent(shard, key -> new ShardUrls(new ArrayList<>(), new ArrayList<>()));
+    }
+
+    /**
+     * Draws the {@code unstored} tokens a write to {@code shard} is expected to need before it starts, as finding ones
+     * that hash there takes several draws and a sequence generator may lease ids from the first shard on any of them,
+     * which must not happen inside that shard's own transaction. Only retries after collisions, and URLs deleted in
+     * the meantime, draw more.
+     */
+    private Supplier<String> tokensForShard(int shard, int unstored, Supplier<String> tokenSupplier) {
+        if (shards.size() == 1) {
+            return tokenSupplier;
+        }
+        Supplier<String> shardTokens = () -> {
+            for (int draw = 0; draw < MAX_TOKEN_DRAWS_PER_SHARD * shards.size(); draw++) {
+                String token = tokenSupplier.get();
+                if (tokenShard(token) == shard) {
+                    return token;
+                }
+            }
+            throw new UrlShortenerDataAccessException("Token supplier produced no token for shard " + shard, null);
+        };
+        Deque<String> drawnTokens = new ArrayDeque<>(unstored);
+        for (int i = 0; i < unstored; i++) {
+            drawnTokens.add(shardTokens.get());
+        }
+        return () -> drawnTokens.isEmpty() ? shardTokens.get() : drawnTokens.poll();
+    }
+
+    /**
+     * Tokens are only ever looked up on the shard they hash to, so a mapping stored anywhere else would be lost.
+     */
+    private int checkTokenShard(String token, long originalUrlId) {
+        int shard = shardOf(originalUrlId);
+        if (tokenShard(token) != shard) {
+            throw new IllegalArgumentException("Token " + token + " does not route to shard " + shard + " of original URL " + originalUrlId);
+        }
+        return shard;
+    }
+
+    private static long globalId(int shard, long localId) {
+        return localId < 0 ? localId : (long) shard << SHARD_ID_SHIFT | localId;
+    }
+
+    private static int shardOf(long originalUrlId) {
+        return (int) (originalUrlId >>> SHARD_ID_SHIFT);
+    }
+
+    private static long localId(long originalUrlId) {
+        return originalUrlId & LOCAL_ID_MASK;
+    }
+
+    /**
+     * The URLs a shard already holds with a generated token, and those it is to store.
+     */
+    private record ShardUrls(List<String> stored, List<String> unstored) {
+
+        List<String> all() {
+            List<String> all = new ArrayList<>(stored);
+            all.addAll(unstored);
+            return all;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorates an {@link IUrlShortenerDAL} with a {@code dal.calls} timer per method.
+ * Timers are created once up front, so recording a call costs a couple of clock reads and a histogram update.
+ */
+public class TimedUrlShortenerDAL implements IUrlShortenerDAL {
+
+    private final IUrlShortenerDAL delegate;
+
+    private final Timer getOriginalUrlTimer;
+    private final Timer getOriginalUrlIdTimer;
+    private final Timer updateTokenTimer;
+    private final Timer insertOriginalUrlTimer;
+    private final Timer insertUrlMappingTimer;
+    private final Timer getTokenForOriginalUrlTimer;
+    private final Timer getTokensForLongUrlsTimer;
+    private final Timer shortenOrGetTimer;
+    private final Timer shortenOrGetBatchTimer;
+    private final Timer deleteShortUrlTimer;
+    private final Timer incrementRedirectCountTimer;
+    private final Timer incrementRedirectCountsTimer;
+    private final Timer forEachTokenTimer;
+    private final Timer forEachMappingTimer;
+    private final Timer insertAliasTimer;
+    private final Timer forEachAliasTimer;
+    private final Timer reserveTokenIdBlockTimer;
+    private final Timer getNextTokenIdTimer;
+    private final Timer deleteExpiredMappingsTimer;
+    private final Timer countExpiredMappingsTimer;
+    private final Timer getMostRedirectedMappingsTimer;
+
+    public TimedUrlShortenerDAL(IUrlShortenerDAL delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.getOriginalUrlTimer = timer(meterRegistry, "getOriginalUrl");
+        this.getOriginalUrlIdTimer = timer(meterRegistry, "getOriginalUrlId");
+        this.updateTokenTimer = timer(meterRegistry, "updateToken");
+        this.insertOriginalUrlTimer = timer(meterRegistry, "insertOriginalUrl");
+        this.insertUrlMappingTimer = timer(meterRegistry, "insertUrlMapping");
+        this.getTokenForOriginalUrlTimer = timer(meterRegistry, "getTokenForOriginalUrl");
+        this.getTokensForLongUrlsTimer = timer(meterRegistry, "getTokensForLongUrls");
+        this.shortenOrGetTimer = timer(meterRegistry, "shortenOrGet");
+        this.shortenOrGetBatchTimer = timer(meterRegistry, "shortenOrGetBatch");
+        this.deleteShortUrlTimer = timer(meterRegistry, "deleteShortUrl");
+        this.incrementRedirectCountTimer = timer(meterRegistry, "incrementRedirectCount");
+        this.incrementRedirectCountsTimer = timer(meterRegistry, "incrementRedirectCounts");
+        this.forEachTokenTimer = timer(meterRegistry, "forEachToken");
+        this.forEachMappingTimer = timer(meterRegistry, "forEachMapping");
+        this.insertAliasTimer = timer(meterRegistry, "insertAlias");
+        this.forEachAliasTimer = timer(meterRegistry, "forEachAlias");
+        this.reserveTokenIdBlockTimer = timer(meterRegistry, "reserveTokenIdBlock");
+        this.getNextTokenIdTimer = timer(meterRegistry, "getNextTokenId");
+        this.deleteExpiredMappingsTimer = timer(meterRegistry, "deleteExpiredMappings");
+        this.countExpiredMappingsTimer = timer(meterRegistry, "countExpiredMappings");
+        this.getMostRedirectedMappingsTimer = timer(meterRegistry, "getMostRedirectedMappings");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String method) {
+        return Timer.builder("dal.calls")
+                .description("Time spent in IUrlShortenerDAL methods")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        return getOriginalUrlTimer.record(() -> delegate.getOriginalUrl(token));
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        return getOriginalUrlIdTimer.record(() -> delegate.getOriginalUrlId(longUrl));
+    }
+
+    @Override
+    public void updateToken(String token, long originalUrlId) {
+        updateTokenTimer.record(() -> delegate.updateToken(token, originalUrlId));
+    }
+
+    @Override
+    public long insertOriginalUrl(String longUrl) {
+        return insertOriginalUrlTimer.record(() -> delegate.insertOriginalUrl(longUrl));
+    }
+
+    @Override
+    public void insertUrlMapping(String token, long originalUrlId) {
+        insertUrlMappingTimer.record(() -> delegate.insertUrlMapping(token, originalUrlId));
+    }
+
+    @Override
+    public String getTokenForOriginalUrl(long originalUrlId) {
+        return getTokenForOriginalUrlTimer.record(() -> delegate.getTokenForOriginalUrl(originalUrlId));
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        return getTokensForLongUrlsTimer.record(() -> delegate.getTokensForLongUrls(longUrls));
+    }
+
+    @Override
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
+        return shortenOrGetTimer.record(() -> delegate.shortenOrGet(longUrl, tokenSupplier));
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        return shortenOrGetBatchTimer.record(() -> delegate.shortenOrGetBatch(longUrls, tokenSupplier));
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        return deleteShortUrlTimer.record(() -> delegate.deleteShortUrl(token));
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        incrementRedirectCountTimer.record(() -> delegate.incrementRedirectCount(originalUrl));
+    }
+
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        incrementRedirectCountsTimer.record(() -> delegate.incrementRedirectCounts(redirectCountDeltas));
+    }
+
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        forEachTokenTimer.record(() -> delegate.forEachToken(tokenConsumer));
+    }
+
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        forEachMappingTimer.record(() -> delegate.forEachMapping(mappingConsumer));
+    }
+
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        return insertAliasTimer.record(() -> delegate.insertAlias(longUrl, alias));
+    }
+
+    @Override
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        forEachAliasTimer.record(() -> delegate.forEachAlias(aliasConsumer));
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        return reserveTokenIdBlockTimer.record(() -> delegate.reserveTokenIdBlock(blockSize));
+    }
+
+    @Override
+    public long getNextTokenId() {
+        return getNextTokenIdTimer.record(() -> delegate.getNextTokenId());
+    }
+
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        return deleteExpiredMappingsTimer.record(() -> delegate.deleteExpiredMappings(limit));
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        return countExpiredMappingsTimer.record(() -> delegate.countExpiredMappings());
+    }
+
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        return getMostRedirectedMappingsTimer.record(() -> delegate.getMostRedirectedMappings(limit));
+    }
+}
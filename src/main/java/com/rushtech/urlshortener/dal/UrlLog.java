@@ -0,0 +1,300 @@
+package com.rushtech.urlshortener.dal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record file behind {@link LogStructuredUrlShortenerDAL}. Every record is framed as
+ * {@code [int payload length][int CRC32 of type and payload][byte type][payload]}, so a record torn by a crash
+ * is detected on replay and cut off together with everything after it.
+ */
+final class UrlLog implements AutoCloseable {
+
+    /** {@code long id, long expiration millis, string long URL}; a later record for the same id replaces it. */
+    static final byte URL = 1;
+    /** {@code long URL id, string token} */
+    static final byte TOKEN = 2;
+    /** {@code long URL id, string token}: replaces every token of the URL with this one. */
+    static final byte REPLACE_TOKENS = 3;
+    /** {@code long URL id}: deletes the URL and its tokens. */
+    static final byte DELETE_URL = 4;
+    /** {@code long delta, string long URL} */
+    static final byte REDIRECTS = 5;
+    /** {@code long next value} */
+    static final byte TOKEN_SEQUENCE = 6;
+    /** {@code long next URL id}, so ids of deleted URLs are not handed out again after compaction. */
+    static final byte URL_ID_WATERMARK = 7;
+    /** {@code long URL id, string alias}: a token that no other alias may equal ignoring case. */
+    static final byte ALIAS = 8;
+    /** {@code long URL id, string token}: deletes one of the URL's tokens, which keeps the others. */
+    static final byte DELETE_TOKEN = 9;
+
+    static final int RECORD_HEADER_BYTES = 9;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 24;
+    private static final int TYPICAL_RECORD_BYTES = 256;
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(TYPICAL_RECORD_BYTES));
+    private long size;
+
+    UrlLog(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+
+    interface RecordVisitor {
+        void visit(long offset, int recordBytes, byte type, ByteBuffer payload);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Visits every intact record in order and truncates the file at the first torn or corrupt one.
+     * Returns the number of bytes cut off.
+     */
+    long replay(RecordVisitor visitor) throws IOException {
+        long offset = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        CRC32 crc = new CRC32();
+        try {
+            while (offset < size) {
+                int payloadLength = in.readInt();
+                int checksum = in.readInt();
+                byte type = in.readByte();
+                if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES || offset + RECORD_HEADER_BYTES + payloadLength > size) {
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                visitor.visit(offset, RECORD_HEADER_BYTES + payloadLength, type, ByteBuffer.wrap(payload));
+                offset += RECORD_HEADER_BYTES + payloadLength;
+            }
+        } catch (EOFException e) {
+            // torn header at the tail, cut off below
+        }
+        long truncated = size - offset;
+        if (truncated > 0) {
+            channel.truncate(offset);
+            size = offset;
+        }
+        return truncated;
+    }
+
+    /**
+     * Appends the records in {@code records} and returns the file offset of the first one.
+     */
+    long append(RecordBuffer records) throws IOException {
+        long offset = size;
+        ByteBuffer buffer = records.toByteBuffer();
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    /**
+     * Appends the records from {@code offset} to the end of this log to {@code target}, byte for byte, and returns the
+     * offset in {@code target} of the first one.
+     */
+    long copyTo(long offset, UrlLog target) throws IOException {
+        long targetOffset = target.size;
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+        for (long position = offset; position < size; ) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            readFully(buffer, position);
+            position += buffer.flip().remaining();
+            while (buffer.hasRemaining()) {
+                target.size += target.channel.write(buffer, target.size);
+            }
+        }
+        return targetOffset;
+    }
+
+    /**
+     * Reads the {@link #URL} record at {@code offset}, usually with a single positional read.
+     */
+    UrlRecord readUrlRecord(long offset) throws IOException {
+        ByteBuffer buffer = readBuffers.get();
+        buffer.clear().limit((int) Math.min(buffer.capacity(), size - offset));
+        readFully(buffer, offset);
+        buffer.flip();
+        int payloadLength = buffer.getInt();
+        buffer.getInt();
+        if (buffer.get() != URL) {
+            throw new IOException("No URL record at offset " + offset);
+        }
+        if (buffer.remaining() < payloadLength) {
+            buffer = ByteBuffer.allocate(payloadLength);
+            readFully(buffer, offset + RECORD_HEADER_BYTES);
+            buffer.flip();
+        }
+        return new UrlRecord(buffer.getLong(), buffer.getLong(), getString(buffer));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of log at " + position);
+            }
+            position += read;
+        }
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static final class UrlRecord {
+        final long id;
+        final long expirationMillis;
+        final String longUrl;
+
+        UrlRecord(long id, long expirationMillis, String longUrl) {
+            this.id = id;
+            this.expirationMillis = expirationMillis;
+            this.longUrl = longUrl;
+        }
+    }
+
+    /**
+     * Frames records in memory so a whole write is appended with one call, and lets the writer apply them
+     * through the same {@link RecordVisitor} used on replay.
+     */
+    static final class RecordBuffer {
+
+        private byte[] bytes = new byte[TYPICAL_RECORD_BYTES];
+        private int position;
+        private int recordStart = -1;
+
+        boolean isEmpty() {
+            return position == 0;
+        }
+
+        int size() {
+            return position;
+        }
+
+        void url(long id, long expirationMillis, String longUrl) {
+            begin(URL);
+            putLong(id);
+            putLong(expirationMillis);
+            putString(longUrl);
+            end();
+        }
+
+        void token(byte type, long urlId, String token) {
+            begin(type);
+            putLong(urlId);
+            putString(token);
+            end();
+        }
+
+        void deleteUrl(long id) {
+            begin(DELETE_URL);
+            putLong(id);
+            end();
+        }
+
+        void redirects(long delta, String longUrl) {
+            begin(REDIRECTS);
+            putLong(delta);
+            putString(longUrl);
+            end();
+        }
+
+        void value(byte type, long value) {
+            begin(type);
+            putLong(value);
+            end();
+        }
+
+        /**
+         * Visits the buffered records as if they had been replayed from {@code baseOffset}.
+         */
+        void forEach(long baseOffset, RecordVisitor visitor) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, position);
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                int payloadLength = buffer.getInt();
+                buffer.getInt();
+                byte type = buffer.get();
+                ByteBuffer payload = buffer.slice(buffer.position(), payloadLength);
+                visitor.visit(baseOffset + start, RECORD_HEADER_BYTES + payloadLength, type, payload);
+                buffer.position(buffer.position() + payloadLength);
+            }
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(bytes, 0, position);
+        }
+
+        private void begin(byte type) {
+            ensureCapacity(RECORD_HEADER_BYTES);
+            recordStart = position;
+            position += RECORD_HEADER_BYTES - 1;
+            bytes[position++] = type;
+        }
+
+        private void end() {
+            int payloadLength = position - recordStart - RECORD_HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, recordStart + RECORD_HEADER_BYTES - 1, payloadLength + 1);
+            ByteBuffer.wrap(bytes, recordStart, RECORD_HEADER_BYTES - 1).putInt(payloadLength).putInt((int) crc.getValue());
+            recordStart = -1;
+        }
+
+        private void putLong(long value) {
+            ensureCapacity(Long.BYTES);
+            ByteBuffer.wrap(bytes, position, Long.BYTES).putLong(value);
+            position += Long.BYTES;
+        }
+
+        private void putString(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(Integer.BYTES + encoded.length);
+            ByteBuffer.wrap(bytes, position, Integer.BYTES).putInt(encoded.length);
+            position += Integer.BYTES;
+            System.arraycopy(encoded, 0, bytes, position, encoded.length);
+            position += encoded.length;
+        }
+
+        private void ensureCapacity(int additionalBytes) {
+            if (position + additionalBytes > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + additionalBytes));
+            }
+        }
+    }
+}
@@ -1,73 +1,246 @@
 package com.rushtech.urlshortener.dal;
 
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.UrlHash;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
 
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class UrlShortenerDAL implements IUrlShortenerDAL {
+public class UrlShortenerDAL implements IUrlShortenerDAL, AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(UrlShortenerDAL.class);
+    private static final int TOKEN_SCAN_FETCH_SIZE = 1000;
+    private static final int MAX_TOKEN_INSERT_ATTEMPTS = 5;
+    private static final int MAX_IN_CLAUSE_PARAMETERS = 500;
+    private static final String TOKEN_SEQUENCE_NAME = "tokens";
+    // Walks the expiration_date index, so each sweep batch only touches the rows it deletes
+    private static final String EXPIRED_ORIGINAL_URL_IDS =
+            "(SELECT id FROM original_urls WHERE expiration_date <= ? ORDER BY expiration_date, id LIMIT ?)";
 
-    private final HikariDataSource dataSource;
+    private static final String SELECT_ORIGINAL_URL =
+            "SELECT ou.long_url " +
+                    "FROM original_urls ou " +
+                    "JOIN tokens t ON ou.id = t.original_url_id " +
+                    "WHERE t.token = ? AND (ou.expiration_date IS NULL OR ou.expiration_date > ?)";
+    // Finds the row through the fixed-width hash index and confirms the full URL, in case two URLs share a hash
+    private static final String SELECT_ORIGINAL_URL_ID = "SELECT id FROM original_urls WHERE long_url_hash = ? AND long_url = ?";
+    private static final String UPDATE_TOKEN = "UPDATE tokens SET token = ? WHERE original_url_id = ?";
+    private static final String INSERT_ORIGINAL_URL = "INSERT INTO original_urls (long_url, long_url_hash, expiration_date) VALUES (?, ?, ?) RETURNING id";
+    private static final String INSERT_URL_MAPPING = "INSERT INTO tokens (token, original_url_id) VALUES (?, ?)";
+    // A URL's first generated token, so the one handed out does not change as aliases and other tokens are added
+    private static final String SELECT_TOKEN_FOR_ORIGINAL_URL =
+            "SELECT token FROM tokens WHERE original_url_id = ? AND is_alias = 0 ORDER BY tokens.id LIMIT 1";
+    private static final String RENEW_EXPIRED_ORIGINAL_URL =
+            "UPDATE original_urls SET expiration_date = ? WHERE id = ? AND expiration_date <= ?";
+    private static final String INSERT_TOKEN_IF_ABSENT =
+            "INSERT INTO tokens (token, original_url_id) VALUES (?, ?) ON CONFLICT(token) DO NOTHING";
+    // Does nothing if the token exists or, through idx_tokens_alias, an alias differing only in case does
+    private static final String INSERT_ALIAS_IF_ABSENT =
+            "INSERT INTO tokens (token, original_url_id, is_alias) VALUES (?, ?, 1) ON CONFLICT DO NOTHING";
+    private static final String DELETE_TOKEN = "DELETE FROM tokens WHERE token = ?";
+    // A URL goes with its last token; its aliases and other tokens keep it otherwise
+    private static final String DELETE_ORIGINAL_URL =
+            "DELETE FROM original_urls WHERE id = ? AND NOT EXISTS (SELECT 1 FROM tokens WHERE original_url_id = ?)";
+    private static final String SELECT_ORIGINAL_URL_ID_FOR_TOKEN = "SELECT original_url_id FROM tokens WHERE token = ?";
+    private static final String INCREMENT_REDIRECT_COUNT =
+            "INSERT INTO redirect_analytics (original_url, redirect_count) VALUES (?, ?) " +
+                    "ON CONFLICT(original_url) DO UPDATE SET redirect_count = redirect_count + excluded.redirect_count";
+    private static final String SELECT_ALL_TOKENS = "SELECT token FROM tokens";
+    // Reads the partial alias index, which holds nothing but aliases
+    private static final String SELECT_ALL_ALIASES = "SELECT token FROM tokens WHERE is_alias = 1";
+    // Walks original_urls in id order and each URL's tokens through the covering index, so tokens of one URL are
+    // adjacent, sorting only each URL's few tokens into the order they were stored in, which an import keeps
+    private static final String SELECT_ALL_MAPPINGS =
+            "SELECT t.token, t.is_alias, o.long_url, o.expiration_date, COALESCE(r.redirect_count, 0) AS redirect_count " +
+                    "FROM original_urls o JOIN tokens t ON t.original_url_id = o.id " +
+                    "LEFT JOIN redirect_analytics r ON r.original_url = o.long_url ORDER BY o.id, t.id";
+    private static final String DELETE_EXPIRED_TOKENS =
+            "DELETE FROM tokens WHERE original_url_id IN " + EXPIRED_ORIGINAL_URL_IDS + " RETURNING token";
+    private static final String DELETE_EXPIRED_ORIGINAL_URLS = "DELETE FROM original_urls WHERE id IN " + EXPIRED_ORIGINAL_URL_IDS;
+    private static final String COUNT_EXPIRED_ORIGINAL_URLS = "SELECT COUNT(*) FROM original_urls WHERE expiration_date <= ?";
+    private static final String SELECT_REDIRECT_ANALYTICS_BY_COUNT =
+            "SELECT original_url FROM redirect_analytics ORDER BY redirect_count DESC";
+    private static final String SELECT_LIVE_TOKEN_FOR_LONG_URL =
+            "SELECT t.token FROM original_urls o " +
+                    "JOIN tokens t ON t.original_url_id = o.id " +
+                    "WHERE o.long_url_hash = ? AND o.long_url = ? AND (o.expiration_date IS NULL OR o.expiration_date > ?) " +
+                    "ORDER BY t.id LIMIT 1";
+    private static final String RESERVE_TOKEN_ID_BLOCK =
+            "INSERT INTO token_sequence (name, next_value) VALUES (?, ?) " +
+                    "ON CONFLICT(name) DO UPDATE SET next_value = next_value + excluded.next_value " +
+                    "RETURNING next_value";
+    private static final String SELECT_TOKEN_SEQUENCE = "SELECT next_value FROM token_sequence WHERE name = ?";
+    private static final String FULL_SLICE_ORIGINAL_URL_IDS = originalUrlIdsQuery(MAX_IN_CLAUSE_PARAMETERS);
+    private static final String FULL_SLICE_EXISTING_TOKENS = existingTokensQuery(MAX_IN_CLAUSE_PARAMETERS);
+
+    /**
+     * Lookups on the request path, which {@link SchemaMigrator} checks never scan a whole table.
+     */
+    static final List<String> INDEXED_QUERIES = List.of(
+            SELECT_ORIGINAL_URL,
+            SELECT_ORIGINAL_URL_ID,
+            UPDATE_TOKEN,
+            SELECT_TOKEN_FOR_ORIGINAL_URL,
+            RENEW_EXPIRED_ORIGINAL_URL,
+            DELETE_TOKEN,
+            DELETE_ORIGINAL_URL,
+            SELECT_ORIGINAL_URL_ID_FOR_TOKEN,
+            SELECT_LIVE_TOKEN_FOR_LONG_URL
+    );
+
+    private static final int CACHE_SIZE_KIBIBYTES = 8192;
+    private static final long MMAP_SIZE_BYTES = 256L * 1024 * 1024;
+
+    private final HikariDataSource readDataSource;
+    private final HikariDataSource writeDataSource;
+    private final PreparedStatementCache statements;
     private final int expiryDateMonthsInFuture;
 
     public UrlShortenerDAL(String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds, int expiryDateMonthsInFuture) {
+        this(databaseUrl, maxPoolSize, connectionTimeoutMilliSeconds, expiryDateMonthsInFuture, Metrics.globalRegistry);
+    }
+
+    public UrlShortenerDAL(String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds, int expiryDateMonthsInFuture,
+                           MeterRegistry meterRegistry) {
+        this(databaseUrl, maxPoolSize, connectionTimeoutMilliSeconds, expiryDateMonthsInFuture, true, meterRegistry);
+    }
+
+    /**
+     * Opens the database in WAL mode, so readers never wait for the writer. Lookups go through a read-only pool of
+     * {@code maxPoolSize} autocommit connections; every write goes through a single-connection pool, which serialises
+     * writers in Hikari's queue instead of having them collide on SQLite's database lock. With
+     * {@code cacheStatements}, each connection keeps its prepared statements for reuse by later calls. The schema
+     * must already be in place, see {@link SchemaMigrator}.
+     */
+    public UrlShortenerDAL(String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds, int expiryDateMonthsInFuture,
+                           boolean cacheStatements, MeterRegistry meterRegistry) {
+        this("url-shortener", databaseUrl, maxPoolSize, connectionTimeoutMilliSeconds, expiryDateMonthsInFuture, cacheStatements,
+                meterRegistry);
+    }
+
+    /**
+     * As above, naming the pools {@code poolName-write} and {@code poolName-read}, so that several databases opened
+     * in one process, such as shards, keep their pool metrics apart.
+     */
+    public UrlShortenerDAL(String poolName, String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds,
+                           int expiryDateMonthsInFuture, boolean cacheStatements, MeterRegistry meterRegistry) {
         this.expiryDateMonthsInFuture = expiryDateMonthsInFuture;
+        this.statements = new PreparedStatementCache(cacheStatements);
 
+        // The writer is opened first, as switching the journal mode needs a writable connection
+        SQLiteConfig writeConnectionConfig = createConnectionConfig(connectionTimeoutMilliSeconds);
+        writeConnectionConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        writeConnectionConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        writeConnectionConfig.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+        this.writeDataSource = createDataSource(poolName + "-write", databaseUrl, 1, connectionTimeoutMilliSeconds,
+                writeConnectionConfig, false, meterRegistry);
+
+        SQLiteConfig readConnectionConfig = createConnectionConfig(connectionTimeoutMilliSeconds);
+        readConnectionConfig.setReadOnly(true);
+        this.readDataSource = createDataSource(poolName + "-read", databaseUrl, maxPoolSize, connectionTimeoutMilliSeconds,
+                readConnectionConfig, true, meterRegistry);
+    }
+
+    private static SQLiteConfig createConnectionConfig(int busyTimeoutMilliseconds) {
+        SQLiteConfig connectionConfig = new SQLiteConfig();
+        connectionConfig.setBusyTimeout(busyTimeoutMilliseconds);
+        connectionConfig.setCacheSize(-CACHE_SIZE_KIBIBYTES); // negative means KiB rather than pages
+        connectionConfig.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(MMAP_SIZE_BYTES));
+        return connectionConfig;
+    }
+
+    private static HikariDataSource createDataSource(String poolName, String databaseUrl, int maxPoolSize, int connectionTimeoutMilliSeconds,
+                                                     SQLiteConfig connectionConfig, boolean readOnly, MeterRegistry meterRegistry) {
         HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
         config.setJdbcUrl(databaseUrl);
         config.setMaximumPoolSize(maxPoolSize);
         config.setConnectionTimeout(connectionTimeoutMilliSeconds);
+        config.setDataSourceProperties(connectionConfig.toProperties());
+        config.setReadOnly(readOnly);
+        config.setMetricRegistry(meterRegistry);
+        return new HikariDataSource(config);
+    }
 
-        this.dataSource = new HikariDataSource(config);
+    /**
+     * Prepared statements currently kept across all pooled connections.
+     */
+    public int getCachedStatements() {
+        return statements.size();
     }
 
-    @Override
-    public String getOriginalUrl(String token) {
-        String originalUrl = null;
-        Connection conn = null;
+    /**
+     * Opens every connection of both pools now, instead of in the background or on first use, and prepares the
+     * redirect lookup on each read connection, so the first requests after startup find warm connections.
+     */
+    public void warmUpConnections() {
+        List<Connection> connections = new ArrayList<>();
         try {
-            conn = dataSource.getConnection();
-            conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
-            conn.setAutoCommit(false);
-
-            try (PreparedStatement stmt = conn.prepareStatement(
-                    "SELECT ou.long_url " +
-                            "FROM original_urls ou " +
-                            "JOIN tokens t ON ou.id = t.original_url_id " +
-                            "WHERE t.token = ?")
-            ) {
-                stmt.setString(1, token);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        originalUrl = rs.getString("long_url");
-                    }
-                }
+            connections.add(writeDataSource.getConnection());
+            for (int i = 0; i < readDataSource.getMaximumPoolSize(); i++) {
+                Connection conn = readDataSource.getConnection();
+                connections.add(conn);
+                statements.prepare(conn, SELECT_ORIGINAL_URL);
             }
-            conn.commit();
         } catch (SQLException e) {
-            rollbackTransaction(conn);
-            handleSQLException("Error executing SQL query", e);
+            handleSQLException("Error opening pooled connections", e);
         } finally {
-            closeConnection(conn);
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.error("Error closing connection", e);
+                }
+            }
         }
-        return originalUrl;
     }
 
+    /**
+     * Closes both pools. Calls still holding a connection finish first, up to the pools' connection timeout.
+     */
     @Override
-    public long getOriginalUrlId(String longUrl) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT id FROM original_urls WHERE long_url = ?")
-        ) {
-            stmt.setString(1, longUrl);
+    public void close() {
+        writeDataSource.close();
+        readDataSource.close();
+    }
+
+    @Override
+    public String getOriginalUrl(String token) {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, SELECT_ORIGINAL_URL);
+            stmt.setString(1, token);
+            stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
             try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next() ? rs.getLong("id") : -1;
+                return rs.next() ? rs.getString("long_url") : null;
             }
+        } catch (SQLException e) {
+            handleSQLException("Error executing SQL query", e);
+            return null;
+        }
+    }
+
+    @Override
+    public long getOriginalUrlId(String longUrl) {
+        try (Connection conn = readDataSource.getConnection()) {
+            return findOriginalUrlId(conn, longUrl);
         } catch (SQLException e) {
             handleSQLException("Error retrieving original URL ID", e);
             return -1;
@@ -76,10 +249,8 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
 
     @Override
     public void updateToken(String token, long originalUrlId) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "UPDATE tokens SET token = ? WHERE original_url_id = ?")
-        ) {
+        try (Connection conn = writeDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, UPDATE_TOKEN);
             stmt.setString(1, token);
             stmt.setLong(2, originalUrlId);
             stmt.executeUpdate();
@@ -90,25 +261,10 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
 
     @Override
     public long insertOriginalUrl(String longUrl) {
-        LocalDateTime expirationDateTime = LocalDateTime.now().plusMonths(expiryDateMonthsInFuture);
-        Timestamp expirationTimestamp = Timestamp.valueOf(expirationDateTime);
-
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO original_urls (long_url, expiration_date) VALUES (?, ?)",
-                     Statement.RETURN_GENERATED_KEYS)
-        ) {
-            stmt.setString(1, longUrl);
-            stmt.setTimestamp(2, expirationTimestamp);
-            stmt.executeUpdate();
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    return rs.getLong(1);
-                } else {
-                    logger.error("Inserting original URL failed, no ID obtained.");
-                    throw new SQLException("Inserting original URL failed, no ID obtained.");
-                }
-            }
+        Timestamp expirationTimestamp = newExpirationTimestamp();
+
+        try (Connection conn = writeDataSource.getConnection()) {
+            return insertOriginalUrl(conn, longUrl, expirationTimestamp);
         } catch (SQLException e) {
             handleSQLException("Error inserting original URL into database", e);
         }
@@ -117,10 +273,8 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
 
     @Override
     public void insertUrlMapping(String token, long originalUrlId) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO tokens (token, original_url_id) VALUES (?, ?)")
-        ) {
+        try (Connection conn = writeDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, INSERT_URL_MAPPING);
             stmt.setString(1, token);
             stmt.setLong(2, originalUrlId);
             stmt.executeUpdate();
@@ -131,14 +285,8 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
 
     @Override
     public String getTokenForOriginalUrl(long originalUrlId) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT token FROM tokens WHERE original_url_id = ?")
-        ) {
-            stmt.setLong(1, originalUrlId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next() ? rs.getString("token") : null;
-            }
+        try (Connection conn = readDataSource.getConnection()) {
+            return getTokenForOriginalUrl(conn, originalUrlId);
         } catch (SQLException e) {
             handleSQLException("Error retrieving token for original URL", e);
             return null;
@@ -146,25 +294,324 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
     }
 
     @Override
-    public boolean deleteShortUrl(String token) {
+    public String shortenOrGet(String longUrl, Supplier<String> tokenSupplier) {
         Connection conn = null;
         try {
-            conn = dataSource.getConnection();
+            conn = writeDataSource.getConnection();
             conn.setAutoCommit(false);
 
-            long originalUrlId = getOriginalUrlIdFromToken(conn, token);
+            // The transaction begins IMMEDIATE and so already holds the write lock; no other writer can insert
+            // the same URL between the lookup and the insert
+            long originalUrlId = findOriginalUrlId(conn, longUrl);
+            String token = null;
+            if (originalUrlId == -1) {
+                originalUrlId = insertOriginalUrl(conn, longUrl, newExpirationTimestamp());
+            } else {
+                renewExpiredOriginalUrls(conn, Collections.singletonList(originalUrlId));
+                token = getTokenForOriginalUrl(conn, originalUrlId);
+            }
+            if (token == null) {
+                token = insertUniqueToken(conn, originalUrlId, tokenSupplier);
+            }
+
+            conn.commit();
+            return token;
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error shortening URL", e);
+            return null;
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    @Override
+    public Map<String, String> getTokensForLongUrls(List<String> longUrls) {
+        List<String> distinctLongUrls = new ArrayList<>(new LinkedHashSet<>(longUrls));
+        if (distinctLongUrls.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try (Connection conn = readDataSource.getConnection()) {
+            Map<String, String> tokensByLongUrl = new HashMap<>();
+            findExistingTokens(conn, findOriginalUrlIds(conn, distinctLongUrls), tokensByLongUrl, new HashMap<>());
+            return tokensByLongUrl;
+        } catch (SQLException e) {
+            handleSQLException("Error retrieving tokens for long URLs", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public Map<String, String> shortenOrGetBatch(List<String> longUrls, Supplier<String> tokenSupplier) {
+        List<String> distinctLongUrls = new ArrayList<>(new LinkedHashSet<>(longUrls));
+        if (distinctLongUrls.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Connection conn = null;
+        try {
+            conn = writeDataSource.getConnection();
+            conn.setAutoCommit(false);
 
-            if (originalUrlId != -1) {
-                boolean mappingDeleted = deleteMappingEntry(conn, token);
-                boolean originalUrlDeleted = deleteOriginalUrlEntry(conn, originalUrlId);
+            Map<String, Long> originalUrlIds = findOriginalUrlIds(conn, distinctLongUrls);
+            renewExpiredOriginalUrls(conn, originalUrlIds.values());
+            Map<String, String> tokensByLongUrl = new HashMap<>();
+            Map<String, Long> untokenizedUrlIds = new HashMap<>();
+            findExistingTokens(conn, originalUrlIds, tokensByLongUrl, untokenizedUrlIds);
+            Timestamp expirationTimestamp = newExpirationTimestamp();
+            for (String longUrl : distinctLongUrls) {
+                if (!originalUrlIds.containsKey(longUrl)) {
+                    untokenizedUrlIds.put(longUrl, insertOriginalUrl(conn, longUrl, expirationTimestamp));
+                }
+            }
+            insertUniqueTokens(conn, untokenizedUrlIds, tokenSupplier, tokensByLongUrl);
 
-                if (mappingDeleted && originalUrlDeleted) {
-                    conn.commit();
-                    return true;
+            conn.commit();
+            return tokensByLongUrl;
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error shortening URL batch", e);
+            return Collections.emptyMap();
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    /**
+     * Shortening a URL whose mapping has expired but not yet been swept brings the existing token back to life,
+     * rather than handing out a token that lookups would refuse.
+     */
+    private void renewExpiredOriginalUrls(Connection conn, Collection<Long> originalUrlIds) throws SQLException {
+        if (originalUrlIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Timestamp expirationTimestamp = newExpirationTimestamp();
+        PreparedStatement stmt = statements.prepare(conn, RENEW_EXPIRED_ORIGINAL_URL);
+        for (long originalUrlId : originalUrlIds) {
+            stmt.setTimestamp(1, expirationTimestamp);
+            stmt.setLong(2, originalUrlId);
+            stmt.setTimestamp(3, now);
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+    }
+
+    /**
+     * Looks up the ids of the URLs already stored, by hash in slices of {@link #MAX_IN_CLAUSE_PARAMETERS}. Rows
+     * whose hash matches but whose URL does not are collisions and are ignored.
+     */
+    private Map<String, Long> findOriginalUrlIds(Connection conn, List<String> longUrls) throws SQLException {
+        Map<Long, List<String>> longUrlsByHash = new LinkedHashMap<>();
+        for (String longUrl : longUrls) {
+            longUrlsByHash.computeIfAbsent(UrlHash.hash(longUrl), hash -> new ArrayList<>(1)).add(longUrl);
+        }
+        List<Long> hashes = new ArrayList<>(longUrlsByHash.keySet());
+        Map<String, Long> originalUrlIds = new HashMap<>();
+        for (int start = 0; start < hashes.size(); start += MAX_IN_CLAUSE_PARAMETERS) {
+            List<Long> slice = hashes.subList(start, Math.min(start + MAX_IN_CLAUSE_PARAMETERS, hashes.size()));
+            PreparedStatement stmt = prepareSlice(conn, FULL_SLICE_ORIGINAL_URL_IDS, originalUrlIdsQuery(slice.size()), slice.size());
+            try {
+                for (int i = 0; i < slice.size(); i++) {
+                    stmt.setLong(i + 1, slice.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String longUrl = rs.getString("long_url");
+                        if (longUrlsByHash.get(rs.getLong("long_url_hash")).contains(longUrl)) {
+                            originalUrlIds.putIfAbsent(longUrl, rs.getLong("id"));
+                        }
+                    }
+                }
+            } finally {
+                closeSlice(stmt, slice.size());
+            }
+        }
+        return originalUrlIds;
+    }
+
+    private static String originalUrlIdsQuery(int hashCount) {
+        return "SELECT id, long_url, long_url_hash FROM original_urls " +
+                "WHERE long_url_hash IN (" + String.join(",", Collections.nCopies(hashCount, "?")) + ")";
+    }
+
+    private void findExistingTokens(Connection conn, Map<String, Long> originalUrlIds, Map<String, String> tokensByLongUrl,
+                                    Map<String, Long> untokenizedUrlIds) throws SQLException {
+        Map<Long, String> longUrlsById = new HashMap<>();
+        originalUrlIds.forEach((longUrl, id) -> longUrlsById.put(id, longUrl));
+        untokenizedUrlIds.putAll(originalUrlIds);
+        List<Long> ids = new ArrayList<>(longUrlsById.keySet());
+        for (int start = 0; start < ids.size(); start += MAX_IN_CLAUSE_PARAMETERS) {
+            List<Long> slice = ids.subList(start, Math.min(start + MAX_IN_CLAUSE_PARAMETERS, ids.size()));
+            PreparedStatement stmt = prepareSlice(conn, FULL_SLICE_EXISTING_TOKENS, existingTokensQuery(slice.size()), slice.size());
+            try {
+                for (int i = 0; i < slice.size(); i++) {
+                    stmt.setLong(i + 1, slice.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String longUrl = longUrlsById.get(rs.getLong("original_url_id"));
+                        tokensByLongUrl.putIfAbsent(longUrl, rs.getString("token"));
+                        untokenizedUrlIds.remove(longUrl);
+                    }
+                }
+            } finally {
+                closeSlice(stmt, slice.size());
+            }
+        }
+    }
+
+    private static String existingTokensQuery(int idCount) {
+        // Ordered so that the first token of each URL read is its first generated one, as for a single URL
+        return "SELECT original_url_id, token FROM tokens " +
+                "WHERE original_url_id IN (" + String.join(",", Collections.nCopies(idCount, "?")) + ") AND is_alias = 0 " +
+                "ORDER BY id";
+    }
+
+    /**
+     * Only full slices are cached; a statement per possible remainder size would crowd the cache for little gain.
+     */
+    private PreparedStatement prepareSlice(Connection conn, String fullSliceSql, String sliceSql, int sliceSize) throws SQLException {
+        return sliceSize == MAX_IN_CLAUSE_PARAMETERS ? statements.prepare(conn, fullSliceSql) : conn.prepareStatement(sliceSql);
+    }
+
+    private static void closeSlice(PreparedStatement stmt, int sliceSize) throws SQLException {
+        if (sliceSize != MAX_IN_CLAUSE_PARAMETERS) {
+            stmt.close();
+        }
+    }
+
+    private void insertUniqueTokens(Connection conn, Map<String, Long> untokenizedUrlIds, Supplier<String> tokenSupplier,
+                                    Map<String, String> tokensByLongUrl) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, INSERT_TOKEN_IF_ABSENT);
+        Map<String, Long> pending = untokenizedUrlIds;
+        for (int attempt = 0; attempt < MAX_TOKEN_INSERT_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<String> batchUrls = new ArrayList<>(pending.keySet());
+            List<String> batchTokens = new ArrayList<>(batchUrls.size());
+            for (String longUrl : batchUrls) {
+                String token = tokenSupplier.get();
+                batchTokens.add(token);
+                stmt.setString(1, token);
+                stmt.setLong(2, pending.get(longUrl));
+                stmt.addBatch();
+            }
+            int[] updateCounts = stmt.executeBatch();
+
+            Map<String, Long> collided = new HashMap<>();
+            for (int i = 0; i < batchUrls.size(); i++) {
+                if (updateCounts[i] > 0) {
+                    tokensByLongUrl.put(batchUrls.get(i), batchTokens.get(i));
                 } else {
-                    conn.rollback();
-                    return false;
+                    collided.put(batchUrls.get(i), pending.get(batchUrls.get(i)));
                 }
+            }
+            pending = collided;
+        }
+        if (!pending.isEmpty()) {
+            throw new SQLException("Could not generate unique tokens for " + pending.size() + " URLs after " + MAX_TOKEN_INSERT_ATTEMPTS + " attempts");
+        }
+    }
+
+    private long findOriginalUrlId(Connection conn, String longUrl) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, SELECT_ORIGINAL_URL_ID);
+        stmt.setLong(1, UrlHash.hash(longUrl));
+        stmt.setString(2, longUrl);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong("id") : -1;
+        }
+    }
+
+    private long insertOriginalUrl(Connection conn, String longUrl, Timestamp expirationTimestamp) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, INSERT_ORIGINAL_URL);
+        stmt.setString(1, longUrl);
+        stmt.setLong(2, UrlHash.hash(longUrl));
+        stmt.setTimestamp(3, expirationTimestamp);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+            logger.error("Inserting original URL failed, no ID obtained.");
+            throw new SQLException("Inserting original URL failed, no ID obtained.");
+        }
+    }
+
+    private String getTokenForOriginalUrl(Connection conn, long originalUrlId) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, SELECT_TOKEN_FOR_ORIGINAL_URL);
+        stmt.setLong(1, originalUrlId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getString("token") : null;
+        }
+    }
+
+    private String insertUniqueToken(Connection conn, long originalUrlId, Supplier<String> tokenSupplier) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, INSERT_TOKEN_IF_ABSENT);
+        for (int attempt = 0; attempt < MAX_TOKEN_INSERT_ATTEMPTS; attempt++) {
+            String token = tokenSupplier.get();
+            stmt.setString(1, token);
+            stmt.setLong(2, originalUrlId);
+            if (stmt.executeUpdate() > 0) {
+                return token;
+            }
+            logger.warn("Token collision on attempt {}, generating a new token", attempt + 1);
+        }
+        throw new SQLException("Could not generate a unique token after " + MAX_TOKEN_INSERT_ATTEMPTS + " attempts");
+    }
+
+    @Override
+    public boolean insertAlias(String longUrl, String alias) {
+        Connection conn = null;
+        try {
+            conn = writeDataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            long originalUrlId = findOriginalUrlId(conn, longUrl);
+            if (originalUrlId == -1) {
+                originalUrlId = insertOriginalUrl(conn, longUrl, newExpirationTimestamp());
+            } else {
+                renewExpiredOriginalUrls(conn, Collections.singletonList(originalUrlId));
+            }
+            PreparedStatement stmt = statements.prepare(conn, INSERT_ALIAS_IF_ABSENT);
+            stmt.setString(1, alias);
+            stmt.setLong(2, originalUrlId);
+            if (stmt.executeUpdate() == 0) {
+                // Also undoes the original URL, if it was inserted just for this alias
+                conn.rollback();
+                return false;
+            }
+
+            conn.commit();
+            return true;
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error inserting alias", e);
+            return false;
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    @Override
+    public boolean deleteShortUrl(String token) {
+        Connection conn = null;
+        try {
+            conn = writeDataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            long originalUrlId = getOriginalUrlIdFromToken(conn, token);
+
+            if (originalUrlId != -1 && deleteMappingEntry(conn, token)) {
+                deleteOriginalUrlEntry(conn, originalUrlId);
+                conn.commit();
+                return true;
             } else {
                 conn.rollback();
                 return false;
@@ -173,55 +620,249 @@ public class UrlShortenerDAL implements IUrlShortenerDAL {
             rollbackTransaction(conn);
             handleSQLException("Error deleting short URL and associated original URL from database", e);
             return false;
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
         } finally {
             closeConnection(conn);
         }
     }
 
     private boolean deleteMappingEntry(Connection conn, String token) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM tokens WHERE token = ?")
-        ) {
-            stmt.setString(1, token);
-            return stmt.executeUpdate() > 0;
+        PreparedStatement stmt = statements.prepare(conn, DELETE_TOKEN);
+        stmt.setString(1, token);
+        return stmt.executeUpdate() > 0;
+    }
+
+    private void deleteOriginalUrlEntry(Connection conn, long originalUrlId) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, DELETE_ORIGINAL_URL);
+        stmt.setLong(1, originalUrlId);
+        stmt.setLong(2, originalUrlId);
+        stmt.executeUpdate();
+    }
+
+    private long getOriginalUrlIdFromToken(Connection conn, String token) throws SQLException {
+        PreparedStatement stmt = statements.prepare(conn, SELECT_ORIGINAL_URL_ID_FOR_TOKEN);
+        stmt.setString(1, token);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong("original_url_id") : -1;
+        }
+    }
+
+    @Override
+    public void incrementRedirectCount(String originalUrl) {
+        try (Connection conn = writeDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, INCREMENT_REDIRECT_COUNT);
+            stmt.setString(1, originalUrl);
+            stmt.setLong(2, 1);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            handleSQLException("Error updating redirect count", e);
         }
     }
 
-    private boolean deleteOriginalUrlEntry(Connection conn, long originalUrlId) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "DELETE FROM original_urls WHERE id = ?")
-        ) {
-            stmt.setLong(1, originalUrlId);
-            return stmt.executeUpdate() > 0;
+    @Override
+    public void incrementRedirectCounts(Map<String, Long> redirectCountDeltas) {
+        Connection conn = null;
+        try {
+            conn = writeDataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            PreparedStatement stmt = statements.prepare(conn, INCREMENT_REDIRECT_COUNT);
+            for (Map.Entry<String, Long> delta : redirectCountDeltas.entrySet()) {
+                stmt.setString(1, delta.getKey());
+                stmt.setLong(2, delta.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error updating redirect counts", e);
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
+        } finally {
+            closeConnection(conn);
         }
     }
 
-    private long getOriginalUrlIdFromToken(Connection conn, String token) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(
-                "SELECT original_url_id FROM tokens WHERE token = ?")
-        ) {
-            stmt.setString(1, token);
+    @Override
+    public void forEachToken(Consumer<String> tokenConsumer) {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, SELECT_ALL_TOKENS);
+            stmt.setFetchSize(TOKEN_SCAN_FETCH_SIZE);
             try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next() ? rs.getLong("original_url_id") : -1;
+                while (rs.next()) {
+                    tokenConsumer.accept(rs.getString("token"));
+                }
             }
+        } catch (SQLException e) {
+            handleSQLException("Error scanning tokens", e);
         }
     }
 
     @Override
-    public void incrementRedirectCount(String originalUrl) {
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement insertStmt = conn.prepareStatement(
-                     "INSERT OR REPLACE INTO redirect_analytics (original_url, redirect_count) " +
-                             "VALUES (?, COALESCE((SELECT redirect_count FROM redirect_analytics WHERE original_url = ?), 0) + 1)")
-        ) {
-            insertStmt.setString(1, originalUrl);
-            insertStmt.setString(2, originalUrl);
-            insertStmt.executeUpdate();
+    public void forEachAlias(Consumer<String> aliasConsumer) {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, SELECT_ALL_ALIASES);
+            stmt.setFetchSize(TOKEN_SCAN_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    aliasConsumer.accept(rs.getString("token"));
+                }
+            }
         } catch (SQLException e) {
-            handleSQLException("Error updating redirect count", e);
+            handleSQLException("Error scanning aliases", e);
+        }
+    }
+
+    /**
+     * Streams the mappings through a cursor, so memory use does not grow with the table. The query is one read
+     * transaction, so the mappings are a consistent snapshot while writes carry on.
+     */
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, SELECT_ALL_MAPPINGS);
+            stmt.setFetchSize(TOKEN_SCAN_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp expiration = rs.getTimestamp("expiration_date");
+                    mappingConsumer.accept(new UrlMapping(
+                            rs.getString("token"),
+                            rs.getString("long_url"),
+                            expiration == null ? UrlMapping.NO_EXPIRATION : expiration.getTime(),
+                            rs.getLong("redirect_count"),
+                            rs.getBoolean("is_alias")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error scanning mappings", e);
+        }
+    }
+
+    @Override
+    public DeletedMappings deleteExpiredMappings(int limit) {
+        Connection conn = null;
+        try {
+            conn = writeDataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            List<String> deletedTokens = new ArrayList<>();
+            PreparedStatement deleteTokens = statements.prepare(conn, DELETE_EXPIRED_TOKENS);
+            PreparedStatement deleteOriginalUrls = statements.prepare(conn, DELETE_EXPIRED_ORIGINAL_URLS);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            deleteTokens.setTimestamp(1, now);
+            deleteTokens.setInt(2, limit);
+            try (ResultSet rs = deleteTokens.executeQuery()) {
+                while (rs.next()) {
+                    deletedTokens.add(rs.getString("token"));
+                }
+            }
+            deleteOriginalUrls.setTimestamp(1, now);
+            deleteOriginalUrls.setInt(2, limit);
+            int deletedUrls = deleteOriginalUrls.executeUpdate();
+
+            conn.commit();
+            return new DeletedMappings(deletedUrls, deletedTokens);
+        } catch (SQLException e) {
+            rollbackTransaction(conn);
+            handleSQLException("Error deleting expired mappings", e);
+            return DeletedMappings.NONE;
+        } catch (RuntimeException | Error e) {
+            rollbackTransaction(conn);
+            throw e;
+        } finally {
+            closeConnection(conn);
+        }
+    }
+
+    @Override
+    public long countExpiredMappings() {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, COUNT_EXPIRED_ORIGINAL_URLS);
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error counting expired mappings", e);
+            return -1;
+        }
+    }
+
+    @Override
+    public Map<String, String> getMostRedirectedMappings(int limit) {
+        Map<String, String> mappings = new LinkedHashMap<>();
+        try (Connection conn = readDataSource.getConnection()) {
+            // redirect_analytics is keyed by URL text, so each URL is resolved through the hash index in turn
+            // rather than joined on long_url, which has no index of its own
+            PreparedStatement byCount = statements.prepare(conn, SELECT_REDIRECT_ANALYTICS_BY_COUNT);
+            PreparedStatement liveToken = statements.prepare(conn, SELECT_LIVE_TOKEN_FOR_LONG_URL);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            try (ResultSet rs = byCount.executeQuery()) {
+                while (mappings.size() < limit && rs.next()) {
+                    String longUrl = rs.getString("original_url");
+                    liveToken.setLong(1, UrlHash.hash(longUrl));
+                    liveToken.setString(2, longUrl);
+                    liveToken.setTimestamp(3, now);
+                    try (ResultSet tokenRs = liveToken.executeQuery()) {
+                        if (tokenRs.next()) {
+                            mappings.put(tokenRs.getString("token"), longUrl);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error retrieving most redirected mappings", e);
+        }
+        return mappings;
+    }
+
+    private Timestamp newExpirationTimestamp() {
+        return Timestamp.valueOf(LocalDateTime.now().plusMonths(expiryDateMonthsInFuture));
+    }
+
+    @Override
+    public long reserveTokenIdBlock(int blockSize) {
+        try (Connection conn = writeDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, RESERVE_TOKEN_ID_BLOCK);
+            stmt.setString(1, TOKEN_SEQUENCE_NAME);
+            stmt.setLong(2, blockSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong("next_value") - blockSize;
+                }
+                throw new SQLException("Reserving token id block failed, no sequence value returned.");
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error reserving token id block", e);
+            return -1;
+        }
+    }
+
+    @Override
+    public long getNextTokenId() {
+        try (Connection conn = readDataSource.getConnection()) {
+            PreparedStatement stmt = statements.prepare(conn, SELECT_TOKEN_SEQUENCE);
+            stmt.setString(1, TOKEN_SEQUENCE_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                // The sequence row is only created by the first reservation, which starts at zero
+                return rs.next() ? rs.getLong("next_value") : 0;
+            }
+        } catch (SQLException e) {
+            handleSQLException("Error reading token sequence", e);
+            return -1;
         }
     }
 
+    /**
+     * Called on any failure inside a transaction, token suppliers throwing included. Hikari cannot see statements run
+     * through {@link PreparedStatementCache}, so it would not roll back the unfinished work when the connection is
+     * closed, and resetting auto-commit would commit it instead.
+     */
     private void rollbackTransaction(Connection connection) {
         if (connection != null) {
             try {
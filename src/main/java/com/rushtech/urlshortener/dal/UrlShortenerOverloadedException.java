@@ -0,0 +1,13 @@
+package com.rushtech.urlshortener.dal;
+
+/**
+ * Thrown when a database call is rejected because too many calls are already running or waiting.
+ */
+public class UrlShortenerOverloadedException extends UrlShortenerDataAccessException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UrlShortenerOverloadedException(String message) {
+        super(message, null);
+    }
+}
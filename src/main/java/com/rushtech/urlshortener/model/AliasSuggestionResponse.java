@@ -0,0 +1,28 @@
+package com.rushtech.urlshortener.model;
+
+import java.util.List;
+
+public class AliasSuggestionResponse {
+
+    private final String prefix;
+    private final String availability;
+    private final List<String> aliases;
+
+    public AliasSuggestionResponse(String prefix, String availability, List<String> aliases) {
+        this.prefix = prefix;
+        this.availability = availability;
+        this.aliases = aliases;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getAvailability() {
+        return availability;
+    }
+
+    public List<String> getAliases() {
+        return aliases;
+    }
+}
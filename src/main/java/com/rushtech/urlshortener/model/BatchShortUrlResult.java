@@ -0,0 +1,37 @@
+package com.rushtech.urlshortener.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchShortUrlResult {
+
+    private final String longUrl;
+    private final String shortUrl;
+    private final String error;
+
+    private BatchShortUrlResult(String longUrl, String shortUrl, String error) {
+        this.longUrl = longUrl;
+        this.shortUrl = shortUrl;
+        this.error = error;
+    }
+
+    public static BatchShortUrlResult shortened(String longUrl, String shortUrl) {
+        return new BatchShortUrlResult(longUrl, shortUrl, null);
+    }
+
+    public static BatchShortUrlResult failed(String longUrl, String error) {
+        return new BatchShortUrlResult(longUrl, null, error);
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
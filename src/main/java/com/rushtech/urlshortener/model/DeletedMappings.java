@@ -0,0 +1,28 @@
+package com.rushtech.urlshortener.model;
+
+import java.util.List;
+
+/**
+ * The outcome of deleting a batch of expired mappings: how many original URLs went, and the tokens that went with
+ * them. A URL can take several tokens or none, so only the URL count tells whether the batch was full.
+ */
+public class DeletedMappings {
+
+    public static final DeletedMappings NONE = new DeletedMappings(0, List.of());
+
+    private final int deletedUrls;
+    private final List<String> tokens;
+
+    public DeletedMappings(int deletedUrls, List<String> tokens) {
+        this.deletedUrls = deletedUrls;
+        this.tokens = List.copyOf(tokens);
+    }
+
+    public int getDeletedUrls() {
+        return deletedUrls;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+}
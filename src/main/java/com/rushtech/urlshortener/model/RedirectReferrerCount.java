@@ -0,0 +1,35 @@
+package com.rushtech.urlshortener.model;
+
+/**
+ * Redirects for one token within one hour that came from one referrer host.
+ */
+public class RedirectReferrerCount {
+
+    private final String token;
+    private final long bucketStart;
+    private final String referrerHost;
+    private final long redirects;
+
+    public RedirectReferrerCount(String token, long bucketStart, String referrerHost, long redirects) {
+        this.token = token;
+        this.bucketStart = bucketStart;
+        this.referrerHost = referrerHost;
+        this.redirects = redirects;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public String getReferrerHost() {
+        return referrerHost;
+    }
+
+    public long getRedirects() {
+        return redirects;
+    }
+}
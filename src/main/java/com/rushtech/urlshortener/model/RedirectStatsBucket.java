@@ -0,0 +1,64 @@
+package com.rushtech.urlshortener.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Redirects for one token within one minute or hour, broken down by {@link com.rushtech.urlshortener.util.UserAgentClass}.
+ */
+public class RedirectStatsBucket {
+
+    private final String token;
+    private final int resolutionSeconds;
+    private final long bucketStart;
+    private final long browser;
+    private final long mobile;
+    private final long bot;
+    private final long other;
+
+    public RedirectStatsBucket(String token, int resolutionSeconds, long bucketStart, long browser, long mobile, long bot, long other) {
+        this.token = token;
+        this.resolutionSeconds = resolutionSeconds;
+        this.bucketStart = bucketStart;
+        this.browser = browser;
+        this.mobile = mobile;
+        this.bot = bot;
+        this.other = other;
+    }
+
+    @JsonIgnore
+    public String getToken() {
+        return token;
+    }
+
+    @JsonIgnore
+    public int getResolutionSeconds() {
+        return resolutionSeconds;
+    }
+
+    /**
+     * Start of the bucket in epoch seconds.
+     */
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public long getRedirects() {
+        return browser + mobile + bot + other;
+    }
+
+    public long getBrowser() {
+        return browser;
+    }
+
+    public long getMobile() {
+        return mobile;
+    }
+
+    public long getBot() {
+        return bot;
+    }
+
+    public long getOther() {
+        return other;
+    }
+}
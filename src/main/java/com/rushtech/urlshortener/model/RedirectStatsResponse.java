@@ -0,0 +1,48 @@
+package com.rushtech.urlshortener.model;
+
+import java.util.List;
+import java.util.Map;
+
+public class RedirectStatsResponse {
+
+    private final String token;
+    private final String resolution;
+    private final long from;
+    private final long to;
+    private final List<RedirectStatsBucket> buckets;
+    private final Map<String, Long> topReferrers;
+
+    public RedirectStatsResponse(String token, String resolution, long from, long to, List<RedirectStatsBucket> buckets,
+                                 Map<String, Long> topReferrers) {
+        this.token = token;
+        this.resolution = resolution;
+        this.from = from;
+        this.to = to;
+        this.buckets = buckets;
+        this.topReferrers = topReferrers;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public List<RedirectStatsBucket> getBuckets() {
+        return buckets;
+    }
+
+    public Map<String, Long> getTopReferrers() {
+        return topReferrers;
+    }
+}
@@ -3,6 +3,8 @@ package com.rushtech.urlshortener.model;
 public class ShortUrlRequest {
 
     private String longUrl;
+    // Optional custom token, such as a brand name, used instead of a generated one
+    private String alias;
 
     public String getLongUrl() {
         return longUrl;
@@ -11,4 +13,12 @@ public class ShortUrlRequest {
     public void setLongUrl(String longUrl) {
         this.longUrl = longUrl;
     }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
 }
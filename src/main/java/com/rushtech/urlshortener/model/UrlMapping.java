@@ -0,0 +1,57 @@
+package com.rushtech.urlshortener.model;
+
+/**
+ * One token and the long URL it redirects to, with the URL's expiration and redirect count and whether the token is a
+ * custom alias, as exported and imported.
+ */
+public class UrlMapping {
+
+    /**
+     * Expiration of mappings stored before URLs expired.
+     */
+    public static final long NO_EXPIRATION = -1;
+
+    private final String token;
+    private final String longUrl;
+    private final long expirationMillis;
+    private final long redirectCount;
+    private final boolean alias;
+
+    public UrlMapping(String token, String longUrl, long expirationMillis, long redirectCount) {
+        this(token, longUrl, expirationMillis, redirectCount, false);
+    }
+
+    public UrlMapping(String token, String longUrl, long expirationMillis, long redirectCount, boolean alias) {
+        this.token = token;
+        this.longUrl = longUrl;
+        this.expirationMillis = expirationMillis;
+        this.redirectCount = redirectCount;
+        this.alias = alias;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+
+    /**
+     * Expiration in epoch milliseconds, or {@link #NO_EXPIRATION}.
+     */
+    public long getExpirationMillis() {
+        return expirationMillis;
+    }
+
+    /**
+     * Redirects counted for the long URL, shared by all of its tokens.
+     */
+    public long getRedirectCount() {
+        return redirectCount;
+    }
+
+    public boolean isAlias() {
+        return alias;
+    }
+}
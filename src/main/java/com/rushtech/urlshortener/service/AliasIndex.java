@@ -0,0 +1,272 @@
+package com.rushtech.urlshortener.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Prefix tree of the custom aliases in use, keyed by their lower case form, so availability checks and
+ * autocomplete suggestions are answered from memory instead of scanning the tokens table. {@link #reserve} checks
+ * and claims an alias in one step, so two requests for the same alias, in any case, cannot both be told it is free.
+ *
+ * <p>The tree only knows the aliases of this server and those loaded at startup. The case-insensitive unique index
+ * on aliases in the database remains the final word, and generated tokens are only ever checked there.
+ */
+public class AliasIndex {
+
+    public enum Availability {
+        AVAILABLE,
+        /** Too short, too long, or uses characters other than letters, digits, {@code -} and {@code _}. */
+        INVALID,
+        RESERVED,
+        TAKEN
+    }
+
+    // First path segments of the routes, which an alias would otherwise shadow or be shadowed by
+    private static final Set<String> BUILT_IN_RESERVED_WORDS =
+            Set.of("admin", "alias", "health", "metrics", "original", "short", "shorten", "stats");
+    private static final Pattern ALIAS_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final int minLength;
+    private final int maxLength;
+    private final Set<String> reservedWords = new HashSet<>(BUILT_IN_RESERVED_WORDS);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private int size;
+
+    public AliasIndex(int minLength, int maxLength, Collection<String> reservedWords) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Invalid alias length range: " + minLength + ".." + maxLength);
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        for (String reservedWord : reservedWords) {
+            this.reservedWords.add(key(reservedWord));
+        }
+    }
+
+    public Availability check(String alias) {
+        Availability availability = checkFormat(alias);
+        if (availability != Availability.AVAILABLE) {
+            return availability;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = find(key(alias));
+            return node != null && node.alias != null ? Availability.TAKEN : Availability.AVAILABLE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Claims {@code alias} if it is available and returns {@link Availability#AVAILABLE}, otherwise returns why not.
+     * A claim that is not stored after all must be given back with {@link #release}.
+     */
+    public Availability reserve(String alias) {
+        Availability availability = checkFormat(alias);
+        if (availability != Availability.AVAILABLE) {
+            return availability;
+        }
+        lock.writeLock().lock();
+        try {
+            return insert(alias) ? Availability.AVAILABLE : Availability.TAKEN;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an alias already stored, such as one loaded at startup, without checking its format or reserved words.
+     */
+    public void add(String alias) {
+        lock.writeLock().lock();
+        try {
+            insert(alias);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets {@code token} if it is an alias. Other tokens, including ones differing from an alias only in case,
+     * are ignored, so callers can pass any deleted token.
+     */
+    public void release(String token) {
+        lock.writeLock().lock();
+        try {
+            remove(token);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void releaseAll(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            tokens.forEach(this::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} aliases in use that start with {@code prefix}, ignoring case, in alphabetical order.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> aliases = new ArrayList<>(Math.min(limit, 16));
+        lock.readLock().lock();
+        try {
+            Node node = find(key(prefix));
+            if (node != null) {
+                collect(node, aliases, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return aliases;
+    }
+
+    /**
+     * Whether {@code prefix} could start a valid alias, so that suggestions for it may be asked for.
+     */
+    public boolean isValidPrefix(String prefix) {
+        return prefix.length() <= maxLength && (prefix.isEmpty() || ALIAS_PATTERN.matcher(prefix).matches());
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Availability checkFormat(String alias) {
+        if (alias.length() < minLength || alias.length() > maxLength || !ALIAS_PATTERN.matcher(alias).matches()) {
+            return Availability.INVALID;
+        }
+        return reservedWords.contains(key(alias)) ? Availability.RESERVED : Availability.AVAILABLE;
+    }
+
+    private boolean insert(String alias) {
+        String key = key(alias);
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        if (node.alias != null) {
+            return false;
+        }
+        node.alias = alias;
+        size++;
+        return true;
+    }
+
+    private void remove(String alias) {
+        String key = key(alias);
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = path[key.length()];
+        if (!alias.equals(node.alias)) {
+            return;
+        }
+        node.alias = null;
+        size--;
+        // Prunes the nodes left leading nowhere, so released aliases do not leave their paths behind
+        for (int i = key.length(); i > 0 && path[i].alias == null && path[i].childCount == 0; i--) {
+            path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, List<String> aliases, int limit) {
+        if (aliases.size() >= limit) {
+            return;
+        }
+        if (node.alias != null) {
+            aliases.add(node.alias);
+        }
+        for (int i = 0; i < node.childCount && aliases.size() < limit; i++) {
+            collect(node.children[i], aliases, limit);
+        }
+    }
+
+    private static String key(String alias) {
+        return alias.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Children are kept in parallel arrays sorted by character, which is far smaller than a map per node and
+     * yields them in order for suggestions. Nodes have few children, so the copying on insert stays cheap.
+     */
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        // The alias ending here, in the case it was stored with
+        String alias;
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, 0, childCount, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int i = Arrays.binarySearch(labels, 0, childCount, label);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insertAt = -i - 1;
+            if (childCount == labels.length) {
+                int capacity = Math.max(2, childCount * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, insertAt, labels, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+            Node child = new Node();
+            labels[insertAt] = label;
+            children[insertAt] = child;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int i = Arrays.binarySearch(labels, 0, childCount, label);
+            if (i < 0) {
+                return;
+            }
+            System.arraycopy(labels, i + 1, labels, i, childCount - i - 1);
+            System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+}
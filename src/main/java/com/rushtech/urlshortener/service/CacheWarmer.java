@@ -0,0 +1,143 @@
+package com.rushtech.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fills the original URL cache before the server takes traffic, so a restart does not send every redirect to SQLite.
+ * On shutdown the hottest cache entries are written to a snapshot file; on startup that snapshot is loaded if it is
+ * younger than {@code snapshotMaxAgeMillis}, and otherwise the most redirected mappings are read from the database.
+ *
+ * <p>Snapshot format, big-endian: magic, version, write time in epoch millis, entry count, then per entry the
+ * length-prefixed UTF-8 bytes of the token and of the long URL.
+ */
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+    private static final int SNAPSHOT_MAGIC = 0x55524c43; // "URLC"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    private final Cache<String, String> originalUrlCache;
+    private final IUrlShortenerDAL urlShortenerDAL;
+    private final Path snapshotFile;
+    private final int maxEntries;
+    private final long snapshotMaxAgeMillis;
+    private volatile long warmUpMillis;
+
+    public CacheWarmer(Cache<String, String> originalUrlCache, IUrlShortenerDAL urlShortenerDAL, Path snapshotFile,
+                       int maxEntries, long snapshotMaxAgeMillis) {
+        this.originalUrlCache = originalUrlCache;
+        this.urlShortenerDAL = urlShortenerDAL;
+        this.snapshotFile = snapshotFile;
+        this.maxEntries = maxEntries;
+        this.snapshotMaxAgeMillis = snapshotMaxAgeMillis;
+    }
+
+    /**
+     * Preloads the cache and returns the number of entries loaded.
+     */
+    public int warmUp() {
+        long startNanos = System.nanoTime();
+        Map<String, String> entries = readSnapshot();
+        String source = "snapshot";
+        if (entries == null) {
+            entries = urlShortenerDAL.getMostRedirectedMappings(maxEntries);
+            source = "redirect counts";
+        }
+        originalUrlCache.putAll(entries);
+        warmUpMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.info("Cache warm-up loaded {} entries from {} in {} ms", entries.size(), source, warmUpMillis);
+        return entries.size();
+    }
+
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    /**
+     * Writes the {@code maxEntries} hottest cache entries to the snapshot file. The file is replaced atomically,
+     * so a crash halfway through leaves the previous snapshot intact.
+     */
+    public void saveSnapshot() {
+        Map<String, String> hottest = originalUrlCache.policy().eviction()
+                .map(eviction -> eviction.hottest(maxEntries))
+                .orElseGet(() -> new LinkedHashMap<>(originalUrlCache.asMap()));
+        try {
+            Path temporaryFile = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(), "cache", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(hottest.size());
+                for (Map.Entry<String, String> entry : hottest.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            }
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} cache entries to {}", hottest.size(), snapshotFile);
+        } catch (IOException e) {
+            logger.error("Error saving cache snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Returns the snapshot entries, or null if there is no usable snapshot.
+     */
+    private Map<String, String> readSnapshot() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                logger.warn("Ignoring cache snapshot {} with unknown format", snapshotFile);
+                return null;
+            }
+            long ageMillis = System.currentTimeMillis() - in.readLong();
+            if (ageMillis > snapshotMaxAgeMillis) {
+                logger.info("Ignoring cache snapshot {}, {} ms old", snapshotFile, ageMillis);
+                return null;
+            }
+            int count = Math.min(in.readInt(), maxEntries);
+            Map<String, String> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                entries.put(readString(in), readString(in));
+            }
+            return entries;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable cache snapshot {}", snapshotFile, e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package com.rushtech.urlshortener.service;
+
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.util.CacheManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes expired mappings in the background. Every {@code sweepIntervalMilliseconds} a sweep deletes batches of
+ * at most {@code batchSize} expired URLs until the backlog is empty, pausing {@code batchPauseMilliseconds} between
+ * batches so the single writer connection stays available to shorten requests. A batch deleting fewer than
+ * {@code batchSize} URLs ends the sweep, however many tokens those URLs took with them. Deleted tokens are evicted from
+ * every cache tier, on this instance and through the invalidation channel on the others, and expired aliases are
+ * freed in the alias index.
+ */
+public class ExpiredUrlSweeper implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredUrlSweeper.class);
+
+    private final IUrlShortenerDAL urlShortenerDAL;
+    private final CacheManager cacheManager;
+    private final AliasIndex aliasIndex;
+    private final int batchSize;
+    private final long batchPauseMilliseconds;
+    private final LongAdder sweptTokens = new LongAdder();
+    private final AtomicLong backlog = new AtomicLong();
+    private final ScheduledExecutorService sweepExecutor;
+
+    public ExpiredUrlSweeper(IUrlShortenerDAL urlShortenerDAL, CacheManager cacheManager, AliasIndex aliasIndex,
+                             long sweepIntervalMilliseconds, int batchSize, long batchPauseMilliseconds) {
+        this.urlShortenerDAL = urlShortenerDAL;
+        this.cacheManager = cacheManager;
+        this.aliasIndex = aliasIndex;
+        this.batchSize = batchSize;
+        this.batchPauseMilliseconds = batchPauseMilliseconds;
+        this.sweepExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expired-url-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweepExecutor.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalMilliseconds, sweepIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one sweep and returns the number of tokens it deleted.
+     */
+    public synchronized long sweep() throws InterruptedException {
+        long deleted = 0;
+        DeletedMappings batch;
+        do {
+            if (deleted > 0) {
+                Thread.sleep(batchPauseMilliseconds);
+            }
+            batch = urlShortenerDAL.deleteExpiredMappings(batchSize);
+            List<String> deletedTokens = batch.getTokens();
+            cacheManager.invalidateAll(deletedTokens);
+            aliasIndex.releaseAll(deletedTokens);
+            sweptTokens.add(deletedTokens.size());
+            deleted += deletedTokens.size();
+        } while (batch.getDeletedUrls() >= batchSize);
+        backlog.set(urlShortenerDAL.countExpiredMappings());
+        return deleted;
+    }
+
+    public long getSweptTokens() {
+        return sweptTokens.sum();
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    private void sweepQuietly() {
+        try {
+            long deleted = sweep();
+            if (deleted > 0) {
+                logger.info("Swept {} expired tokens", deleted);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Error sweeping expired URLs, will retry on next sweep", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        sweepExecutor.shutdownNow();
+    }
+}
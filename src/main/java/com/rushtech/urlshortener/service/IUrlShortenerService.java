@@ -1,12 +1,65 @@
 package com.rushtech.urlshortener.service;
 
+import com.rushtech.urlshortener.model.UrlMapping;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 public interface IUrlShortenerService {
 
     String getOriginalUrl(String token);
 
+    /**
+     * Non-blocking form of {@link #getOriginalUrl}: a cache hit or a token known to be absent completes immediately,
+     * anything else completes on the database executor.
+     */
+    CompletableFuture<String> getOriginalUrlAsync(String token);
+
     String shortenUrl(String longUrl);
 
+    CompletableFuture<String> shortenUrlAsync(String longUrl);
+
+    /**
+     * Returns the short URLs in the order of {@code longUrls}, with null for any that could not be shortened.
+     */
+    List<String> shortenUrls(List<String> longUrls);
+
+    /**
+     * Shortens {@code longUrl} to the custom {@code alias}, or returns null if the alias is taken, ignoring case.
+     *
+     * @throws IllegalArgumentException if the alias is malformed or a reserved word
+     */
+    String shortenUrlWithAlias(String longUrl, String alias);
+
+    /**
+     * Non-blocking form of {@link #shortenUrlWithAlias}. A malformed or reserved alias is still rejected by throwing.
+     */
+    CompletableFuture<String> shortenUrlWithAliasAsync(String longUrl, String alias);
+
+    AliasIndex.Availability checkAlias(String alias);
+
+    /**
+     * Returns up to {@code limit} aliases in use that start with {@code prefix}, ignoring case, from memory.
+     *
+     * @throws IllegalArgumentException if no alias could start with the prefix
+     */
+    List<String> suggestAliases(String prefix, int limit);
+
     boolean deleteShortUrl(String token);
 
+    CompletableFuture<Boolean> deleteShortUrlAsync(String token);
+
     void incrementRedirectCount(String originalUrl);
+
+    /**
+     * Passes every stored mapping to {@code mappingConsumer}, straight from storage. Redirects the aggregator has
+     * not flushed yet are not counted.
+     */
+    void forEachMapping(Consumer<UrlMapping> mappingConsumer);
+
+    /**
+     * Returns the id the token sequence hands out next, so an export read before it carries no token it could repeat.
+     */
+    long getNextTokenId();
 }
\ No newline at end of file
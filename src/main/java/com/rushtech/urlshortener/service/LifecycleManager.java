@@ -0,0 +1,123 @@
+package com.rushtech.urlshortener.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the application is starting, ready, draining or stopped, and shuts it down in order. Components
+ * register a shutdown step as they are created; on shutdown the application first stops reporting ready and waits
+ * {@code drainDelayMilliseconds} for load balancers to notice, then runs the steps in reverse order of registration,
+ * so the server stops taking requests before the work it queued is flushed, and that work is flushed before the
+ * storage it goes to is closed.
+ *
+ * <p>The time from JVM start until {@link #markReady()} is logged and exported as {@code application.startup.duration}.
+ */
+public class LifecycleManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(LifecycleManager.class);
+
+    public enum State {
+        STARTING,
+        READY,
+        DRAINING,
+        STOPPED
+    }
+
+    private record ShutdownStep(String name, Runnable action) {
+    }
+
+    private final long drainDelayMilliseconds;
+    private final List<ShutdownStep> shutdownSteps = new ArrayList<>();
+    private volatile State state = State.STARTING;
+    private volatile long startupMillis = -1;
+
+    public LifecycleManager(long drainDelayMilliseconds, MeterRegistry meterRegistry) {
+        this.drainDelayMilliseconds = drainDelayMilliseconds;
+        TimeGauge.builder("application.startup.duration", this, TimeUnit.MILLISECONDS, LifecycleManager::getStartupMillis)
+                .description("Time from JVM start until the application reported ready")
+                .register(meterRegistry);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Whether the process is still able to serve; false only once shutdown has finished.
+     */
+    public boolean isLive() {
+        return state != State.STOPPED;
+    }
+
+    /**
+     * Whether new traffic should be sent here: only between {@link #markReady()} and the start of shutdown.
+     */
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /**
+     * Milliseconds from JVM start until the application reported ready, or -1 while it is still starting.
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    public synchronized void addShutdownStep(String name, Runnable action) {
+        shutdownSteps.add(new ShutdownStep(name, action));
+    }
+
+    public synchronized void markReady() {
+        if (state != State.STARTING) {
+            return;
+        }
+        startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        state = State.READY;
+        logger.info("Ready to serve after {} ms", startupMillis);
+    }
+
+    /**
+     * Runs {@link #shutdown()} when the JVM is asked to exit, such as on SIGTERM.
+     */
+    public void installShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "lifecycle-shutdown"));
+    }
+
+    /**
+     * Drains and runs every shutdown step once. A failing step is logged and the remaining steps still run.
+     */
+    public synchronized void shutdown() {
+        if (state == State.DRAINING || state == State.STOPPED) {
+            return;
+        }
+        boolean wasReady = state == State.READY;
+        state = State.DRAINING;
+        logger.info("Shutting down");
+        if (wasReady && drainDelayMilliseconds > 0) {
+            try {
+                Thread.sleep(drainDelayMilliseconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = shutdownSteps.size() - 1; i >= 0; i--) {
+            ShutdownStep step = shutdownSteps.get(i);
+            long startNanos = System.nanoTime();
+            try {
+                step.action().run();
+                logger.info("Shut down {} in {} ms", step.name(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            } catch (RuntimeException e) {
+                logger.error("Error shutting down " + step.name(), e);
+            }
+        }
+        state = State.STOPPED;
+        logger.info("Shut down");
+    }
+}
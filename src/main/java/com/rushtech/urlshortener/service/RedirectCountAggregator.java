@@ -0,0 +1,109 @@
+package com.rushtech.urlshortener.service;
+
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates redirect counts in memory and writes them to the database in batches.
+ * Deltas are flushed every {@code flushIntervalMilliseconds}, as soon as {@code flushThreshold}
+ * redirects are pending, and once more when the aggregator is closed.
+ */
+public class RedirectCountAggregator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectCountAggregator.class);
+
+    private final IUrlShortenerDAL urlShortenerDAL;
+    private final long flushThreshold;
+    private final ConcurrentHashMap<String, LongAdder> pendingCounts = new ConcurrentHashMap<>();
+    private final LongAdder pendingTotal = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flushExecutor;
+
+    public RedirectCountAggregator(IUrlShortenerDAL urlShortenerDAL, long flushIntervalMilliseconds, long flushThreshold) {
+        this.urlShortenerDAL = urlShortenerDAL;
+        this.flushThreshold = flushThreshold;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redirect-count-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMilliseconds, flushIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    public void increment(String originalUrl) {
+        // Counts inside compute, which excludes flush from dropping the counter between looking it up and counting
+        pendingCounts.compute(originalUrl, (key, counter) -> {
+            LongAdder pending = counter != null ? counter : new LongAdder();
+            pending.increment();
+            return pending;
+        });
+        pendingTotal.increment();
+        if (pendingTotal.sum() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes all pending deltas in a single batch. Counters are only decremented by the amount
+     * that was written, so redirects recorded while the batch is in flight are kept for the next flush,
+     * and nothing is lost when the write fails.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        Map<String, Long> deltas = new HashMap<>();
+        pendingCounts.forEach((originalUrl, counter) -> {
+            long delta = counter.sum();
+            if (delta > 0) {
+                deltas.put(originalUrl, delta);
+            } else {
+                // Idle for a whole flush cycle, drop it so the map does not grow with every URL ever redirected to
+                pendingCounts.computeIfPresent(originalUrl, (key, idleCounter) -> idleCounter.sum() == 0 ? null : idleCounter);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        urlShortenerDAL.incrementRedirectCounts(deltas);
+
+        long flushedTotal = 0;
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            pendingCounts.get(entry.getKey()).add(-entry.getValue());
+            flushedTotal += entry.getValue();
+        }
+        pendingTotal.add(-flushedTotal);
+    }
+
+    public long getPendingRedirects() {
+        return pendingTotal.sum();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error flushing redirect counts, will retry on next flush", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
@@ -0,0 +1,173 @@
+package com.rushtech.urlshortener.service;
+
+import com.rushtech.urlshortener.dal.IRedirectStatsDAL;
+import com.rushtech.urlshortener.model.RedirectReferrerCount;
+import com.rushtech.urlshortener.model.RedirectStatsBucket;
+import com.rushtech.urlshortener.model.RedirectStatsResponse;
+import com.rushtech.urlshortener.util.RedirectEventRingBuffer;
+import com.rushtech.urlshortener.util.UserAgentClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records redirect events and rolls them up into per-token minute and hour buckets. Request threads only publish
+ * onto a {@link RedirectEventRingBuffer}; every {@code flushIntervalMilliseconds} a single background thread drains
+ * it, classifies the user agent and referrer of each event, and adds the resulting bucket counts to the database in
+ * one transaction. Counts that fail to write are kept for the next flush. Minute buckets are kept for
+ * {@code minuteRetentionHours}, hour buckets for good.
+ */
+public class RedirectStatsRecorder implements AutoCloseable {
+
+    public static final int MINUTE_SECONDS = 60;
+    public static final int HOUR_SECONDS = 3600;
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectStatsRecorder.class);
+    private static final String DIRECT_REFERRER = "(direct)";
+    private static final int MAX_REFERRER_HOST_LENGTH = 253;
+    private static final int TOP_REFERRERS = 10;
+
+    private record BucketKey(String token, int resolutionSeconds, long bucketStart) {
+    }
+
+    private record ReferrerKey(String token, long bucketStart, String referrerHost) {
+    }
+
+    private final IRedirectStatsDAL redirectStatsDAL;
+    private final RedirectEventRingBuffer events;
+    private final long minuteRetentionSeconds;
+    private final Map<BucketKey, long[]> pendingBuckets = new HashMap<>();
+    private final Map<ReferrerKey, Long> pendingReferrers = new HashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+    private long nextPruneEpochSecond;
+
+    public RedirectStatsRecorder(IRedirectStatsDAL redirectStatsDAL, int bufferCapacity, long flushIntervalMilliseconds, long minuteRetentionHours) {
+        this.redirectStatsDAL = redirectStatsDAL;
+        this.events = new RedirectEventRingBuffer(bufferCapacity);
+        this.minuteRetentionSeconds = TimeUnit.HOURS.toSeconds(minuteRetentionHours);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redirect-stats-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMilliseconds, flushIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a redirect of {@code token}. Never blocks; if the buffer is full the event is dropped and counted.
+     */
+    public void record(String token, String referrer, String userAgent) {
+        events.offer(token, System.currentTimeMillis(), referrer, userAgent);
+    }
+
+    /**
+     * Drains the buffered events into the pending buckets and writes everything pending.
+     */
+    public synchronized void flush() {
+        // Bounded per pass, so producers outpacing the flusher cannot keep it draining forever
+        events.drain(this::aggregate, events.capacity());
+        if (!pendingBuckets.isEmpty()) {
+            List<RedirectStatsBucket> buckets = new ArrayList<>(pendingBuckets.size());
+            pendingBuckets.forEach((key, counts) -> buckets.add(new RedirectStatsBucket(key.token(), key.resolutionSeconds(),
+                    key.bucketStart(), counts[0], counts[1], counts[2], counts[3])));
+            List<RedirectReferrerCount> referrerCounts = new ArrayList<>(pendingReferrers.size());
+            pendingReferrers.forEach((key, redirects) -> referrerCounts.add(new RedirectReferrerCount(key.token(), key.bucketStart(),
+                    key.referrerHost(), redirects)));
+
+            redirectStatsDAL.addRedirectStats(buckets, referrerCounts);
+            pendingBuckets.clear();
+            pendingReferrers.clear();
+        }
+        pruneMinuteBuckets();
+    }
+
+    public RedirectStatsResponse getStats(String token, int resolutionSeconds, long fromEpochSecond, long toEpochSecond) {
+        return new RedirectStatsResponse(
+                token,
+                resolutionSeconds == MINUTE_SECONDS ? "minute" : "hour",
+                fromEpochSecond,
+                toEpochSecond,
+                redirectStatsDAL.getRedirectStats(token, resolutionSeconds, fromEpochSecond, toEpochSecond),
+                redirectStatsDAL.getTopReferrers(token, floor(fromEpochSecond, HOUR_SECONDS), toEpochSecond, TOP_REFERRERS)
+        );
+    }
+
+    public long getBufferedEvents() {
+        return events.size();
+    }
+
+    public long getDroppedEvents() {
+        return events.getDropped();
+    }
+
+    private void aggregate(String token, long timestampMillis, String referrer, String userAgent) {
+        long epochSecond = timestampMillis / 1000;
+        int userAgentClass = UserAgentClass.classify(userAgent).ordinal();
+        pendingBuckets.computeIfAbsent(new BucketKey(token, MINUTE_SECONDS, floor(epochSecond, MINUTE_SECONDS)), key -> new long[4])[userAgentClass]++;
+        long hourStart = floor(epochSecond, HOUR_SECONDS);
+        pendingBuckets.computeIfAbsent(new BucketKey(token, HOUR_SECONDS, hourStart), key -> new long[4])[userAgentClass]++;
+        pendingReferrers.merge(new ReferrerKey(token, hourStart, referrerHost(referrer)), 1L, Long::sum);
+    }
+
+    private void pruneMinuteBuckets() {
+        long now = System.currentTimeMillis() / 1000;
+        if (now < nextPruneEpochSecond) {
+            return;
+        }
+        nextPruneEpochSecond = now + HOUR_SECONDS;
+        int pruned = redirectStatsDAL.deleteRedirectStatsBefore(MINUTE_SECONDS, now - minuteRetentionSeconds);
+        if (pruned > 0) {
+            logger.info("Pruned {} minute redirect stats buckets", pruned);
+        }
+    }
+
+    /**
+     * Reduces a {@code Referer} header to its lower-cased host, so buckets do not split on paths and query strings.
+     */
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isBlank()) {
+            return DIRECT_REFERRER;
+        }
+        int start = referrer.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < referrer.length() && "/?#:".indexOf(referrer.charAt(end)) < 0) {
+            end++;
+        }
+        if (end == start) {
+            return DIRECT_REFERRER;
+        }
+        return referrer.substring(start, Math.min(end, start + MAX_REFERRER_HOST_LENGTH)).toLowerCase(Locale.ROOT);
+    }
+
+    private static long floor(long epochSecond, int resolutionSeconds) {
+        return epochSecond - Math.floorMod(epochSecond, resolutionSeconds);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error flushing redirect stats, will retry on next flush", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
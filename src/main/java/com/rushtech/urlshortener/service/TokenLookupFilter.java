@@ -0,0 +1,98 @@
+package com.rushtech.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rushtech.urlshortener.util.BloomFilter;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects lookups for tokens that are known not to exist before they reach the database.
+ * A Bloom filter of all live tokens answers "definitely absent" for most unknown tokens, and a
+ * short-lived negative cache catches the Bloom filter's false positives when they are requested repeatedly.
+ * Deleted tokens stay in the Bloom filter until the next restart, which only costs a database lookup.
+ *
+ * <p>Each instance builds its own filter, so tokens stored or deleted on another instance reach it through
+ * {@link #addInvalidated}, fed by the cache invalidation channel. Recently invalidated tokens are remembered, up to
+ * the negative cache's size, so that lookups of deleted or expired tokens are not counted as false positives.
+ */
+public class TokenLookupFilter {
+
+    private final BloomFilter liveTokens;
+    private final Cache<String, Boolean> absentTokens;
+    private final Cache<String, Boolean> invalidatedTokens;
+
+    private final LongAdder bloomFilterRejections = new LongAdder();
+    private final LongAdder bloomFilterFalsePositives = new LongAdder();
+    private final LongAdder negativeCacheHits = new LongAdder();
+
+    public TokenLookupFilter(long expectedTokens, double falsePositiveProbability, long negativeCacheExpireAfterWriteSeconds, long negativeCacheMaximumSize) {
+        this.liveTokens = new BloomFilter(expectedTokens, falsePositiveProbability);
+        this.absentTokens = Caffeine.newBuilder()
+                .expireAfterWrite(negativeCacheExpireAfterWriteSeconds, TimeUnit.SECONDS)
+                .maximumSize(negativeCacheMaximumSize)
+                .build();
+        this.invalidatedTokens = Caffeine.newBuilder()
+                .maximumSize(negativeCacheMaximumSize)
+                .build();
+    }
+
+    public boolean mightExist(String token) {
+        if (!liveTokens.mightContain(token)) {
+            bloomFilterRejections.increment();
+            return false;
+        }
+        if (absentTokens.getIfPresent(token) != null) {
+            negativeCacheHits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void addToken(String token) {
+        liveTokens.put(token);
+        absentTokens.invalidate(token);
+    }
+
+    /**
+     * Adds tokens that were stored or deleted on this or another instance. A deleted token was in the Bloom filter
+     * already; a token stored elsewhere is let through from now on.
+     */
+    public void addInvalidated(Collection<String> tokens) {
+        for (String token : tokens) {
+            addToken(token);
+            invalidatedTokens.put(token, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Records that the database had no mapping for a token the Bloom filter let through. Only tokens the filter was
+     * never told about count as false positives; the others were deleted or expired.
+     */
+    public void recordAbsent(String token) {
+        if (invalidatedTokens.getIfPresent(token) == null) {
+            bloomFilterFalsePositives.increment();
+        }
+        absentTokens.put(token, Boolean.TRUE);
+    }
+
+    public long getBloomFilterRejections() {
+        return bloomFilterRejections.sum();
+    }
+
+    public long getBloomFilterFalsePositives() {
+        return bloomFilterFalsePositives.sum();
+    }
+
+    public long getNegativeCacheHits() {
+        return negativeCacheHits.sum();
+    }
+
+    public double getBloomFilterFalsePositiveRate() {
+        long falsePositives = getBloomFilterFalsePositives();
+        long negatives = falsePositives + getBloomFilterRejections();
+        return negatives == 0 ? 0.0 : (double) falsePositives / negatives;
+    }
+}
@@ -1,8 +1,22 @@
 package com.rushtech.urlshortener.service;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
 import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.CacheManager;
 import com.rushtech.urlshortener.util.ITokenGenerator;
+import com.rushtech.urlshortener.util.TokenReservation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class UrlShortenerService implements IUrlShortenerService {
 
@@ -10,31 +24,186 @@ public class UrlShortenerService implements IUrlShortenerService {
 
     private final ITokenGenerator tokenGenerator;
     private final IUrlShortenerDAL urlShortenerDAL;
-    private final Cache<String, String> originalUrlCache;
+    private final AsyncUrlShortenerDAL asyncUrlShortenerDAL;
+    private final CacheManager cacheManager;
+    private final AsyncCache<String, String> originalUrlCache;
+    private final RedirectCountAggregator redirectCountAggregator;
+    private final TokenLookupFilter tokenLookupFilter;
+    private final AliasIndex aliasIndex;
 
-    public UrlShortenerService(ITokenGenerator tokenGenerator, IUrlShortenerDAL urlShortenerDAL, Cache<String, String> originalUrlCache) {
+    public UrlShortenerService(ITokenGenerator tokenGenerator, IUrlShortenerDAL urlShortenerDAL, AsyncUrlShortenerDAL asyncUrlShortenerDAL,
+                               CacheManager cacheManager, RedirectCountAggregator redirectCountAggregator,
+                               TokenLookupFilter tokenLookupFilter, AliasIndex aliasIndex) {
         this.tokenGenerator = tokenGenerator;
         this.urlShortenerDAL = urlShortenerDAL;
-        this.originalUrlCache = originalUrlCache;
+        this.asyncUrlShortenerDAL = asyncUrlShortenerDAL;
+        this.cacheManager = cacheManager;
+        this.originalUrlCache = cacheManager.getOriginalUrlCache();
+        this.redirectCountAggregator = redirectCountAggregator;
+        this.tokenLookupFilter = tokenLookupFilter;
+        this.aliasIndex = aliasIndex;
     }
 
+    /**
+     * Looks the token up in the per-node cache and, on a miss, loads it from the shared cache tier or the database,
+     * writing database hits back to the shared tier. Concurrent misses for the same token are coalesced: the first
+     * caller parks an incomplete future in the cache and does the load, everybody else waits on that future. A load
+     * that finds nothing or fails completes the future with null or the error, which removes it from the cache, so
+     * only the negative cache remembers absent tokens and only for its short expiry.
+     */
     @Override
     public String getOriginalUrl(String token) {
-        String originalUrl = getCachedOriginalUrl(token);
-        if (originalUrl == null) {
-            originalUrl = urlShortenerDAL.getOriginalUrl(token);
-            cacheOriginalUrl(token, originalUrl);
+        CompletableFuture<String> cachedOriginalUrl = originalUrlCache.getIfPresent(token);
+        if (cachedOriginalUrl != null) {
+            return await(cachedOriginalUrl);
+        }
+        if (!mightExist(token)) {
+            return null;
+        }
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> inFlightLoad = originalUrlCache.asMap().putIfAbsent(token, load);
+        if (inFlightLoad != null) {
+            return await(inFlightLoad);
+        }
+        try {
+            String originalUrl = cacheManager.getShared(token);
+            if (originalUrl == null) {
+                originalUrl = storeLoaded(token, urlShortenerDAL.getOriginalUrl(token));
+            }
+            load.complete(originalUrl);
+            return originalUrl;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
         }
-        return originalUrl;
+    }
+
+    /**
+     * Non-blocking form of {@link #getOriginalUrl}, with the same coalescing of concurrent misses.
+     */
+    @Override
+    public CompletableFuture<String> getOriginalUrlAsync(String token) {
+        CompletableFuture<String> cachedOriginalUrl = originalUrlCache.getIfPresent(token);
+        if (cachedOriginalUrl != null) {
+            return cachedOriginalUrl;
+        }
+        if (!mightExist(token)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return originalUrlCache.get(token, (key, executor) -> {
+            String sharedOriginalUrl = cacheManager.getShared(key);
+            if (sharedOriginalUrl != null) {
+                return CompletableFuture.completedFuture(sharedOriginalUrl);
+            }
+            return asyncUrlShortenerDAL.getOriginalUrl(key).thenApply(originalUrl -> storeLoaded(key, originalUrl));
+        });
     }
 
     @Override
     public String shortenUrl(String longUrl) {
-        long originalUrlId = urlShortenerDAL.getOriginalUrlId(longUrl);
-        String token = generateOrRetrieveToken(longUrl, originalUrlId);
+        String token;
+        Set<String> drawnTokens = ConcurrentHashMap.newKeySet();
+        try (TokenReservation tokens = tokenGenerator.reserve(1)) {
+            token = urlShortenerDAL.shortenOrGet(longUrl, recordDrawn(tokens, drawnTokens));
+        }
+        tokensStored(Map.of(longUrl, token), drawnTokens);
         return BASE_URL + token;
     }
 
+    @Override
+    public CompletableFuture<String> shortenUrlAsync(String longUrl) {
+        Set<String> drawnTokens = ConcurrentHashMap.newKeySet();
+        TokenReservation tokens = tokenGenerator.reserve(1);
+        return asyncUrlShortenerDAL.shortenOrGet(longUrl, recordDrawn(tokens, drawnTokens)).whenComplete((token, e) -> tokens.close()).thenApply(token -> {
+            tokensStored(Map.of(longUrl, token), drawnTokens);
+            return BASE_URL + token;
+        });
+    }
+
+    @Override
+    public List<String> shortenUrls(List<String> longUrls) {
+        Map<String, String> tokensByLongUrl;
+        Set<String> drawnTokens = ConcurrentHashMap.newKeySet();
+        try (TokenReservation tokens = tokenGenerator.reserve(longUrls.size())) {
+            tokensByLongUrl = urlShortenerDAL.shortenOrGetBatch(longUrls, recordDrawn(tokens, drawnTokens));
+        }
+        tokensStored(tokensByLongUrl, drawnTokens);
+        List<String> shortUrls = new ArrayList<>(longUrls.size());
+        for (String longUrl : longUrls) {
+            String token = tokensByLongUrl.get(longUrl);
+            shortUrls.add(token == null ? null : BASE_URL + token);
+        }
+        return shortUrls;
+    }
+
+    /**
+     * Claims the alias in the in-memory index first, so concurrent requests for it are settled without the database;
+     * the database's unique index then settles it against other servers and generated tokens.
+     */
+    @Override
+    public String shortenUrlWithAlias(String longUrl, String alias) {
+        if (!reserveAlias(alias)) {
+            return null;
+        }
+        boolean inserted;
+        try {
+            inserted = urlShortenerDAL.insertAlias(longUrl, alias);
+        } catch (RuntimeException e) {
+            aliasIndex.release(alias);
+            throw e;
+        }
+        return aliasStored(longUrl, alias, inserted);
+    }
+
+    @Override
+    public CompletableFuture<String> shortenUrlWithAliasAsync(String longUrl, String alias) {
+        if (!reserveAlias(alias)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return asyncUrlShortenerDAL.insertAlias(longUrl, alias)
+                .whenComplete((inserted, e) -> {
+                    if (e != null) {
+                        aliasIndex.release(alias);
+                    }
+                })
+                .thenApply(inserted -> aliasStored(longUrl, alias, inserted));
+    }
+
+    private boolean reserveAlias(String alias) {
+        switch (aliasIndex.reserve(alias)) {
+            case INVALID:
+                throw new IllegalArgumentException("Invalid alias: " + alias);
+            case RESERVED:
+                throw new IllegalArgumentException("Alias is a reserved word: " + alias);
+            case TAKEN:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private String aliasStored(String longUrl, String alias, boolean inserted) {
+        if (!inserted) {
+            aliasIndex.release(alias);
+            return null;
+        }
+        tokensStored(Map.of(longUrl, alias), Set.of(alias));
+        return BASE_URL + alias;
+    }
+
+    @Override
+    public AliasIndex.Availability checkAlias(String alias) {
+        return aliasIndex.check(alias);
+    }
+
+    @Override
+    public List<String> suggestAliases(String prefix, int limit) {
+        if (!aliasIndex.isValidPrefix(prefix)) {
+            throw new IllegalArgumentException("Invalid alias prefix: " + prefix);
+        }
+        return aliasIndex.suggest(prefix, limit);
+    }
+
     @Override
     public boolean deleteShortUrl(String token) {
         boolean deletedFromDatabase = urlShortenerDAL.deleteShortUrl(token);
@@ -44,38 +213,92 @@ public class UrlShortenerService implements IUrlShortenerService {
         return deletedFromDatabase;
     }
 
+    @Override
+    public CompletableFuture<Boolean> deleteShortUrlAsync(String token) {
+        return asyncUrlShortenerDAL.deleteShortUrl(token).thenApply(deletedFromDatabase -> {
+            if (deletedFromDatabase) {
+                removeFromCache(token);
+            }
+            return deletedFromDatabase;
+        });
+    }
+
     private void removeFromCache(String token) {
-        originalUrlCache.invalidate(token);
+        cacheManager.invalidate(token);
+        aliasIndex.release(token);
     }
 
     @Override
     public void incrementRedirectCount(String originalUrl) {
-        urlShortenerDAL.incrementRedirectCount(originalUrl);
+        redirectCountAggregator.increment(originalUrl);
     }
 
-    private String getCachedOriginalUrl(String token) {
-        return originalUrlCache.getIfPresent(token);
+    @Override
+    public void forEachMapping(Consumer<UrlMapping> mappingConsumer) {
+        urlShortenerDAL.forEachMapping(mappingConsumer);
+    }
+
+    @Override
+    public long getNextTokenId() {
+        return urlShortenerDAL.getNextTokenId();
     }
 
-    private void cacheOriginalUrl(String token, String originalUrl) {
-        if (originalUrl != null) {
-            originalUrlCache.put(token, originalUrl);
+    /**
+     * Checks the lookup filter and, when it rejects the token, the shared tier: another instance may have stored the
+     * token after this one built its filter, and its announcement may not have arrived or may have been dropped.
+     */
+    private boolean mightExist(String token) {
+        if (tokenLookupFilter.mightExist(token)) {
+            return true;
         }
+        if (cacheManager.getShared(token) == null) {
+            return false;
+        }
+        tokenLookupFilter.addToken(token);
+        return true;
     }
 
-    private String generateOrRetrieveToken(String longUrl, long originalUrlId) {
-        String token;
-        if (originalUrlId == -1) {
-            token = tokenGenerator.generateToken();
-            originalUrlId = urlShortenerDAL.insertOriginalUrl(longUrl);
-            urlShortenerDAL.insertUrlMapping(token, originalUrlId);
+    /**
+     * Adds the tokens a write returned to the lookup filter. The ones it drew are new, so they are also written to the
+     * shared tier and announced to the other instances, whose filters have not seen them.
+     */
+    private void tokensStored(Map<String, String> tokensByLongUrl, Set<String> drawnTokens) {
+        List<String> newTokens = new ArrayList<>();
+        tokensByLongUrl.forEach((longUrl, token) -> {
+            tokenLookupFilter.addToken(token);
+            if (drawnTokens.contains(token)) {
+                cacheManager.putShared(token, longUrl);
+                newTokens.add(token);
+            }
+        });
+        cacheManager.announce(newTokens);
+    }
+
+    private static Supplier<String> recordDrawn(Supplier<String> tokens, Set<String> drawnTokens) {
+        return () -> {
+            String token = tokens.get();
+            drawnTokens.add(token);
+            return token;
+        };
+    }
+
+    private String storeLoaded(String token, String originalUrl) {
+        if (originalUrl == null) {
+            tokenLookupFilter.recordAbsent(token);
         } else {
-            token = urlShortenerDAL.getTokenForOriginalUrl(originalUrlId);
-            if (token == null) {
-                token = tokenGenerator.generateToken();
-                urlShortenerDAL.insertUrlMapping(token, originalUrlId);
+            cacheManager.putShared(token, originalUrl);
+        }
+        return originalUrl;
+    }
+
+    private static String await(CompletableFuture<String> originalUrl) {
+        try {
+            return originalUrl.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
         }
-        return token;
     }
 }
@@ -0,0 +1,32 @@
+package com.rushtech.urlshortener.util;
+
+/**
+ * Base class for generators that produce base62 tokens. Each token is encoded into a small char buffer of its own
+ * rather than a per-thread one, which virtual threads would each have to build afresh; it never escapes, so the JIT
+ * can keep it off the heap.
+ */
+public abstract class Base62TokenGenerator implements ITokenGenerator {
+
+    protected static final char[] BASE62_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    protected static final int BASE = BASE62_ALPHABET.length;
+
+    protected static final int MAX_TOKEN_LENGTH = 16;
+
+    @Override
+    public String generateToken() {
+        char[] buffer = new char[MAX_TOKEN_LENGTH];
+        int length = writeToken(buffer);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Writes the next token into the start of {@code buffer} and returns its length.
+     */
+    protected abstract int writeToken(char[] buffer);
+
+    protected static void checkTokenLength(int tokenLength) {
+        if (tokenLength < 1 || tokenLength > MAX_TOKEN_LENGTH) {
+            throw new IllegalArgumentException("Token length must be between 1 and " + MAX_TOKEN_LENGTH + ": " + tokenLength);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.rushtech.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. Bits are set with compare-and-set, so concurrent
+ * inserts never block readers or each other.
+ */
+public class BloomFilter {
+
+    private static final long MURMUR_C1 = 0x87c37b91114253d5L;
+    private static final long MURMUR_C2 = 0x4cf5ad432745937fL;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctionCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long optimalBitCount = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (optimalBitCount + Long.SIZE - 1) / Long.SIZE);
+        this.bits = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * Long.SIZE;
+        this.hashFunctionCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String value) {
+        long hash1 = hash(value, 0);
+        long hash2 = hash(value, hash1);
+        for (int i = 0; i < hashFunctionCount; i++) {
+            setBit(bitIndex(hash1, hash2, i));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash1 = hash(value, 0);
+        long hash2 = hash(value, hash1);
+        for (int i = 0; i < hashFunctionCount; i++) {
+            long index = bitIndex(hash1, hash2, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long bitIndex(long hash1, long hash2, int i) {
+        // Kirsch-Mitzenmacher: derive k indexes from two independent hashes
+        return Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+    }
+
+    private void setBit(long index) {
+        int wordIndex = (int) (index >>> 6);
+        long mask = 1L << index;
+        long word;
+        do {
+            word = bits.get(wordIndex);
+            if ((word & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(wordIndex, word, word | mask));
+    }
+
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            long k = (b & 0xff) * MURMUR_C1;
+            k = Long.rotateLeft(k, 31) * MURMUR_C2;
+            hash ^= k;
+            hash = Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+        }
+        hash ^= bytes.length;
+        return fmix64(hash);
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
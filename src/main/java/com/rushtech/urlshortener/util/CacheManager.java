@@ -1,21 +1,166 @@
 package com.rushtech.urlshortener.util;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Composes the original URL cache tiers: a per-node Caffeine cache, an optional {@link ISharedUrlCache} behind it,
+ * and an optional {@link ICacheInvalidationChannel} that carries evictions to the other instances. Without a shared
+ * tier {@link #getShared} always misses, and without a channel invalidations stay local.
+ */
+public class CacheManager implements AutoCloseable {
 
-public class CacheManager {
+    private final AsyncCache<String, String> originalUrlCache;
+    private final ISharedUrlCache sharedCache;
+    private final ICacheInvalidationChannel invalidationChannel;
+    private final List<Consumer<Collection<String>>> invalidationListeners = new CopyOnWriteArrayList<>();
 
-    private static Cache<String, String> originalUrlCache;
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder sharedMisses = new LongAdder();
+    private final LongAdder invalidationsPublished = new LongAdder();
+    private final LongAdder invalidationsReceived = new LongAdder();
 
-    public static void configureCache(long expireAfterWriteMinutes, long maximumSize) {
-        originalUrlCache = Caffeine.newBuilder()
+    public CacheManager(long expireAfterWriteMinutes, long maximumSize) {
+        this(expireAfterWriteMinutes, maximumSize, null, null);
+    }
+
+    public CacheManager(long expireAfterWriteMinutes, long maximumSize, ISharedUrlCache sharedCache,
+                        ICacheInvalidationChannel invalidationChannel) {
+        this(Caffeine.newBuilder()
                 .expireAfterWrite(expireAfterWriteMinutes, TimeUnit.MINUTES)
                 .maximumSize(maximumSize)
-                .build();
+                .recordStats()
+                .buildAsync(), sharedCache, invalidationChannel);
     }
 
-    public static Cache<String, String> getOriginalUrlCache() {
+    public CacheManager(AsyncCache<String, String> originalUrlCache, ISharedUrlCache sharedCache,
+                        ICacheInvalidationChannel invalidationChannel) {
+        this.originalUrlCache = originalUrlCache;
+        this.sharedCache = sharedCache;
+        this.invalidationChannel = invalidationChannel;
+        if (invalidationChannel != null) {
+            invalidationChannel.subscribe(this::applyRemoteInvalidation);
+        }
+    }
+
+    /**
+     * The per-node cache. Use {@link #invalidate} rather than invalidating it directly, so the other tiers and
+     * instances are evicted too.
+     */
+    public AsyncCache<String, String> getOriginalUrlCache() {
         return originalUrlCache;
     }
+
+    /**
+     * Registers {@code listener} to be told about every token evicted here, whether the eviction started on this
+     * instance or another, so caches derived from the original URL can follow.
+     */
+    public void addInvalidationListener(Consumer<Collection<String>> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Returns the long URL for {@code token} from the shared tier, or null on a miss.
+     */
+    public String getShared(String token) {
+        if (sharedCache == null) {
+            return null;
+        }
+        String originalUrl = sharedCache.get(token);
+        if (originalUrl != null) {
+            sharedHits.increment();
+        } else {
+            sharedMisses.increment();
+        }
+        return originalUrl;
+    }
+
+    public void putShared(String token, String originalUrl) {
+        if (sharedCache != null) {
+            sharedCache.put(token, originalUrl);
+        }
+    }
+
+    public void invalidate(String token) {
+        invalidateAll(List.of(token));
+    }
+
+    /**
+     * Evicts {@code tokens} from every tier and asks the other instances to do the same.
+     */
+    public void invalidateAll(Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        invalidateLocally(tokens);
+        if (invalidationChannel != null) {
+            invalidationChannel.publish(tokens);
+            invalidationsPublished.add(tokens.size());
+        }
+    }
+
+    /**
+     * Tells the other instances about newly stored {@code tokens}. They receive them as invalidations, which evicts
+     * nothing, since no instance can have cached a new token, but lets their invalidation listeners learn the tokens.
+     */
+    public void announce(Collection<String> tokens) {
+        if (invalidationChannel != null && !tokens.isEmpty()) {
+            invalidationChannel.publish(tokens);
+            invalidationsPublished.add(tokens.size());
+        }
+    }
+
+    public long getSharedHits() {
+        return sharedHits.sum();
+    }
+
+    public long getSharedMisses() {
+        return sharedMisses.sum();
+    }
+
+    public double getSharedHitRate() {
+        long hits = getSharedHits();
+        long requests = hits + getSharedMisses();
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    public long getInvalidationsPublished() {
+        return invalidationsPublished.sum();
+    }
+
+    public long getInvalidationsReceived() {
+        return invalidationsReceived.sum();
+    }
+
+    @Override
+    public void close() {
+        if (invalidationChannel != null) {
+            invalidationChannel.close();
+        }
+        if (sharedCache != null) {
+            sharedCache.close();
+        }
+    }
+
+    private void applyRemoteInvalidation(Collection<String> tokens) {
+        invalidateLocally(tokens);
+        invalidationsReceived.add(tokens.size());
+    }
+
+    private void invalidateLocally(Collection<String> tokens) {
+        originalUrlCache.synchronous().invalidateAll(tokens);
+        if (sharedCache != null) {
+            tokens.forEach(sharedCache::invalidate);
+        }
+        for (Consumer<Collection<String>> listener : invalidationListeners) {
+            listener.accept(tokens);
+        }
+    }
 }
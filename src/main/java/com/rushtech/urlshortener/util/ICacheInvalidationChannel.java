@@ -0,0 +1,24 @@
+package com.rushtech.urlshortener.util;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between application instances, so a token deleted on one node is evicted from the
+ * caches of the others instead of being served until it expires.
+ */
+public interface ICacheInvalidationChannel extends AutoCloseable {
+
+    /**
+     * Tells every other instance to evict {@code tokens}. Delivery is best effort.
+     */
+    void publish(Collection<String> tokens);
+
+    /**
+     * Registers {@code listener} for tokens published by other instances. It is called on the channel's own thread.
+     */
+    void subscribe(Consumer<Collection<String>> listener);
+
+    @Override
+    void close();
+}
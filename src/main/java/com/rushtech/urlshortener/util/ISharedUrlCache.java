@@ -0,0 +1,20 @@
+package com.rushtech.urlshortener.util;
+
+/**
+ * Second-level token to long URL cache that outlives and is shared between application instances, consulted by
+ * {@link CacheManager} after a miss in the per-node cache. Implementations may drop entries at any time.
+ */
+public interface ISharedUrlCache extends AutoCloseable {
+
+    /**
+     * Returns the cached long URL for {@code token}, or null if there is none or it has expired.
+     */
+    String get(String token);
+
+    void put(String token, String originalUrl);
+
+    void invalidate(String token);
+
+    @Override
+    void close();
+}
@@ -2,4 +2,13 @@ package com.rushtech.urlshortener.util;
 
 public interface ITokenGenerator {
     String generateToken();
+
+    /**
+     * Returns the token supplier for one write adding up to {@code tokens} mappings, to be drawn on inside its
+     * transaction and closed once the write is done. Generators that need the database to make tokens do so here,
+     * before the transaction opens, so drawing on the supplier never waits for a second write connection.
+     */
+    default TokenReservation reserve(int tokens) {
+        return this::generateToken;
+    }
 }
@@ -0,0 +1,284 @@
+package com.rushtech.urlshortener.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ISharedUrlCache} in a memory-mapped file. Every instance on a host that maps the same file shares its
+ * entries, which live off-heap in the page cache rather than in each JVM's heap. The table is set-associative:
+ * a token hashes to a set of {@value #WAYS} slots, and a put into a full set replaces the entry closest to expiry.
+ *
+ * <p>Each slot is guarded by a sequence lock whose counter is compare-and-set directly in the mapping, which is atomic
+ * across processes too. A writer makes the counter odd while it writes and a reader discards whatever it read while
+ * the counter was odd or changed; a writer that finds the slot busy skips its write, as a cache may. Invalidation
+ * may not be skipped, since the busy writer may be storing the very entry being invalidated, so it waits for the slot
+ * instead. A slot whose writer died halfway stays unusable until the file is deleted; invalidation gives up on it after
+ * a few milliseconds, which is harmless as readers skip it too.
+ *
+ * <p>Slots are {@value #SLOT_BYTES} bytes: the long sequence, the expiry in epoch millis, the token length (0 for an
+ * empty slot) and URL length as shorts, then the token and URL bytes. Tokens over {@value #MAX_TOKEN_BYTES} bytes and
+ * URLs over {@value #MAX_URL_BYTES} bytes are not cached. An existing file is reused with its own size, since
+ * resizing it under another process's mapping would crash that process.
+ */
+public class MappedSharedUrlCache implements ISharedUrlCache {
+
+    static final int MAX_TOKEN_BYTES = 64;
+    static final int MAX_URL_BYTES = 940;
+
+    private static final int MAGIC = 0x55524c32; // "URL2"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int SLOT_BYTES = 1024;
+    static final int TOKEN_OFFSET = 20;
+    private static final int SET_COUNT_OFFSET = 8;
+    private static final int WAYS = 4;
+    private static final int EXPIRES_AT_OFFSET = 8;
+    private static final int TOKEN_LENGTH_OFFSET = 16;
+    private static final int URL_LENGTH_OFFSET = 18;
+    private static final int URL_OFFSET = TOKEN_OFFSET + MAX_TOKEN_BYTES;
+    private static final int MAX_SET_COUNT = 1 << 18; // 1 GiB, the table must fit in a single mapping
+    // Writes take microseconds, so a slot busy for this long belongs to a writer that died
+    private static final long MAX_INVALIDATION_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final VarHandle SEQUENCE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final long timeToLiveMillis;
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final int setMask;
+
+    public MappedSharedUrlCache(Path file, int maximumEntries, long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int setCount;
+            // Another instance may be creating the file at the same moment
+            FileLock lock = channel.lock();
+            try {
+                setCount = readSetCount();
+                if (setCount == 0) {
+                    setCount = setCountFor(maximumEntries);
+                    initialize(setCount);
+                }
+            } finally {
+                lock.release();
+            }
+            table = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, (long) setCount * WAYS * SLOT_BYTES);
+            setMask = setCount - 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening shared URL cache " + file, e);
+        }
+    }
+
+    @Override
+    public String get(String token) {
+        byte[] key = token.getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || key.length > MAX_TOKEN_BYTES) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int firstSlot = firstSlotOf(key);
+        for (int way = 0; way < WAYS; way++) {
+            String originalUrl = read(slotPosition(firstSlot + way), key, now);
+            if (originalUrl != null) {
+                return originalUrl;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(String token, String originalUrl) {
+        byte[] key = token.getBytes(StandardCharsets.UTF_8);
+        byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || key.length > MAX_TOKEN_BYTES || url.length > MAX_URL_BYTES) {
+            return;
+        }
+        int firstSlot = firstSlotOf(key);
+        int victim = -1;
+        long victimExpiresAt = Long.MAX_VALUE;
+        for (int way = 0; way < WAYS; way++) {
+            int position = slotPosition(firstSlot + way);
+            if (holds(position, key)) {
+                victim = position;
+                break;
+            }
+            long expiresAt = table.getShort(position + TOKEN_LENGTH_OFFSET) == 0 ? 0 : table.getLong(position + EXPIRES_AT_OFFSET);
+            if (expiresAt < victimExpiresAt) {
+                victim = position;
+                victimExpiresAt = expiresAt;
+            }
+        }
+        write(victim, key, url, System.currentTimeMillis() + timeToLiveMillis);
+    }
+
+    @Override
+    public void invalidate(String token) {
+        byte[] key = token.getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || key.length > MAX_TOKEN_BYTES) {
+            return;
+        }
+        int firstSlot = firstSlotOf(key);
+        for (int way = 0; way < WAYS; way++) {
+            empty(slotPosition(firstSlot + way), key);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String read(int position, byte[] key, long now) {
+        long sequence = (long) SEQUENCE.getAcquire(table, position);
+        if ((sequence & 1) != 0 || !holds(position, key)) {
+            return null;
+        }
+        long expiresAt = table.getLong(position + EXPIRES_AT_OFFSET);
+        int urlLength = table.getShort(position + URL_LENGTH_OFFSET);
+        if (expiresAt <= now || urlLength <= 0 || urlLength > MAX_URL_BYTES) {
+            return null;
+        }
+        byte[] url = new byte[urlLength];
+        table.get(position + URL_OFFSET, url, 0, urlLength);
+        VarHandle.acquireFence();
+        if ((long) SEQUENCE.getVolatile(table, position) != sequence) {
+            return null;
+        }
+        return new String(url, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Empties the slot if it holds {@code key}, waiting out any writer busy with it.
+     */
+    private void empty(int position, byte[] key) {
+        long deadline = System.nanoTime() + MAX_INVALIDATION_WAIT_NANOS;
+        while (true) {
+            long sequence = (long) SEQUENCE.getAcquire(table, position);
+            if ((sequence & 1) == 0) {
+                boolean held = holds(position, key);
+                VarHandle.acquireFence();
+                if (!held && (long) SEQUENCE.getVolatile(table, position) == sequence) {
+                    return;
+                }
+                if (held && SEQUENCE.compareAndSet(table, position, sequence, sequence + 1)) {
+                    try {
+                        // Checked again now that no writer can change the slot
+                        if (holds(position, key)) {
+                            table.putShort(position + TOKEN_LENGTH_OFFSET, (short) 0);
+                        }
+                    } finally {
+                        SEQUENCE.setRelease(table, position, sequence + 2);
+                    }
+                    return;
+                }
+            } else if (System.nanoTime() - deadline > 0) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Writes {@code key} and {@code url} into the slot, unless another writer is busy with it.
+     */
+    private void write(int position, byte[] key, byte[] url, long expiresAt) {
+        long sequence = (long) SEQUENCE.getVolatile(table, position);
+        if ((sequence & 1) != 0 || !SEQUENCE.compareAndSet(table, position, sequence, sequence + 1)) {
+            return;
+        }
+        try {
+            table.putLong(position + EXPIRES_AT_OFFSET, expiresAt);
+            table.putShort(position + TOKEN_LENGTH_OFFSET, (short) key.length);
+            table.putShort(position + URL_LENGTH_OFFSET, (short) url.length);
+            table.put(position + TOKEN_OFFSET, key);
+            table.put(position + URL_OFFSET, url);
+        } finally {
+            SEQUENCE.setRelease(table, position, sequence + 2);
+        }
+    }
+
+    private boolean holds(int position, byte[] key) {
+        if (table.getShort(position + TOKEN_LENGTH_OFFSET) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (table.get(position + TOKEN_OFFSET + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the set count recorded in the file header, or 0 if the file is new or not a valid cache.
+     */
+    private int readSetCount() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        int setCount = header.getInt(SET_COUNT_OFFSET);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || setCount <= 0 || Integer.bitCount(setCount) != 1
+                || setCount > MAX_SET_COUNT || channel.size() != HEADER_BYTES + (long) setCount * WAYS * SLOT_BYTES) {
+            return 0;
+        }
+        return setCount;
+    }
+
+    private void initialize(int setCount) throws IOException {
+        long fileBytes = HEADER_BYTES + (long) setCount * WAYS * SLOT_BYTES;
+        channel.truncate(0);
+        channel.write(ByteBuffer.allocate(1), fileBytes - 1); // sparse, zero-filled slots are empty
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(SET_COUNT_OFFSET, setCount);
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    private int firstSlotOf(byte[] key) {
+        return (int) (hash(key) & setMask) * WAYS;
+    }
+
+    private static int slotPosition(int slot) {
+        return slot * SLOT_BYTES;
+    }
+
+    private static int setCountFor(int maximumEntries) {
+        int sets = Math.max(1, (maximumEntries + WAYS - 1) / WAYS);
+        int powerOfTwoSets = sets == 1 ? 1 : Integer.highestOneBit(sets - 1) << 1;
+        return Math.min(MAX_SET_COUNT, powerOfTwoSets);
+    }
+
+    /**
+     * FNV-1a over the key bytes, finished with the MurmurHash3 64-bit mixer.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
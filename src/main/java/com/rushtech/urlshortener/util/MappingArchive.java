@@ -0,0 +1,333 @@
+package com.rushtech.urlshortener.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.rushtech.urlshortener.model.UrlMapping;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes exported mappings one at a time, so an export or import of any size runs in constant memory.
+ *
+ * <p>The binary format starts with the magic number {@code URLM} and a version byte, followed by one record per
+ * mapping: its length, then the token and long URL as length-prefixed UTF-8, the expiration, the redirect count and a
+ * flags byte marking custom aliases. A record length of zero ends the archive and is followed by the number of
+ * records, so a truncated archive is detected rather than imported in part, and by the next id of the token sequence.
+ * Version 1 archives, without the flags and the sequence id, are still read. The NDJSON format has one object per line
+ * with the same fields, for use with other tools, and a last line holding only {@code nextTokenId}. Either can be
+ * gzip compressed; the reader recognises all of them.
+ */
+public final class MappingArchive {
+
+    public enum Format {
+        BINARY,
+        NDJSON
+    }
+
+    private static final int MAGIC = 0x55524c4d;
+    private static final int VERSION = 2;
+    private static final int FIRST_VERSION = 1;
+    private static final int ALIAS_FLAG = 1;
+    private static final int GZIP_MAGIC = 0x1f8b;
+    private static final int GZIP_BUFFER_BYTES = 64 * 1024;
+    // Longer than any token or URL the service accepts, so a corrupt length fails fast instead of allocating
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private MappingArchive() {
+    }
+
+    /**
+     * Writes to {@code out}, which is closed with the writer. Callers should buffer it unless it is compressed.
+     */
+    public static Writer newWriter(OutputStream out, Format format, boolean compress) throws IOException {
+        OutputStream target = compress ? new GZIPOutputStream(out, GZIP_BUFFER_BYTES) : out;
+        return format == Format.BINARY ? new BinaryWriter(target) : new NdjsonWriter(target);
+    }
+
+    /**
+     * Reads from {@code in}, which is closed with the reader, detecting compression and format from its first bytes.
+     */
+    public static Reader newReader(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, GZIP_BUFFER_BYTES);
+        if (peekInt(buffered, 2) == GZIP_MAGIC) {
+            buffered = new BufferedInputStream(new GZIPInputStream(buffered, GZIP_BUFFER_BYTES), GZIP_BUFFER_BYTES);
+        }
+        if (peekInt(buffered, 4) == MAGIC) {
+            return new BinaryReader(buffered);
+        }
+        return new NdjsonReader(buffered);
+    }
+
+    private static int peekInt(BufferedInputStream in, int bytes) throws IOException {
+        in.mark(bytes);
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = in.read();
+            if (b < 0) {
+                in.reset();
+                return -1;
+            }
+            value = value << 8 | b;
+        }
+        in.reset();
+        return value;
+    }
+
+    public abstract static class Writer implements Closeable {
+
+        private long mappingCount;
+        private long nextTokenId;
+
+        public final void write(UrlMapping mapping) throws IOException {
+            writeMapping(mapping);
+            mappingCount++;
+        }
+
+        public long getMappingCount() {
+            return mappingCount;
+        }
+
+        /**
+         * Records the token sequence's next id, written when the writer is closed.
+         */
+        public void setNextTokenId(long nextTokenId) {
+            this.nextTokenId = nextTokenId;
+        }
+
+        long getNextTokenId() {
+            return nextTokenId;
+        }
+
+        abstract void writeMapping(UrlMapping mapping) throws IOException;
+    }
+
+    public abstract static class Reader implements Closeable {
+
+        long nextTokenId;
+
+        /**
+         * Returns the next mapping, or null at the end of the archive.
+         *
+         * @throws EOFException if the archive was cut short
+         */
+        public abstract UrlMapping read() throws IOException;
+
+        /**
+         * Returns the token sequence's next id recorded in the archive, once {@link #read} has returned null, or 0 if
+         * the archive does not record one.
+         */
+        public long getNextTokenId() {
+            return nextTokenId;
+        }
+    }
+
+    private static final class BinaryWriter extends Writer {
+
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        @Override
+        void writeMapping(UrlMapping mapping) throws IOException {
+            byte[] token = mapping.getToken().getBytes(StandardCharsets.UTF_8);
+            byte[] longUrl = mapping.getLongUrl().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(Integer.BYTES * 2 + token.length + longUrl.length + Long.BYTES * 2 + 1);
+            out.writeInt(token.length);
+            out.write(token);
+            out.writeInt(longUrl.length);
+            out.write(longUrl);
+            out.writeLong(mapping.getExpirationMillis());
+            out.writeLong(mapping.getRedirectCount());
+            out.writeByte(mapping.isAlias() ? ALIAS_FLAG : 0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeInt(0);
+            out.writeLong(getMappingCount());
+            out.writeLong(getNextTokenId());
+            out.close();
+        }
+    }
+
+    private static final class BinaryReader extends Reader {
+
+        private final DataInputStream in;
+        private final int version;
+        private long mappingCount;
+        private boolean ended;
+
+        BinaryReader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            this.in.readInt();
+            this.version = this.in.readUnsignedByte();
+            if (version < FIRST_VERSION || version > VERSION) {
+                throw new IOException("Unsupported mapping archive version " + version);
+            }
+        }
+
+        @Override
+        public UrlMapping read() throws IOException {
+            if (ended) {
+                return null;
+            }
+            int recordBytes = in.readInt();
+            if (recordBytes == 0) {
+                long expectedCount = in.readLong();
+                if (expectedCount != mappingCount) {
+                    throw new IOException("Mapping archive ended after " + mappingCount + " of " + expectedCount + " mappings");
+                }
+                if (version > FIRST_VERSION) {
+                    nextTokenId = in.readLong();
+                }
+                // Also reads to the end of a compressed stream, so its checksum is verified too
+                if (in.read() != -1) {
+                    throw new IOException("Unexpected data after the end of the mapping archive");
+                }
+                ended = true;
+                return null;
+            }
+            if (recordBytes < 0 || recordBytes > MAX_RECORD_BYTES) {
+                throw new IOException("Corrupt mapping archive: record of " + recordBytes + " bytes");
+            }
+            String token = readString(recordBytes);
+            String longUrl = readString(recordBytes);
+            long expirationMillis = in.readLong();
+            long redirectCount = in.readLong();
+            boolean alias = version > FIRST_VERSION && (in.readUnsignedByte() & ALIAS_FLAG) != 0;
+            UrlMapping mapping = new UrlMapping(token, longUrl, expirationMillis, redirectCount, alias);
+            mappingCount++;
+            return mapping;
+        }
+
+        private String readString(int recordBytes) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > recordBytes) {
+                throw new IOException("Corrupt mapping archive: string of " + length + " bytes");
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class NdjsonWriter extends Writer {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out).setRootValueSeparator(null);
+        }
+
+        @Override
+        void writeMapping(UrlMapping mapping) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("token", mapping.getToken());
+            generator.writeStringField("longUrl", mapping.getLongUrl());
+            if (mapping.getExpirationMillis() == UrlMapping.NO_EXPIRATION) {
+                generator.writeNullField("expirationMillis");
+            } else {
+                generator.writeNumberField("expirationMillis", mapping.getExpirationMillis());
+            }
+            generator.writeNumberField("redirectCount", mapping.getRedirectCount());
+            generator.writeBooleanField("alias", mapping.isAlias());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("nextTokenId", getNextTokenId());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.close();
+        }
+    }
+
+    private static final class NdjsonReader extends Reader {
+
+        private final JsonParser parser;
+
+        NdjsonReader(InputStream in) throws IOException {
+            this.parser = jsonFactory.createParser(in);
+        }
+
+        @Override
+        public UrlMapping read() throws IOException {
+            JsonToken start;
+            while ((start = parser.nextToken()) != null) {
+                if (start != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected a mapping object at " + parser.currentLocation());
+                }
+                UrlMapping mapping = readObject();
+                if (mapping != null) {
+                    return mapping;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the mapping the object holds, or null for the line holding only {@code nextTokenId}.
+         */
+        private UrlMapping readObject() throws IOException {
+            String token = null;
+            String longUrl = null;
+            long expirationMillis = UrlMapping.NO_EXPIRATION;
+            long redirectCount = 0;
+            boolean alias = false;
+            boolean sequenceOnly = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "token" -> token = parser.getValueAsString();
+                    case "longUrl" -> longUrl = parser.getValueAsString();
+                    case "expirationMillis" -> expirationMillis = value == JsonToken.VALUE_NULL ? UrlMapping.NO_EXPIRATION : parser.getLongValue();
+                    case "redirectCount" -> redirectCount = parser.getLongValue();
+                    case "alias" -> alias = parser.getValueAsBoolean();
+                    case "nextTokenId" -> {
+                        nextTokenId = parser.getLongValue();
+                        sequenceOnly = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (sequenceOnly && token == null && longUrl == null) {
+                return null;
+            }
+            if (token == null || longUrl == null) {
+                throw new IOException("Mapping without token or longUrl at " + parser.currentLocation());
+            }
+            return new UrlMapping(token, longUrl, expirationMillis, redirectCount, alias);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.rushtech.urlshortener.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Generates random base62 tokens of a fixed length. All threads draw from one thread-safe SecureRandom, as one per
+ * thread would be seeded again for every virtual thread, and each random long is split into 6-bit groups so one
+ * draw yields up to ten characters.
+ */
+public class RandomTokenGenerator extends Base62TokenGenerator {
+
+    private static final int BITS_PER_CHARACTER = 6;
+    private static final int CHARACTERS_PER_LONG = Long.SIZE / BITS_PER_CHARACTER;
+    private static final int CHARACTER_MASK = (1 << BITS_PER_CHARACTER) - 1;
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final int tokenLength;
+
+    public RandomTokenGenerator(int tokenLength) {
+        checkTokenLength(tokenLength);
+        this.tokenLength = tokenLength;
+    }
+
+    @Override
+    protected int writeToken(char[] buffer) {
+        int written = 0;
+        while (written < tokenLength) {
+            long randomBits = secureRandom.nextLong();
+            for (int i = 0; i < CHARACTERS_PER_LONG && written < tokenLength; i++) {
+                int value = (int) (randomBits & CHARACTER_MASK);
+                randomBits >>>= BITS_PER_CHARACTER;
+                // Rejecting 62 and 63 keeps every character equally likely
+                if (value < BASE) {
+                    buffer[written++] = BASE62_ALPHABET[value];
+                }
+            }
+        }
+        return tokenLength;
+    }
+}
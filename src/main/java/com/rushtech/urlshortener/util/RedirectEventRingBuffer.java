@@ -0,0 +1,125 @@
+package com.rushtech.urlshortener.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lock-free queue of redirect events for many producers and a single consumer. Slots are preallocated as
+ * parallel arrays, so publishing an event is one compare-and-set on the tail plus four array stores, with no
+ * allocation. Each slot carries a sequence number telling producers when it is free and the consumer when it is
+ * filled. A producer that finds the buffer full drops its event rather than waiting for the consumer.
+ *
+ * <p>Producers hand over the referrer and user agent exactly as received; parsing them is left to the consumer.
+ */
+public class RedirectEventRingBuffer {
+
+    /**
+     * Receives the fields of one event drained from the buffer.
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+        void onEvent(String token, long timestampMillis, String referrer, String userAgent);
+    }
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] tokens;
+    private final long[] timestamps;
+    private final String[] referrers;
+    private final String[] userAgents;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long head;
+
+    /**
+     * @param capacity slots in the buffer, rounded up to a power of two
+     */
+    public RedirectEventRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity out of range: " + capacity);
+        }
+        int slots = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = slots - 1;
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+        this.tokens = new String[slots];
+        this.timestamps = new long[slots];
+        this.referrers = new String[slots];
+        this.userAgents = new String[slots];
+    }
+
+    /**
+     * Publishes an event, returning false if the buffer was full and the event was dropped.
+     */
+    public boolean offer(String token, long timestampMillis, String referrer, String userAgent) {
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) position & mask;
+            long sequence = sequences.getAcquire(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                dropped.increment();
+                return false;
+            }
+            // Otherwise another producer claimed this position first, retry with the new tail
+        }
+        tokens[slot] = token;
+        timestamps[slot] = timestampMillis;
+        referrers[slot] = referrer;
+        userAgents[slot] = userAgent;
+        sequences.setRelease(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Hands up to {@code limit} published events to {@code handler}, oldest first, and returns how many it handed
+     * over. Must only be called from one thread at a time.
+     */
+    public int drain(EventHandler handler, int limit) {
+        long position = head;
+        int drained = 0;
+        while (drained < limit) {
+            int slot = (int) position & mask;
+            if (sequences.getAcquire(slot) != position + 1) {
+                break;
+            }
+            String token = tokens[slot];
+            long timestampMillis = timestamps[slot];
+            String referrer = referrers[slot];
+            String userAgent = userAgents[slot];
+            tokens[slot] = null;
+            referrers[slot] = null;
+            userAgents[slot] = null;
+            // Hands the slot back to producers for the next lap
+            sequences.setRelease(slot, position + mask + 1);
+            position++;
+            drained++;
+            handler.onEvent(token, timestampMillis, referrer, userAgent);
+        }
+        head = position;
+        return drained;
+    }
+
+    /**
+     * Events published or being published but not yet drained.
+     */
+    public long size() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
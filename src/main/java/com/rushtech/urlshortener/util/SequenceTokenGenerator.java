@@ -0,0 +1,141 @@
+package com.rushtech.urlshortener.util;
+
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates tokens by base62-encoding ids from a database-backed sequence. Ids are leased from the database a block
+ * of {@code blockSize} at a time, shared by all threads, so the database is only hit once per block. Threads claim
+ * ids from the block with a compare-and-set and only take a lock to lease the next one. Ids are unique
+ * across nodes, so tokens never collide with each other; ids left unused in a block when the process stops are
+ * simply skipped.
+ *
+ * <p>Leasing takes SQLite's write lock, so it must not happen inside a write transaction, which already holds it.
+ * {@link #reserve} leases whatever a write needs before its transaction opens, and the ids it sets aside are then
+ * encoded without touching the database.
+ */
+public class SequenceTokenGenerator extends Base62TokenGenerator {
+
+    // Ids kept in the block beyond each reservation, for writes retrying after token collisions
+    private static final int RETRY_HEADROOM = 4;
+
+    private final IUrlShortenerDAL urlShortenerDAL;
+    private final int blockSize;
+    private final int minimumTokenLength;
+
+    // The unclaimed rest of the leased block. Leases move nextId, then blockEnd, under the lock; claims and give-backs
+    // only compare-and-set nextId
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile long blockEnd;
+
+    public SequenceTokenGenerator(IUrlShortenerDAL urlShortenerDAL, int blockSize, int minimumTokenLength) {
+        checkTokenLength(minimumTokenLength);
+        this.urlShortenerDAL = urlShortenerDAL;
+        this.blockSize = blockSize;
+        this.minimumTokenLength = minimumTokenLength;
+    }
+
+    /**
+     * Sets aside {@code tokens} consecutive ids, leasing a block first if too few are left. Ids the write does not
+     * use are given back on close when no other write has claimed ids since. A write drawing more tokens than it
+     * reserved, when retrying after collisions, gets ids from the headroom left in the block; it only leases when
+     * that is gone too.
+     */
+    @Override
+    public TokenReservation reserve(int tokens) {
+        long start = claimIds(tokens, RETRY_HEADROOM);
+        return new IdRange(start, start + tokens);
+    }
+
+    @Override
+    protected int writeToken(char[] buffer) {
+        return writeId(claimIds(1, 0), buffer);
+    }
+
+    private long claimIds(int count, int headroom) {
+        while (true) {
+            // Read before blockEnd, so if a lease has moved to another block in between, the compare-and-set fails
+            long start = nextId.get();
+            if (blockEnd - start < count + headroom) {
+                return claimIdsLeasing(count, headroom);
+            }
+            if (nextId.compareAndSet(start, start + count)) {
+                return start;
+            }
+        }
+    }
+
+    private synchronized long claimIdsLeasing(int count, int headroom) {
+        while (true) {
+            long start = nextId.get();
+            if (blockEnd - start < count + headroom) {
+                lease(Math.max(blockSize, count + headroom));
+            } else if (nextId.compareAndSet(start, start + count)) {
+                return start;
+            }
+        }
+    }
+
+    private void lease(int size) {
+        long start = urlShortenerDAL.reserveTokenIdBlock(size);
+        if (start != blockEnd) {
+            // Another node leased in between, so what was left of the current block cannot be extended and is skipped
+            nextId.set(start);
+        }
+        blockEnd = start + size;
+    }
+
+    private void giveBack(long unusedStart, long unusedEnd) {
+        nextId.compareAndSet(unusedEnd, unusedStart);
+    }
+
+    private String token(long id) {
+        char[] buffer = new char[MAX_TOKEN_LENGTH];
+        return new String(buffer, 0, writeId(id, buffer));
+    }
+
+    private int writeId(long id, char[] buffer) {
+        int length = 0;
+        do {
+            buffer[length++] = BASE62_ALPHABET[(int) (id % BASE)];
+            id /= BASE;
+        } while (id > 0);
+        while (length < minimumTokenLength) {
+            buffer[length++] = BASE62_ALPHABET[0];
+        }
+        reverse(buffer, length);
+        return length;
+    }
+
+    private static void reverse(char[] buffer, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            char tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    private final class IdRange implements TokenReservation {
+        private long next;
+        private final long end;
+
+        private IdRange(long start, long end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public String get() {
+            return token(next < end ? next++ : claimIds(1, 0));
+        }
+
+        @Override
+        public void close() {
+            if (next < end) {
+                giveBack(next, end);
+                next = end;
+            }
+        }
+    }
+}
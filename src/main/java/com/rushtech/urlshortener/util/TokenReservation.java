@@ -0,0 +1,14 @@
+package com.rushtech.urlshortener.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Tokens set aside by {@link ITokenGenerator#reserve} for one write. Closing it hands back what was not drawn,
+ * where the generator can take it back.
+ */
+public interface TokenReservation extends Supplier<String>, AutoCloseable {
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,124 @@
+package com.rushtech.urlshortener.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * {@link ICacheInvalidationChannel} over UDP. Published tokens are sent to every address in {@code peers}, packed
+ * newline-separated into datagrams of at most {@value #MAX_DATAGRAM_BYTES} bytes, and datagrams arriving on
+ * {@code listenPort} are handed to the subscribers. A dropped datagram only leaves the entries it named cached until
+ * they expire, as they would have been without the channel.
+ */
+public class UdpCacheInvalidationChannel implements ICacheInvalidationChannel {
+
+    private static final Logger logger = LoggerFactory.getLogger(UdpCacheInvalidationChannel.class);
+    private static final int MAX_DATAGRAM_BYTES = 1400;
+
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private final List<Consumer<Collection<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    public UdpCacheInvalidationChannel(int listenPort, List<InetSocketAddress> peers) {
+        this.peers = List.copyOf(peers);
+        try {
+            this.socket = new DatagramSocket(listenPort);
+        } catch (SocketException e) {
+            throw new UncheckedIOException("Error listening for cache invalidations on port " + listenPort, e);
+        }
+        Thread receiver = new Thread(this::receive, "cache-invalidation-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void publish(Collection<String> tokens) {
+        if (peers.isEmpty() || tokens.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream datagram = new ByteArrayOutputStream(MAX_DATAGRAM_BYTES);
+        for (String token : tokens) {
+            byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+            if (tokenBytes.length + 1 > MAX_DATAGRAM_BYTES) {
+                logger.warn("Not broadcasting invalidation of a {} byte token", tokenBytes.length);
+                continue;
+            }
+            if (datagram.size() + tokenBytes.length + 1 > MAX_DATAGRAM_BYTES) {
+                send(datagram.toByteArray());
+                datagram.reset();
+            }
+            datagram.write(tokenBytes, 0, tokenBytes.length);
+            datagram.write('\n');
+        }
+        if (datagram.size() > 0) {
+            send(datagram.toByteArray());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Collection<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    private void send(byte[] datagram) {
+        for (InetSocketAddress peer : peers) {
+            try {
+                socket.send(new DatagramPacket(datagram, datagram.length, peer));
+            } catch (IOException e) {
+                logger.warn("Error sending cache invalidation to {}", peer, e);
+            }
+        }
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[MAX_DATAGRAM_BYTES];
+        while (!socket.isClosed()) {
+            DatagramPacket datagram = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(datagram);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    logger.warn("Error receiving cache invalidation", e);
+                }
+                continue;
+            }
+            List<String> tokens = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < datagram.getLength(); i++) {
+                if (buffer[i] == '\n') {
+                    tokens.add(new String(buffer, start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            for (Consumer<Collection<String>> listener : listeners) {
+                try {
+                    listener.accept(tokens);
+                } catch (RuntimeException e) {
+                    logger.error("Error applying cache invalidation", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.rushtech.urlshortener.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Rewrites long URLs into one canonical spelling, so that variants of the same address share a single mapping:
+ * the scheme and host are lower-cased, the scheme's default port and an empty query are dropped, an empty path
+ * becomes {@code /}, and query parameters are sorted by name, keeping the order of repeated names. Percent-encoding
+ * and the fragment are left as they are. URLs that do not parse are returned unchanged.
+ */
+public final class UrlCanonicalizer {
+
+    private UrlCanonicalizer() {
+    }
+
+    public static String canonicalize(String longUrl) {
+        URI uri;
+        try {
+            uri = new URI(longUrl);
+        } catch (URISyntaxException e) {
+            return longUrl;
+        }
+        if (uri.isOpaque() || uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) {
+            return longUrl;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(longUrl.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        canonical.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            canonical.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        canonical.append(path == null || path.isEmpty() ? "/" : path);
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            canonical.append('?').append(sortQueryParameters(query));
+        }
+        if (uri.getRawFragment() != null) {
+            canonical.append('#').append(uri.getRawFragment());
+        }
+        return canonical.toString();
+    }
+
+    private static String sortQueryParameters(String query) {
+        String[] parameters = query.split("&");
+        // Arrays.sort is stable for objects, so repeated names keep their relative order
+        Arrays.sort(parameters, (first, second) -> parameterName(first).compareTo(parameterName(second)));
+        StringBuilder sorted = new StringBuilder(query.length());
+        for (String parameter : parameters) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            if (!sorted.isEmpty()) {
+                sorted.append('&');
+            }
+            sorted.append(parameter);
+        }
+        return sorted.toString();
+    }
+
+    private static String parameterName(String parameter) {
+        int separator = parameter.indexOf('=');
+        return separator < 0 ? parameter : parameter.substring(0, separator);
+    }
+}
@@ -0,0 +1,90 @@
+package com.rushtech.urlshortener.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64-bit XXH64 (seed 0) of a long URL's UTF-8 bytes, used as a fixed-width key for finding duplicate URLs. The
+ * hash is stored alongside the URLs, so it must never change; equal hashes are always confirmed against the full URL.
+ */
+public final class UrlHash {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private UrlHash() {
+    }
+
+    public static long hash(String longUrl) {
+        return xxh64(longUrl.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long xxh64(byte[] input) {
+        int length = input.length;
+        int offset = 0;
+        long hash;
+        if (length >= 32) {
+            long v1 = PRIME64_1 + PRIME64_2;
+            long v2 = PRIME64_2;
+            long v3 = 0;
+            long v4 = -PRIME64_1;
+            int limit = length - 32;
+            do {
+                v1 = round(v1, (long) LONG_LE.get(input, offset));
+                v2 = round(v2, (long) LONG_LE.get(input, offset + 8));
+                v3 = round(v3, (long) LONG_LE.get(input, offset + 16));
+                v4 = round(v4, (long) LONG_LE.get(input, offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME64_5;
+        }
+        hash += length;
+
+        while (offset + 8 <= length) {
+            hash ^= round(0, (long) LONG_LE.get(input, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+            offset += 8;
+        }
+        if (offset + 4 <= length) {
+            hash ^= ((int) INT_LE.get(input, offset) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            offset += 4;
+        }
+        while (offset < length) {
+            hash ^= (input[offset] & 0xFFL) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME64_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME64_1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME64_1 + PRIME64_4;
+    }
+}
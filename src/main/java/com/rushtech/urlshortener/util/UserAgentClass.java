@@ -0,0 +1,39 @@
+package com.rushtech.urlshortener.util;
+
+import java.util.Locale;
+
+/**
+ * Coarse classes of {@code User-Agent} headers that redirect statistics are broken down by.
+ */
+public enum UserAgentClass {
+    BROWSER,
+    MOBILE,
+    BOT,
+    OTHER;
+
+    private static final String[] BOT_MARKERS = {"bot", "crawler", "spider", "slurp", "preview", "curl", "wget", "python", "java/", "okhttp"};
+    private static final String[] MOBILE_MARKERS = {"mobile", "android", "iphone", "ipad"};
+
+    public static UserAgentClass classify(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return OTHER;
+        }
+        String lowerCaseUserAgent = userAgent.toLowerCase(Locale.ROOT);
+        if (containsAny(lowerCaseUserAgent, BOT_MARKERS)) {
+            return BOT;
+        }
+        if (containsAny(lowerCaseUserAgent, MOBILE_MARKERS)) {
+            return MOBILE;
+        }
+        return lowerCaseUserAgent.startsWith("mozilla/") ? BROWSER : OTHER;
+    }
+
+    private static boolean containsAny(String value, String[] markers) {
+        for (String marker : markers) {
+            if (value.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package com.rushtech.urlshortener.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import com.rushtech.urlshortener.dal.RedirectStatsDAL;
+import com.rushtech.urlshortener.dal.SchemaMigrator;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.util.UrlHash;
+import io.micrometer.core.instrument.Metrics;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Temporary SQLite database with the application schema, shared by the benchmarks.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    static final int MAX_POOL_SIZE = 20;
+    static final int CONNECTION_TIMEOUT_MILLISECONDS = 30000;
+    static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+
+    private final Path databaseFile;
+    private final String databaseUrl;
+
+    BenchmarkDatabase() throws IOException {
+        this.databaseFile = Files.createTempFile("url_shortener_benchmark", ".db");
+        this.databaseUrl = "jdbc:sqlite:" + databaseFile.toAbsolutePath();
+        new SchemaMigrator(databaseUrl, CONNECTION_TIMEOUT_MILLISECONDS, Metrics.globalRegistry).migrate();
+    }
+
+    String getDatabaseUrl() {
+        return databaseUrl;
+    }
+
+    UrlShortenerDAL createDAL() {
+        return createDAL(true);
+    }
+
+    UrlShortenerDAL createDAL(boolean cacheStatements) {
+        return new UrlShortenerDAL(databaseUrl, MAX_POOL_SIZE, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE, cacheStatements,
+                Metrics.globalRegistry);
+    }
+
+    RedirectStatsDAL createStatsDAL() {
+        return new RedirectStatsDAL(databaseUrl, 2, CONNECTION_TIMEOUT_MILLISECONDS);
+    }
+
+    /**
+     * Inserts {@code count} mappings from {@link #token(int)} to {@link #longUrl(int)}, with ids 1..count.
+     */
+    void populate(int count) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(databaseUrl)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insertUrl = conn.prepareStatement("INSERT INTO original_urls (id, long_url, long_url_hash) VALUES (?, ?, ?)");
+                 PreparedStatement insertToken = conn.prepareStatement("INSERT INTO tokens (token, original_url_id) VALUES (?, ?)")) {
+                for (int i = 1; i <= count; i++) {
+                    insertUrl.setInt(1, i);
+                    insertUrl.setString(2, longUrl(i));
+                    insertUrl.setLong(3, UrlHash.hash(longUrl(i)));
+                    insertUrl.addBatch();
+                    insertToken.setString(1, token(i));
+                    insertToken.setInt(2, i);
+                    insertToken.addBatch();
+                }
+                insertUrl.executeBatch();
+                insertToken.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    static String longUrl(int i) {
+        return "https://example.com/campaign/landing-page?utm_source=benchmark&id=" + i;
+    }
+
+    static String token(int i) {
+        return "tok" + i;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(databaseFile);
+        Files.deleteIfExists(Path.of(databaseFile + "-wal"));
+        Files.deleteIfExists(Path.of(databaseFile + "-shm"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.controller.HotRedirectCache;
+import com.rushtech.urlshortener.controller.UrlShortenerController;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.RedirectStatsDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.service.AliasIndex;
+import com.rushtech.urlshortener.service.LifecycleManager;
+import com.rushtech.urlshortener.service.RedirectCountAggregator;
+import com.rushtech.urlshortener.service.RedirectStatsRecorder;
+import com.rushtech.urlshortener.service.TokenLookupFilter;
+import com.rushtech.urlshortener.service.UrlShortenerService;
+import com.rushtech.urlshortener.util.CacheManager;
+import com.rushtech.urlshortener.util.RandomTokenGenerator;
+import io.javalin.Javalin;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end benchmarks through an in-process Javalin server on a random port: redirects for cached
+ * tokens, and shortening through {@code POST /shorten} versus {@code POST /shorten/batch}. Both shorten
+ * benchmarks report time per URL so their scores compare directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpEndpointBenchmark {
+
+    private static final int MAPPING_COUNT = 10_000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int BATCH_CHUNK_SIZE = 500;
+
+    private final AtomicLong uniqueSequence = new AtomicLong();
+
+    private BenchmarkDatabase database;
+    private RedirectCountAggregator redirectCountAggregator;
+    private AsyncUrlShortenerDAL asyncUrlShortenerDAL;
+    private RedirectStatsDAL redirectStatsDAL;
+    private RedirectStatsRecorder redirectStatsRecorder;
+    private Javalin app;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(MAPPING_COUNT);
+        UrlShortenerDAL urlShortenerDAL = database.createDAL();
+        redirectCountAggregator = new RedirectCountAggregator(urlShortenerDAL, 1000, 10_000);
+        TokenLookupFilter tokenLookupFilter = new TokenLookupFilter(MAPPING_COUNT, 0.01, 30, 1000);
+        urlShortenerDAL.forEachToken(tokenLookupFilter::addToken);
+
+        asyncUrlShortenerDAL = new AsyncUrlShortenerDAL(urlShortenerDAL, BenchmarkDatabase.MAX_POOL_SIZE, 1000, 5000);
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        UrlShortenerService urlShortenerService = new UrlShortenerService(new RandomTokenGenerator(7), urlShortenerDAL, asyncUrlShortenerDAL,
+                new CacheManager(10, MAPPING_COUNT), redirectCountAggregator, tokenLookupFilter, aliasIndex);
+        redirectStatsDAL = database.createStatsDAL();
+        redirectStatsRecorder = new RedirectStatsRecorder(redirectStatsDAL, 65_536, 1000, 48);
+        app = new UrlShortenerController(urlShortenerService, new UrlValidator(), BATCH_CHUNK_SIZE, new HotRedirectCache(302, null, 100, 60, 1000, 10),
+                redirectStatsRecorder, new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), Map.of(), null,
+                new LifecycleManager(0, Metrics.globalRegistry), null).startServer(0, UrlShortenerController.ThreadMode.VIRTUAL, 0);
+        baseUrl = "http://localhost:" + app.port();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        app.stop();
+        redirectCountAggregator.close();
+        asyncUrlShortenerDAL.close();
+        redirectStatsRecorder.close();
+        redirectStatsDAL.close();
+        database.close();
+    }
+
+    @Benchmark
+    public int redirect() throws Exception {
+        String token = BenchmarkDatabase.token(ThreadLocalRandom.current().nextInt(1, MAPPING_COUNT + 1));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + token)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public String shortenSingle() throws Exception {
+        String body = "{\"longUrl\":\"https://example.org/single/" + uniqueSequence.incrementAndGet() + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/shorten"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public String shortenBatch() throws Exception {
+        StringBuilder body = new StringBuilder(BATCH_SIZE * 40);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            body.append("\"https://example.org/batch/").append(uniqueSequence.incrementAndGet()).append("\"\n");
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/shorten/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,68 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redirect lookups running alongside shorten and redirect count writes on the same database, the mix that made
+ * reads queue behind writers. JMH reports each group member separately, so compare the {@code lookup} score
+ * with and without the writers' load, and across DAL changes.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+    private static final int MAPPING_COUNT = 10_000;
+
+    private final AtomicLong uniqueSequence = new AtomicLong();
+
+    private BenchmarkDatabase database;
+    private UrlShortenerDAL urlShortenerDAL;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(MAPPING_COUNT);
+        urlShortenerDAL = database.createDAL();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public String lookup() {
+        return urlShortenerDAL.getOriginalUrl(BenchmarkDatabase.token(randomIndex()));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public String shorten() {
+        long id = uniqueSequence.incrementAndGet();
+        return urlShortenerDAL.shortenOrGet("https://example.org/mixed/" + id, () -> "mix" + id);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void incrementRedirectCounts() {
+        urlShortenerDAL.incrementRedirectCounts(Map.of(BenchmarkDatabase.longUrl(randomIndex()), 1L));
+    }
+
+    private static int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(1, MAPPING_COUNT + 1);
+    }
+}
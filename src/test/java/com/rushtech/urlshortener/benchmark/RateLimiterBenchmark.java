@@ -0,0 +1,59 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.controller.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the rate limiter adds to every limited request: one client hammering its own bucket, eight threads
+ * contending for the same bucket, and eight threads spread over many clients, as behind a busy load balancer. The
+ * limits are high enough that requests are granted, so the numbers are the cost of the lookup and the
+ * compare-and-set rather than of rejecting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENT_COUNT = 10_000;
+
+    private RateLimiter rateLimiter;
+    private String[] clientKeys;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new RateLimiter(Integer.MAX_VALUE, 100_000_000, CLIENT_COUNT * 2);
+        clientKeys = new String[CLIENT_COUNT];
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            clientKeys[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+            rateLimiter.tryAcquire(clientKeys[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("Rejected requests: " + rateLimiter.getRejections());
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(clientKeys[0]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long tryAcquireContended() {
+        return rateLimiter.tryAcquire(clientKeys[0]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long tryAcquireManyClients() {
+        return rateLimiter.tryAcquire(clientKeys[ThreadLocalRandom.current().nextInt(CLIENT_COUNT)]);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.util.RedirectEventRingBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what publishing a redirect event costs the request thread, alone and with eight producers contending for
+ * the tail, while a background consumer drains the buffer as the stats flusher would. The cost should stay well
+ * under a microsecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectEventRingBufferBenchmark {
+
+    private static final String REFERRER = "https://news.example.com/article/42";
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36";
+
+    private RedirectEventRingBuffer ringBuffer;
+    private Thread consumer;
+    private volatile boolean running;
+
+    @Setup
+    public void setUp() {
+        ringBuffer = new RedirectEventRingBuffer(65_536);
+        running = true;
+        consumer = new Thread(() -> {
+            while (running) {
+                if (ringBuffer.drain((token, timestampMillis, referrer, userAgent) -> { }, 4096) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "ring-buffer-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        consumer.join();
+        System.out.println("Dropped events: " + ringBuffer.getDropped());
+    }
+
+    @Benchmark
+    public boolean offer() {
+        return ringBuffer.offer("tok1", System.currentTimeMillis(), REFERRER, USER_AGENT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean offerContended() {
+        return ringBuffer.offer("tok1", System.currentTimeMillis(), REFERRER, USER_AGENT);
+    }
+}
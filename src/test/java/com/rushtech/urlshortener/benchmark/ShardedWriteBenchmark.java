@@ -0,0 +1,61 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.dal.ShardedUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import io.micrometer.core.instrument.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write throughput of {@link ShardedUrlShortenerDAL} with eight threads shortening new URLs, for one to eight
+ * shards. Each shard is its own SQLite file with its own writer, so throughput should grow with the shard count
+ * until the disk or the cores run out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ShardedWriteBenchmark {
+
+    private final AtomicLong uniqueSequence = new AtomicLong();
+
+    @Param({"1", "2", "4", "8"})
+    public int shardCount;
+
+    private List<BenchmarkDatabase> databases;
+    private ShardedUrlShortenerDAL shardedDAL;
+
+    @Setup
+    public void setUp() throws Exception {
+        databases = new ArrayList<>(shardCount);
+        List<UrlShortenerDAL> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            BenchmarkDatabase database = new BenchmarkDatabase();
+            databases.add(database);
+            shards.add(new UrlShortenerDAL("benchmark-shard-" + shard, database.getDatabaseUrl(), BenchmarkDatabase.MAX_POOL_SIZE,
+                    BenchmarkDatabase.CONNECTION_TIMEOUT_MILLISECONDS, BenchmarkDatabase.EXPIRY_DATE_MONTHS_IN_FUTURE, true,
+                    Metrics.globalRegistry));
+        }
+        shardedDAL = new ShardedUrlShortenerDAL(shards, false);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (BenchmarkDatabase database : databases) {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    public String shortenOrGetNew() {
+        return shardedDAL.shortenOrGet("https://example.org/sharded/" + uniqueSequence.incrementAndGet(),
+                () -> "shd" + uniqueSequence.incrementAndGet());
+    }
+}
@@ -0,0 +1,107 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.controller.HotRedirectCache;
+import com.rushtech.urlshortener.controller.UrlShortenerController;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.ConcurrencyLimitedUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.RedirectStatsDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.service.AliasIndex;
+import com.rushtech.urlshortener.service.LifecycleManager;
+import com.rushtech.urlshortener.service.RedirectCountAggregator;
+import com.rushtech.urlshortener.service.RedirectStatsRecorder;
+import com.rushtech.urlshortener.service.TokenLookupFilter;
+import com.rushtech.urlshortener.service.UrlShortenerService;
+import com.rushtech.urlshortener.util.CacheManager;
+import com.rushtech.urlshortener.util.RandomTokenGenerator;
+import io.javalin.Javalin;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing request latency under the two server thread modes. 64 client threads redirect to tokens
+ * that are never cached, so every request reaches SQLite through the concurrency limiter. Run in
+ * {@link Mode#SampleTime} and compare the {@code p0.99} lines of the two {@code threadMode} results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Threads(64)
+@Fork(1)
+public class ThreadModeLoadBenchmark {
+
+    private static final int MAPPING_COUNT = 10_000;
+    private static final int MAX_PLATFORM_THREADS = 16;
+    private static final int MAX_QUEUED_CALLS = 1000;
+    private static final long QUEUE_TIMEOUT_MILLISECONDS = 5000;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public UrlShortenerController.ThreadMode threadMode;
+
+    private BenchmarkDatabase database;
+    private RedirectCountAggregator redirectCountAggregator;
+    private AsyncUrlShortenerDAL asyncUrlShortenerDAL;
+    private RedirectStatsDAL redirectStatsDAL;
+    private RedirectStatsRecorder redirectStatsRecorder;
+    private Javalin app;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(MAPPING_COUNT);
+        UrlShortenerDAL urlShortenerDAL = database.createDAL();
+        ConcurrencyLimitedUrlShortenerDAL concurrencyLimitedDAL = new ConcurrencyLimitedUrlShortenerDAL(urlShortenerDAL,
+                BenchmarkDatabase.MAX_POOL_SIZE, MAX_QUEUED_CALLS, QUEUE_TIMEOUT_MILLISECONDS);
+        redirectCountAggregator = new RedirectCountAggregator(concurrencyLimitedDAL, 1000, 10_000);
+        TokenLookupFilter tokenLookupFilter = new TokenLookupFilter(MAPPING_COUNT, 0.01, 30, 1000);
+        urlShortenerDAL.forEachToken(tokenLookupFilter::addToken);
+
+        asyncUrlShortenerDAL = new AsyncUrlShortenerDAL(concurrencyLimitedDAL, BenchmarkDatabase.MAX_POOL_SIZE, 1000, 5000);
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        UrlShortenerService urlShortenerService = new UrlShortenerService(new RandomTokenGenerator(7), concurrencyLimitedDAL, asyncUrlShortenerDAL,
+                new CacheManager(10, 0), redirectCountAggregator, tokenLookupFilter, aliasIndex);
+        redirectStatsDAL = database.createStatsDAL();
+        redirectStatsRecorder = new RedirectStatsRecorder(redirectStatsDAL, 65_536, 1000, 48);
+        app = new UrlShortenerController(urlShortenerService, new UrlValidator(), 500, new HotRedirectCache(302, null, Integer.MAX_VALUE, 60, 1000, 10),
+                redirectStatsRecorder, new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), Map.of(), null,
+                new LifecycleManager(0, Metrics.globalRegistry), null).startServer(0, threadMode, MAX_PLATFORM_THREADS);
+        baseUrl = "http://localhost:" + app.port();
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        app.stop();
+        redirectCountAggregator.close();
+        asyncUrlShortenerDAL.close();
+        redirectStatsRecorder.close();
+        redirectStatsDAL.close();
+        database.close();
+    }
+
+    @Benchmark
+    public int uncachedRedirect() throws Exception {
+        String token = BenchmarkDatabase.token(ThreadLocalRandom.current().nextInt(1, MAPPING_COUNT + 1));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + token)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
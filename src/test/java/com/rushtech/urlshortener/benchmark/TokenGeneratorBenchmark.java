@@ -0,0 +1,67 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.util.ITokenGenerator;
+import com.rushtech.urlshortener.util.RandomTokenGenerator;
+import com.rushtech.urlshortener.util.SequenceTokenGenerator;
+import com.rushtech.urlshortener.util.TokenGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the token generation strategies selectable through {@code token.generator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenGeneratorBenchmark {
+
+    private static final int TOKEN_LENGTH = 7;
+    private static final int SEQUENCE_BLOCK_SIZE = 10000;
+
+    @Param({"hex", "random", "sequence"})
+    public String strategy;
+
+    private BenchmarkDatabase database;
+    private ITokenGenerator tokenGenerator;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        UrlShortenerDAL urlShortenerDAL = new UrlShortenerDAL(database.getDatabaseUrl(), BenchmarkDatabase.MAX_POOL_SIZE,
+                BenchmarkDatabase.CONNECTION_TIMEOUT_MILLISECONDS, BenchmarkDatabase.EXPIRY_DATE_MONTHS_IN_FUTURE);
+        switch (strategy) {
+            case "hex":
+                tokenGenerator = new TokenGenerator();
+                break;
+            case "random":
+                tokenGenerator = new RandomTokenGenerator(TOKEN_LENGTH);
+                break;
+            case "sequence":
+                tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, SEQUENCE_BLOCK_SIZE, TOKEN_LENGTH);
+                break;
+            default:
+                throw new IllegalArgumentException(strategy);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return tokenGenerator.generateToken();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generateTokenContended() {
+        return tokenGenerator.generateToken();
+    }
+}
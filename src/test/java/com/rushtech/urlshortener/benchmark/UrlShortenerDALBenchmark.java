@@ -0,0 +1,154 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures each {@link com.rushtech.urlshortener.dal.IUrlShortenerDAL} operation against a temporary
+ * SQLite file preloaded with {@value #MAPPING_COUNT} mappings, with prepared statements kept per connection
+ * and prepared on every call; the difference between the two {@code statementCache} results is the per-call saving.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlShortenerDALBenchmark {
+
+    private static final int MAPPING_COUNT = 10_000;
+    private static final int BATCH_SIZE = 100;
+
+    private final AtomicLong uniqueSequence = new AtomicLong();
+
+    @Param({"true", "false"})
+    public boolean statementCache;
+
+    private BenchmarkDatabase database;
+    private UrlShortenerDAL urlShortenerDAL;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(MAPPING_COUNT);
+        urlShortenerDAL = database.createDAL(statementCache);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public String getOriginalUrl() {
+        return urlShortenerDAL.getOriginalUrl(BenchmarkDatabase.token(randomIndex()));
+    }
+
+    @Benchmark
+    public long getOriginalUrlId() {
+        return urlShortenerDAL.getOriginalUrlId(BenchmarkDatabase.longUrl(randomIndex()));
+    }
+
+    @Benchmark
+    public String getTokenForOriginalUrl() {
+        return urlShortenerDAL.getTokenForOriginalUrl(randomIndex());
+    }
+
+    @Benchmark
+    public void updateToken() {
+        int index = randomIndex();
+        urlShortenerDAL.updateToken(BenchmarkDatabase.token(index), index);
+    }
+
+    @Benchmark
+    public void insertOriginalUrlAndMapping() {
+        long id = uniqueSequence.incrementAndGet();
+        long originalUrlId = urlShortenerDAL.insertOriginalUrl("https://example.org/insert/" + id);
+        urlShortenerDAL.insertUrlMapping("ins" + id, originalUrlId);
+    }
+
+    @Benchmark
+    public String shortenOrGetExisting() {
+        return urlShortenerDAL.shortenOrGet(BenchmarkDatabase.longUrl(randomIndex()), () -> {
+            throw new IllegalStateException("Existing URL should not need a token");
+        });
+    }
+
+    @Benchmark
+    public String shortenOrGetNew() {
+        long id = uniqueSequence.incrementAndGet();
+        return urlShortenerDAL.shortenOrGet("https://example.org/shorten/" + id, () -> "new" + id);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Map<String, String> shortenOrGetBatchNew() {
+        List<String> longUrls = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            longUrls.add("https://example.org/batch/" + uniqueSequence.incrementAndGet());
+        }
+        return urlShortenerDAL.shortenOrGetBatch(longUrls, () -> "bat" + uniqueSequence.incrementAndGet());
+    }
+
+    @Benchmark
+    public boolean shortenThenDelete() {
+        long id = uniqueSequence.incrementAndGet();
+        String token = urlShortenerDAL.shortenOrGet("https://example.org/delete/" + id, () -> "del" + id);
+        return urlShortenerDAL.deleteShortUrl(token);
+    }
+
+    @Benchmark
+    public boolean insertAliasNew() {
+        long id = uniqueSequence.incrementAndGet();
+        return urlShortenerDAL.insertAlias("https://example.org/alias/" + id, "alias-" + id);
+    }
+
+    @Benchmark
+    public void incrementRedirectCount() {
+        urlShortenerDAL.incrementRedirectCount(BenchmarkDatabase.longUrl(randomIndex()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void incrementRedirectCounts() {
+        Map<String, Long> deltas = new HashMap<>(BATCH_SIZE * 2);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            deltas.merge(BenchmarkDatabase.longUrl(randomIndex()), 1L, Long::sum);
+        }
+        urlShortenerDAL.incrementRedirectCounts(deltas);
+    }
+
+    @Benchmark
+    public long reserveTokenIdBlock() {
+        return urlShortenerDAL.reserveTokenIdBlock(1000);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void forEachToken(Blackhole blackhole) {
+        urlShortenerDAL.forEachToken(blackhole::consume);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public void forEachMapping(Blackhole blackhole) {
+        urlShortenerDAL.forEachMapping(blackhole::consume);
+    }
+
+    private static int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(1, MAPPING_COUNT + 1);
+    }
+}
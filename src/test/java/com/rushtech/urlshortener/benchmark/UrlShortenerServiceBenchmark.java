@@ -0,0 +1,110 @@
+package com.rushtech.urlshortener.benchmark;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import com.rushtech.urlshortener.service.AliasIndex;
+import com.rushtech.urlshortener.service.RedirectCountAggregator;
+import com.rushtech.urlshortener.service.TokenLookupFilter;
+import com.rushtech.urlshortener.service.UrlShortenerService;
+import com.rushtech.urlshortener.util.CacheManager;
+import com.rushtech.urlshortener.util.MappedSharedUrlCache;
+import com.rushtech.urlshortener.util.RandomTokenGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UrlShortenerService#getOriginalUrl} when the token is cached per node, when it is only in the
+ * shared memory-mapped tier, when it has to be loaded from SQLite, and when the token does not exist at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlShortenerServiceBenchmark {
+
+    private static final int MAPPING_COUNT = 10_000;
+
+    private BenchmarkDatabase database;
+    private RedirectCountAggregator redirectCountAggregator;
+    private AsyncUrlShortenerDAL asyncUrlShortenerDAL;
+    private UrlShortenerService cachingService;
+    private UrlShortenerService nonCachingService;
+    private UrlShortenerService sharedCachingService;
+    private CacheManager sharedCacheManager;
+    private Path sharedCacheFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        database = new BenchmarkDatabase();
+        database.populate(MAPPING_COUNT);
+        UrlShortenerDAL urlShortenerDAL = database.createDAL();
+        redirectCountAggregator = new RedirectCountAggregator(urlShortenerDAL, 1000, 10_000);
+
+        TokenLookupFilter tokenLookupFilter = new TokenLookupFilter(MAPPING_COUNT, 0.01, 30, 1000);
+        urlShortenerDAL.forEachToken(tokenLookupFilter::addToken);
+
+        asyncUrlShortenerDAL = new AsyncUrlShortenerDAL(urlShortenerDAL, BenchmarkDatabase.MAX_POOL_SIZE, 1000, 5000);
+
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        cachingService = new UrlShortenerService(new RandomTokenGenerator(7), urlShortenerDAL, asyncUrlShortenerDAL,
+                new CacheManager(10, MAPPING_COUNT), redirectCountAggregator, tokenLookupFilter, aliasIndex);
+        for (int i = 1; i <= MAPPING_COUNT; i++) {
+            cachingService.getOriginalUrl(BenchmarkDatabase.token(i));
+        }
+
+        AsyncCache<String, String> disabledCache = Caffeine.newBuilder().maximumSize(0).executor(Runnable::run).buildAsync();
+        nonCachingService = new UrlShortenerService(new RandomTokenGenerator(7), urlShortenerDAL, asyncUrlShortenerDAL,
+                new CacheManager(disabledCache, null, null), redirectCountAggregator, tokenLookupFilter, aliasIndex);
+
+        sharedCacheFile = Files.createTempFile("url-cache-shared", ".bin");
+        MappedSharedUrlCache sharedCache = new MappedSharedUrlCache(sharedCacheFile, MAPPING_COUNT * 2, TimeUnit.MINUTES.toMillis(10));
+        sharedCacheManager = new CacheManager(Caffeine.newBuilder().maximumSize(0).executor(Runnable::run).buildAsync(), sharedCache, null);
+        sharedCachingService = new UrlShortenerService(new RandomTokenGenerator(7), urlShortenerDAL, asyncUrlShortenerDAL,
+                sharedCacheManager, redirectCountAggregator, tokenLookupFilter, aliasIndex);
+        for (int i = 1; i <= MAPPING_COUNT; i++) {
+            sharedCachingService.getOriginalUrl(BenchmarkDatabase.token(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        redirectCountAggregator.close();
+        asyncUrlShortenerDAL.close();
+        sharedCacheManager.close();
+        Files.deleteIfExists(sharedCacheFile);
+        database.close();
+    }
+
+    @Benchmark
+    public String getOriginalUrlCacheHit() {
+        return cachingService.getOriginalUrl(randomToken());
+    }
+
+    @Benchmark
+    public String getOriginalUrlSharedCacheHit() {
+        return sharedCachingService.getOriginalUrl(randomToken());
+    }
+
+    @Benchmark
+    public String getOriginalUrlCacheMiss() {
+        return nonCachingService.getOriginalUrl(randomToken());
+    }
+
+    @Benchmark
+    public String getOriginalUrlUnknownToken() {
+        return cachingService.getOriginalUrl("missing" + ThreadLocalRandom.current().nextInt());
+    }
+
+    private static String randomToken() {
+        return BenchmarkDatabase.token(ThreadLocalRandom.current().nextInt(1, MAPPING_COUNT + 1));
+    }
+}
@@ -0,0 +1,47 @@
+package com.rushtech.urlshortener.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ClientKeyResolverTest {
+
+    private final ClientKeyResolver resolver =
+            new ClientKeyResolver("X-Api-Key", List.of("known-key"), List.of("10.0.0.1", "10.0.0.2"));
+
+    @Test
+    public void resolve_KnownApiKey_ShouldKeyOnIt() {
+        assertEquals("key:known-key", resolver.resolve("203.0.113.5", Map.of("X-Api-Key", "known-key")::get));
+    }
+
+    @Test
+    public void resolve_UnknownApiKey_ShouldFallBackToAddress() {
+        assertEquals("203.0.113.5", resolver.resolve("203.0.113.5", Map.of("X-Api-Key", "made-up")::get));
+    }
+
+    @Test
+    public void resolve_ForwardedForFromUntrustedPeer_ShouldBeIgnored() {
+        assertEquals("203.0.113.5", resolver.resolve("203.0.113.5", Map.of("X-Forwarded-For", "198.51.100.7")::get));
+    }
+
+    @Test
+    public void resolve_ForwardedForFromTrustedProxy_ShouldUseClientAddress() {
+        assertEquals("198.51.100.7", resolver.resolve("10.0.0.1", Map.of("X-Forwarded-For", "198.51.100.7")::get));
+    }
+
+    @Test
+    public void resolve_SpoofedForwardedForThroughProxies_ShouldUseFirstUntrustedFromTheRight() {
+        // The client wrote the first entry itself; the proxies appended the rest
+        String forwardedFor = "192.0.2.99, 198.51.100.7, 10.0.0.2";
+
+        assertEquals("198.51.100.7", resolver.resolve("10.0.0.1", Map.of("X-Forwarded-For", forwardedFor)::get));
+    }
+
+    @Test
+    public void resolve_TrustedProxyWithoutForwardedFor_ShouldUseProxyAddress() {
+        assertEquals("10.0.0.1", resolver.resolve("10.0.0.1", Map.<String, String>of()::get));
+    }
+}
@@ -0,0 +1,48 @@
+package com.rushtech.urlshortener.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotRedirectCacheTest {
+
+    @Test
+    public void recordRedirect_ThresholdReached_ShouldServeRenderedRedirect() {
+        HotRedirectCache hotRedirectCache = new HotRedirectCache(302, null, 3, 60, 100, 10);
+
+        hotRedirectCache.recordRedirect("abc123", "http://example.com");
+        hotRedirectCache.recordRedirect("abc123", "http://example.com");
+        assertNull(hotRedirectCache.get("abc123"));
+        hotRedirectCache.recordRedirect("abc123", "http://example.com");
+
+        HotRedirectCache.RenderedRedirect renderedRedirect = hotRedirectCache.get("abc123");
+        assertNotNull(renderedRedirect);
+        assertEquals("http://example.com", renderedRedirect.originalUrl());
+        assertEquals("http://example.com", renderedRedirect.location().getValue());
+        assertEquals(1, hotRedirectCache.getPromotions());
+        assertEquals(1, hotRedirectCache.getHits());
+    }
+
+    @Test
+    public void invalidateAll_RenderedToken_ShouldStopServingIt() {
+        HotRedirectCache hotRedirectCache = new HotRedirectCache(302, null, 1, 60, 100, 10);
+        hotRedirectCache.recordRedirect("abc123", "http://example.com");
+
+        hotRedirectCache.invalidateAll(List.of("abc123"));
+
+        assertNull(hotRedirectCache.get("abc123"));
+    }
+
+    @Test
+    public void getCacheControl_Configured_ShouldBePreEncoded() {
+        assertEquals("public, max-age=3600", new HotRedirectCache(301, "public, max-age=3600", 1, 60, 100, 10).getCacheControl().getValue());
+        assertNull(new HotRedirectCache(301, " ", 1, 60, 100, 10).getCacheControl());
+    }
+
+    @Test
+    public void constructor_NotARedirectStatusCode_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new HotRedirectCache(200, null, 1, 60, 100, 10));
+    }
+}
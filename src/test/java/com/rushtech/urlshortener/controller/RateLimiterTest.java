@@ -0,0 +1,100 @@
+package com.rushtech.urlshortener.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    @Test
+    public void tryAcquire_WithinCapacity_ShouldAllowBurstThenReject() {
+        RateLimiter rateLimiter = new RateLimiter(3, 1, 100, nanoClock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        long retryAfterNanos = rateLimiter.tryAcquire("10.0.0.1");
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), retryAfterNanos);
+        assertEquals(1, rateLimiter.getRejections());
+    }
+
+    @Test
+    public void tryAcquire_AfterRefill_ShouldAllowAgain() {
+        RateLimiter rateLimiter = new RateLimiter(1, 2, 100, nanoClock::get);
+        rateLimiter.tryAcquire("10.0.0.1");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), rateLimiter.tryAcquire("10.0.0.1"));
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(300), rateLimiter.tryAcquire("10.0.0.1"));
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void tryAcquire_OtherClient_ShouldHaveItsOwnBucket() {
+        RateLimiter rateLimiter = new RateLimiter(1, 1, 100, nanoClock::get);
+        rateLimiter.tryAcquire("10.0.0.1");
+
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1") > 0);
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.2"));
+    }
+
+    @Test
+    public void tryAcquire_IdleLongerThanRefill_ShouldExpireBucketAsFull() {
+        RateLimiter rateLimiter = new RateLimiter(2, 1, 100, nanoClock::get);
+        rateLimiter.tryAcquire("10.0.0.1");
+        rateLimiter.tryAcquire("10.0.0.1");
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("10.0.0.1"));
+        assertTrue(rateLimiter.tryAcquire("10.0.0.1") > 0);
+    }
+
+    @Test
+    public void tryAcquire_ConcurrentRequests_ShouldGrantExactlyCapacity() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(1000, 1, 100, nanoClock::get);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (rateLimiter.tryAcquire("10.0.0.1") == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, granted.get());
+        assertEquals(3000, rateLimiter.getRejections());
+    }
+
+    @Test
+    public void constructor_NoRefill_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(10, 0, 100));
+    }
+}
@@ -0,0 +1,176 @@
+package com.rushtech.urlshortener.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rushtech.urlshortener.service.IUrlShortenerService;
+import com.rushtech.urlshortener.service.LifecycleManager;
+import com.rushtech.urlshortener.service.RedirectStatsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class UrlShortenerControllerBatchTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private IUrlShortenerService urlShortenerService;
+    private UrlShortenerController controller;
+    private String batchUrl;
+
+    @BeforeEach
+    public void setUp() {
+        urlShortenerService = mock(IUrlShortenerService.class);
+        when(urlShortenerService.shortenUrls(anyList())).thenAnswer(invocation -> {
+            List<String> shortUrls = new ArrayList<>();
+            for (String longUrl : invocation.<List<String>>getArgument(0)) {
+                shortUrls.add("http://localhost:8080/" + longUrl.substring(longUrl.lastIndexOf('/') + 1));
+            }
+            return shortUrls;
+        });
+        controller = new UrlShortenerController(urlShortenerService, new UrlValidator(), 2,
+                new HotRedirectCache(302, null, 1000, 60, 100, 10), mock(RedirectStatsRecorder.class),
+                new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), Map.of(), null,
+                new LifecycleManager(0, new SimpleMeterRegistry()), null);
+        int port = controller.startServer(0, UrlShortenerController.ThreadMode.VIRTUAL, 0).port();
+        batchUrl = "http://localhost:" + port + "/shorten/batch";
+    }
+
+    @AfterEach
+    public void tearDown() {
+        controller.drainAndStop(0);
+    }
+
+    @Test
+    public void shortenUrlBatch_JsonArray_ShouldReturnResultsInInputOrder() throws Exception {
+        // Arrange
+        String body = "[\"http://example.com/a\", {\"longUrl\": \"http://example.com/b\"}, \"http://example.com/c\"]";
+
+        // Act
+        HttpResponse<String> response = post(body, "application/json");
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        JsonNode results = objectMapper.readTree(response.body());
+        assertEquals(3, results.size());
+        assertEquals("http://example.com/a", results.get(0).get("longUrl").asText());
+        assertEquals("http://localhost:8080/a", results.get(0).get("shortUrl").asText());
+        assertEquals("http://localhost:8080/b", results.get(1).get("shortUrl").asText());
+        assertEquals("http://localhost:8080/c", results.get(2).get("shortUrl").asText());
+    }
+
+    @Test
+    public void shortenUrlBatch_Ndjson_ShouldReturnOneResultPerLine() throws Exception {
+        // Arrange
+        String body = "\"http://example.com/a\"\n{\"longUrl\": \"http://example.com/b\"}\n\"http://example.com/c\"\n";
+
+        // Act
+        HttpResponse<String> response = post(body, "application/x-ndjson");
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/x-ndjson"));
+        String[] lines = response.body().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("http://localhost:8080/a", objectMapper.readTree(lines[0]).get("shortUrl").asText());
+        assertEquals("http://localhost:8080/b", objectMapper.readTree(lines[1]).get("shortUrl").asText());
+        assertEquals("http://localhost:8080/c", objectMapper.readTree(lines[2]).get("shortUrl").asText());
+    }
+
+    @Test
+    public void shortenUrlBatch_InvalidEntries_ShouldReportThemInPlace() throws Exception {
+        // Arrange
+        String body = "[\"http://example.com/a\", \"not a url\", {\"other\": 1}, \"http://example.com/d\"]";
+
+        // Act
+        HttpResponse<String> response = post(body, "application/json");
+
+        // Assert
+        JsonNode results = objectMapper.readTree(response.body());
+        assertEquals(4, results.size());
+        assertEquals("http://localhost:8080/a", results.get(0).get("shortUrl").asText());
+        assertFalse(results.get(1).has("shortUrl"));
+        assertTrue(results.get(1).get("error").asText().startsWith("Invalid URL to shorten"));
+        assertTrue(results.get(2).has("error"));
+        assertEquals("http://localhost:8080/d", results.get(3).get("shortUrl").asText());
+        verify(urlShortenerService).shortenUrls(List.of("http://example.com/a"));
+        verify(urlShortenerService).shortenUrls(List.of("http://example.com/d"));
+    }
+
+    @Test
+    public void shortenUrlBatch_UrlsLeftUnshortened_ShouldReportPerItemErrors() throws Exception {
+        // Arrange
+        when(urlShortenerService.shortenUrls(anyList())).thenAnswer(invocation -> {
+            List<String> shortUrls = new ArrayList<>();
+            for (String longUrl : invocation.<List<String>>getArgument(0)) {
+                shortUrls.add(longUrl.endsWith("/a") ? "http://localhost:8080/a" : null);
+            }
+            return shortUrls;
+        });
+        String body = "[\"http://example.com/a\", \"http://example.com/b\", \"http://example.com/c\"]";
+
+        // Act
+        HttpResponse<String> response = post(body, "application/json");
+
+        // Assert
+        JsonNode results = objectMapper.readTree(response.body());
+        assertEquals(3, results.size());
+        assertEquals("http://localhost:8080/a", results.get(0).get("shortUrl").asText());
+        assertTrue(results.get(1).get("error").asText().startsWith("Could not shorten URL"));
+        assertTrue(results.get(2).get("error").asText().startsWith("Could not shorten URL"));
+        assertFalse(response.body().contains("null"));
+    }
+
+    @Test
+    public void shortenUrlBatch_FewerShortUrlsThanRequested_ShouldStillAnswerEveryItem() throws Exception {
+        // Arrange
+        when(urlShortenerService.shortenUrls(anyList())).thenReturn(List.of());
+        String body = "\"http://example.com/a\"\n\"http://example.com/b\"\n";
+
+        // Act
+        HttpResponse<String> response = post(body, "application/x-ndjson");
+
+        // Assert
+        String[] lines = response.body().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(objectMapper.readTree(lines[0]).get("error").asText().startsWith("Could not shorten URL"));
+        assertTrue(objectMapper.readTree(lines[1]).get("error").asText().startsWith("Could not shorten URL"));
+    }
+
+    @Test
+    public void shortenUrlBatch_MalformedBody_ShouldReturnBadRequest() throws Exception {
+        // Act
+        HttpResponse<String> response = post("[\"http://example.com/a\", ", "application/json");
+
+        // Assert
+        assertEquals(400, response.statusCode());
+        verify(urlShortenerService, never()).shortenUrls(anyList());
+    }
+
+    private HttpResponse<String> post(String body, String contentType) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(batchUrl))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,449 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every {@link IUrlShortenerDAL} implementation must share. Subclasses create {@link #urlShortenerDAL}
+ * before each test and give the assertions a way to look at the underlying storage.
+ */
+public abstract class AbstractUrlShortenerDALTest {
+
+    protected static final String TEST_LONG_URL = "http://example.com";
+    protected static final String TEST_TOKEN = "testToken";
+    protected static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+    private static final int CONCURRENT_CALLERS = 32;
+
+    protected IUrlShortenerDAL urlShortenerDAL;
+
+    protected abstract long countOriginalUrls() throws Exception;
+
+    protected abstract long countTokens() throws Exception;
+
+    protected abstract long getRedirectCount(String originalUrl) throws Exception;
+
+    /**
+     * Moves the expiration date of {@code longUrl} into the past.
+     */
+    protected abstract void expireOriginalUrl(String longUrl) throws Exception;
+
+    @Test
+    void getOriginalUrl_ConcurrentWithShortenOrGet_ShouldNotFail() throws Exception {
+        insertTestData();
+
+        List<String> results = runConcurrently(CONCURRENT_CALLERS, caller -> caller % 4 == 0
+                ? urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/" + caller, () -> "token" + caller)
+                : urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+
+        for (int caller = 0; caller < CONCURRENT_CALLERS; caller++) {
+            assertEquals(caller % 4 == 0 ? "token" + caller : TEST_LONG_URL, results.get(caller));
+        }
+    }
+
+    @Test
+    void insertOriginalUrl_WithValidLongUrl_ShouldReturnGeneratedId() {
+        long originalUrlId = urlShortenerDAL.insertOriginalUrl(TEST_LONG_URL);
+
+        long retrievedOriginalUrlId = urlShortenerDAL.getOriginalUrlId(TEST_LONG_URL);
+
+        assertEquals(originalUrlId, retrievedOriginalUrlId);
+    }
+
+    @Test
+    void getOriginalUrl_WithValidToken_ShouldReturnOriginalUrl() {
+        long originalUrlId = urlShortenerDAL.insertOriginalUrl(TEST_LONG_URL);
+
+        urlShortenerDAL.insertUrlMapping(TEST_TOKEN, originalUrlId);
+
+        String retrievedOriginalUrl = urlShortenerDAL.getOriginalUrl(TEST_TOKEN);
+
+        assertEquals(TEST_LONG_URL, retrievedOriginalUrl);
+    }
+
+    @Test
+    void getOriginalUrl_WithNonExistingToken_ShouldReturnNull() {
+        String retrievedOriginalUrl = urlShortenerDAL.getOriginalUrl(TEST_TOKEN);
+
+        assertNull(retrievedOriginalUrl);
+    }
+
+    @Test
+    void getOriginalUrl_WithExpiredToken_ShouldReturnNull() throws Exception {
+        insertTestData();
+        expireOriginalUrl(TEST_LONG_URL);
+
+        String originalUrl = urlShortenerDAL.getOriginalUrl(TEST_TOKEN);
+
+        assertNull(originalUrl);
+    }
+
+    @Test
+    void deleteExpiredMappings_WithExpiredAndLiveUrls_ShouldDeleteOnlyExpiredInBatches() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/expired/" + i, () -> "expired" + index);
+            expireOriginalUrl(TEST_LONG_URL + "/expired/" + i);
+        }
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/live", () -> "live");
+
+        assertEquals(3, urlShortenerDAL.countExpiredMappings());
+        DeletedMappings firstBatch = urlShortenerDAL.deleteExpiredMappings(2);
+        DeletedMappings secondBatch = urlShortenerDAL.deleteExpiredMappings(2);
+
+        assertEquals(2, firstBatch.getDeletedUrls());
+        assertEquals(List.of("expired0", "expired1"), firstBatch.getTokens());
+        assertEquals(1, secondBatch.getDeletedUrls());
+        assertEquals(List.of("expired2"), secondBatch.getTokens());
+        assertEquals(0, urlShortenerDAL.countExpiredMappings());
+        assertEquals(1, countOriginalUrls());
+        assertEquals(1, countTokens());
+        assertEquals(TEST_LONG_URL + "/live", urlShortenerDAL.getOriginalUrl("live"));
+    }
+
+    @Test
+    void deleteExpiredMappings_UrlWithAlias_ShouldCountTheUrlOnceAndReturnBothTokens() throws Exception {
+        insertTestData();
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+        expireOriginalUrl(TEST_LONG_URL);
+
+        DeletedMappings deleted = urlShortenerDAL.deleteExpiredMappings(1);
+
+        assertEquals(1, deleted.getDeletedUrls());
+        assertEquals(Set.of(TEST_TOKEN, "Brand-Name"), Set.copyOf(deleted.getTokens()));
+        assertEquals(0, countOriginalUrls());
+    }
+
+    @Test
+    void shortenOrGet_ExpiredLongUrl_ShouldRenewExistingToken() throws Exception {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        expireOriginalUrl(TEST_LONG_URL);
+
+        String token = urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> "unused");
+
+        assertEquals(TEST_TOKEN, token);
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+    }
+
+    @Test
+    void deleteShortUrl_ValidToken_ShouldReturnTrue() {
+        insertTestData();
+
+        boolean result = urlShortenerDAL.deleteShortUrl(TEST_TOKEN);
+
+        assertTrue(result);
+    }
+
+    @Test
+    void incrementRedirectCounts_CalledTwice_ShouldAccumulateCounts() throws Exception {
+        urlShortenerDAL.incrementRedirectCounts(Map.of(TEST_LONG_URL, 3L));
+        urlShortenerDAL.incrementRedirectCounts(Map.of(TEST_LONG_URL, 4L));
+
+        assertEquals(7L, getRedirectCount(TEST_LONG_URL));
+    }
+
+    @Test
+    void forEachToken_WithStoredMapping_ShouldVisitToken() {
+        insertTestData();
+        List<String> tokens = new ArrayList<>();
+
+        urlShortenerDAL.forEachToken(tokens::add);
+
+        assertEquals(List.of(TEST_TOKEN), tokens);
+    }
+
+    @Test
+    void forEachMapping_WithSeveralTokensPerUrl_ShouldVisitEachTokenNextToItsUrlWithItsCount() {
+        urlShortenerDAL.shortenOrGet("http://example.com/first", () -> "first");
+        long secondUrlId = urlShortenerDAL.insertOriginalUrl("http://example.com/second");
+        urlShortenerDAL.insertUrlMapping("second", secondUrlId);
+        urlShortenerDAL.shortenOrGet("http://example.com/third", () -> "third");
+        urlShortenerDAL.insertUrlMapping("secondAlias", secondUrlId);
+        urlShortenerDAL.incrementRedirectCounts(Map.of("http://example.com/second", 3L));
+        List<UrlMapping> mappings = new ArrayList<>();
+
+        urlShortenerDAL.forEachMapping(mappings::add);
+
+        assertEquals(4, mappings.size());
+        List<String> longUrls = mappings.stream().map(UrlMapping::getLongUrl).toList();
+        int firstSecond = longUrls.indexOf("http://example.com/second");
+        assertEquals("http://example.com/second", longUrls.get(firstSecond + 1));
+        for (UrlMapping mapping : mappings) {
+            assertEquals(mapping.getLongUrl(), urlShortenerDAL.getOriginalUrl(mapping.getToken()));
+            assertEquals(mapping.getLongUrl().endsWith("second") ? 3L : 0L, mapping.getRedirectCount());
+            assertTrue(mapping.getExpirationMillis() > System.currentTimeMillis());
+        }
+    }
+
+    @Test
+    void forEachMapping_WithAlias_ShouldFlagOnlyTheAlias() {
+        insertTestData();
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+        List<UrlMapping> mappings = new ArrayList<>();
+
+        urlShortenerDAL.forEachMapping(mappings::add);
+
+        assertEquals(2, mappings.size());
+        for (UrlMapping mapping : mappings) {
+            assertEquals(mapping.getToken().equals("Brand-Name"), mapping.isAlias());
+        }
+    }
+
+    @Test
+    void deleteShortUrl_Alias_ShouldKeepGeneratedToken() throws Exception {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+
+        assertTrue(urlShortenerDAL.deleteShortUrl("Brand-Name"));
+
+        assertNull(urlShortenerDAL.getOriginalUrl("Brand-Name"));
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertEquals(1, countOriginalUrls());
+    }
+
+    @Test
+    void deleteShortUrl_GeneratedToken_ShouldKeepAlias() throws Exception {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+
+        assertTrue(urlShortenerDAL.deleteShortUrl(TEST_TOKEN));
+
+        assertNull(urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl("Brand-Name"));
+        assertEquals(1, countOriginalUrls());
+    }
+
+    @Test
+    void deleteShortUrl_LastToken_ShouldDeleteUrl() throws Exception {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+
+        urlShortenerDAL.deleteShortUrl(TEST_TOKEN);
+        urlShortenerDAL.deleteShortUrl("Brand-Name");
+
+        assertEquals(0, countOriginalUrls());
+    }
+
+    @Test
+    void shortenOrGet_UrlStoredWithAliasFirst_ShouldReturnGeneratedToken() {
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+
+        String token = urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+
+        assertEquals(TEST_TOKEN, token);
+        assertEquals(TEST_TOKEN, urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> "unused"));
+        assertEquals(TEST_TOKEN, urlShortenerDAL.getTokenForOriginalUrl(urlShortenerDAL.getOriginalUrlId(TEST_LONG_URL)));
+    }
+
+    @Test
+    void shortenOrGetBatch_UrlStoredWithAliasFirst_ShouldReturnGeneratedToken() {
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+
+        Map<String, String> tokensByLongUrl = urlShortenerDAL.shortenOrGetBatch(List.of(TEST_LONG_URL), () -> "unused");
+
+        assertEquals(Map.of(TEST_LONG_URL, TEST_TOKEN), tokensByLongUrl);
+    }
+
+    @Test
+    void getTokensForLongUrls_MixedStoredAliasOnlyAndNewUrls_ShouldReturnOnlyGeneratedTokens() throws Exception {
+        insertTestData();
+        urlShortenerDAL.insertAlias("http://example.com/alias-only", "Brand-Name");
+        expireOriginalUrl(TEST_LONG_URL);
+
+        Map<String, String> tokensByLongUrl = urlShortenerDAL.getTokensForLongUrls(
+                List.of(TEST_LONG_URL, "http://example.com/alias-only", "http://example.com/new", TEST_LONG_URL));
+
+        assertEquals(Map.of(TEST_LONG_URL, TEST_TOKEN), tokensByLongUrl);
+    }
+
+    @Test
+    void insertAlias_ExistingLongUrl_ShouldMapAliasNextToGeneratedToken() {
+        insertTestData();
+
+        boolean inserted = urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand-Name");
+
+        assertTrue(inserted);
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl("Brand-Name"));
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertNull(urlShortenerDAL.getOriginalUrl("brand-name"));
+    }
+
+    @Test
+    void insertAlias_AliasDifferingOnlyInCase_ShouldRefuseAndLeaveNoUrlBehind() throws Exception {
+        urlShortenerDAL.insertAlias("http://example.com/first", "Brand");
+
+        boolean inserted = urlShortenerDAL.insertAlias("http://example.com/second", "bRAND");
+
+        assertFalse(inserted);
+        assertEquals(1, countOriginalUrls());
+        assertEquals(-1, urlShortenerDAL.getOriginalUrlId("http://example.com/second"));
+    }
+
+    @Test
+    void insertAlias_EqualToGeneratedToken_ShouldRefuse() {
+        insertTestData();
+
+        assertFalse(urlShortenerDAL.insertAlias("http://example.com/other", TEST_TOKEN));
+        assertTrue(urlShortenerDAL.insertAlias("http://example.com/other", TEST_TOKEN.toUpperCase()));
+    }
+
+    @Test
+    void forEachAlias_WithAliasesAndGeneratedTokens_ShouldVisitOnlyAliases() {
+        insertTestData();
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "brand");
+        urlShortenerDAL.insertAlias("http://example.com/other", "Other");
+        urlShortenerDAL.deleteShortUrl("Other");
+        Set<String> aliases = new HashSet<>();
+
+        urlShortenerDAL.forEachAlias(aliases::add);
+
+        assertEquals(Set.of("brand"), aliases);
+    }
+
+    @Test
+    void getMostRedirectedMappings_WithRedirectCounts_ShouldReturnMostRedirectedFirst() {
+        urlShortenerDAL.shortenOrGet("http://example.com/quiet", () -> "quiet");
+        urlShortenerDAL.shortenOrGet("http://example.com/busy", () -> "busy");
+        urlShortenerDAL.shortenOrGet("http://example.com/unvisited", () -> "unvisited");
+        urlShortenerDAL.incrementRedirectCounts(Map.of("http://example.com/quiet", 1L, "http://example.com/busy", 5L));
+
+        Map<String, String> mappings = urlShortenerDAL.getMostRedirectedMappings(10);
+
+        assertEquals(List.of("busy", "quiet"), new ArrayList<>(mappings.keySet()));
+        assertEquals("http://example.com/busy", mappings.get("busy"));
+    }
+
+    @Test
+    void shortenOrGet_NewLongUrl_ShouldInsertMappingForSuppliedToken() {
+        String token = urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+
+        assertEquals(TEST_TOKEN, token);
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+    }
+
+    @Test
+    void shortenOrGet_ExistingLongUrl_ShouldReturnExistingTokenWithoutCallingSupplier() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+
+        String token = urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> {
+            throw new AssertionError("Token supplier should not be called for an existing URL");
+        });
+
+        assertEquals(TEST_TOKEN, token);
+    }
+
+    @Test
+    void shortenOrGet_TokenCollision_ShouldRetryWithNextToken() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        Iterator<String> tokens = List.of(TEST_TOKEN, "otherToken").iterator();
+
+        String token = urlShortenerDAL.shortenOrGet("http://example.org", tokens::next);
+
+        assertEquals("otherToken", token);
+        assertEquals("http://example.org", urlShortenerDAL.getOriginalUrl("otherToken"));
+    }
+
+    @Test
+    void shortenOrGet_ConcurrentCallsForSameLongUrl_ShouldAllReturnSameToken() throws Exception {
+        AtomicInteger tokenSequence = new AtomicInteger();
+
+        List<String> tokens = runConcurrently(CONCURRENT_CALLERS,
+                caller -> urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> "token" + tokenSequence.incrementAndGet()));
+
+        assertEquals(1, new HashSet<>(tokens).size(), "All callers should agree on one token");
+        assertEquals(1, countOriginalUrls());
+        assertEquals(1, countTokens());
+    }
+
+    @Test
+    void shortenOrGet_ConcurrentCallsForDistinctLongUrls_ShouldCreateOneMappingEach() throws Exception {
+        AtomicInteger tokenSequence = new AtomicInteger();
+
+        List<String> tokens = runConcurrently(CONCURRENT_CALLERS,
+                caller -> urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/" + caller, () -> "token" + tokenSequence.incrementAndGet()));
+
+        assertEquals(CONCURRENT_CALLERS, new HashSet<>(tokens).size());
+        assertEquals(CONCURRENT_CALLERS, countOriginalUrls());
+        assertEquals(CONCURRENT_CALLERS, countTokens());
+    }
+
+    @Test
+    void shortenOrGetBatch_MixedNewExistingAndDuplicateUrls_ShouldMapEachDistinctUrlOnce() throws Exception {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        Iterator<String> tokens = List.of(TEST_TOKEN, "token1", "token2").iterator();
+
+        Map<String, String> tokensByLongUrl = urlShortenerDAL.shortenOrGetBatch(
+                List.of("http://example.org", TEST_LONG_URL, "http://example.org", "http://example.net"), tokens::next);
+
+        assertEquals(TEST_TOKEN, tokensByLongUrl.get(TEST_LONG_URL));
+        assertEquals(Set.of("token1", "token2"), Set.of(tokensByLongUrl.get("http://example.org"), tokensByLongUrl.get("http://example.net")));
+        assertEquals(3, countOriginalUrls());
+        assertEquals(3, countTokens());
+    }
+
+    @Test
+    void reserveTokenIdBlock_CalledTwice_ShouldReturnAdjacentBlocks() {
+        long firstBlockStart = urlShortenerDAL.reserveTokenIdBlock(100);
+        long secondBlockStart = urlShortenerDAL.reserveTokenIdBlock(100);
+
+        assertEquals(0L, firstBlockStart);
+        assertEquals(100L, secondBlockStart);
+    }
+
+    @Test
+    void getNextTokenId_AfterReservations_ShouldReturnNextBlockStartWithoutReserving() {
+        assertEquals(0L, urlShortenerDAL.getNextTokenId());
+        urlShortenerDAL.reserveTokenIdBlock(100);
+
+        assertEquals(100L, urlShortenerDAL.getNextTokenId());
+        assertEquals(100L, urlShortenerDAL.reserveTokenIdBlock(10));
+    }
+
+    private <T> List<T> runConcurrently(int callers, IntFunction<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int caller = 0; caller < callers; caller++) {
+                int callerId = caller;
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return call.apply(callerId);
+                }));
+            }
+            startSignal.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void insertTestData() {
+        long originalUrlId = urlShortenerDAL.insertOriginalUrl(TEST_LONG_URL);
+        urlShortenerDAL.insertUrlMapping(TEST_TOKEN, originalUrlId);
+    }
+}
@@ -0,0 +1,79 @@
+package com.rushtech.urlshortener.dal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AsyncUrlShortenerDALTest {
+
+    @Test
+    public void getOriginalUrl_DelegateAnswers_ShouldCompleteOnExecutorThread() throws Exception {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.getOriginalUrl("abc123")).thenAnswer(invocation -> Thread.currentThread().getName());
+
+        try (AsyncUrlShortenerDAL asyncDAL = new AsyncUrlShortenerDAL(delegate, 1, 1, 1000)) {
+            assertTrue(asyncDAL.getOriginalUrl("abc123").get(5, TimeUnit.SECONDS).startsWith("dal-async-"));
+        }
+    }
+
+    @Test
+    public void getOriginalUrl_DelegateThrows_ShouldCompleteExceptionally() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.getOriginalUrl("abc123")).thenThrow(new UrlShortenerDataAccessException("Error", null));
+
+        try (AsyncUrlShortenerDAL asyncDAL = new AsyncUrlShortenerDAL(delegate, 1, 1, 1000)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> asyncDAL.getOriginalUrl("abc123").get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UrlShortenerDataAccessException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void getOriginalUrl_ThreadBusyAndQueueFull_ShouldRejectWithOverloaded() throws Exception {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+        when(delegate.getOriginalUrl("slow")).thenAnswer(invocation -> {
+            callStarted.countDown();
+            releaseCall.await();
+            return "http://example.com";
+        });
+
+        try (AsyncUrlShortenerDAL asyncDAL = new AsyncUrlShortenerDAL(delegate, 1, 1, 5000)) {
+            CompletableFuture<String> running = asyncDAL.getOriginalUrl("slow");
+            assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = asyncDAL.getOriginalUrl("abc123");
+            assertEquals(1, asyncDAL.getQueuedCalls());
+
+            CompletableFuture<String> rejected = asyncDAL.getOriginalUrl("abc123");
+            ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(UrlShortenerOverloadedException.class, e.getCause());
+
+            releaseCall.countDown();
+            assertEquals("http://example.com", running.get(5, TimeUnit.SECONDS));
+            queued.get(5, TimeUnit.SECONDS);
+        }
+        verify(delegate, times(1)).getOriginalUrl("abc123");
+    }
+
+    @Test
+    public void getOriginalUrl_SlowerThanTimeout_ShouldFailWithOverloaded() throws Exception {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+        when(delegate.getOriginalUrl("slow")).thenAnswer(invocation -> {
+            releaseCall.await();
+            return "http://example.com";
+        });
+
+        try (AsyncUrlShortenerDAL asyncDAL = new AsyncUrlShortenerDAL(delegate, 1, 1, 50)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> asyncDAL.getOriginalUrl("slow").get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UrlShortenerOverloadedException.class, e.getCause());
+            releaseCall.countDown();
+        }
+    }
+}
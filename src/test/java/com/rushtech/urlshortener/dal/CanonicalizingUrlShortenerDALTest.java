@@ -0,0 +1,28 @@
+package com.rushtech.urlshortener.dal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CanonicalizingUrlShortenerDALTest {
+
+    @Test
+    public void shortenOrGetBatch_SpellingsOfSameUrl_ShouldShareTokenKeyedByInputUrls() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.shortenOrGetBatch(eq(List.of("https://example.com/?a=1&b=2")), any()))
+                .thenReturn(Map.of("https://example.com/?a=1&b=2", "abc123"));
+        CanonicalizingUrlShortenerDAL canonicalizingDAL = new CanonicalizingUrlShortenerDAL(delegate);
+        Supplier<String> tokenSupplier = () -> "unused";
+
+        Map<String, String> tokens = canonicalizingDAL.shortenOrGetBatch(
+                List.of("https://EXAMPLE.com?b=2&a=1", "https://example.com:443/?a=1&b=2"), tokenSupplier);
+
+        assertEquals(Map.of("https://EXAMPLE.com?b=2&a=1", "abc123", "https://example.com:443/?a=1&b=2", "abc123"), tokens);
+    }
+}
@@ -0,0 +1,65 @@
+package com.rushtech.urlshortener.dal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConcurrencyLimitedUrlShortenerDALTest {
+
+    @Test
+    public void getOriginalUrl_PermitAvailable_ShouldReturnDelegateResultAndReleasePermit() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.getOriginalUrl("abc123")).thenReturn("http://example.com");
+        ConcurrencyLimitedUrlShortenerDAL limitedDAL = new ConcurrencyLimitedUrlShortenerDAL(delegate, 1, 0, 100);
+
+        assertEquals("http://example.com", limitedDAL.getOriginalUrl("abc123"));
+        assertEquals("http://example.com", limitedDAL.getOriginalUrl("abc123"));
+        assertEquals(0, limitedDAL.getActiveCalls());
+    }
+
+    @Test
+    public void getOriginalUrl_DelegateThrows_ShouldReleasePermit() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.getOriginalUrl("abc123")).thenThrow(new UrlShortenerDataAccessException("Error", null));
+        ConcurrencyLimitedUrlShortenerDAL limitedDAL = new ConcurrencyLimitedUrlShortenerDAL(delegate, 1, 0, 100);
+
+        assertThrows(UrlShortenerDataAccessException.class, () -> limitedDAL.getOriginalUrl("abc123"));
+        assertEquals(0, limitedDAL.getActiveCalls());
+    }
+
+    @Test
+    public void getOriginalUrl_AllPermitsHeld_ShouldRejectWhenQueueFullOrTimedOut() throws Exception {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch releaseCall = new CountDownLatch(1);
+        when(delegate.getOriginalUrl("slow")).thenAnswer(invocation -> {
+            callStarted.countDown();
+            releaseCall.await();
+            return "http://example.com";
+        });
+        ConcurrencyLimitedUrlShortenerDAL noQueueDAL = new ConcurrencyLimitedUrlShortenerDAL(delegate, 1, 0, 100);
+        ConcurrencyLimitedUrlShortenerDAL queueingDAL = new ConcurrencyLimitedUrlShortenerDAL(delegate, 1, 1, 50);
+
+        Thread noQueueHolder = new Thread(() -> noQueueDAL.getOriginalUrl("slow"));
+        noQueueHolder.start();
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+        assertThrows(UrlShortenerOverloadedException.class, () -> noQueueDAL.getOriginalUrl("abc123"));
+
+        Thread queueingHolder = new Thread(() -> queueingDAL.getOriginalUrl("slow"));
+        queueingHolder.start();
+        while (queueingDAL.getActiveCalls() == 0) {
+            Thread.onSpinWait();
+        }
+        assertThrows(UrlShortenerOverloadedException.class, () -> queueingDAL.getOriginalUrl("abc123"));
+        assertEquals(0, queueingDAL.getQueuedCalls());
+
+        releaseCall.countDown();
+        noQueueHolder.join();
+        queueingHolder.join();
+        verify(delegate, never()).getOriginalUrl("abc123");
+    }
+}
@@ -0,0 +1,251 @@
+package com.rushtech.urlshortener.dal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogStructuredUrlShortenerDALTest extends AbstractUrlShortenerDALTest {
+
+    private static final long INDEX_INITIAL_CAPACITY = 1024;
+
+    @TempDir
+    Path directory;
+
+    private LogStructuredUrlShortenerDAL storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = open(INDEX_INITIAL_CAPACITY);
+        urlShortenerDAL = storage;
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    private LogStructuredUrlShortenerDAL open(long indexInitialCapacity) {
+        return new LogStructuredUrlShortenerDAL(directory, EXPIRY_DATE_MONTHS_IN_FUTURE, indexInitialCapacity, 0, 0.5);
+    }
+
+    private void reopen() {
+        storage = open(INDEX_INITIAL_CAPACITY);
+        urlShortenerDAL = storage;
+    }
+
+    @Test
+    void reopen_AfterClose_ShouldRestoreMappingsCountsAndSequence() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.incrementRedirectCounts(Map.of(TEST_LONG_URL, 3L));
+        urlShortenerDAL.reserveTokenIdBlock(100);
+        storage.close();
+
+        reopen();
+
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertEquals(3L, storage.getRedirectCount(TEST_LONG_URL));
+        assertEquals(100L, urlShortenerDAL.reserveTokenIdBlock(100));
+    }
+
+    @Test
+    void reopen_WithoutCheckpointAfterWrites_ShouldRebuildIndex() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        storage.checkpoint();
+        urlShortenerDAL.shortenOrGet("http://example.org", () -> "otherToken");
+        urlShortenerDAL.deleteShortUrl(TEST_TOKEN);
+        // Simulates a crash: the files are reopened without the final checkpoint
+        LogStructuredUrlShortenerDAL crashed = storage;
+
+        reopen();
+
+        assertNull(urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertEquals("http://example.org", urlShortenerDAL.getOriginalUrl("otherToken"));
+        crashed.close();
+    }
+
+    @Test
+    void reopen_WithTornRecordAtEnd_ShouldTruncateItAndKeepEarlierRecords() throws IOException {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        storage.close();
+        Path logFile = directory.resolve("urls.log");
+        long intactBytes = Files.size(logFile);
+        Files.write(logFile, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        reopen();
+
+        assertEquals(intactBytes, Files.size(logFile));
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+    }
+
+    @Test
+    void reopen_WithIndexCheckpointAheadOfLog_ShouldRebuildIndex() throws IOException {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.shortenOrGet("http://example.org", () -> "otherToken");
+        storage.close();
+        Path logFile = directory.resolve("urls.log");
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        reopen();
+
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        // Only the last record, the token of the second URL, is cut off
+        assertNull(urlShortenerDAL.getOriginalUrl("otherToken"));
+        assertEquals("otherToken", urlShortenerDAL.shortenOrGet("http://example.org", () -> "otherToken"));
+    }
+
+    @Test
+    void compact_WithSupersededRecords_ShouldShrinkLogAndKeepLiveState() {
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/" + i, () -> "token" + index);
+            urlShortenerDAL.incrementRedirectCounts(Map.of(TEST_LONG_URL + "/" + i, 1L));
+        }
+        for (int i = 0; i < 90; i++) {
+            urlShortenerDAL.deleteShortUrl("token" + i);
+        }
+        long logBytesBefore = storage.getLogBytes();
+        assertTrue(storage.getGarbageBytes() > 0);
+
+        storage.compact();
+
+        assertTrue(storage.getLogBytes() < logBytesBefore / 2, "Compacted log should drop the deleted URLs");
+        assertEquals(0, storage.getGarbageBytes());
+        assertNull(urlShortenerDAL.getOriginalUrl("token0"));
+        assertEquals(TEST_LONG_URL + "/95", urlShortenerDAL.getOriginalUrl("token95"));
+        storage.close();
+        reopen();
+        assertEquals(10, storage.getOriginalUrlCount());
+        assertEquals(TEST_LONG_URL + "/99", urlShortenerDAL.getOriginalUrl("token99"));
+        assertEquals(1L, storage.getRedirectCount(TEST_LONG_URL + "/99"));
+    }
+
+    @Test
+    void compact_WithWritesWhileRewriting_ShouldKeepThemAcrossReopen() {
+        int urls = 100;
+        for (int i = 0; i < urls; i++) {
+            int index = i;
+            urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/" + i, () -> "token" + index);
+        }
+        storage.setCompactionSnapshotHook(() -> {
+            for (int i = 0; i < urls; i++) {
+                int index = i;
+                if (i % 2 == 0) {
+                    urlShortenerDAL.deleteShortUrl("token" + i);
+                } else {
+                    urlShortenerDAL.insertAlias(TEST_LONG_URL + "/" + i, "alias" + i);
+                }
+                urlShortenerDAL.shortenOrGet(TEST_LONG_URL + "/new/" + i, () -> "new" + index);
+            }
+            storage.setExpiration(TEST_LONG_URL + "/1", System.currentTimeMillis() - 1000);
+        });
+
+        storage.compact();
+
+        assertWritesKept(urls);
+        storage.close();
+        reopen();
+        assertWritesKept(urls);
+    }
+
+    private void assertWritesKept(int urls) {
+        for (int i = 0; i < urls; i++) {
+            // Even URLs lost their only token, and URL 1 expired
+            String longUrl = i % 2 == 0 || i == 1 ? null : TEST_LONG_URL + "/" + i;
+            assertEquals(longUrl, urlShortenerDAL.getOriginalUrl("token" + i));
+            assertEquals(longUrl, urlShortenerDAL.getOriginalUrl("alias" + i));
+            assertEquals(TEST_LONG_URL + "/new/" + i, urlShortenerDAL.getOriginalUrl("new" + i));
+        }
+        assertEquals(urls / 2 + urls, storage.getOriginalUrlCount());
+    }
+
+    @Test
+    void compact_WithAlias_ShouldKeepItAnAliasAcrossReopen() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand");
+
+        storage.compact();
+        storage.close();
+        reopen();
+
+        List<String> aliases = new ArrayList<>();
+        urlShortenerDAL.forEachAlias(aliases::add);
+        assertEquals(List.of("Brand"), aliases);
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl("Brand"));
+        assertFalse(urlShortenerDAL.insertAlias("http://example.org", "BRAND"));
+    }
+
+    @Test
+    void reopen_AfterDeletingAlias_ShouldReplayOnlyTheAliasDelete() {
+        urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
+        urlShortenerDAL.insertAlias(TEST_LONG_URL, "Brand");
+        urlShortenerDAL.deleteShortUrl("Brand");
+        storage.close();
+
+        reopen();
+
+        assertNull(urlShortenerDAL.getOriginalUrl("Brand"));
+        assertEquals(TEST_LONG_URL, urlShortenerDAL.getOriginalUrl(TEST_TOKEN));
+        assertTrue(urlShortenerDAL.insertAlias("http://example.org", "BRAND"));
+    }
+
+    @Test
+    void shortenOrGetBatch_MoreTokensThanIndexCapacity_ShouldGrowIndex() {
+        storage.close();
+        storage = open(1);
+        urlShortenerDAL = storage;
+        List<String> longUrls = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            longUrls.add(TEST_LONG_URL + "/" + i);
+        }
+        int[] sequence = {0};
+
+        Map<String, String> tokensByLongUrl = urlShortenerDAL.shortenOrGetBatch(longUrls, () -> "token" + sequence[0]++);
+
+        Set<String> tokens = new HashSet<>(tokensByLongUrl.values());
+        assertEquals(5000, tokens.size());
+        for (String longUrl : longUrls) {
+            assertEquals(longUrl, urlShortenerDAL.getOriginalUrl(tokensByLongUrl.get(longUrl)));
+        }
+    }
+
+    @Override
+    protected long countOriginalUrls() {
+        return storage.getOriginalUrlCount();
+    }
+
+    @Override
+    protected long countTokens() {
+        long[] tokens = {0};
+        storage.forEachToken(token -> tokens[0]++);
+        return tokens[0];
+    }
+
+    @Override
+    protected long getRedirectCount(String originalUrl) {
+        return storage.getRedirectCount(originalUrl);
+    }
+
+    @Override
+    protected void expireOriginalUrl(String longUrl) {
+        storage.setExpiration(longUrl, System.currentTimeMillis() - 1000);
+    }
+}
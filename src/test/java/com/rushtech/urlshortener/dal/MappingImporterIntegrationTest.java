@@ -0,0 +1,123 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.UrlMapping;
+import com.rushtech.urlshortener.util.MappingArchive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappingImporterIntegrationTest {
+
+    private static final int CONNECTION_TIMEOUT_MILLISECONDS = 30000;
+    private static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void importMappings_ExportedDatabase_ShouldRestoreTokensCountsAndIndexes() throws IOException {
+        String sourceUrl = databaseUrl("source");
+        new SchemaMigrator(sourceUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        UrlShortenerDAL source = createDAL("source", sourceUrl);
+        Map<String, String> tokensByLongUrl = new HashMap<>();
+        for (int i = 0; i < 2500; i++) {
+            String longUrl = "http://example.com/" + i;
+            String token = "tok" + i;
+            tokensByLongUrl.put(longUrl, source.shortenOrGet(longUrl, () -> token));
+        }
+        long aliasedUrlId = source.getOriginalUrlId("http://example.com/7");
+        source.insertUrlMapping("alias7", aliasedUrlId);
+        source.insertAlias("http://example.com/8", "my-alias");
+        source.incrementRedirectCounts(Map.of("http://example.com/7", 5L));
+        long nextTokenId = source.reserveTokenIdBlock(100) + 100;
+        byte[] archive = export(source);
+
+        String targetUrl = databaseUrl("target");
+        MappingImporter.Result result = new MappingImporter(targetUrl).importMappings(new ByteArrayInputStream(archive));
+
+        assertEquals(2502, result.mappings());
+        assertEquals(2500, result.originalUrls());
+        assertEquals(1, result.redirectCounts());
+        UrlShortenerDAL target = createDAL("target", targetUrl);
+        tokensByLongUrl.forEach((longUrl, token) -> {
+            assertEquals(longUrl, target.getOriginalUrl(token));
+            assertEquals(token, target.shortenOrGet(longUrl, () -> {
+                throw new IllegalStateException("Imported URL should not need a new token");
+            }));
+        });
+        assertEquals("http://example.com/7", target.getOriginalUrl("alias7"));
+        assertEquals(Map.of("tok7", "http://example.com/7"), target.getMostRedirectedMappings(1));
+        List<String> aliases = new ArrayList<>();
+        target.forEachAlias(aliases::add);
+        assertEquals(List.of("my-alias"), aliases);
+        assertEquals(nextTokenId, target.getNextTokenId());
+        source.close();
+        target.close();
+    }
+
+    @Test
+    void importMappings_TruncatedArchive_ShouldFail() throws IOException {
+        String sourceUrl = databaseUrl("source");
+        new SchemaMigrator(sourceUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        UrlShortenerDAL source = createDAL("source", sourceUrl);
+        source.shortenOrGet("http://example.com", () -> "abc123");
+        byte[] archive = export(source);
+        source.close();
+
+        byte[] truncated = Arrays.copyOf(archive, archive.length - 1);
+
+        assertThrows(IOException.class,
+                () -> new MappingImporter(databaseUrl("target")).importMappings(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void importMappings_TargetNotEmpty_ShouldRefuse() throws IOException {
+        String targetUrl = databaseUrl("target");
+        new SchemaMigrator(targetUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        UrlShortenerDAL target = createDAL("target", targetUrl);
+        target.shortenOrGet("http://example.com", () -> "abc123");
+        byte[] archive = export(target);
+        target.close();
+
+        assertThrows(IllegalStateException.class,
+                () -> new MappingImporter(targetUrl).importMappings(new ByteArrayInputStream(archive)));
+    }
+
+    private static byte[] export(IUrlShortenerDAL dal) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MappingArchive.Writer writer = MappingArchive.newWriter(out, MappingArchive.Format.BINARY, true)) {
+            dal.forEachMapping((UrlMapping mapping) -> {
+                try {
+                    writer.write(mapping);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.setNextTokenId(dal.getNextTokenId());
+        }
+        return out.toByteArray();
+    }
+
+    private String databaseUrl(String name) {
+        return "jdbc:sqlite:" + tempDir.resolve(name + ".db").toAbsolutePath();
+    }
+
+    private static UrlShortenerDAL createDAL(String poolName, String databaseUrl) {
+        return new UrlShortenerDAL(poolName, databaseUrl, 2, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE, true,
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,89 @@
+package com.rushtech.urlshortener.dal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreparedStatementCacheTest {
+
+    private static final String SELECT_ONE = "SELECT 1";
+    private static final String INSERT_NUMBER = "INSERT INTO numbers (n) VALUES (?)";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void prepare_SameSqlTwice_ShouldReuseStatement() throws Exception {
+        PreparedStatementCache cache = new PreparedStatementCache(true);
+        try (Connection conn = openConnection()) {
+            PreparedStatement first = cache.prepare(conn, SELECT_ONE);
+            try (ResultSet rs = first.executeQuery()) {
+                assertTrue(rs.next());
+            }
+
+            PreparedStatement second = cache.prepare(conn, SELECT_ONE);
+
+            assertSame(first, second);
+            assertFalse(second.isClosed());
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void prepare_AfterConnectionClosed_ShouldDropItsStatements() throws Exception {
+        PreparedStatementCache cache = new PreparedStatementCache(true);
+        Connection retired = openConnection();
+        cache.prepare(retired, SELECT_ONE);
+        retired.close();
+
+        try (Connection replacement = openConnection()) {
+            cache.prepare(replacement, SELECT_ONE);
+
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void prepare_StatementLeftWithBatch_ShouldClearTheBatch() throws Exception {
+        PreparedStatementCache cache = new PreparedStatementCache(true);
+        try (Connection conn = openConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE numbers (n INTEGER)");
+            }
+            PreparedStatement abandoned = cache.prepare(conn, INSERT_NUMBER);
+            abandoned.setInt(1, 1);
+            abandoned.addBatch();
+            abandoned.setInt(1, 2);
+            abandoned.addBatch();
+
+            PreparedStatement reused = cache.prepare(conn, INSERT_NUMBER);
+            reused.setInt(1, 3);
+            reused.addBatch();
+
+            assertEquals(1, reused.executeBatch().length);
+        }
+    }
+
+    @Test
+    public void prepare_Disabled_ShouldPrepareNewStatementEachCall() throws Exception {
+        PreparedStatementCache cache = new PreparedStatementCache(false);
+        try (Connection conn = openConnection();
+             PreparedStatement first = cache.prepare(conn, SELECT_ONE);
+             PreparedStatement second = cache.prepare(conn, SELECT_ONE)) {
+            assertNotSame(first, second);
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private Connection openConnection() throws Exception {
+        return DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("statements.db").toAbsolutePath());
+    }
+}
@@ -0,0 +1,73 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.model.RedirectReferrerCount;
+import com.rushtech.urlshortener.model.RedirectStatsBucket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RedirectStatsDALIntegrationTest {
+
+    private static final int MINUTE = 60;
+    private static final int HOUR = 3600;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void addRedirectStats_SameBucketTwice_ShouldAccumulateCounts() {
+        try (RedirectStatsDAL redirectStatsDAL = createDAL()) {
+            redirectStatsDAL.addRedirectStats(List.of(new RedirectStatsBucket("abc123", MINUTE, 600, 1, 2, 0, 0)), List.of());
+            redirectStatsDAL.addRedirectStats(List.of(new RedirectStatsBucket("abc123", MINUTE, 600, 1, 0, 3, 0),
+                    new RedirectStatsBucket("abc123", MINUTE, 660, 0, 0, 0, 1)), List.of());
+
+            List<RedirectStatsBucket> buckets = redirectStatsDAL.getRedirectStats("abc123", MINUTE, 0, 3600);
+
+            assertEquals(2, buckets.size());
+            assertEquals(600, buckets.get(0).getBucketStart());
+            assertEquals(7, buckets.get(0).getRedirects());
+            assertEquals(2, buckets.get(0).getBrowser());
+            assertEquals(3, buckets.get(0).getBot());
+            assertEquals(660, buckets.get(1).getBucketStart());
+            assertEquals(0, redirectStatsDAL.getRedirectStats("abc123", HOUR, 0, 3600).size());
+        }
+    }
+
+    @Test
+    void getTopReferrers_SeveralHours_ShouldSumAndOrderByRedirects() {
+        try (RedirectStatsDAL redirectStatsDAL = createDAL()) {
+            redirectStatsDAL.addRedirectStats(List.of(), List.of(
+                    new RedirectReferrerCount("abc123", 0, "example.org", 2),
+                    new RedirectReferrerCount("abc123", 3600, "example.org", 2),
+                    new RedirectReferrerCount("abc123", 3600, "news.example.com", 3),
+                    new RedirectReferrerCount("def456", 3600, "example.net", 10)));
+
+            assertEquals(Map.of("example.org", 4L, "news.example.com", 3L), redirectStatsDAL.getTopReferrers("abc123", 0, 7200, 10));
+            assertEquals(List.of("example.org"), List.copyOf(redirectStatsDAL.getTopReferrers("abc123", 0, 7200, 1).keySet()));
+        }
+    }
+
+    @Test
+    void deleteRedirectStatsBefore_OldMinuteBuckets_ShouldKeepHourBuckets() {
+        try (RedirectStatsDAL redirectStatsDAL = createDAL()) {
+            redirectStatsDAL.addRedirectStats(List.of(
+                    new RedirectStatsBucket("abc123", MINUTE, 0, 1, 0, 0, 0),
+                    new RedirectStatsBucket("abc123", MINUTE, 7200, 1, 0, 0, 0),
+                    new RedirectStatsBucket("abc123", HOUR, 0, 1, 0, 0, 0)), List.of());
+
+            assertEquals(1, redirectStatsDAL.deleteRedirectStatsBefore(MINUTE, 3600));
+
+            assertEquals(1, redirectStatsDAL.getRedirectStats("abc123", MINUTE, 0, 10_800).size());
+            assertEquals(1, redirectStatsDAL.getRedirectStats("abc123", HOUR, 0, 10_800).size());
+        }
+    }
+
+    private RedirectStatsDAL createDAL() {
+        return new RedirectStatsDAL("jdbc:sqlite:" + tempDir.resolve("stats.db").toAbsolutePath(), 2, 30000);
+    }
+}
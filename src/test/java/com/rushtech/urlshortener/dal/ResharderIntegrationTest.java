@@ -0,0 +1,99 @@
+package com.rushtech.urlshortener.dal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ResharderIntegrationTest {
+
+    private static final int TARGET_SHARDS = 4;
+    private static final int CONNECTION_TIMEOUT_MILLISECONDS = 30000;
+    private static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reshard_SingleDatabase_ShouldKeepEveryTokenAndReuseDisplacedMappings() {
+        String sourceUrl = databaseUrl("source");
+        new SchemaMigrator(sourceUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        UrlShortenerDAL source = createDAL("source", sourceUrl);
+        Map<String, String> tokensByLongUrl = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            String longUrl = "http://example.com/" + i;
+            tokensByLongUrl.put(longUrl, source.shortenOrGet(longUrl, () -> "tok" + longUrl.hashCode()));
+        }
+        source.insertAlias("http://example.com/7", "my-alias");
+        source.incrementRedirectCount("http://example.com/7");
+
+        List<String> targetUrls = new ArrayList<>();
+        for (int shard = 0; shard < TARGET_SHARDS; shard++) {
+            targetUrls.add(databaseUrl("target" + shard));
+        }
+        Resharder.Result result = new Resharder(List.of(sourceUrl), targetUrls).reshard();
+
+        assertEquals(51, result.mappings());
+        assertEquals(1, result.redirectCounts());
+        List<UrlShortenerDAL> targets = new ArrayList<>();
+        for (int shard = 0; shard < TARGET_SHARDS; shard++) {
+            targets.add(createDAL("target" + shard, targetUrls.get(shard)));
+        }
+        ShardedUrlShortenerDAL shardedDAL = new ShardedUrlShortenerDAL(targets, true);
+        tokensByLongUrl.forEach((longUrl, token) -> {
+            assertEquals(longUrl, shardedDAL.getOriginalUrl(token));
+            assertEquals(token, shardedDAL.shortenOrGet(longUrl, () -> {
+                throw new IllegalStateException("Resharded URL should not need a new token");
+            }));
+        });
+        List<String> aliases = new ArrayList<>();
+        shardedDAL.forEachAlias(aliases::add);
+        assertEquals(List.of("my-alias"), aliases);
+    }
+
+    @Test
+    void reshard_TargetNotEmpty_ShouldRefuse() {
+        String sourceUrl = databaseUrl("source");
+        String targetUrl = databaseUrl("target");
+        new SchemaMigrator(targetUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        createDAL("target", targetUrl).shortenOrGet("http://example.com", () -> "abc123");
+
+        assertThrows(IllegalStateException.class, () -> new Resharder(List.of(sourceUrl), List.of(targetUrl)).reshard());
+    }
+
+    @Test
+    void reshard_FailsPartway_ShouldLeaveTargetsEmptyForARerun() {
+        String firstSourceUrl = databaseUrl("source0");
+        String secondSourceUrl = databaseUrl("source1");
+        new SchemaMigrator(firstSourceUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        new SchemaMigrator(secondSourceUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        createDAL("source0", firstSourceUrl).shortenOrGet("http://example.com/a", () -> "abc123");
+        // The same token in a second source cannot be copied, which fails the run after the first source is copied
+        createDAL("source1", secondSourceUrl).shortenOrGet("http://example.com/b", () -> "abc123");
+        String targetUrl = databaseUrl("target");
+
+        assertThrows(UrlShortenerDataAccessException.class,
+                () -> new Resharder(List.of(firstSourceUrl, secondSourceUrl), List.of(targetUrl)).reshard());
+        Resharder.Result result = new Resharder(List.of(firstSourceUrl), List.of(targetUrl)).reshard();
+
+        assertEquals(1, result.mappings());
+        assertEquals("http://example.com/a", createDAL("target", targetUrl).getOriginalUrl("abc123"));
+    }
+
+    private String databaseUrl(String name) {
+        return "jdbc:sqlite:" + tempDir.resolve(name + ".db").toAbsolutePath();
+    }
+
+    private static UrlShortenerDAL createDAL(String poolName, String databaseUrl) {
+        return new UrlShortenerDAL(poolName, databaseUrl, 2, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE, true,
+                new SimpleMeterRegistry());
+    }
+}
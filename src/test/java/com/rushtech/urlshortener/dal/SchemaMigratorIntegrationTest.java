@@ -0,0 +1,122 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.util.UrlHash;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SchemaMigratorIntegrationTest {
+
+    private static final int BUSY_TIMEOUT_MILLISECONDS = 30000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void migrate_EmptyDatabase_ShouldCreateSchemaAndTimeEachMigration() throws SQLException {
+        String databaseUrl = databaseUrl();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, meterRegistry).migrate();
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, meterRegistry).migrate();
+
+        assertEquals(SchemaMigrator.LATEST_VERSION, queryLong(databaseUrl, "PRAGMA user_version"));
+        assertEquals(4, queryLong(databaseUrl, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name IN " +
+                "('original_urls', 'tokens', 'redirect_analytics', 'token_sequence')"));
+        assertEquals(1, meterRegistry.get("schema.migration").tag("version", "1").timer().count());
+    }
+
+    @Test
+    void migrate_LegacyDatabase_ShouldBackfillHashesAndDropUniqueConstraint() throws SQLException {
+        String databaseUrl = databaseUrl();
+        try (Connection conn = DriverManager.getConnection(databaseUrl);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE original_urls (id INTEGER PRIMARY KEY AUTOINCREMENT, long_url TEXT NOT NULL UNIQUE, expiration_date TIMESTAMP)");
+            stmt.executeUpdate("CREATE TABLE tokens (id INTEGER PRIMARY KEY AUTOINCREMENT, token TEXT NOT NULL UNIQUE, original_url_id INTEGER NOT NULL)");
+            stmt.executeUpdate("CREATE INDEX idx_tokens_original_url_id ON tokens (original_url_id)");
+            stmt.executeUpdate("INSERT INTO original_urls (id, long_url) VALUES (7, 'http://example.com')");
+            stmt.executeUpdate("INSERT INTO tokens (token, original_url_id) VALUES ('abc123', 7)");
+        }
+
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+
+        assertEquals(UrlHash.hash("http://example.com"), queryLong(databaseUrl, "SELECT long_url_hash FROM original_urls WHERE id = 7"));
+        assertEquals(0, queryLong(databaseUrl, "SELECT COUNT(*) FROM pragma_index_list('original_urls') WHERE origin = 'u'"));
+        assertEquals(0, queryLong(databaseUrl, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'idx_tokens_original_url_id'"));
+        UrlShortenerDAL urlShortenerDAL = new UrlShortenerDAL(databaseUrl, 2, BUSY_TIMEOUT_MILLISECONDS, 6);
+        assertEquals(7, urlShortenerDAL.getOriginalUrlId("http://example.com"));
+        assertEquals("http://example.com", urlShortenerDAL.getOriginalUrl("abc123"));
+    }
+
+    @Test
+    void migrate_ShippedDatabaseWithLongUrlIndex_ShouldDropItAndKeepMappings() throws IOException, SQLException {
+        String databaseUrl = databaseUrl();
+        Files.copy(Path.of("url_shortener_db.db"), tempDir.resolve("url_shortener.db"));
+        long originalUrls = queryLong(databaseUrl, "SELECT COUNT(*) FROM original_urls");
+        try (Connection conn = DriverManager.getConnection(databaseUrl);
+             Statement stmt = conn.createStatement()) {
+            // As some copies of the shipped database carry it
+            stmt.executeUpdate("CREATE UNIQUE INDEX idx_original_urls_long_url ON original_urls (long_url)");
+        }
+
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+
+        assertEquals(0, queryLong(databaseUrl, "SELECT COUNT(*) FROM pragma_index_list('original_urls') WHERE \"unique\""));
+        assertEquals(originalUrls, queryLong(databaseUrl, "SELECT COUNT(*) FROM original_urls WHERE long_url_hash IS NOT NULL"));
+    }
+
+    @Test
+    void migrate_VersionedDatabaseWithLongUrlIndex_ShouldDropIt() throws SQLException {
+        String databaseUrl = databaseUrl();
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        try (Connection conn = DriverManager.getConnection(databaseUrl);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE UNIQUE INDEX idx_original_urls_long_url ON original_urls (long_url)");
+            stmt.executeUpdate("PRAGMA user_version = 5");
+        }
+
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+
+        assertEquals(0, queryLong(databaseUrl, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'idx_original_urls_long_url'"));
+    }
+
+    @Test
+    void migrate_HotQueryIndexMissing_ShouldFail() throws SQLException {
+        String databaseUrl = databaseUrl();
+        new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        try (Connection conn = DriverManager.getConnection(databaseUrl);
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DROP INDEX idx_original_urls_long_url_hash");
+        }
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> new SchemaMigrator(databaseUrl, BUSY_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate());
+
+        assertTrue(exception.getMessage().contains("SCAN original_urls"), exception.getMessage());
+    }
+
+    private String databaseUrl() {
+        return "jdbc:sqlite:" + tempDir.resolve("url_shortener.db").toAbsolutePath();
+    }
+
+    private static long queryLong(String databaseUrl, String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(databaseUrl);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getLong(1);
+        }
+    }
+}
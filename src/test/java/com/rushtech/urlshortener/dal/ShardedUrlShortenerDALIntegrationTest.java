@@ -0,0 +1,103 @@
+package com.rushtech.urlshortener.dal;
+
+import com.rushtech.urlshortener.util.SequenceTokenGenerator;
+import com.rushtech.urlshortener.util.TokenReservation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardedUrlShortenerDALIntegrationTest {
+
+    private static final int SHARDS = 3;
+    private static final int CONNECTION_TIMEOUT_MILLISECONDS = 30000;
+    private static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shortenOrGet_ManyUrls_ShouldStoreEachOnItsHomeShardUnderATokenRoutedThere() {
+        List<UrlShortenerDAL> shards = createShards();
+        ShardedUrlShortenerDAL shardedDAL = new ShardedUrlShortenerDAL(shards, false);
+        Supplier<String> tokenSupplier = sequentialTokens();
+
+        for (int i = 0; i < 30; i++) {
+            String longUrl = "http://example.com/" + i;
+            String token = shardedDAL.shortenOrGet(longUrl, tokenSupplier);
+
+            int shard = ShardedUrlShortenerDAL.shardFor(longUrl, SHARDS);
+            assertEquals(shard, ShardedUrlShortenerDAL.shardFor(token, SHARDS));
+            assertEquals(longUrl, shards.get(shard).getOriginalUrl(token));
+            assertEquals(longUrl, shardedDAL.getOriginalUrl(token));
+            assertEquals(token, shardedDAL.shortenOrGet(longUrl, tokenSupplier));
+            assertEquals(shard, shardedDAL.getOriginalUrlId(longUrl) >>> ShardedUrlShortenerDAL.SHARD_ID_SHIFT);
+        }
+    }
+
+    @Test
+    void shortenOrGetBatch_UrlsOnSeveralShards_ShouldReturnEveryToken() {
+        ShardedUrlShortenerDAL shardedDAL = new ShardedUrlShortenerDAL(createShards(), false);
+        List<String> longUrls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            longUrls.add("http://example.com/batch/" + i);
+        }
+
+        Map<String, String> tokens = shardedDAL.shortenOrGetBatch(longUrls, sequentialTokens());
+
+        assertEquals(longUrls.size(), tokens.size());
+        tokens.forEach((longUrl, token) -> assertEquals(longUrl, shardedDAL.getOriginalUrl(token)));
+    }
+
+    @Test
+    void shortenOrGet_SequenceTokens_ShouldLeaseFromTheFirstShardOutsideItsTransaction() {
+        ShardedUrlShortenerDAL shardedDAL = new ShardedUrlShortenerDAL(createShards(), false);
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(shardedDAL, 1, 1);
+
+        for (int i = 0; i < 30; i++) {
+            String longUrl = "http://example.com/sequence/" + i;
+            try (TokenReservation tokens = tokenGenerator.reserve(1)) {
+                assertEquals(longUrl, shardedDAL.getOriginalUrl(shardedDAL.shortenOrGet(longUrl, tokens)));
+            }
+        }
+    }
+
+    @Test
+    void insertUrlMapping_TokenRoutedToOtherShard_ShouldBeRejected() {
+        ShardedUrlShortenerDAL shardedDAL = new ShardedUrlShortenerDAL(createShards(), false);
+        long originalUrlId = shardedDAL.insertOriginalUrl("http://example.com");
+        int shard = (int) (originalUrlId >>> ShardedUrlShortenerDAL.SHARD_ID_SHIFT);
+        String token = "token0";
+        for (int i = 1; ShardedUrlShortenerDAL.shardFor(token, SHARDS) == shard; i++) {
+            token = "token" + i;
+        }
+        String otherShardToken = token;
+
+        assertThrows(IllegalArgumentException.class, () -> shardedDAL.insertUrlMapping(otherShardToken, originalUrlId));
+    }
+
+    private List<UrlShortenerDAL> createShards() {
+        List<UrlShortenerDAL> shards = new ArrayList<>(SHARDS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String databaseUrl = "jdbc:sqlite:" + tempDir.resolve("shard" + shard + ".db").toAbsolutePath();
+            new SchemaMigrator(databaseUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+            shards.add(new UrlShortenerDAL("test-shard-" + shard, databaseUrl, 2, CONNECTION_TIMEOUT_MILLISECONDS,
+                    EXPIRY_DATE_MONTHS_IN_FUTURE, true, new SimpleMeterRegistry()));
+        }
+        return shards;
+    }
+
+    private static Supplier<String> sequentialTokens() {
+        AtomicInteger sequence = new AtomicInteger();
+        return () -> "tok" + sequence.incrementAndGet();
+    }
+}
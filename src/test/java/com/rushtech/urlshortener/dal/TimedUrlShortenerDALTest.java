@@ -0,0 +1,41 @@
+package com.rushtech.urlshortener.dal;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class TimedUrlShortenerDALTest {
+
+    @Test
+    public void getOriginalUrl_Delegated_ShouldReturnDelegateResultAndRecordCall() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.getOriginalUrl("abc123")).thenReturn("http://example.com");
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TimedUrlShortenerDAL timedUrlShortenerDAL = new TimedUrlShortenerDAL(delegate, meterRegistry);
+
+        String originalUrl = timedUrlShortenerDAL.getOriginalUrl("abc123");
+
+        assertEquals("http://example.com", originalUrl);
+        assertEquals(1, meterRegistry.get("dal.calls").tag("method", "getOriginalUrl").timer().count());
+        assertEquals(0, meterRegistry.get("dal.calls").tag("method", "deleteShortUrl").timer().count());
+    }
+
+    @Test
+    public void deleteShortUrl_DelegateThrows_ShouldStillRecordCall() {
+        IUrlShortenerDAL delegate = mock(IUrlShortenerDAL.class);
+        when(delegate.deleteShortUrl("abc123")).thenThrow(new UrlShortenerDataAccessException("Error", null));
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TimedUrlShortenerDAL timedUrlShortenerDAL = new TimedUrlShortenerDAL(delegate, meterRegistry);
+
+        try {
+            timedUrlShortenerDAL.deleteShortUrl("abc123");
+        } catch (UrlShortenerDataAccessException expected) {
+            // the failure is still timed
+        }
+
+        assertEquals(1, meterRegistry.get("dal.calls").tag("method", "deleteShortUrl").timer().count());
+    }
+}
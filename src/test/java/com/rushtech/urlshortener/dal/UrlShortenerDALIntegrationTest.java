@@ -1,51 +1,42 @@
 package com.rushtech.urlshortener.dal;
 
+import com.rushtech.urlshortener.util.UrlHash;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static junit.framework.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
-public class UrlShortenerDALIntegrationTest {
+public class UrlShortenerDALIntegrationTest extends AbstractUrlShortenerDALTest {
 
     private static final String DATABASE_URL = "jdbc:sqlite:test_url_shortener_db.db";
-    private static final String TEST_LONG_URL = "http://example.com";
-    private static final String TEST_TOKEN = "testToken";
     private static final int MAX_POOL_SIZE = 20;
     private static final int CONNECTION_TIMEOUT_MILLISECONDS = 30000;
-    private static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
-
-    private UrlShortenerDAL urlShortenerDAL;
 
     @BeforeEach
     void setUp() {
-        try {
-            Connection conn = DriverManager.getConnection(DATABASE_URL);
-            createTablesInDatabase(conn);
-            urlShortenerDAL = new UrlShortenerDAL(DATABASE_URL, MAX_POOL_SIZE, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void createTablesInDatabase(Connection conn) {
-        try (Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS original_urls (id INTEGER PRIMARY KEY AUTOINCREMENT, long_url TEXT NOT NULL UNIQUE, expiration_date TIMESTAMP)");
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS tokens (token TEXT PRIMARY KEY, original_url_id INTEGER NOT NULL, FOREIGN KEY (original_url_id) REFERENCES original_urls(id))");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        new SchemaMigrator(DATABASE_URL, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        urlShortenerDAL = new UrlShortenerDAL(DATABASE_URL, MAX_POOL_SIZE, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE);
     }
 
     @AfterEach
     void tearDown() {
+        ((UrlShortenerDAL) urlShortenerDAL).close();
         try {
             dropTables();
         } catch (SQLException e) {
@@ -54,48 +45,104 @@ public class UrlShortenerDALIntegrationTest {
     }
 
     @Test
-    void insertOriginalUrl_WithValidLongUrl_ShouldReturnGeneratedId() {
-        long originalUrlId = urlShortenerDAL.insertOriginalUrl(TEST_LONG_URL);
+    void constructor_ShouldSwitchDatabaseToWalMode() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA journal_mode")) {
+            assertEquals("wal", rs.getString(1));
+        }
+    }
+
+    @Test
+    void warmUpConnections_ShouldPrepareRedirectLookupOnEveryReadConnection() {
+        UrlShortenerDAL sqliteDAL = (UrlShortenerDAL) urlShortenerDAL;
 
-        long retrievedOriginalUrlId = urlShortenerDAL.getOriginalUrlId(TEST_LONG_URL);
+        sqliteDAL.warmUpConnections();
 
-        assertEquals(originalUrlId, retrievedOriginalUrlId);
+        assertEquals(MAX_POOL_SIZE, sqliteDAL.getCachedStatements());
+        assertEquals(TEST_TOKEN, sqliteDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN));
     }
 
     @Test
-    void getOriginalUrl_WithValidToken_ShouldReturnOriginalUrl() {
-        long originalUrlId = urlShortenerDAL.insertOriginalUrl(TEST_LONG_URL);
-
-        urlShortenerDAL.insertUrlMapping(TEST_TOKEN, originalUrlId);
+    void shortenOrGet_OtherUrlWithSameHash_ShouldNotReuseItsToken() throws SQLException {
+        String otherLongUrl = TEST_LONG_URL + "/other";
+        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO original_urls (id, long_url, long_url_hash) VALUES (7, ?, ?)")) {
+            stmt.setString(1, otherLongUrl);
+            stmt.setLong(2, UrlHash.hash(TEST_LONG_URL));
+            stmt.executeUpdate();
+        }
+        urlShortenerDAL.insertUrlMapping("otherToken", 7);
 
-        String retrievedOriginalUrl = urlShortenerDAL.getOriginalUrl(TEST_TOKEN);
+        String token = urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN);
 
-        assertEquals(TEST_LONG_URL, retrievedOriginalUrl);
+        assertEquals(TEST_TOKEN, token);
+        assertNotEquals(7, urlShortenerDAL.getOriginalUrlId(TEST_LONG_URL));
     }
 
     @Test
-    void getOriginalUrl_WithNonExistingToken_ShouldReturnNull() {
-        String retrievedOriginalUrl = urlShortenerDAL.getOriginalUrl(TEST_TOKEN);
+    void shortenOrGet_TokenSupplierThrows_ShouldRollBackTheOriginalUrl() throws SQLException {
+        assertThrows(IllegalStateException.class, () -> urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> {
+            throw new IllegalStateException("No tokens left");
+        }));
 
-        assertNull(retrievedOriginalUrl);
+        assertEquals(0, countOriginalUrls());
+        assertEquals(TEST_TOKEN, urlShortenerDAL.shortenOrGet(TEST_LONG_URL, () -> TEST_TOKEN));
     }
 
     @Test
-    void deleteShortUrl_ValidToken_ShouldReturnTrue() {
-        insertTestData();
+    void shortenOrGetBatch_TokenSupplierThrowsMidBatch_ShouldRollBackAndLeaveNoRowsQueued() throws SQLException {
+        List<String> longUrls = List.of(TEST_LONG_URL + "/a", TEST_LONG_URL + "/b", TEST_LONG_URL + "/c");
+        AtomicInteger draws = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> urlShortenerDAL.shortenOrGetBatch(longUrls, () -> {
+            if (draws.incrementAndGet() == 3) {
+                throw new IllegalStateException("No tokens left");
+            }
+            return "stale" + draws.get();
+        }));
+        assertEquals(0, countOriginalUrls());
+
+        Map<String, String> tokens = urlShortenerDAL.shortenOrGetBatch(List.of(TEST_LONG_URL), () -> TEST_TOKEN);
+
+        assertEquals(Map.of(TEST_LONG_URL, TEST_TOKEN), tokens);
+        assertEquals(1, countTokens());
+        assertNull(urlShortenerDAL.getOriginalUrl("stale1"));
+    }
 
-        boolean result = urlShortenerDAL.deleteShortUrl(TEST_TOKEN);
+    @Override
+    protected long countOriginalUrls() throws SQLException {
+        return countRows("original_urls");
+    }
 
-        assertTrue(result);
+    @Override
+    protected long countTokens() throws SQLException {
+        return countRows("tokens");
     }
 
-    private void insertTestData() {
+    private long countRows(String table) throws SQLException {
         try (Connection conn = DriverManager.getConnection(DATABASE_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("INSERT INTO original_urls (long_url) VALUES ('" + TEST_LONG_URL + "')");
-            stmt.executeUpdate("INSERT INTO tokens (token, original_url_id) VALUES ('" + TEST_TOKEN + "', 1)");
-        } catch (SQLException e) {
-            e.printStackTrace();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    @Override
+    protected long getRedirectCount(String originalUrl) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT redirect_count FROM redirect_analytics WHERE original_url = '" + originalUrl + "'")) {
+            return rs.next() ? rs.getLong("redirect_count") : 0;
+        }
+    }
+
+    @Override
+    protected void expireOriginalUrl(String longUrl) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
+             PreparedStatement stmt = conn.prepareStatement("UPDATE original_urls SET expiration_date = ? WHERE long_url = ?")) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - 1000));
+            stmt.setString(2, longUrl);
+            stmt.executeUpdate();
         }
     }
 
@@ -104,6 +151,9 @@ public class UrlShortenerDALIntegrationTest {
              Statement stmt = conn.createStatement()) {
             stmt.executeUpdate("DROP TABLE IF EXISTS original_urls");
             stmt.executeUpdate("DROP TABLE IF EXISTS tokens");
+            stmt.executeUpdate("DROP TABLE IF EXISTS redirect_analytics");
+            stmt.executeUpdate("DROP TABLE IF EXISTS token_sequence");
+            stmt.executeUpdate("PRAGMA user_version = 0");
         }
     }
 }
@@ -0,0 +1,98 @@
+package com.rushtech.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AliasIndexTest {
+
+    @Test
+    public void reserve_AliasDifferingOnlyInCase_ShouldReportTaken() {
+        // Arrange
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        aliasIndex.reserve("Brand-Name");
+
+        // Act
+        AliasIndex.Availability availability = aliasIndex.reserve("brand-NAME");
+
+        // Assert
+        assertEquals(AliasIndex.Availability.TAKEN, availability);
+        assertEquals(1, aliasIndex.size());
+    }
+
+    @Test
+    public void check_MalformedOrReservedAlias_ShouldReportWhy() {
+        // Arrange
+        AliasIndex aliasIndex = new AliasIndex(3, 8, List.of("Login"));
+
+        // Act & Assert
+        assertEquals(AliasIndex.Availability.INVALID, aliasIndex.check("ab"));
+        assertEquals(AliasIndex.Availability.INVALID, aliasIndex.check("much-too-long"));
+        assertEquals(AliasIndex.Availability.INVALID, aliasIndex.check("a/b.c"));
+        assertEquals(AliasIndex.Availability.RESERVED, aliasIndex.check("login"));
+        assertEquals(AliasIndex.Availability.RESERVED, aliasIndex.check("Shorten"));
+        assertEquals(AliasIndex.Availability.AVAILABLE, aliasIndex.check("brand_1"));
+    }
+
+    @Test
+    public void reserve_ConcurrentCallsForSameAlias_ShouldSucceedOnce() throws Exception {
+        // Arrange
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<AliasIndex.Availability>> calls = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String alias = i % 2 == 0 ? "campaign" : "CAMPAIGN";
+            calls.add(() -> aliasIndex.reserve(alias));
+        }
+
+        // Act
+        List<AliasIndex.Availability> results = new ArrayList<>();
+        for (Future<AliasIndex.Availability> result : executor.invokeAll(calls)) {
+            results.add(result.get());
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(1, results.stream().filter(result -> result == AliasIndex.Availability.AVAILABLE).count());
+    }
+
+    @Test
+    public void suggest_Prefix_ShouldReturnMatchingAliasesInOrderUpToLimit() {
+        // Arrange
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        for (String alias : List.of("summer-sale", "Spring", "sum", "Summit", "autumn")) {
+            aliasIndex.add(alias);
+        }
+
+        // Act & Assert
+        assertEquals(List.of("sum", "summer-sale", "Summit"), aliasIndex.suggest("SUM", 10));
+        assertEquals(List.of("sum", "summer-sale"), aliasIndex.suggest("sum", 2));
+        assertEquals(List.of(), aliasIndex.suggest("winter", 10));
+    }
+
+    @Test
+    public void release_OnlyExactAlias_ShouldFreeItAndKeepOthers() {
+        // Arrange
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        aliasIndex.add("Brand");
+        aliasIndex.add("brand-new");
+
+        // Act
+        aliasIndex.release("BRAND");
+        AliasIndex.Availability afterOtherCase = aliasIndex.check("brand");
+        aliasIndex.release("Brand");
+
+        // Assert
+        assertEquals(AliasIndex.Availability.TAKEN, afterOtherCase);
+        assertEquals(AliasIndex.Availability.AVAILABLE, aliasIndex.check("brand"));
+        assertEquals(List.of("brand-new"), aliasIndex.suggest("bra", 10));
+        assertEquals(1, aliasIndex.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.rushtech.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class CacheWarmerTest {
+
+    private static final int MAX_ENTRIES = 100;
+    private static final long SNAPSHOT_MAX_AGE_MILLIS = 60_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void warmUp_SnapshotSavedOnShutdown_ShouldPreloadSnapshotWithoutQueryingDatabase() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        Path snapshotFile = tempDir.resolve("cache_snapshot.bin");
+        Cache<String, String> previousCache = newCache();
+        previousCache.put("abc123", "http://example.com");
+        previousCache.put("def456", "http://example.org/ünïcode");
+        new CacheWarmer(previousCache, urlShortenerDAL, snapshotFile, MAX_ENTRIES, SNAPSHOT_MAX_AGE_MILLIS).saveSnapshot();
+        Cache<String, String> cache = newCache();
+
+        // Act
+        int loaded = new CacheWarmer(cache, urlShortenerDAL, snapshotFile, MAX_ENTRIES, SNAPSHOT_MAX_AGE_MILLIS).warmUp();
+
+        // Assert
+        assertEquals(2, loaded);
+        assertEquals("http://example.com", cache.getIfPresent("abc123"));
+        assertEquals("http://example.org/ünïcode", cache.getIfPresent("def456"));
+        verify(urlShortenerDAL, never()).getMostRedirectedMappings(anyInt());
+    }
+
+    @Test
+    public void warmUp_NoSnapshot_ShouldPreloadMostRedirectedMappings() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getMostRedirectedMappings(MAX_ENTRIES)).thenReturn(Map.of("abc123", "http://example.com"));
+        Cache<String, String> cache = newCache();
+
+        // Act
+        new CacheWarmer(cache, urlShortenerDAL, tempDir.resolve("missing.bin"), MAX_ENTRIES, SNAPSHOT_MAX_AGE_MILLIS).warmUp();
+
+        // Assert
+        assertEquals("http://example.com", cache.getIfPresent("abc123"));
+    }
+
+    @Test
+    public void warmUp_StaleOrCorruptSnapshot_ShouldFallBackToDatabase() throws Exception {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getMostRedirectedMappings(MAX_ENTRIES)).thenReturn(Map.of());
+        Path staleSnapshot = tempDir.resolve("stale.bin");
+        Cache<String, String> previousCache = newCache();
+        previousCache.put("abc123", "http://example.com");
+        new CacheWarmer(previousCache, urlShortenerDAL, staleSnapshot, MAX_ENTRIES, SNAPSHOT_MAX_AGE_MILLIS).saveSnapshot();
+        Path corruptSnapshot = Files.write(tempDir.resolve("corrupt.bin"), new byte[]{1, 2, 3});
+        Cache<String, String> cache = newCache();
+
+        // Act
+        new CacheWarmer(cache, urlShortenerDAL, staleSnapshot, MAX_ENTRIES, -1).warmUp();
+        new CacheWarmer(cache, urlShortenerDAL, corruptSnapshot, MAX_ENTRIES, SNAPSHOT_MAX_AGE_MILLIS).warmUp();
+
+        // Assert
+        assertEquals(0, cache.estimatedSize());
+        verify(urlShortenerDAL, times(2)).getMostRedirectedMappings(MAX_ENTRIES);
+    }
+
+    private static Cache<String, String> newCache() {
+        return Caffeine.newBuilder().maximumSize(1000).build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.rushtech.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.model.DeletedMappings;
+import com.rushtech.urlshortener.util.CacheManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+public class ExpiredUrlSweeperTest {
+
+    private static final long LONG_SWEEP_INTERVAL_MILLISECONDS = 60_000L;
+
+    @Test
+    public void sweep_FullBatches_ShouldKeepDeletingUntilBatchIsShortAndEvictTokens() throws Exception {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.deleteExpiredMappings(2))
+                .thenReturn(new DeletedMappings(2, List.of("abc123", "def456")))
+                .thenReturn(new DeletedMappings(1, List.of("ghi789")));
+        when(urlShortenerDAL.countExpiredMappings()).thenReturn(0L);
+        CacheManager cacheManager = new CacheManager(10, 1000);
+        Cache<String, String> cache = cacheManager.getOriginalUrlCache().synchronous();
+        cache.put("abc123", "http://example.com");
+        cache.put("ghi789", "http://example.org");
+        cache.put("live", "http://example.net");
+        AliasIndex aliasIndex = new AliasIndex(3, 32, List.of());
+        aliasIndex.add("ghi789");
+        ExpiredUrlSweeper sweeper = new ExpiredUrlSweeper(urlShortenerDAL, cacheManager, aliasIndex, LONG_SWEEP_INTERVAL_MILLISECONDS, 2, 0);
+
+        // Act
+        long deleted = sweeper.sweep();
+
+        // Assert
+        assertEquals(3, deleted);
+        assertEquals(3, sweeper.getSweptTokens());
+        assertNull(cache.getIfPresent("abc123"));
+        assertNull(cache.getIfPresent("ghi789"));
+        assertEquals("http://example.net", cache.getIfPresent("live"));
+        assertEquals(AliasIndex.Availability.AVAILABLE, aliasIndex.check("ghi789"));
+        verify(urlShortenerDAL, times(2)).deleteExpiredMappings(2);
+        sweeper.close();
+    }
+
+    @Test
+    public void sweep_FullBatchOfUrlsWithFewerTokens_ShouldKeepDeleting() throws Exception {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.deleteExpiredMappings(2))
+                .thenReturn(new DeletedMappings(2, List.of("abc123")))
+                .thenReturn(new DeletedMappings(2, List.of("def456", "ghi789", "Brand")))
+                .thenReturn(DeletedMappings.NONE);
+        ExpiredUrlSweeper sweeper = new ExpiredUrlSweeper(urlShortenerDAL, new CacheManager(10, 1000), new AliasIndex(3, 32, List.of()), LONG_SWEEP_INTERVAL_MILLISECONDS, 2, 0);
+
+        // Act
+        long deleted = sweeper.sweep();
+
+        // Assert
+        assertEquals(4, deleted);
+        verify(urlShortenerDAL, times(3)).deleteExpiredMappings(2);
+        sweeper.close();
+    }
+
+    @Test
+    public void sweep_NothingExpired_ShouldRecordBacklog() throws Exception {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.deleteExpiredMappings(500)).thenReturn(DeletedMappings.NONE);
+        when(urlShortenerDAL.countExpiredMappings()).thenReturn(7L);
+        ExpiredUrlSweeper sweeper = new ExpiredUrlSweeper(urlShortenerDAL, new CacheManager(10, 1000), new AliasIndex(3, 32, List.of()), LONG_SWEEP_INTERVAL_MILLISECONDS, 500, 0);
+
+        // Act
+        long deleted = sweeper.sweep();
+
+        // Assert
+        assertEquals(0, deleted);
+        assertEquals(7, sweeper.getBacklog());
+        sweeper.close();
+    }
+}
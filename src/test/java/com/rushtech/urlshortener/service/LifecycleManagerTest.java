@@ -0,0 +1,72 @@
+package com.rushtech.urlshortener.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LifecycleManagerTest {
+
+    @Test
+    public void markReady_ShouldReportReadyAndRecordStartupTime() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LifecycleManager lifecycleManager = new LifecycleManager(0, meterRegistry);
+        assertFalse(lifecycleManager.isReady());
+        assertTrue(lifecycleManager.isLive());
+
+        lifecycleManager.markReady();
+
+        assertTrue(lifecycleManager.isReady());
+        assertTrue(lifecycleManager.getStartupMillis() > 0);
+        assertTrue(meterRegistry.get("application.startup.duration").timeGauge().value() > 0);
+    }
+
+    @Test
+    public void shutdown_ShouldRunStepsInReverseOrderOfRegistration() {
+        LifecycleManager lifecycleManager = new LifecycleManager(0, new SimpleMeterRegistry());
+        List<String> steps = new ArrayList<>();
+        lifecycleManager.addShutdownStep("storage", () -> steps.add("storage"));
+        lifecycleManager.addShutdownStep("redirect counts", () -> steps.add("redirect counts"));
+        lifecycleManager.addShutdownStep("server", () -> {
+            assertEquals(LifecycleManager.State.DRAINING, lifecycleManager.getState());
+            steps.add("server");
+        });
+        lifecycleManager.markReady();
+
+        lifecycleManager.shutdown();
+
+        assertEquals(List.of("server", "redirect counts", "storage"), steps);
+        assertEquals(LifecycleManager.State.STOPPED, lifecycleManager.getState());
+        assertFalse(lifecycleManager.isReady());
+        assertFalse(lifecycleManager.isLive());
+    }
+
+    @Test
+    public void shutdown_FailingStep_ShouldStillRunTheOthersOnce() {
+        LifecycleManager lifecycleManager = new LifecycleManager(0, new SimpleMeterRegistry());
+        List<String> steps = new ArrayList<>();
+        lifecycleManager.addShutdownStep("storage", () -> steps.add("storage"));
+        lifecycleManager.addShutdownStep("server", () -> {
+            throw new IllegalStateException("Server already stopped");
+        });
+
+        lifecycleManager.shutdown();
+        lifecycleManager.shutdown();
+
+        assertEquals(List.of("storage"), steps);
+    }
+
+    @Test
+    public void markReady_AfterShutdown_ShouldStayStopped() {
+        LifecycleManager lifecycleManager = new LifecycleManager(0, new SimpleMeterRegistry());
+        lifecycleManager.shutdown();
+
+        lifecycleManager.markReady();
+
+        assertFalse(lifecycleManager.isReady());
+        assertEquals(-1, lifecycleManager.getStartupMillis());
+    }
+}
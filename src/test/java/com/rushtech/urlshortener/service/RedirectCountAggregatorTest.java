@@ -0,0 +1,115 @@
+package com.rushtech.urlshortener.service;
+
+import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDataAccessException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class RedirectCountAggregatorTest {
+
+    private static final long LONG_FLUSH_INTERVAL_MILLISECONDS = 60_000L;
+    private static final long HIGH_FLUSH_THRESHOLD = 1_000_000L;
+
+    @Test
+    public void flush_MultipleRedirects_ShouldWriteAggregatedDeltasOnce() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        RedirectCountAggregator aggregator = new RedirectCountAggregator(urlShortenerDAL, LONG_FLUSH_INTERVAL_MILLISECONDS, HIGH_FLUSH_THRESHOLD);
+
+        // Act
+        aggregator.increment("http://example.com");
+        aggregator.increment("http://example.com");
+        aggregator.increment("http://example.org");
+        aggregator.flush();
+        aggregator.flush();
+
+        // Assert
+        verify(urlShortenerDAL, times(1)).incrementRedirectCounts(Map.of("http://example.com", 2L, "http://example.org", 1L));
+        verify(urlShortenerDAL, never()).incrementRedirectCount(anyString());
+        aggregator.close();
+    }
+
+    @Test
+    public void flush_DatabaseError_ShouldKeepDeltasForNextFlush() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        doThrow(new UrlShortenerDataAccessException("Error updating redirect counts", null))
+                .doNothing()
+                .when(urlShortenerDAL).incrementRedirectCounts(anyMap());
+        RedirectCountAggregator aggregator = new RedirectCountAggregator(urlShortenerDAL, LONG_FLUSH_INTERVAL_MILLISECONDS, HIGH_FLUSH_THRESHOLD);
+
+        // Act
+        aggregator.increment("http://example.com");
+        assertThrows(UrlShortenerDataAccessException.class, aggregator::flush);
+        aggregator.close();
+
+        // Assert
+        verify(urlShortenerDAL, times(2)).incrementRedirectCounts(Map.of("http://example.com", 1L));
+    }
+
+    @Test
+    public void increment_ThresholdReached_ShouldFlushWithoutWaitingForInterval() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        RedirectCountAggregator aggregator = new RedirectCountAggregator(urlShortenerDAL, LONG_FLUSH_INTERVAL_MILLISECONDS, 2);
+
+        // Act
+        aggregator.increment("http://example.com");
+        aggregator.increment("http://example.com");
+
+        // Assert
+        verify(urlShortenerDAL, timeout(1000)).incrementRedirectCounts(Map.of("http://example.com", 2L));
+        aggregator.close();
+    }
+
+    @Test
+    public void flush_ConcurrentWithIncrements_ShouldNotLoseRedirects() throws Exception {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        AtomicLong written = new AtomicLong();
+        doAnswer(invocation -> {
+            invocation.<Map<String, Long>>getArgument(0).values().forEach(written::addAndGet);
+            return null;
+        }).when(urlShortenerDAL).incrementRedirectCounts(anyMap());
+        RedirectCountAggregator aggregator = new RedirectCountAggregator(urlShortenerDAL, LONG_FLUSH_INTERVAL_MILLISECONDS, HIGH_FLUSH_THRESHOLD);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> incrementers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            incrementers.add(executor.submit(() -> {
+                for (int j = 0; j < 50_000; j++) {
+                    aggregator.increment("http://example.com");
+                    if (j % 64 == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        // Act
+        while (incrementers.stream().anyMatch(incrementer -> !incrementer.isDone())) {
+            // Flushes between bursts find the counter drained and idle, which is when it is dropped
+            aggregator.flush();
+        }
+        for (Future<?> incrementer : incrementers) {
+            incrementer.get();
+        }
+        executor.shutdown();
+        aggregator.close();
+
+        // Assert
+        assertEquals(200_000L, written.get());
+        assertEquals(0, aggregator.getPendingRedirects());
+    }
+}
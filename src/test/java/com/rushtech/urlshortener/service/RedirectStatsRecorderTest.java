@@ -0,0 +1,82 @@
+package com.rushtech.urlshortener.service;
+
+import com.rushtech.urlshortener.dal.IRedirectStatsDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerDataAccessException;
+import com.rushtech.urlshortener.model.RedirectReferrerCount;
+import com.rushtech.urlshortener.model.RedirectStatsBucket;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class RedirectStatsRecorderTest {
+
+    private static final long LONG_FLUSH_INTERVAL_MILLISECONDS = 60_000L;
+    private static final String BROWSER = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 Chrome/120.0";
+    private static final String MOBILE = "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) Mobile/15E148";
+    private static final String BOT = "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flush_RecordedRedirects_ShouldWriteMinuteAndHourBucketsByUserAgentClass() {
+        // Arrange
+        IRedirectStatsDAL redirectStatsDAL = mock(IRedirectStatsDAL.class);
+        RedirectStatsRecorder recorder = new RedirectStatsRecorder(redirectStatsDAL, 1024, LONG_FLUSH_INTERVAL_MILLISECONDS, 48);
+
+        // Act
+        recorder.record("abc123", "https://News.example.com/article?id=1", BROWSER);
+        recorder.record("abc123", null, MOBILE);
+        recorder.record("abc123", "https://news.example.com/other", BOT);
+        recorder.flush();
+
+        // Assert
+        ArgumentCaptor<List<RedirectStatsBucket>> buckets = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<RedirectReferrerCount>> referrers = ArgumentCaptor.forClass(List.class);
+        verify(redirectStatsDAL, times(1)).addRedirectStats(buckets.capture(), referrers.capture());
+        for (int resolutionSeconds : new int[]{RedirectStatsRecorder.MINUTE_SECONDS, RedirectStatsRecorder.HOUR_SECONDS}) {
+            RedirectStatsBucket bucket = buckets.getValue().stream()
+                    .filter(candidate -> candidate.getResolutionSeconds() == resolutionSeconds)
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(3, bucket.getRedirects());
+            assertEquals(1, bucket.getBrowser());
+            assertEquals(1, bucket.getMobile());
+            assertEquals(1, bucket.getBot());
+            assertEquals(0, bucket.getBucketStart() % resolutionSeconds);
+        }
+        assertEquals(2, referrers.getValue().size());
+        recorder.close();
+    }
+
+    @Test
+    public void flush_DatabaseError_ShouldKeepCountsForNextFlush() {
+        // Arrange
+        IRedirectStatsDAL redirectStatsDAL = mock(IRedirectStatsDAL.class);
+        doThrow(new UrlShortenerDataAccessException("Error adding redirect stats", null))
+                .doNothing()
+                .when(redirectStatsDAL).addRedirectStats(anyList(), anyList());
+        RedirectStatsRecorder recorder = new RedirectStatsRecorder(redirectStatsDAL, 1024, LONG_FLUSH_INTERVAL_MILLISECONDS, 48);
+
+        // Act
+        recorder.record("abc123", null, BROWSER);
+        assertThrows(UrlShortenerDataAccessException.class, recorder::flush);
+        recorder.flush();
+        recorder.flush();
+
+        // Assert
+        verify(redirectStatsDAL, times(2)).addRedirectStats(argThat(buckets -> buckets.size() == 2), anyList());
+        recorder.close();
+    }
+
+    @Test
+    public void referrerHost_VariousReferrers_ShouldReduceToLowerCaseHost() {
+        assertEquals("news.example.com", RedirectStatsRecorder.referrerHost("https://News.Example.com:8443/path?q=1"));
+        assertEquals("example.org", RedirectStatsRecorder.referrerHost("example.org/page"));
+        assertEquals("(direct)", RedirectStatsRecorder.referrerHost(""));
+        assertEquals("(direct)", RedirectStatsRecorder.referrerHost(null));
+    }
+}
@@ -1,20 +1,40 @@
 package com.rushtech.urlshortener.service;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.rushtech.urlshortener.dal.AsyncUrlShortenerDAL;
 import com.rushtech.urlshortener.dal.IUrlShortenerDAL;
+import com.rushtech.urlshortener.dal.UrlShortenerOverloadedException;
 import com.rushtech.urlshortener.util.CacheManager;
+import com.rushtech.urlshortener.util.ICacheInvalidationChannel;
+import com.rushtech.urlshortener.util.ISharedUrlCache;
 import com.rushtech.urlshortener.util.ITokenGenerator;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class UrlShortenerServiceTest {
 
     private static final long EXISTING_URL_ID = 1L;
-    private static final long NON_EXISTING_URL_ID = -1L;
-    private static final long DEFAULT_ID = 0L;
 
     @Test
     public void shortenUrl_NewOriginalUrl_ShouldReturnShortenedUrl() {
@@ -24,20 +44,21 @@ public class UrlShortenerServiceTest {
         String expectedShortenedUrl = "http://localhost:8080/abc123";
 
         IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
-        when(urlShortenerDAL.getOriginalUrlId(longUrl)).thenReturn(NON_EXISTING_URL_ID);
+        when(urlShortenerDAL.shortenOrGet(eq(longUrl), any())).thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(1).get());
 
         ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
         when(tokenGenerator.generateToken()).thenReturn(token);
+        when(tokenGenerator.reserve(anyInt())).thenCallRealMethod();
 
-        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, CacheManager.getOriginalUrlCache());
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
 
         // Act
         String shortenedUrl = urlShortenerService.shortenUrl(longUrl);
 
         // Assert
         assertEquals(expectedShortenedUrl, shortenedUrl);
-        verify(urlShortenerDAL).insertOriginalUrl(longUrl);
-        verify(urlShortenerDAL).insertUrlMapping(token, DEFAULT_ID);
+        verify(tokenGenerator).generateToken();
+        verify(urlShortenerDAL, never()).insertOriginalUrl(longUrl);
     }
 
     @Test
@@ -50,17 +71,16 @@ public class UrlShortenerServiceTest {
         ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
 
         IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
-        when(urlShortenerDAL.getOriginalUrlId(existingLongUrl)).thenReturn(EXISTING_URL_ID);
-        when(urlShortenerDAL.getTokenForOriginalUrl(EXISTING_URL_ID)).thenReturn(token);
+        when(urlShortenerDAL.shortenOrGet(eq(existingLongUrl), any())).thenReturn(token);
 
-        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, CacheManager.getOriginalUrlCache());
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
 
         // Act
         String shortenedUrl = urlShortenerService.shortenUrl(existingLongUrl);
 
         // Assert
         assertEquals(expectedShortenedUrl, shortenedUrl);
-        verify(urlShortenerDAL, never()).insertOriginalUrl(existingLongUrl);
+        verify(tokenGenerator, never()).generateToken();
         verify(urlShortenerDAL, never()).updateToken(token, EXISTING_URL_ID);
     }
 
@@ -75,15 +95,351 @@ public class UrlShortenerServiceTest {
         IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
         when(urlShortenerDAL.getOriginalUrl(token)).thenReturn(originalUrl);
 
-        Cache cache = mock(Cache.class);
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        String retrievedOriginalUrl = urlShortenerService.getOriginalUrl(token);
+
+        // Assert
+        assertEquals(originalUrl, retrievedOriginalUrl);
+    }
+
+    @Test
+    public void getOriginalUrl_UnknownToken_ShouldNotQueryDatabase() {
+        // Arrange
+        String token = "unknown";
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter("abc123"), createAliasIndex());
+
+        // Act
+        String retrievedOriginalUrl = urlShortenerService.getOriginalUrl(token);
+
+        // Assert
+        assertNull(retrievedOriginalUrl);
+        verify(urlShortenerDAL, never()).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrlAsync_ValidToken_ShouldLoadFromDatabaseOnceThenServeFromCache() throws Exception {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenReturn(originalUrl);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        String loadedOriginalUrl = urlShortenerService.getOriginalUrlAsync(token).get(5, TimeUnit.SECONDS);
+        CompletableFuture<String> cachedOriginalUrl = urlShortenerService.getOriginalUrlAsync(token);
+
+        // Assert
+        assertEquals(originalUrl, loadedOriginalUrl);
+        assertTrue(cachedOriginalUrl.isDone());
+        assertEquals(originalUrl, cachedOriginalUrl.get());
+        verify(urlShortenerDAL, times(1)).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrlAsync_UnknownToken_ShouldCompleteImmediatelyWithoutQueryingDatabase() {
+        // Arrange
+        String token = "unknown";
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter("abc123"), createAliasIndex());
+
+        // Act
+        CompletableFuture<String> retrievedOriginalUrl = urlShortenerService.getOriginalUrlAsync(token);
+
+        // Assert
+        assertTrue(retrievedOriginalUrl.isDone());
+        assertNull(retrievedOriginalUrl.join());
+        verify(urlShortenerDAL, never()).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrlAsync_DatabaseTooSlow_ShouldFailWithOverloaded() throws Exception {
+        // Arrange
+        String token = "abc123";
+        CountDownLatch releaseCall = new CountDownLatch(1);
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenAnswer(invocation -> {
+            releaseCall.await();
+            return "http://example.com";
+        });
+
+        AsyncUrlShortenerDAL asyncUrlShortenerDAL = new AsyncUrlShortenerDAL(urlShortenerDAL, 1, 1, 50);
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, asyncUrlShortenerDAL, createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        CompletableFuture<String> retrievedOriginalUrl = urlShortenerService.getOriginalUrlAsync(token);
+
+        // Assert
+        ExecutionException e = assertThrows(ExecutionException.class, () -> retrievedOriginalUrl.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UrlShortenerOverloadedException.class, e.getCause());
+        releaseCall.countDown();
+        asyncUrlShortenerDAL.close();
+    }
+
+    @Test
+    public void getOriginalUrl_ConcurrentCacheMisses_ShouldQueryDatabaseOnce() throws Exception {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+        int callers = 64;
+        CountDownLatch callersStarted = new CountDownLatch(callers);
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenAnswer(invocation -> {
+            callersStarted.await(5, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            return originalUrl;
+        });
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        List<String> retrievedOriginalUrls = runConcurrently(callers, () -> {
+            callersStarted.countDown();
+            return urlShortenerService.getOriginalUrl(token);
+        });
+
+        // Assert
+        assertEquals(Collections.nCopies(callers, originalUrl), retrievedOriginalUrls);
+        verify(urlShortenerDAL, times(1)).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrl_ConcurrentMissesForAbsentToken_ShouldQueryDatabaseOnceAndNotCacheNull() throws Exception {
+        // Arrange
+        String token = "abc123";
+        int callers = 64;
+        CountDownLatch callersStarted = new CountDownLatch(callers);
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenAnswer(invocation -> {
+            callersStarted.await(5, TimeUnit.SECONDS);
+            Thread.sleep(50);
+            return null;
+        });
 
-        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, cache);
+        CacheManager cacheManager = createCacheManager();
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        List<String> retrievedOriginalUrls = runConcurrently(callers, () -> {
+            callersStarted.countDown();
+            return urlShortenerService.getOriginalUrl(token);
+        });
+        String retrievedAfterStampede = urlShortenerService.getOriginalUrl(token);
+
+        // Assert
+        assertEquals(Collections.nCopies(callers, (String) null), retrievedOriginalUrls);
+        assertNull(retrievedAfterStampede);
+        assertFalse(cacheManager.getOriginalUrlCache().asMap().containsKey(token));
+        verify(urlShortenerDAL, times(1)).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrlAsync_ConcurrentCacheMisses_ShouldQueryDatabaseOnce() throws Exception {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenAnswer(invocation -> {
+            releaseLoad.await(5, TimeUnit.SECONDS);
+            return originalUrl;
+        });
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        List<CompletableFuture<String>> retrievedOriginalUrls = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            retrievedOriginalUrls.add(urlShortenerService.getOriginalUrlAsync(token));
+        }
+        releaseLoad.countDown();
+
+        // Assert
+        for (CompletableFuture<String> retrievedOriginalUrl : retrievedOriginalUrls) {
+            assertEquals(originalUrl, retrievedOriginalUrl.get(5, TimeUnit.SECONDS));
+        }
+        verify(urlShortenerDAL, times(1)).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrl_SharedCacheHit_ShouldNotQueryDatabase() {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        ISharedUrlCache sharedCache = mock(ISharedUrlCache.class);
+        when(sharedCache.get(token)).thenReturn(originalUrl);
+        CacheManager cacheManager = new CacheManager(10, 1000, sharedCache, null);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
 
         // Act
         String retrievedOriginalUrl = urlShortenerService.getOriginalUrl(token);
 
         // Assert
         assertEquals(originalUrl, retrievedOriginalUrl);
+        assertEquals(1, cacheManager.getSharedHits());
+        verify(urlShortenerDAL, never()).getOriginalUrl(token);
+    }
+
+    @Test
+    public void getOriginalUrlAsync_SharedCacheMiss_ShouldLoadFromDatabaseAndFillSharedCache() throws Exception {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.getOriginalUrl(token)).thenReturn(originalUrl);
+        ISharedUrlCache sharedCache = mock(ISharedUrlCache.class);
+        CacheManager cacheManager = new CacheManager(10, 1000, sharedCache, null);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(token), createAliasIndex());
+
+        // Act
+        String retrievedOriginalUrl = urlShortenerService.getOriginalUrlAsync(token).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(originalUrl, retrievedOriginalUrl);
+        assertEquals(1, cacheManager.getSharedMisses());
+        verify(sharedCache).put(token, originalUrl);
+    }
+
+    @Test
+    public void getOriginalUrl_TokenStoredByAnotherInstance_ShouldBeFoundInSharedCache() {
+        // Arrange
+        String token = "abc123";
+        String originalUrl = "http://example.com";
+
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        ISharedUrlCache sharedCache = mock(ISharedUrlCache.class);
+        when(sharedCache.get(token)).thenReturn(originalUrl);
+        CacheManager cacheManager = new CacheManager(10, 1000, sharedCache, null);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
+
+        // Act
+        String retrievedOriginalUrl = urlShortenerService.getOriginalUrl(token);
+
+        // Assert
+        assertEquals(originalUrl, retrievedOriginalUrl);
+        verify(urlShortenerDAL, never()).getOriginalUrl(token);
+    }
+
+    @Test
+    public void shortenUrl_NewToken_ShouldAnnounceItToOtherInstances() {
+        // Arrange
+        String longUrl = "http://example.com";
+        String token = "abc123";
+
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.shortenOrGet(eq(longUrl), any())).thenAnswer(invocation -> invocation.<Supplier<String>>getArgument(1).get());
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        when(tokenGenerator.generateToken()).thenReturn(token);
+        when(tokenGenerator.reserve(anyInt())).thenCallRealMethod();
+        ISharedUrlCache sharedCache = mock(ISharedUrlCache.class);
+        ICacheInvalidationChannel invalidationChannel = mock(ICacheInvalidationChannel.class);
+        CacheManager cacheManager = new CacheManager(10, 1000, sharedCache, invalidationChannel);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
+
+        // Act
+        urlShortenerService.shortenUrl(longUrl);
+
+        // Assert
+        verify(invalidationChannel).publish(List.of(token));
+        verify(sharedCache).put(token, longUrl);
+        verify(sharedCache, never()).invalidate(token);
+    }
+
+    @Test
+    public void shortenUrl_ExistingToken_ShouldNotAnnounceIt() {
+        // Arrange
+        String longUrl = "http://example.com";
+
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.shortenOrGet(eq(longUrl), any())).thenReturn("abc123");
+        ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
+        when(tokenGenerator.reserve(anyInt())).thenCallRealMethod();
+        ICacheInvalidationChannel invalidationChannel = mock(ICacheInvalidationChannel.class);
+        CacheManager cacheManager = new CacheManager(10, 1000, null, invalidationChannel);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
+
+        // Act
+        urlShortenerService.shortenUrl(longUrl);
+
+        // Assert
+        verify(invalidationChannel, never()).publish(any());
+    }
+
+    @Test
+    public void getOriginalUrl_DeletedToken_ShouldNotCountAsBloomFilterFalsePositive() {
+        // Arrange
+        String token = "abc123";
+
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.deleteShortUrl(token)).thenReturn(true);
+        CacheManager cacheManager = createCacheManager();
+        TokenLookupFilter tokenLookupFilter = createTokenLookupFilter(token, "def456");
+        cacheManager.addInvalidationListener(tokenLookupFilter::addInvalidated);
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), tokenLookupFilter, createAliasIndex());
+        urlShortenerService.deleteShortUrl(token);
+
+        // Act
+        String deletedOriginalUrl = urlShortenerService.getOriginalUrl(token);
+        String neverStoredOriginalUrl = urlShortenerService.getOriginalUrl("def456");
+
+        // Assert
+        assertNull(deletedOriginalUrl);
+        assertNull(neverStoredOriginalUrl);
+        assertEquals(1, tokenLookupFilter.getBloomFilterFalsePositives());
+    }
+
+    @Test
+    public void deleteShortUrl_ValidToken_ShouldEvictEveryTierAndBroadcast() {
+        // Arrange
+        String token = "abc123";
+
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.deleteShortUrl(token)).thenReturn(true);
+        ISharedUrlCache sharedCache = mock(ISharedUrlCache.class);
+        ICacheInvalidationChannel invalidationChannel = mock(ICacheInvalidationChannel.class);
+        CacheManager cacheManager = new CacheManager(10, 1000, sharedCache, invalidationChannel);
+        cacheManager.getOriginalUrlCache().synchronous().put(token, "http://example.com");
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), cacheManager, mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
+
+        // Act
+        boolean result = urlShortenerService.deleteShortUrl(token);
+
+        // Assert
+        assertTrue(result);
+        assertNull(cacheManager.getOriginalUrlCache().synchronous().getIfPresent(token));
+        verify(sharedCache).invalidate(token);
+        verify(invalidationChannel).publish(List.of(token));
     }
 
     @Test
@@ -96,9 +452,7 @@ public class UrlShortenerServiceTest {
 
         ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
 
-        Cache<String, String> cache = mock(Cache.class);
-
-        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, cache);
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
 
         // Act
         boolean result = urlShortenerService.deleteShortUrl(testToken);
@@ -114,12 +468,12 @@ public class UrlShortenerServiceTest {
         String expectedToken = "abc123";
 
         IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
-        when(urlShortenerDAL.getOriginalUrlId(longUrl)).thenReturn(EXISTING_URL_ID);
+        when(urlShortenerDAL.shortenOrGet(eq(longUrl), any())).thenReturn(expectedToken);
 
         ITokenGenerator tokenGenerator = mock(ITokenGenerator.class);
         when(tokenGenerator.generateToken()).thenReturn(expectedToken);
 
-        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, CacheManager.getOriginalUrlCache());
+        UrlShortenerService urlShortenerService = new UrlShortenerService(tokenGenerator, urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), createAliasIndex());
 
         // Act
         String shortenedUrl1 = urlShortenerService.shortenUrl(longUrl);
@@ -128,4 +482,97 @@ public class UrlShortenerServiceTest {
         // Assert
         assertEquals(shortenedUrl1, shortenedUrl2);
     }
+
+    @Test
+    public void shortenUrlWithAlias_AvailableAlias_ShouldStoreItAndMakeItResolvable() {
+        // Arrange
+        String longUrl = "http://example.com";
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.insertAlias(longUrl, "Brand")).thenReturn(true);
+        when(urlShortenerDAL.getOriginalUrl("Brand")).thenReturn(longUrl);
+        AliasIndex aliasIndex = createAliasIndex();
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), aliasIndex);
+
+        // Act
+        String shortenedUrl = urlShortenerService.shortenUrlWithAlias(longUrl, "Brand");
+        String sameAliasOtherCase = urlShortenerService.shortenUrlWithAlias("http://example.org", "BRAND");
+
+        // Assert
+        assertEquals("http://localhost:8080/Brand", shortenedUrl);
+        assertNull(sameAliasOtherCase);
+        assertEquals(longUrl, urlShortenerService.getOriginalUrl("Brand"));
+        assertEquals(List.of("Brand"), urlShortenerService.suggestAliases("br", 10));
+        verify(urlShortenerDAL, never()).insertAlias("http://example.org", "BRAND");
+    }
+
+    @Test
+    public void shortenUrlWithAlias_TakenInDatabase_ShouldReturnNullAndReleaseReservation() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.insertAlias("http://example.com", "brand")).thenReturn(false);
+        AliasIndex aliasIndex = createAliasIndex();
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), createTokenLookupFilter(), aliasIndex);
+
+        // Act
+        String shortenedUrl = urlShortenerService.shortenUrlWithAliasAsync("http://example.com", "brand").join();
+
+        // Assert
+        assertNull(shortenedUrl);
+        assertEquals(0, aliasIndex.size());
+        assertThrows(IllegalArgumentException.class, () -> urlShortenerService.shortenUrlWithAlias("http://example.com", "stats"));
+    }
+
+    @Test
+    public void shortenUrls_TokensMissingFromBatch_ShouldReturnNullForThem() {
+        // Arrange
+        IUrlShortenerDAL urlShortenerDAL = mock(IUrlShortenerDAL.class);
+        when(urlShortenerDAL.shortenOrGetBatch(any(), any())).thenReturn(Map.of("http://example.com/b", "tokenB"));
+        TokenLookupFilter tokenLookupFilter = spy(createTokenLookupFilter());
+
+        UrlShortenerService urlShortenerService = new UrlShortenerService(mock(ITokenGenerator.class), urlShortenerDAL, createAsyncDAL(urlShortenerDAL), createCacheManager(), mock(RedirectCountAggregator.class), tokenLookupFilter, createAliasIndex());
+
+        // Act
+        List<String> shortUrls = urlShortenerService.shortenUrls(List.of("http://example.com/a", "http://example.com/b", "http://example.com/c"));
+
+        // Assert
+        assertEquals(Arrays.asList(null, "http://localhost:8080/tokenB", null), shortUrls);
+        verify(tokenLookupFilter).addToken("tokenB");
+        verify(tokenLookupFilter, never()).addToken(null);
+    }
+
+    private static <T> List<T> runConcurrently(int callers, Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<T>> futures = executor.invokeAll(Collections.nCopies(callers, call));
+            List<T> results = new ArrayList<>(callers);
+            for (Future<T> future : futures) {
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AsyncUrlShortenerDAL createAsyncDAL(IUrlShortenerDAL urlShortenerDAL) {
+        return new AsyncUrlShortenerDAL(urlShortenerDAL, 1, 10, 5000);
+    }
+
+    private static CacheManager createCacheManager() {
+        return new CacheManager(10, 1000);
+    }
+
+    private static AliasIndex createAliasIndex() {
+        return new AliasIndex(3, 32, List.of());
+    }
+
+    private static TokenLookupFilter createTokenLookupFilter(String... tokens) {
+        TokenLookupFilter tokenLookupFilter = new TokenLookupFilter(1000, 0.01, 30, 1000);
+        for (String token : tokens) {
+            tokenLookupFilter.addToken(token);
+        }
+        return tokenLookupFilter;
+    }
 }
@@ -0,0 +1,34 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void mightContain_InsertedValue_ReturnsTrue() {
+        BloomFilter bloomFilter = new BloomFilter(1000, 0.01);
+        bloomFilter.put("abc123");
+
+        assertTrue(bloomFilter.mightContain("abc123"), "Inserted values must never be reported as absent");
+    }
+
+    @Test
+    public void mightContain_ManyAbsentValues_StaysNearConfiguredFalsePositiveRate() {
+        int insertions = 10_000;
+        BloomFilter bloomFilter = new BloomFilter(insertions, 0.01);
+        for (int i = 0; i < insertions; i++) {
+            bloomFilter.put("present-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < insertions; i++) {
+            if (bloomFilter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < insertions * 0.03, "False positive rate should stay close to 1%, was " + falsePositives);
+    }
+}
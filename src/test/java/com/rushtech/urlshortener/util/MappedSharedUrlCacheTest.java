@@ -0,0 +1,142 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedSharedUrlCacheTest {
+
+    private static final long TIME_TO_LIVE_MILLIS = 60_000L;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void get_PutEntry_ReturnsUrlUntilInvalidated() {
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(tempDir.resolve("shared.bin"), 1000, TIME_TO_LIVE_MILLIS)) {
+            cache.put("abc123", "http://example.org/ünïcode");
+
+            assertEquals("http://example.org/ünïcode", cache.get("abc123"));
+            assertNull(cache.get("def456"));
+
+            cache.invalidate("abc123");
+            assertNull(cache.get("abc123"));
+        }
+    }
+
+    @Test
+    public void get_SameFileMappedTwice_SeesOtherMappingsWritesAndInvalidations() {
+        Path file = tempDir.resolve("shared.bin");
+        try (MappedSharedUrlCache first = new MappedSharedUrlCache(file, 1000, TIME_TO_LIVE_MILLIS);
+             MappedSharedUrlCache second = new MappedSharedUrlCache(file, 50_000, TIME_TO_LIVE_MILLIS)) {
+            first.put("abc123", "http://example.com");
+
+            assertEquals("http://example.com", second.get("abc123"));
+            second.invalidate("abc123");
+            assertNull(first.get("abc123"));
+        }
+    }
+
+    @Test
+    public void invalidate_SlotBusyWithAnotherWriter_WaitsForItAndEmptiesIt() throws Exception {
+        Path file = tempDir.resolve("shared.bin");
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(file, 1000, TIME_TO_LIVE_MILLIS);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cache.put("abc123", "http://example.com");
+            MappedByteBuffer slots = channel.map(FileChannel.MapMode.READ_WRITE, MappedSharedUrlCache.HEADER_BYTES,
+                    channel.size() - MappedSharedUrlCache.HEADER_BYTES);
+            int position = slotPositionOf(slots, "abc123");
+            long sequence = slots.order(ByteOrder.nativeOrder()).getLong(position);
+            // Stands in for another process halfway through rewriting the entry
+            slots.putLong(position, sequence + 1);
+            Thread writer = new Thread(() -> {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                slots.putLong(position, sequence + 2);
+            });
+            writer.start();
+
+            cache.invalidate("abc123");
+            writer.join();
+
+            assertNull(cache.get("abc123"));
+        }
+    }
+
+    @Test
+    public void get_ReopenedFile_KeepsEntries() throws Exception {
+        Path file = tempDir.resolve("shared.bin");
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(file, 1000, TIME_TO_LIVE_MILLIS)) {
+            cache.put("abc123", "http://example.com");
+        }
+        long fileBytes = Files.size(file);
+
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(file, 1_000_000, TIME_TO_LIVE_MILLIS)) {
+            assertEquals("http://example.com", cache.get("abc123"));
+        }
+        assertEquals(fileBytes, Files.size(file), "An existing cache file must never be resized");
+    }
+
+    @Test
+    public void get_ExpiredEntry_ReturnsNull() {
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(tempDir.resolve("shared.bin"), 1000, 0)) {
+            cache.put("abc123", "http://example.com");
+
+            assertNull(cache.get("abc123"));
+        }
+    }
+
+    @Test
+    public void put_OversizedUrl_IsNotCached() {
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(tempDir.resolve("shared.bin"), 1000, TIME_TO_LIVE_MILLIS)) {
+            cache.put("abc123", "http://example.com/" + "a".repeat(MappedSharedUrlCache.MAX_URL_BYTES));
+
+            assertNull(cache.get("abc123"));
+        }
+    }
+
+    @Test
+    public void put_FullSet_ReplacesOneEntryAndKeepsTheRest() {
+        try (MappedSharedUrlCache cache = new MappedSharedUrlCache(tempDir.resolve("shared.bin"), 4, TIME_TO_LIVE_MILLIS)) {
+            for (int i = 0; i < 5; i++) {
+                cache.put("token" + i, "http://example.com/" + i);
+            }
+
+            int cached = 0;
+            for (int i = 0; i < 5; i++) {
+                String originalUrl = cache.get("token" + i);
+                if (originalUrl != null) {
+                    assertEquals("http://example.com/" + i, originalUrl);
+                    cached++;
+                }
+            }
+            assertEquals(4, cached);
+            assertEquals("http://example.com/4", cache.get("token4"));
+        }
+    }
+
+    private static int slotPositionOf(MappedByteBuffer slots, String token) {
+        byte[] key = token.getBytes(StandardCharsets.UTF_8);
+        for (int position = 0; position < slots.capacity(); position += MappedSharedUrlCache.SLOT_BYTES) {
+            byte[] slotKey = new byte[key.length];
+            slots.get(position + MappedSharedUrlCache.TOKEN_OFFSET, slotKey);
+            if (Arrays.equals(key, slotKey)) {
+                return position;
+            }
+        }
+        throw new AssertionError("No slot holds " + token);
+    }
+}
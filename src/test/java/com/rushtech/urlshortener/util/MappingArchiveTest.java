@@ -0,0 +1,132 @@
+package com.rushtech.urlshortener.util;
+
+import com.rushtech.urlshortener.model.UrlMapping;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingArchiveTest {
+
+    private static final List<UrlMapping> MAPPINGS = List.of(
+            new UrlMapping("abc123", "https://example.com/a", 1_700_000_000_000L, 42),
+            new UrlMapping("my-alias", "https://example.com/a", 1_700_000_000_000L, 42, true),
+            new UrlMapping("xyz", "https://example.com/\u00fcn\u00efcode?q=1", UrlMapping.NO_EXPIRATION, 0)
+    );
+    private static final long NEXT_TOKEN_ID = 5000;
+
+    @Test
+    public void newReader_BinaryArchive_ShouldReadBackEveryMapping() throws IOException {
+        assertMappingsEqual(MAPPINGS, readAll(write(MappingArchive.Format.BINARY, false)));
+    }
+
+    @Test
+    public void newReader_Archive_ShouldReadBackNextTokenId() throws IOException {
+        assertEquals(NEXT_TOKEN_ID, readNextTokenId(write(MappingArchive.Format.BINARY, true)));
+        assertEquals(NEXT_TOKEN_ID, readNextTokenId(write(MappingArchive.Format.NDJSON, false)));
+    }
+
+    @Test
+    public void newReader_VersionOneArchive_ShouldReadMappingsWithoutAliasesOrSequence() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("URLM");
+        out.writeByte(1);
+        out.writeInt(Integer.BYTES * 2 + 3 + 19 + Long.BYTES * 2);
+        out.writeInt(3);
+        out.writeBytes("xyz");
+        out.writeInt(19);
+        out.writeBytes("https://example.com");
+        out.writeLong(UrlMapping.NO_EXPIRATION);
+        out.writeLong(7);
+        out.writeInt(0);
+        out.writeLong(1);
+
+        List<UrlMapping> mappings = readAll(bytes.toByteArray());
+
+        assertMappingsEqual(List.of(new UrlMapping("xyz", "https://example.com", UrlMapping.NO_EXPIRATION, 7)), mappings);
+        assertEquals(0, readNextTokenId(bytes.toByteArray()));
+    }
+
+    @Test
+    public void newReader_CompressedBinaryArchive_ShouldReadBackEveryMapping() throws IOException {
+        assertMappingsEqual(MAPPINGS, readAll(write(MappingArchive.Format.BINARY, true)));
+    }
+
+    @Test
+    public void newReader_CompressedNdjsonArchive_ShouldReadBackEveryMapping() throws IOException {
+        byte[] archive = write(MappingArchive.Format.NDJSON, true);
+
+        assertMappingsEqual(MAPPINGS, readAll(archive));
+    }
+
+    @Test
+    public void newWriter_Ndjson_ShouldWriteOneObjectPerLine() throws IOException {
+        String[] lines = new String(write(MappingArchive.Format.NDJSON, false), StandardCharsets.UTF_8).split("\n");
+
+        assertEquals(4, lines.length);
+        assertEquals("{\"token\":\"xyz\",\"longUrl\":\"https://example.com/\u00fcn\u00efcode?q=1\",\"expirationMillis\":null,\"redirectCount\":0,\"alias\":false}", lines[2]);
+        assertEquals("{\"nextTokenId\":5000}", lines[3]);
+    }
+
+    @Test
+    public void read_TruncatedBinaryArchive_ShouldThrowEOFException() throws IOException {
+        byte[] archive = write(MappingArchive.Format.BINARY, false);
+        // Cut at a record boundary, just before the end marker, where every record read so far is whole
+        byte[] truncated = Arrays.copyOf(archive, archive.length - Integer.BYTES - Long.BYTES * 2);
+
+        assertThrows(EOFException.class, () -> readAll(truncated));
+    }
+
+    private static byte[] write(MappingArchive.Format format, boolean compress) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MappingArchive.Writer writer = MappingArchive.newWriter(out, format, compress)) {
+            for (UrlMapping mapping : MAPPINGS) {
+                writer.write(mapping);
+            }
+            assertEquals(MAPPINGS.size(), writer.getMappingCount());
+            writer.setNextTokenId(NEXT_TOKEN_ID);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<UrlMapping> readAll(byte[] archive) throws IOException {
+        List<UrlMapping> mappings = new ArrayList<>();
+        try (MappingArchive.Reader reader = MappingArchive.newReader(new ByteArrayInputStream(archive))) {
+            UrlMapping mapping;
+            while ((mapping = reader.read()) != null) {
+                mappings.add(mapping);
+            }
+        }
+        return mappings;
+    }
+
+    private static long readNextTokenId(byte[] archive) throws IOException {
+        try (MappingArchive.Reader reader = MappingArchive.newReader(new ByteArrayInputStream(archive))) {
+            while (reader.read() != null) {
+                // Read to the end, where the sequence id is recorded
+            }
+            return reader.getNextTokenId();
+        }
+    }
+
+    private static void assertMappingsEqual(List<UrlMapping> expected, List<UrlMapping> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getToken(), actual.get(i).getToken());
+            assertEquals(expected.get(i).getLongUrl(), actual.get(i).getLongUrl());
+            assertEquals(expected.get(i).getExpirationMillis(), actual.get(i).getExpirationMillis());
+            assertEquals(expected.get(i).getRedirectCount(), actual.get(i).getRedirectCount());
+            assertEquals(expected.get(i).isAlias(), actual.get(i).isAlias());
+        }
+    }
+}
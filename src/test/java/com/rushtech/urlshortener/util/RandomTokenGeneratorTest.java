@@ -0,0 +1,35 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RandomTokenGeneratorTest {
+
+    @Test
+    public void generateToken_ConfiguredLength_ReturnsBase62CharactersOfThatLength() {
+        RandomTokenGenerator tokenGenerator = new RandomTokenGenerator(9);
+        String token = tokenGenerator.generateToken();
+
+        assertTrue(token.matches("[0-9A-Za-z]{9}"), "Generated token should be 9 base62 characters: " + token);
+    }
+
+    @Test
+    public void generateToken_CalledRepeatedly_ReturnsDistinctTokens() {
+        RandomTokenGenerator tokenGenerator = new RandomTokenGenerator(7);
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            tokens.add(tokenGenerator.generateToken());
+        }
+
+        assertEquals(10_000, tokens.size(), "Generated tokens should not repeat");
+    }
+
+    @Test
+    public void constructor_LengthOutOfRange_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new RandomTokenGenerator(0));
+    }
+}
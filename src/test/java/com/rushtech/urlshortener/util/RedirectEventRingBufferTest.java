@@ -0,0 +1,78 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedirectEventRingBufferTest {
+
+    @Test
+    public void drain_PublishedEvents_ShouldHandThemOverInOrder() {
+        RedirectEventRingBuffer ringBuffer = new RedirectEventRingBuffer(4);
+        ringBuffer.offer("abc123", 1000L, "https://example.org", "Mozilla/5.0");
+        ringBuffer.offer("def456", 2000L, null, null);
+
+        List<String> drained = new ArrayList<>();
+        int count = ringBuffer.drain((token, timestampMillis, referrer, userAgent) ->
+                drained.add(token + " " + timestampMillis + " " + referrer + " " + userAgent), 10);
+
+        assertEquals(2, count);
+        assertEquals(List.of("abc123 1000 https://example.org Mozilla/5.0", "def456 2000 null null"), drained);
+        assertEquals(0, ringBuffer.size());
+    }
+
+    @Test
+    public void offer_BufferFull_ShouldDropUntilDrained() {
+        RedirectEventRingBuffer ringBuffer = new RedirectEventRingBuffer(3);
+        assertEquals(4, ringBuffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer("tok" + i, i, null, null));
+        }
+
+        assertFalse(ringBuffer.offer("tok4", 4, null, null));
+        assertEquals(1, ringBuffer.getDropped());
+
+        assertEquals(1, ringBuffer.drain((token, timestampMillis, referrer, userAgent) -> assertEquals("tok0", token), 1));
+        assertTrue(ringBuffer.offer("tok5", 5, null, null));
+    }
+
+    @Test
+    public void offer_ConcurrentProducers_ShouldDeliverEveryEventOnce() throws Exception {
+        int producers = 8;
+        int eventsPerProducer = 10_000;
+        RedirectEventRingBuffer ringBuffer = new RedirectEventRingBuffer(producers * eventsPerProducer);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int producer = 0; producer < producers; producer++) {
+            String prefix = "p" + producer + "-";
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    ringBuffer.offer(prefix + i, i, null, null);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Set<String> tokens = new HashSet<>();
+        ringBuffer.drain((token, timestampMillis, referrer, userAgent) -> assertTrue(tokens.add(token)), Integer.MAX_VALUE);
+
+        assertEquals(producers * eventsPerProducer, tokens.size());
+        assertEquals(0, ringBuffer.getDropped());
+    }
+}
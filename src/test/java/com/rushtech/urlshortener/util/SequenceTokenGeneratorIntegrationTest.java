@@ -0,0 +1,119 @@
+package com.rushtech.urlshortener.util;
+
+import com.rushtech.urlshortener.dal.SchemaMigrator;
+import com.rushtech.urlshortener.dal.UrlShortenerDAL;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SequenceTokenGeneratorIntegrationTest {
+
+    private static final int MAX_POOL_SIZE = 4;
+    // Short, so a lease waiting for the write connection its own transaction holds fails the test quickly
+    private static final int CONNECTION_TIMEOUT_MILLISECONDS = 1000;
+    private static final int EXPIRY_DATE_MONTHS_IN_FUTURE = 6;
+
+    @TempDir
+    Path tempDir;
+
+    private UrlShortenerDAL urlShortenerDAL;
+
+    @BeforeEach
+    void setUp() {
+        String databaseUrl = "jdbc:sqlite:" + tempDir.resolve("sequence.db");
+        new SchemaMigrator(databaseUrl, CONNECTION_TIMEOUT_MILLISECONDS, new SimpleMeterRegistry()).migrate();
+        urlShortenerDAL = new UrlShortenerDAL(databaseUrl, MAX_POOL_SIZE, CONNECTION_TIMEOUT_MILLISECONDS, EXPIRY_DATE_MONTHS_IN_FUTURE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        urlShortenerDAL.close();
+    }
+
+    @Test
+    void shortenOrGet_BlocksRunningOut_ShouldLeaseOutsideTheWriteTransaction() {
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, 2, 4);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("000" + i, shorten(tokenGenerator, "http://example.com/" + i));
+        }
+        assertEquals(10L, urlShortenerDAL.reserveTokenIdBlock(1));
+    }
+
+    @Test
+    void shortenOrGetBatch_MoreUrlsThanBlockSize_ShouldLeaseOneLargerBlock() {
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, 2, 4);
+        List<String> longUrls = List.of("http://example.com/a", "http://example.com/b", "http://example.com/c");
+
+        Map<String, String> tokensByLongUrl;
+        try (TokenReservation tokens = tokenGenerator.reserve(longUrls.size())) {
+            tokensByLongUrl = urlShortenerDAL.shortenOrGetBatch(longUrls, tokens);
+        }
+
+        assertEquals(Set.copyOf(longUrls), tokensByLongUrl.keySet());
+        assertEquals(Set.of("0000", "0001", "0002"), Set.copyOf(tokensByLongUrl.values()));
+        assertEquals(7L, urlShortenerDAL.reserveTokenIdBlock(1));
+    }
+
+    @Test
+    void shortenOrGet_UrlAlreadyShortened_ShouldGiveTheUnusedIdBack() {
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, 100, 4);
+        assertEquals("0000", shorten(tokenGenerator, "http://example.com/a"));
+
+        assertEquals("0000", shorten(tokenGenerator, "http://example.com/a"));
+
+        assertEquals("0001", shorten(tokenGenerator, "http://example.com/b"));
+    }
+
+    @Test
+    void generateToken_AnotherNodeLeasedInBetween_ShouldSkipToItsOwnBlock() {
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, 2, 1);
+        assertEquals("0", tokenGenerator.generateToken());
+        assertEquals("1", tokenGenerator.generateToken());
+        urlShortenerDAL.reserveTokenIdBlock(10);
+
+        assertEquals("C", tokenGenerator.generateToken());
+    }
+
+    @Test
+    void generateToken_ManyThreadsSharingBlocks_ShouldNeverRepeatAToken() throws Exception {
+        SequenceTokenGenerator tokenGenerator = new SequenceTokenGenerator(urlShortenerDAL, 10, 1);
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    tokens.add(tokenGenerator.generateToken());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(4000, tokens.size());
+    }
+
+    private String shorten(SequenceTokenGenerator tokenGenerator, String longUrl) {
+        try (TokenReservation tokens = tokenGenerator.reserve(1)) {
+            return urlShortenerDAL.shortenOrGet(longUrl, tokens);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UdpCacheInvalidationChannelTest {
+
+    @Test
+    public void publish_ManyTokens_ShouldDeliverEveryTokenToPeerSubscribers() throws Exception {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tokens.add("token" + i);
+        }
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch allReceived = new CountDownLatch(tokens.size());
+
+        try (UdpCacheInvalidationChannel receiver = new UdpCacheInvalidationChannel(0, List.of());
+             UdpCacheInvalidationChannel sender = new UdpCacheInvalidationChannel(0,
+                     List.of(new InetSocketAddress("127.0.0.1", receiver.getLocalPort())))) {
+            receiver.subscribe((Collection<String> invalidated) -> {
+                received.addAll(invalidated);
+                invalidated.forEach(token -> allReceived.countDown());
+            });
+
+            sender.publish(tokens);
+
+            assertTrue(allReceived.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(tokens.size(), received.size());
+        assertTrue(received.containsAll(tokens));
+    }
+
+    @Test
+    public void invalidate_RemoteInstance_ShouldEvictPeerCacheManager() throws Exception {
+        try (UdpCacheInvalidationChannel receiverChannel = new UdpCacheInvalidationChannel(0, List.of());
+             CacheManager receiver = new CacheManager(10, 1000, null, receiverChannel);
+             CacheManager sender = new CacheManager(10, 1000, null, new UdpCacheInvalidationChannel(0,
+                     List.of(new InetSocketAddress("127.0.0.1", receiverChannel.getLocalPort()))))) {
+            receiver.getOriginalUrlCache().synchronous().put("abc123", "http://example.com");
+
+            sender.invalidate("abc123");
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (receiver.getInvalidationsReceived() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, receiver.getInvalidationsReceived());
+            assertNull(receiver.getOriginalUrlCache().synchronous().getIfPresent("abc123"));
+            assertEquals(1, sender.getInvalidationsPublished());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlCanonicalizerTest {
+
+    @Test
+    public void canonicalize_MixedCaseHostAndDefaultPort_LowerCasesHostAndDropsPort() {
+        assertEquals("http://example.com/Path", UrlCanonicalizer.canonicalize("HTTP://Example.COM:80/Path"));
+        assertEquals("https://example.com:8443/", UrlCanonicalizer.canonicalize("https://example.com:8443"));
+    }
+
+    @Test
+    public void canonicalize_UnsortedQuery_SortsByNameKeepingRepeatedNamesInOrder() {
+        String canonicalUrl = UrlCanonicalizer.canonicalize("https://example.com/a?utm=x&b=2&a=1&b=1#top");
+
+        assertEquals("https://example.com/a?a=1&b=2&b=1&utm=x#top", canonicalUrl);
+    }
+
+    @Test
+    public void canonicalize_Unparseable_ReturnsInputUnchanged() {
+        assertEquals("not a url", UrlCanonicalizer.canonicalize("not a url"));
+        assertEquals("mailto:someone@example.com", UrlCanonicalizer.canonicalize("mailto:someone@example.com"));
+    }
+}
@@ -0,0 +1,21 @@
+package com.rushtech.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UrlHashTest {
+
+    @Test
+    public void hash_ReferenceInputs_MatchesXxh64() {
+        assertEquals(0xEF46DB3751D8E999L, UrlHash.hash(""));
+        assertEquals(0x44BC2CF5AD770999L, UrlHash.hash("abc"));
+        // Longer than one 32-byte stripe, so the accumulator rounds are covered too
+        assertEquals(0xFBCEA83C8A378BF1L, UrlHash.hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void hash_UrlsDifferingInOneCharacter_ReturnsDifferentHashes() {
+        assertNotEquals(UrlHash.hash("https://example.com/campaign?id=1"), UrlHash.hash("https://example.com/campaign?id=2"));
+    }
+}